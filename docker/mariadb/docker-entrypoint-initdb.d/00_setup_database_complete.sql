@@ -51,6 +51,9 @@ CREATE TABLE system_type (
  location field offers a simple way to group events, and can be used flexibly.
  In the case of RF it will be the zone, but other systems may have different
  location schemes.
+ num_capture_files - the number of capture files (capture rows) of the event.
+ Written when the event is added so listing queries can filter on it without
+ counting the capture table.
  */
 CREATE TABLE event (
                        event_id BIGINT NOT NULL AUTO_INCREMENT,
@@ -61,10 +64,12 @@ CREATE TABLE event (
                        archive tinyint(1) NOT NULL DEFAULT 0,
                        to_be_deleted tinyint(1) NOT NULL DEFAULT 0,
                        grouped tinyint(1) NOT NULL DEFAULT 0,
+                       num_capture_files int NOT NULL DEFAULT 0,
                        PRIMARY KEY (event_id),
                        UNIQUE KEY `event_time_utc` (`event_time_utc`,`location`,`system_id`, `classification`),
                        INDEX i_location(location),
                        INDEX i_event_time(event_time_utc),
+                       INDEX i_system_time_cf(system_id, event_time_utc, num_capture_files),
                        FOREIGN KEY fk_system_id (system_id)
                            REFERENCES system_type (system_id)
                            ON DELETE CASCADE
@@ -106,6 +111,28 @@ CREATE TABLE capture_wf (
                                 ON DELETE CASCADE
 ) ENGINE=InnoDB;
 
+/*
+ Summary statistics of each waveform, computed from the capture file when the
+ event is added.  NaN samples are only counted.  The value columns are NULL
+ when a waveform has no other samples (or the value is infinite), and
+ first_excursion is NULL when the waveform never leaves its pre-trigger
+ baseline.
+ */
+CREATE TABLE waveform_stats (
+                                cwf_id bigint NOT NULL,
+                                num_samples int NOT NULL,
+                                num_nan int NOT NULL,
+                                min_value double,
+                                max_value double,
+                                mean_value double,
+                                rms_value double,
+                                first_excursion double,
+                                PRIMARY KEY (`cwf_id`),
+                                FOREIGN KEY fk_cwf_id (cwf_id)
+                                    REFERENCES capture_wf (`cwf_id`)
+                                    ON DELETE CASCADE
+) ENGINE=InnoDB;
+
 
 /*
  A table used to track PV metadata assocatied with capture files
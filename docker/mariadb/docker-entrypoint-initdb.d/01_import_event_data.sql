@@ -52,10 +52,13 @@ UNLOCK TABLES;
 
 LOCK TABLES `event` WRITE;
 /*!40000 ALTER TABLE `event` DISABLE KEYS */;
-INSERT INTO `event` VALUES (1,'2024-03-15 13:55:33.2','0L04','other',1,0,0,1),(2,'2024-03-15 19:09:44.0','0L04','other',1,0,0,1),(3,'2024-03-16 12:19:00.4','0L04','trip',1,0,0,1),(4,'2024-03-16 12:19:13.5','0L04','trip',1,0,0,1),(5,'2024-03-15 16:21:16.5','1L22','other',1,0,0,1),(6,'2024-03-15 17:28:11.9','1L22','other',1,0,0,1),(7,'2024-03-15 20:48:15.8','1L22','other',1,0,0,1),(8,'2024-03-15 19:57:44.4','2L22','other',1,0,0,1),(9,'2024-03-15 20:42:53.4','2L22','other',1,0,0,1),(10,'2024-03-16 12:11:45.9','2L22','trip',1,0,0,1),(11,'2024-03-16 21:34:19.2','2L22','trip',1,0,0,1),(12,'2024-03-16 15:52:29.7','1L01','event',2,0,0,0),(13,'2024-03-16 05:30:10.7','1L01','periodic',2,0,0,0),(14,'2024-03-16 06:30:11.7','1L01','periodic',2,0,0,0),(15,'2024-03-16 07:30:12.7','1L01','periodic',2,0,0,0),(16,'2024-03-16 04:30:12.3','1L13','periodic',2,0,0,0),(17,'2024-03-16 05:30:13.5','1L13','periodic',2,0,0,0),(18,'2024-03-16 06:30:14.5','1L13','periodic',2,0,0,0),(19,'2024-03-16 07:30:15.0','1L13','periodic',2,0,0,0),(20,'2024-03-16 20:35:53.2','1L27','event',2,0,0,0),(21,'2024-03-17 00:32:42.2','1L27','periodic',2,0,0,0),(22,'2024-03-17 01:32:43.3','1L27','periodic',2,0,0,0),(23,'2024-03-17 02:32:44.7','1L27','periodic',2,0,0,0),(24,'2024-03-17 03:32:45.8','1L27','periodic',2,0,0,0),(25,'2024-03-15 04:15:18.4','cebaf','fsd',3,0,0,1),(26,'2024-03-15 04:18:57.4','cebaf','fsd',3,0,0,1),(27,'2024-03-15 04:30:30.9','cebaf','fsd',3,0,0,1),(28,'2024-03-15 15:07:37.3','cebaf','fsd',3,0,0,1),(29,'2024-03-15 15:29:32.9','cebaf','fsd',3,0,0,1),(30,'2024-03-15 15:52:46.9','cebaf','fsd',3,0,0,1);
+INSERT INTO `event` (`event_id`, `event_time_utc`, `location`, `classification`, `system_id`, `archive`, `to_be_deleted`, `grouped`) VALUES (1,'2024-03-15 13:55:33.2','0L04','other',1,0,0,1),(2,'2024-03-15 19:09:44.0','0L04','other',1,0,0,1),(3,'2024-03-16 12:19:00.4','0L04','trip',1,0,0,1),(4,'2024-03-16 12:19:13.5','0L04','trip',1,0,0,1),(5,'2024-03-15 16:21:16.5','1L22','other',1,0,0,1),(6,'2024-03-15 17:28:11.9','1L22','other',1,0,0,1),(7,'2024-03-15 20:48:15.8','1L22','other',1,0,0,1),(8,'2024-03-15 19:57:44.4','2L22','other',1,0,0,1),(9,'2024-03-15 20:42:53.4','2L22','other',1,0,0,1),(10,'2024-03-16 12:11:45.9','2L22','trip',1,0,0,1),(11,'2024-03-16 21:34:19.2','2L22','trip',1,0,0,1),(12,'2024-03-16 15:52:29.7','1L01','event',2,0,0,0),(13,'2024-03-16 05:30:10.7','1L01','periodic',2,0,0,0),(14,'2024-03-16 06:30:11.7','1L01','periodic',2,0,0,0),(15,'2024-03-16 07:30:12.7','1L01','periodic',2,0,0,0),(16,'2024-03-16 04:30:12.3','1L13','periodic',2,0,0,0),(17,'2024-03-16 05:30:13.5','1L13','periodic',2,0,0,0),(18,'2024-03-16 06:30:14.5','1L13','periodic',2,0,0,0),(19,'2024-03-16 07:30:15.0','1L13','periodic',2,0,0,0),(20,'2024-03-16 20:35:53.2','1L27','event',2,0,0,0),(21,'2024-03-17 00:32:42.2','1L27','periodic',2,0,0,0),(22,'2024-03-17 01:32:43.3','1L27','periodic',2,0,0,0),(23,'2024-03-17 02:32:44.7','1L27','periodic',2,0,0,0),(24,'2024-03-17 03:32:45.8','1L27','periodic',2,0,0,0),(25,'2024-03-15 04:15:18.4','cebaf','fsd',3,0,0,1),(26,'2024-03-15 04:18:57.4','cebaf','fsd',3,0,0,1),(27,'2024-03-15 04:30:30.9','cebaf','fsd',3,0,0,1),(28,'2024-03-15 15:07:37.3','cebaf','fsd',3,0,0,1),(29,'2024-03-15 15:29:32.9','cebaf','fsd',3,0,0,1),(30,'2024-03-15 15:52:46.9','cebaf','fsd',3,0,0,1);
 /*!40000 ALTER TABLE `event` ENABLE KEYS */;
 UNLOCK TABLES;
 
+-- The dump predates event.num_capture_files
+UPDATE event SET num_capture_files = (SELECT COUNT(*) FROM capture WHERE capture.event_id = event.event_id);
+
 /*!40103 SET TIME_ZONE=@OLD_TIME_ZONE */;
 
 /*!40101 SET SQL_MODE=@OLD_SQL_MODE */;
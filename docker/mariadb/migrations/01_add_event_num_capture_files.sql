@@ -0,0 +1,17 @@
+/*
+ Adds the stored capture file count to the event table of an existing
+ database.  New databases created from docker-entrypoint-initdb.d already have
+ it.  The application writes num_capture_files when it adds an event, so run
+ this while the application is stopped (or not ingesting events) so that no
+ event is added between the ALTER and the backfill.
+ */
+
+USE waveforms;
+
+ALTER TABLE event
+    ADD COLUMN num_capture_files int NOT NULL DEFAULT 0 AFTER grouped,
+    ADD INDEX i_system_time_cf(system_id, event_time_utc, num_capture_files);
+
+UPDATE event e
+    JOIN (SELECT event_id, COUNT(*) AS n FROM capture GROUP BY event_id) c USING(event_id)
+SET e.num_capture_files = c.n;
@@ -0,0 +1,24 @@
+/*
+ Adds the waveform statistics table to an existing database.  New databases
+ created from docker-entrypoint-initdb.d already have it.  Statistics are
+ computed from the capture files when an event is added, so events added before
+ this migration have none.  Those events are simply left out of the results of
+ EventService.getWaveformStats.
+ */
+
+USE waveforms;
+
+CREATE TABLE waveform_stats (
+                                cwf_id bigint NOT NULL,
+                                num_samples int NOT NULL,
+                                num_nan int NOT NULL,
+                                min_value double,
+                                max_value double,
+                                mean_value double,
+                                rms_value double,
+                                first_excursion double,
+                                PRIMARY KEY (`cwf_id`),
+                                FOREIGN KEY fk_cwf_id (cwf_id)
+                                    REFERENCES capture_wf (`cwf_id`)
+                                    ON DELETE CASCADE
+) ENGINE=InnoDB;
@@ -0,0 +1,153 @@
+package org.jlab.wfbrowser.model.CaptureFile;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
+import org.apache.commons.compress.compressors.gzip.GzipCompressorInputStream;
+import org.apache.commons.compress.utils.IOUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Compares the byte level CaptureFileParser against the BufferedReader/String.split/Double.parseDouble approach it
+ * replaced. Every capture file found in the RF sample archives under $WFB_DATA_DIR/rf (default data/rf) is
+ * decompressed into memory up front so that only parsing is measured.
+ *
+ * @author adamc
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CaptureFileParserBenchmark {
+
+    private List<byte[]> captureFiles;
+    private CaptureFileParser parser;
+
+    @Setup
+    public void setup() throws IOException {
+        String dataDir = System.getenv("WFB_DATA_DIR");
+        if (dataDir == null) {
+            dataDir = "data";
+        }
+        captureFiles = readCaptureFiles(Paths.get(dataDir, "rf"));
+        if (captureFiles.isEmpty()) {
+            throw new IOException("No capture files found under " + Paths.get(dataDir, "rf"));
+        }
+        parser = new CaptureFileParser();
+    }
+
+    /**
+     * Read every capture file contained in the .tar.gz archives under dir into memory.
+     */
+    static List<byte[]> readCaptureFiles(Path dir) throws IOException {
+        List<Path> archives;
+        try (Stream<Path> paths = Files.walk(dir)) {
+            archives = paths.filter(p -> p.toString().endsWith(".tar.gz")).sorted().collect(Collectors.toList());
+        }
+
+        List<byte[]> out = new ArrayList<>();
+        for (Path archive : archives) {
+            try (TarArchiveInputStream ais = new TarArchiveInputStream(new GzipCompressorInputStream(Files.newInputStream(archive)))) {
+                TarArchiveEntry entry;
+                while ((entry = ais.getNextTarEntry()) != null) {
+                    if (!entry.isDirectory() && entry.getName().contains(".txt")) {
+                        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+                        IOUtils.copy(ais, baos);
+                        out.add(baos.toByteArray());
+                    }
+                }
+            }
+        }
+        return out;
+    }
+
+    @Benchmark
+    public void byteParser(Blackhole bh) throws IOException {
+        for (byte[] file : captureFiles) {
+            bh.consume(parser.parse(new ByteArrayInputStream(file), true));
+        }
+    }
+
+    @Benchmark
+    public void splitParser(Blackhole bh) throws IOException {
+        for (byte[] file : captureFiles) {
+            bh.consume(splitParse(file));
+        }
+    }
+
+    /**
+     * The parsing approach that was used by Event.parseWaveformInputStream before CaptureFileParser.
+     */
+    private static double[][] splitParse(byte[] file) throws IOException {
+        return splitParse(new ByteArrayInputStream(file));
+    }
+
+    static double[][] splitParse(InputStream is) throws IOException {
+        try (BufferedReader br = new BufferedReader(new InputStreamReader(is))) {
+            String line;
+            List<Metadata> metadataList = new ArrayList<>();
+            while ((line = br.readLine()) != null) {
+                if (line.matches("#.*")) {
+                    metadataList.add(Metadata.getMetadataFromCaptureFileLine(line));
+                } else {
+                    break;
+                }
+            }
+            if (line == null) {
+                return null;
+            }
+            String[] headers = line.split("\\s+");
+
+            double[][] data = new double[headers.length][8192];
+            int i = 0;
+            while ((line = br.readLine()) != null) {
+                if (i >= data[0].length) {
+                    for (int j = 0; j < data.length; j++) {
+                        data[j] = Arrays.copyOf(data[j], 2 * data[j].length);
+                    }
+                }
+                String[] nums = line.split("\\s+");
+                for (int j = 0; j < headers.length; j++) {
+                    if (nums[j].isEmpty()) {
+                        data[j][i] = Double.NaN;
+                    } else {
+                        data[j][i] = Double.parseDouble(nums[j]);
+                    }
+                }
+                i++;
+            }
+
+            double[][] out = new double[headers.length][i];
+            for (int j = 0; j < out.length; j++) {
+                System.arraycopy(data[j], 0, out[j], 0, out[j].length);
+            }
+            return out;
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package org.jlab.wfbrowser.model.CaptureFile;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
+import org.apache.commons.compress.compressors.gzip.GzipCompressorInputStream;
+import org.apache.commons.compress.utils.IOUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Compares ways of reading and parsing uncompressed capture files from disk.
+ * The sample data under $WFB_DATA_DIR/acclrm and $WFB_DATA_DIR/bpm (default
+ * data/) is stored compressed, so the capture files are extracted to a
+ * temporary directory first. Repeated runs read from the page cache, so this
+ * measures the cost of getting the bytes from the OS into the parser rather
+ * than disk speed.
+ *
+ * @author adamc
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CaptureFileReadBenchmark {
+
+    @Param({"acclrm", "bpm"})
+    public String system;
+
+    private Path tempDir;
+    private List<Path> captureFiles;
+    private CaptureFileParser parser;
+
+    @Setup
+    public void setup() throws IOException {
+        String dataDir = System.getenv("WFB_DATA_DIR");
+        if (dataDir == null) {
+            dataDir = "data";
+        }
+        tempDir = Files.createTempDirectory("wfb-read-benchmark");
+        captureFiles = extractCaptureFiles(Paths.get(dataDir, system), tempDir);
+        if (captureFiles.isEmpty()) {
+            throw new IOException("No capture files found under " + Paths.get(dataDir, system));
+        }
+        parser = new CaptureFileParser();
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        try (Stream<Path> paths = Files.walk(tempDir)) {
+            for (Path p : paths.sorted(Comparator.reverseOrder()).collect(Collectors.toList())) {
+                Files.delete(p);
+            }
+        }
+    }
+
+    /**
+     * Extract every capture file in the .tar.gz archives under dir to a flat directory.
+     */
+    private static List<Path> extractCaptureFiles(Path dir, Path out) throws IOException {
+        List<Path> archives;
+        try (Stream<Path> paths = Files.walk(dir)) {
+            archives = paths.filter(p -> p.toString().endsWith(".tar.gz")).sorted().collect(Collectors.toList());
+        }
+
+        List<Path> files = new ArrayList<>();
+        for (Path archive : archives) {
+            try (TarArchiveInputStream ais = new TarArchiveInputStream(new GzipCompressorInputStream(Files.newInputStream(archive)))) {
+                TarArchiveEntry entry;
+                while ((entry = ais.getNextTarEntry()) != null) {
+                    if (!entry.isDirectory() && entry.getName().contains(".txt")) {
+                        Path file = out.resolve(files.size() + "-" + Paths.get(entry.getName()).getFileName());
+                        try (OutputStream os = Files.newOutputStream(file)) {
+                            IOUtils.copy(ais, os);
+                        }
+                        files.add(file);
+                    }
+                }
+            }
+        }
+        return files;
+    }
+
+    /**
+     * BufferedReader, String.split and Double.parseDouble, as Event did before CaptureFileParser
+     */
+    @Benchmark
+    public void bufferedReader(Blackhole bh) throws IOException {
+        for (Path file : captureFiles) {
+            bh.consume(CaptureFileParserBenchmark.splitParse(Files.newInputStream(file)));
+        }
+    }
+
+    /**
+     * CaptureFileParser reading through an InputStream
+     */
+    @Benchmark
+    public void stream(Blackhole bh) throws IOException {
+        for (Path file : captureFiles) {
+            try (InputStream is = Files.newInputStream(file)) {
+                bh.consume(parser.parse(is, true));
+            }
+        }
+    }
+
+    /**
+     * CaptureFileParser reading every file through a memory map
+     */
+    @Benchmark
+    public void mmap(Blackhole bh) throws IOException {
+        for (Path file : captureFiles) {
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                bh.consume(parser.parse(mapped, true, null));
+            }
+        }
+    }
+
+    /**
+     * CaptureFileParser choosing between a memory map and a stream based on file size.  This is what Event uses.
+     */
+    @Benchmark
+    public void file(Blackhole bh) throws IOException {
+        for (Path file : captureFiles) {
+            bh.consume(parser.parse(file, true, null, null));
+        }
+    }
+}
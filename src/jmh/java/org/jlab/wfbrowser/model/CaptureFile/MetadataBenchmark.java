@@ -0,0 +1,115 @@
+package org.jlab.wfbrowser.model.CaptureFile;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Compares the hand written capture file metadata line parser in Metadata
+ * against the regex based parsing it replaced. The sample data carries very
+ * few metadata lines, so a fixed set of lines in the four formats is
+ * generated instead, weighted towards numbers like real harvester output.
+ *
+ * @author adamc
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MetadataBenchmark {
+
+    private static final int NUM_LINES = 200;
+
+    private List<String> lines;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(42);
+        lines = new ArrayList<>(NUM_LINES);
+        for (int i = 0; i < NUM_LINES; i++) {
+            String name = "R" + (1 + random.nextInt(2)) + Integer.toString(random.nextInt(36 * 36), 36).toUpperCase() + "GMES";
+            // Harvester writes offsets like -1.0e1 and plain decimals otherwise
+            String offset = "-" + (1 + random.nextInt(9)) + ".0e" + random.nextInt(2);
+            String start = String.format(Locale.US, "%.3f", -random.nextDouble() * 100);
+            int type = random.nextInt(10);
+            if (type < 7) {
+                lines.add("# " + name + "=" + String.format(Locale.US, "%.4f", random.nextGaussian() * 1000) + " @ " + offset + "(" + start + ")");
+            } else if (type < 8) {
+                lines.add("# " + name + "='enabled' @ " + offset + "(" + start + ")");
+            } else if (type < 9) {
+                lines.add("# " + name + "=unavailable @ " + offset);
+            } else {
+                lines.add("# " + name + "=not archived");
+            }
+        }
+    }
+
+    /**
+     * The regex based parsing Metadata used before
+     */
+    @Benchmark
+    public void regex(Blackhole bh) {
+        for (String line : lines) {
+            bh.consume(regexParse(line));
+        }
+    }
+
+    /**
+     * Metadata.getMetadataFromCaptureFileLine
+     */
+    @Benchmark
+    public void handWritten(Blackhole bh) {
+        for (String line : lines) {
+            bh.consume(Metadata.getMetadataFromCaptureFileLine(line));
+        }
+    }
+
+    /**
+     * The original regex implementation of Metadata.getMetadataFromCaptureFileLine, kept here for comparison.
+     */
+    static Metadata regexParse(String line) {
+        String unarchivedRegex = "# ([^=]+)=not archived";
+        String unavailableRegex = "# ([^=]+)=unavailable @ ([\\-\\d\\.e]+)";
+        String numberRegex = "# ([^=]+)=([\\-\\d\\.e]+) @ ([\\-\\d\\.e]+)\\(([\\-\\d\\.e]+)\\)";
+        String stringRegex = "# ([^=]+)='(.*)' @ ([\\-\\d\\.e]+)\\(([\\-\\d\\.e]+)\\)";
+
+        Matcher m;
+        if (line.matches(unarchivedRegex)) {
+            m = Pattern.compile(unarchivedRegex).matcher(line);
+            m.matches();
+            return new Metadata(MetadataType.UNARCHIVED, m.group(1), null, null, null);
+        } else if (line.matches(unavailableRegex)) {
+            m = Pattern.compile(unavailableRegex).matcher(line);
+            m.matches();
+            return new Metadata(MetadataType.UNAVAILABLE, m.group(1), null, Double.valueOf(m.group(2)), null);
+        } else if (line.matches(numberRegex)) {
+            m = Pattern.compile(numberRegex).matcher(line);
+            m.matches();
+            return new Metadata(MetadataType.NUMBER, m.group(1), Double.valueOf(m.group(2)),
+                    Double.valueOf(m.group(3)), Double.valueOf(m.group(4)));
+        } else if (line.matches(stringRegex)) {
+            m = Pattern.compile(stringRegex).matcher(line);
+            m.matches();
+            return new Metadata(MetadataType.STRING, m.group(1), m.group(2), Double.valueOf(m.group(3)),
+                    Double.valueOf(m.group(4)));
+        }
+        throw new IllegalArgumentException("Metadata line has unrecognized format - " + line);
+    }
+}
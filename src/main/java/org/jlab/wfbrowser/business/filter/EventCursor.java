@@ -0,0 +1,106 @@
+package org.jlab.wfbrowser.business.filter;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Objects;
+
+import org.jlab.wfbrowser.business.util.TimeUtil;
+import org.jlab.wfbrowser.model.Event;
+
+/**
+ * A position in the event listing, used for keyset pagination.  Events are listed in order of event time and then
+ * event ID, so a cursor is the (event_time_utc, event_id) pair of the last event of a page.  The next page is every
+ * event that sorts after it.  Unlike an OFFSET, this stays cheap however deep into a time range a client pages, and
+ * events added or removed before the cursor do not shift the pages after it.
+ * <p>
+ * The string form is "yyyy-MM-dd HH:mm:ss.S,eventId" with the time in UTC, the same as an event's datetime_utc JSON
+ * field.
+ *
+ * @author adamc
+ */
+public class EventCursor {
+
+    private final Instant eventTime;
+    private final long eventId;
+
+    /**
+     * @param eventTime The event time of the last event already seen
+     * @param eventId   The event ID of the last event already seen
+     */
+    public EventCursor(Instant eventTime, long eventId) {
+        if (eventTime == null) {
+            throw new IllegalArgumentException("Event cursor requires an event time");
+        }
+        this.eventTime = eventTime;
+        this.eventId = eventId;
+    }
+
+    /**
+     * Create a cursor pointing at an event.  The event must have come from the database.
+     *
+     * @param e The event
+     * @return A cursor for the listing that follows the event
+     */
+    public static EventCursor of(Event e) {
+        if (e.getEventId() == null) {
+            throw new IllegalArgumentException("Cannot create an event cursor without a database event ID");
+        }
+        return new EventCursor(e.getEventTime(), e.getEventId());
+    }
+
+    /**
+     * Parse the string form of a cursor.
+     *
+     * @param cursor A string of format "yyyy-MM-dd HH:mm:ss[.S],eventId" with the time in UTC
+     * @return The cursor
+     * @throws IllegalArgumentException If the string is not a valid cursor
+     */
+    public static EventCursor parse(String cursor) {
+        int comma = cursor == null ? -1 : cursor.lastIndexOf(',');
+        if (comma < 0) {
+            throw new IllegalArgumentException("Invalid event cursor - " + cursor);
+        }
+        String time = cursor.substring(0, comma).trim();
+        try {
+            DateTimeFormatter dtf = DateTimeFormatter.ofPattern(time.contains(".") ? "yyyy-MM-dd HH:mm:ss.S" : "yyyy-MM-dd HH:mm:ss");
+            Instant eventTime = LocalDateTime.parse(time, dtf).toInstant(ZoneOffset.UTC);
+            long eventId = Long.parseLong(cursor.substring(comma + 1).trim());
+            return new EventCursor(eventTime, eventId);
+        } catch (DateTimeParseException | NumberFormatException ex) {
+            throw new IllegalArgumentException("Invalid event cursor - " + cursor, ex);
+        }
+    }
+
+    public Instant getEventTime() {
+        return eventTime;
+    }
+
+    public long getEventId() {
+        return eventId;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        EventCursor other = (EventCursor) o;
+        return eventId == other.eventId && eventTime.equals(other.eventTime);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(eventTime, eventId);
+    }
+
+    @Override
+    public String toString() {
+        return TimeUtil.getDateTimeString(eventTime) + "," + eventId;
+    }
+}
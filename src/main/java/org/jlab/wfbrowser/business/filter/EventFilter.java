@@ -31,9 +31,11 @@ public class EventFilter {
     private final Boolean archive;
     private final Boolean delete;
     private final Integer minCaptureFiles;
+    private final List<LabelFilter> labelFilterList;
+    private final boolean includeUnlabeled;
 
     /**
-     * Construct the basic filter object and save the individual filter values.  If minCaptureFiles != null, then query must join capture table with count(*) AS num_cf
+     * Construct the basic filter object and save the individual filter values.  If minCaptureFiles != null, then the query must include the event table's num_capture_files column.
      * Supply null if no filter is to be done on that field.
      *
      * @param eventIdList
@@ -57,6 +59,52 @@ public class EventFilter {
         this.archive = archive;
         this.delete = delete;
         this.minCaptureFiles = minCaptureFiles;
+        this.labelFilterList = null;
+        this.includeUnlabeled = false;
+    }
+
+    /**
+     * Construct a filter that also filters on event labels in the database.  The LabelFilters are AND'ed together.  If
+     * includeUnlabeled is true, events without any labels are returned as well, i.e., the result matches that of
+     * applying EventService.applyLabelFilters to the events of the filter without labelFilterList.
+     *
+     * @param eventIdList
+     * @param begin
+     * @param end
+     * @param system
+     * @param locationList
+     * @param classificationList
+     * @param archive
+     * @param delete
+     * @param minCaptureFiles
+     * @param labelFilterList  The label filters to apply.  Null or empty for no label filtering.
+     * @param includeUnlabeled Whether events without labels should be included in addition to those passing labelFilterList
+     */
+    public EventFilter(List<Long> eventIdList, Instant begin, Instant end, String system, List<String> locationList, List<String> classificationList, Boolean archive,
+                       Boolean delete, Integer minCaptureFiles, List<LabelFilter> labelFilterList, boolean includeUnlabeled) {
+        this.eventIdList = eventIdList;
+        this.begin = begin;
+        this.end = end;
+        this.system = system;
+        this.locationList = locationList;
+        this.classificationList = classificationList;
+        this.archive = archive;
+        this.delete = delete;
+        this.minCaptureFiles = minCaptureFiles;
+        this.labelFilterList = labelFilterList;
+        this.includeUnlabeled = includeUnlabeled;
+    }
+
+    /**
+     * Create a copy of this filter with a different set of label filters.
+     *
+     * @param labelFilterList  The label filters to apply.  Null or empty for no label filtering.
+     * @param includeUnlabeled Whether events without labels should be included in addition to those passing labelFilterList
+     * @return The new filter
+     */
+    public EventFilter withLabelFilters(List<LabelFilter> labelFilterList, boolean includeUnlabeled) {
+        return new EventFilter(eventIdList, begin, end, system, locationList, classificationList, archive, delete,
+                minCaptureFiles, labelFilterList, includeUnlabeled);
     }
 
     public String getSystem() {
@@ -121,7 +169,18 @@ public class EventFilter {
             filters.add("to_be_deleted = ?");
         }
         if (minCaptureFiles != null) {
-            filters.add("num_cf >= ?");
+            filters.add("num_capture_files >= ?");
+        }
+        if (labelFilterList != null && !labelFilterList.isEmpty()) {
+            List<String> labelFilters = new ArrayList<>();
+            for (LabelFilter lf : labelFilterList) {
+                labelFilters.add(lf.getWhereClauseContent());
+            }
+            String labelFilter = String.join(" AND ", labelFilters);
+            if (includeUnlabeled) {
+                labelFilter = "(" + labelFilter + " OR " + new LabelFilter(false).getWhereClauseContent() + ")";
+            }
+            filters.add(labelFilter);
         }
 
         if (!filters.isEmpty()) {
@@ -182,6 +241,11 @@ public class EventFilter {
         if (minCaptureFiles != null) {
             stmt.setInt(i++, minCaptureFiles);
         }
+        if (labelFilterList != null && !labelFilterList.isEmpty()) {
+            for (LabelFilter lf : labelFilterList) {
+                i = lf.assignParameterValues(stmt, i);
+            }
+        }
 
         return i;
     }
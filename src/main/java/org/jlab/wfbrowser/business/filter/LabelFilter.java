@@ -3,6 +3,8 @@ package org.jlab.wfbrowser.business.filter;
 import org.jlab.wfbrowser.model.Event;
 import org.jlab.wfbrowser.model.Label;
 
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
 import java.util.*;
 
 /**
@@ -272,96 +274,107 @@ public class LabelFilter {
         }
         return out;
     }
-//
-//    public String getWhereClauseContent() {
-//        // Check if the filter should just filter on the existence of a Label.  Maybe this is a little hokey, but specifying all
-//        // null is treated as requesting an existence filter
-//        if (modelNameList == null && idList == null && nameList == null && valueList == null && confidence == null &&
-//                confidenceOperator == null) {
-//            return "(label_id IS NOT NULL)";
-//        }
-//
-//        String sql = "(";
-//        // Use label_id first, since it is a primary key we know it must exist for every label, check that it's not NULL
-//        // (if parameter is not given) or that it is the specific value given.  Helps with placing the "AND"s.
-//        if (idList == null || idList.isEmpty()) {
-//            sql += "label_id IS NOT NULL";
-//        } else {
-//            sql += "label_id IN (?";
-//            for (int i = 1; i < idList.size(); i++) {
-//                sql += ",?";
-//            }
-//            sql += ")";
-//        }
-//
-//        if (modelNameList != null && !modelNameList.isEmpty()) {
-//            sql += " AND model_name IN (?";
-//            for (int i = 1; i < modelNameList.size(); i++) {
-//                sql += ",?";
-//            }
-//            sql += ")";
-//        }
-//
-//        if (nameList != null && !nameList.isEmpty()) {
-//            sql += " AND label_name IN (?";
-//            for (int i = 1; i < nameList.size(); i++) {
-//                sql += ",?";
-//            }
-//            sql += ")";
-//        }
-//
-//        if (valueList != null && !valueList.isEmpty()) {
-//            sql += " AND label_value IN (?";
-//            for (int i = 1; i < valueList.size(); i++) {
-//                sql += ",?";
-//            }
-//            sql += ")";
-//        }
-//
-//        if (confidence != null) {
-//            sql += " AND label_confidence " + confidenceOperator + " ?";
-//        }
-//        sql += ")";
-//        return sql;
-//    }
 
-//    /**
-//     * Assign values to the parameters of a PreparedStatement.  Starts at specified parameter index.
-//     * @param pstmt
-//     * @param index
-//     * @return
-//     */
-//    public int assignParameterValues(PreparedStatement pstmt, int index) throws SQLException {
-//        int i = index;
-//        if (idList != null && !idList.isEmpty()) {
-//            for(Long id : idList) {
-//                pstmt.setLong(i++, id);
-//            }
-//        }
-//
-//        if (modelNameList != null && !modelNameList.isEmpty()) {
-//            for(String modelName : modelNameList) {
-//                pstmt.setString(i++, modelName);
-//            }
-//        }
-//
-//        if (nameList != null && !nameList.isEmpty()) {
-//            for(String name : nameList) {
-//                pstmt.setString(i++, name);
-//            }
-//        }
-//
-//        if (valueList != null && !valueList.isEmpty()) {
-//            for(String value : valueList) {
-//                pstmt.setString(i++, value);
-//            }
-//        }
-//
-//        if (confidence != null) {
-//            pstmt.setDouble(i++, confidence);
-//        }
-//
-//        return i;
-//    }
+    /**
+     * Generate this filter's portion of an event WHERE clause.  Each criterion becomes an EXISTS or NOT EXISTS
+     * subquery on the label table correlated on event.event_id, so the query the content is used in must have the
+     * event table in its FROM clause under that name.  The criteria match those of filterEvents and are AND'ed
+     * together.
+     *
+     * @return A parenthesized SQL predicate
+     */
+    public String getWhereClauseContent() {
+        String exists = "EXISTS (SELECT 1 FROM label lf WHERE lf.event_id = event.event_id";
+        if (isLabeled != null) {
+            return "(" + (isLabeled ? "" : "NOT ") + exists + "))";
+        }
+
+        List<String> predicates = new ArrayList<>();
+        predicates.add(exists + ")");
+        if (modelNameList != null) {
+            // An empty list of model names matches nothing, same as filterEvents
+            predicates.add(modelNameList.isEmpty() ? "FALSE" : exists + " AND lf.model_name IN " + getInClause(modelNameList.size()) + ")");
+        }
+        if (idList != null && !idList.isEmpty()) {
+            predicates.add(exists + " AND lf.label_id IN " + getInClause(idList.size()) + ")");
+        }
+        if (nameValueMap != null) {
+            if (nameValueMap.isEmpty()) {
+                predicates.add("FALSE");
+            }
+            for (String name : nameValueMap.keySet()) {
+                List<String> values = nameValueMap.get(name);
+                if (values == null) {
+                    // null value list implies that any value is acceptable
+                    predicates.add(exists + " AND lf.label_name = ?)");
+                } else if (values.isEmpty()) {
+                    predicates.add("FALSE");
+                } else {
+                    predicates.add(exists + " AND lf.label_name = ? AND lf.label_value IN " + getInClause(values.size()) + ")");
+                }
+            }
+        }
+        if (confidence != null) {
+            // Every label must meet the criteria, i.e., no label may fail it.  A NULL confidence only meets "null".
+            if (confidenceOperator.equals("null")) {
+                predicates.add("NOT " + exists + " AND lf.label_confidence IS NOT NULL)");
+            } else {
+                predicates.add("NOT " + exists + " AND (lf.label_confidence IS NULL OR NOT (lf.label_confidence "
+                        + confidenceOperator + " ?)))");
+            }
+        }
+        return "(" + String.join(" AND ", predicates) + ")";
+    }
+
+    /**
+     * Assign values to the parameters of the where clause content.  Starts at specified parameter index.
+     *
+     * @param pstmt The PreparedStatement the content of getWhereClauseContent was used in
+     * @param index The index of the first parameter of the content
+     * @return One more than the last index of the PreparedStatement set by this method.
+     * @throws SQLException If issue binding parameters
+     */
+    public int assignParameterValues(PreparedStatement pstmt, int index) throws SQLException {
+        int i = index;
+        if (isLabeled != null) {
+            return i;
+        }
+        if (modelNameList != null) {
+            for (String modelName : modelNameList) {
+                pstmt.setString(i++, modelName);
+            }
+        }
+        if (idList != null && !idList.isEmpty()) {
+            for (Long id : idList) {
+                pstmt.setLong(i++, id);
+            }
+        }
+        if (nameValueMap != null) {
+            for (String name : nameValueMap.keySet()) {
+                List<String> values = nameValueMap.get(name);
+                if (values != null && values.isEmpty()) {
+                    continue;
+                }
+                pstmt.setString(i++, name);
+                if (values != null) {
+                    for (String value : values) {
+                        pstmt.setString(i++, value);
+                    }
+                }
+            }
+        }
+        if (confidence != null && !confidenceOperator.equals("null")) {
+            pstmt.setDouble(i++, confidence);
+        }
+        return i;
+    }
+
+    private static String getInClause(int n) {
+        StringBuilder sb = new StringBuilder("(?");
+        for (int i = 1; i < n; i++) {
+            sb.append(",?");
+        }
+        return sb.append(")").toString();
+    }
 
 }
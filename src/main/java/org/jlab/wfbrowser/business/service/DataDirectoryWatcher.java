@@ -0,0 +1,740 @@
+package org.jlab.wfbrowser.business.service;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import javax.json.Json;
+import javax.json.JsonObject;
+import javax.json.JsonObjectBuilder;
+import org.jlab.wfbrowser.business.filter.EventFilter;
+import org.jlab.wfbrowser.business.util.RuntimeUtil;
+import org.jlab.wfbrowser.business.util.TimeUtil;
+import org.jlab.wfbrowser.model.Event;
+
+/**
+ * Adds events to the database as the harvesters write them to the data directory, without waiting for the harvester
+ * to POST them to ajax/event.  Events are found under &lt;system&gt;/&lt;location&gt;/&lt;classification&gt;/&lt;date&gt;,
+ * the same layout Event uses to find capture files.  A grouped event is a time named directory (e.g., 100000.1) or
+ * its .tar.gz archive, and an ungrouped event is a single capture file (e.g., test.2017_09_14_100000.1.txt) or its
+ * .tar.gz archive.
+ * <p>
+ * Date directories are watched with a WatchService, and the whole tree is scanned at start up and periodically after
+ * that to pick up anything the watch missed.  Only date directories from the last few days are considered.  An event
+ * is added once its size, file count and modification time have not changed for the settle time, so that a harvester
+ * still writing capture files is not raced.  Ready events are added together through EventIngestService.  An event
+ * that fails, e.g., while the database is unavailable, is tried again after a delay that doubles with each failure,
+ * up to the scan interval, until it is added or its date directory leaves the window.
+ * <p>
+ * Events found by a scan are first checked against the database so that a restart does not try to add everything
+ * again.  Labels are not known from the directory layout, so events are added unlabeled.
+ * <p>
+ * The application wide watcher is started only if WFB_WATCH_DATA_DIR is true.  It uses WFB_WATCH_SETTLE_SECONDS
+ * (default 10), WFB_WATCH_SCAN_MINUTES (default 10) and WFB_WATCH_DAYS (default 2).
+ *
+ * @author adamc
+ */
+public class DataDirectoryWatcher {
+
+    private static final Logger LOGGER = Logger.getLogger(DataDirectoryWatcher.class.getName());
+
+    private static final Pattern DATE_DIR = Pattern.compile("\\d{4}_\\d{2}_\\d{2}");
+    private static final Pattern GROUPED = Pattern.compile("(\\d{2})(\\d{2})(\\d{2}\\.\\d)(\\.tar\\.gz)?");
+    private static final Pattern UNGROUPED = Pattern.compile(
+            ".+\\.(\\d{4})_(\\d{2})_(\\d{2})_(\\d{2})(\\d{2})(\\d{2}\\.\\d)(\\.txt)(\\.tar\\.gz)?");
+    private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("yyyy_MM_dd");
+    private static final String ARCHIVE_SUFFIX = ".tar.gz";
+
+    private static DataDirectoryWatcher instance = null;
+
+    /**
+     * Where ready events are sent.  The application wide watcher uses the database.
+     */
+    public interface Sink {
+        /**
+         * Get the keys (see getKey) of the events of a system that are already added.
+         *
+         * @param system The system
+         * @param begin  The time of the earliest event of interest
+         * @return The keys of the added events at or after begin
+         * @throws SQLException If the events could not be looked up
+         * @throws IOException  If the events could not be looked up
+         */
+        Set<String> getExistingKeys(String system, Instant begin) throws SQLException, IOException;
+
+        /**
+         * Add events.
+         *
+         * @param descriptors The events to add
+         * @return The result of each event in the same order as the descriptors
+         * @throws IOException If the events could not be added
+         */
+        List<EventIngestService.Result> ingest(List<EventIngestService.Descriptor> descriptors) throws IOException;
+    }
+
+    private static class DatabaseSink implements Sink {
+        @Override
+        public Set<String> getExistingKeys(String system, Instant begin) throws SQLException, IOException {
+            Set<String> keys = new HashSet<>();
+            EventFilter filter = new EventFilter(null, begin, null, system, null, null, null, null, null);
+            for (Event e : new EventService().getEventList(filter, null, false, false)) {
+                keys.add(getKey(e.getSystem(), e.getLocation(), e.getClassification(), e.getEventTime()));
+            }
+            return keys;
+        }
+
+        @Override
+        public List<EventIngestService.Result> ingest(List<EventIngestService.Descriptor> descriptors) throws IOException {
+            return new EventIngestService().ingest(descriptors);
+        }
+    }
+
+    private enum DirType {
+        ROOT, SYSTEM, LOCATION, CLASSIFICATION, DATE
+    }
+
+    /**
+     * A watched directory and what its position in the tree says about the events under it.
+     */
+    private static class WatchedDir {
+        private final Path dir;
+        private final DirType type;
+        private final String system;
+        private final String location;
+        private final String classification;
+        private final LocalDate date;
+
+        private WatchedDir(Path dir, DirType type, String system, String location, String classification, LocalDate date) {
+            this.dir = dir;
+            this.type = type;
+            this.system = system;
+            this.location = location;
+            this.classification = classification;
+            this.date = date;
+        }
+    }
+
+    /**
+     * An event found on disk that has not been added yet.
+     */
+    private static class Candidate {
+        private final String key;
+        private final Path path;
+        private final LocalDate date;
+        private final String system;
+        private final Instant eventTime;
+        private final EventIngestService.Descriptor descriptor;
+        private final boolean fromScan;
+        private String signature = null;
+        private long stableSince = 0;
+        private int failures = 0;
+        private long retryAt = 0;
+        // Being sent to the sink by flush
+        private boolean inFlight = false;
+
+        private Candidate(String key, Path path, LocalDate date, String system, Instant eventTime,
+                          EventIngestService.Descriptor descriptor, boolean fromScan) {
+            this.key = key;
+            this.path = path;
+            this.date = date;
+            this.system = system;
+            this.eventTime = eventTime;
+            this.descriptor = descriptor;
+            this.fromScan = fromScan;
+        }
+    }
+
+    private final Path root;
+    private final Sink sink;
+    private final long settleMillis;
+    private final long scanMillis;
+    private final int days;
+
+    private final Map<String, Candidate> pending = new LinkedHashMap<>();
+    // Events already added, by the date of their directory so they can be forgotten with it
+    private final Map<String, LocalDate> handled = new HashMap<>();
+    private final Map<WatchKey, WatchedDir> watched = new HashMap<>();
+    private LocalDate windowStart = null;
+    private WatchService watchService = null;
+    private Thread thread = null;
+    private volatile boolean running = false;
+
+    // Metrics
+    private final AtomicLong addedCount = new AtomicLong(0);
+    private final AtomicLong failedCount = new AtomicLong(0);
+
+    /**
+     * Create a watcher.  Nothing is watched or scanned until start, reconcile or flush is called.
+     *
+     * @param root         The data directory
+     * @param sink         Where ready events are sent
+     * @param settleMillis How long an event must go unchanged before it is added
+     * @param scanMillis   How often the whole tree is scanned while watching
+     * @param days         The number of days, including today, of date directories to consider
+     */
+    public DataDirectoryWatcher(Path root, Sink sink, long settleMillis, long scanMillis, int days) {
+        this.root = root;
+        this.sink = sink;
+        this.settleMillis = settleMillis;
+        this.scanMillis = scanMillis;
+        this.days = days;
+    }
+
+    /**
+     * The key of an event.  Matches the unique key of the event table.
+     *
+     * @param system         The system
+     * @param location       The location
+     * @param classification The classification
+     * @param eventTime      The event time
+     * @return The key
+     */
+    public static String getKey(String system, String location, String classification, Instant eventTime) {
+        return system + "/" + location + "/" + classification + "/" + eventTime.toEpochMilli();
+    }
+
+    private static LocalDate parseDate(String name) {
+        if (!DATE_DIR.matcher(name).matches()) {
+            return null;
+        }
+        try {
+            return LocalDate.parse(name, DATE_FORMATTER);
+        } catch (DateTimeParseException ex) {
+            return null;
+        }
+    }
+
+    private static boolean isHidden(Path p) {
+        return p.getFileName().toString().startsWith(".");
+    }
+
+    private void register(Path dir, DirType type, String system, String location, String classification, LocalDate date)
+            throws IOException {
+        if (watchService == null) {
+            return;
+        }
+        WatchKey key = dir.register(watchService, StandardWatchEventKinds.ENTRY_CREATE);
+        watched.put(key, new WatchedDir(dir, type, system, location, classification, date));
+    }
+
+    private static List<Path> listDirectories(Path dir) throws IOException {
+        List<Path> out = new ArrayList<>();
+        try (DirectoryStream<Path> ds = Files.newDirectoryStream(dir)) {
+            for (Path p : ds) {
+                if (Files.isDirectory(p) && !isHidden(p)) {
+                    out.add(p);
+                }
+            }
+        }
+        return out;
+    }
+
+    private void walkSystem(Path dir, boolean fromScan) throws IOException {
+        String system = dir.getFileName().toString();
+        register(dir, DirType.SYSTEM, system, null, null, null);
+        for (Path p : listDirectories(dir)) {
+            walkLocation(p, system, fromScan);
+        }
+    }
+
+    private void walkLocation(Path dir, String system, boolean fromScan) throws IOException {
+        String location = dir.getFileName().toString();
+        register(dir, DirType.LOCATION, system, location, null, null);
+        for (Path p : listDirectories(dir)) {
+            // An empty classification leaves the date directories directly under the location
+            LocalDate date = parseDate(p.getFileName().toString());
+            if (date != null) {
+                walkDate(p, system, location, "", date, fromScan);
+            } else {
+                walkClassification(p, system, location, fromScan);
+            }
+        }
+    }
+
+    private void walkClassification(Path dir, String system, String location, boolean fromScan) throws IOException {
+        String classification = dir.getFileName().toString();
+        register(dir, DirType.CLASSIFICATION, system, location, classification, null);
+        for (Path p : listDirectories(dir)) {
+            LocalDate date = parseDate(p.getFileName().toString());
+            if (date != null) {
+                walkDate(p, system, location, classification, date, fromScan);
+            }
+        }
+    }
+
+    private void walkDate(Path dir, String system, String location, String classification, LocalDate date,
+                          boolean fromScan) throws IOException {
+        if (date.isBefore(windowStart)) {
+            return;
+        }
+        register(dir, DirType.DATE, system, location, classification, date);
+        try (DirectoryStream<Path> ds = Files.newDirectoryStream(dir)) {
+            for (Path p : ds) {
+                addCandidate(p, system, location, classification, date, fromScan);
+            }
+        }
+    }
+
+    /**
+     * Queue an event found on disk unless it is already known.  Anything that does not look like an event is
+     * ignored.
+     */
+    private void addCandidate(Path p, String system, String location, String classification, LocalDate date,
+                              boolean fromScan) {
+        String name = p.getFileName().toString();
+        boolean grouped;
+        String datetime;
+        String captureFile = null;
+
+        Matcher m = GROUPED.matcher(name);
+        if (m.matches() && (m.group(4) == null ? Files.isDirectory(p) : Files.isRegularFile(p))) {
+            grouped = true;
+            datetime = date.toString() + " " + m.group(1) + ":" + m.group(2) + ":" + m.group(3);
+        } else {
+            m = UNGROUPED.matcher(name);
+            if (!m.matches() || !Files.isRegularFile(p)) {
+                return;
+            }
+            grouped = false;
+            datetime = m.group(1) + "-" + m.group(2) + "-" + m.group(3) + " " + m.group(4) + ":" + m.group(5) + ":"
+                    + m.group(6);
+            captureFile = m.group(8) == null ? name : name.substring(0, name.length() - ARCHIVE_SUFFIX.length());
+        }
+
+        Instant eventTime;
+        try {
+            eventTime = TimeUtil.getInstantFromDateTimeString(datetime);
+        } catch (DateTimeParseException ex) {
+            return;
+        }
+        String key = getKey(system, location, classification, eventTime);
+        if (handled.containsKey(key)) {
+            return;
+        }
+        // A directory compressed into an archive shows up again under the archive's name
+        Candidate existing = pending.get(key);
+        if (existing != null && Files.exists(existing.path)) {
+            return;
+        }
+
+        JsonObjectBuilder job = Json.createObjectBuilder()
+                .add("datetime", datetime)
+                .add("location", location)
+                .add("system", system)
+                .add("classification", classification)
+                .add("grouped", grouped);
+        if (captureFile != null) {
+            job.add("captureFile", captureFile);
+        }
+        JsonObject json = job.build();
+        pending.put(key, new Candidate(key, p, date, system, eventTime, EventIngestService.Descriptor.fromJson(json),
+                fromScan));
+    }
+
+    /**
+     * Scan the date directories in the window for events that are not known yet, and forget events and directories
+     * that have left the window.
+     *
+     * @param now The current time in epoch millis
+     * @return The number of events waiting to settle or be added
+     * @throws IOException If the data directory could not be read
+     */
+    public synchronized int reconcile(long now) throws IOException {
+        windowStart = Instant.ofEpochMilli(now).atZone(ZoneId.systemDefault()).toLocalDate().minusDays(days - 1);
+        handled.values().removeIf(d -> d.isBefore(windowStart));
+        pending.values().removeIf(c -> c.date.isBefore(windowStart));
+
+        // Directories are registered again by the walk.  Registering a directory again returns the same key.
+        for (Iterator<Map.Entry<WatchKey, WatchedDir>> it = watched.entrySet().iterator(); it.hasNext(); ) {
+            Map.Entry<WatchKey, WatchedDir> e = it.next();
+            if (!e.getKey().isValid() || (e.getValue().date != null && e.getValue().date.isBefore(windowStart))) {
+                e.getKey().cancel();
+                it.remove();
+            }
+        }
+
+        if (Files.isDirectory(root)) {
+            register(root, DirType.ROOT, null, null, null, null);
+            for (Path p : listDirectories(root)) {
+                walkSystem(p, true);
+            }
+        }
+        return pending.size();
+    }
+
+    /**
+     * Add the events that have not changed for the settle time and are not waiting to be retried.  The sink is
+     * called without holding the watcher's lock so that the metrics and watch events are not held up by the
+     * database.
+     *
+     * @param now The current time in epoch millis
+     * @return The number of events sent to the sink
+     * @throws IOException If the events could not be added
+     */
+    public int flush(long now) throws IOException {
+        List<Candidate> ready = getReady(now);
+        if (ready.isEmpty()) {
+            return 0;
+        }
+
+        try {
+            List<Candidate> toAdd = removeExisting(ready);
+            if (toAdd.isEmpty()) {
+                return 0;
+            }
+
+            List<EventIngestService.Descriptor> descriptors = new ArrayList<>(toAdd.size());
+            for (Candidate c : toAdd) {
+                descriptors.add(c.descriptor);
+            }
+            List<EventIngestService.Result> results = sink.ingest(descriptors);
+
+            int added = 0;
+            synchronized (this) {
+                for (int i = 0; i < results.size(); i++) {
+                    Candidate c = toAdd.get(i);
+                    EventIngestService.Result r = results.get(i);
+                    if (r.getEventId() != null || r.isDuplicate()) {
+                        // A duplicate was added by the harvester's POST in the meantime
+                        if (r.getEventId() != null) {
+                            added++;
+                        }
+                        pending.remove(c.key);
+                        handled.put(c.key, c.date);
+                    } else {
+                        c.failures++;
+                        long delay = Math.min(scanMillis, settleMillis << Math.min(c.failures - 1, 20));
+                        c.retryAt = now + delay;
+                        LOGGER.log(c.failures == 1 ? Level.WARNING : Level.FINE,
+                                "Unable to add event found at {0} ({1} attempts).  Trying again in {2} ms - {3}",
+                                new Object[]{c.path, c.failures, delay, r.getError()});
+                    }
+                }
+            }
+            addedCount.addAndGet(added);
+            failedCount.addAndGet(results.size() - added);
+            LOGGER.log(Level.FINE, "Added {0} of {1} events found in the data directory",
+                    new Object[]{added, results.size()});
+            return descriptors.size();
+        } finally {
+            synchronized (this) {
+                for (Candidate c : ready) {
+                    c.inFlight = false;
+                }
+            }
+        }
+    }
+
+    /**
+     * Find the pending events that are ready to be added and mark them in flight.
+     */
+    private synchronized List<Candidate> getReady(long now) {
+        List<Candidate> ready = new ArrayList<>();
+        for (Iterator<Candidate> it = pending.values().iterator(); it.hasNext(); ) {
+            Candidate c = it.next();
+            if (c.inFlight) {
+                continue;
+            }
+            String signature = getSignature(c.path);
+            if (signature == null) {
+                // Removed or renamed, e.g., a directory that was compressed into an archive
+                it.remove();
+            } else if (!signature.equals(c.signature)) {
+                c.signature = signature;
+                c.stableSince = now;
+            } else if (!signature.isEmpty() && now - c.stableSince >= settleMillis && now >= c.retryAt) {
+                c.inFlight = true;
+                ready.add(c);
+            }
+        }
+        return ready;
+    }
+
+    /**
+     * Drop the events found by a scan that are already in the database.  Events seen as they were created are new
+     * unless the harvester also POSTed them, in which case adding them fails harmlessly as a duplicate.
+     */
+    private List<Candidate> removeExisting(List<Candidate> ready) {
+        Map<String, Instant> earliest = new HashMap<>();
+        for (Candidate c : ready) {
+            if (c.fromScan) {
+                earliest.merge(c.system, c.eventTime, (a, b) -> a.isBefore(b) ? a : b);
+            }
+        }
+        if (earliest.isEmpty()) {
+            return ready;
+        }
+
+        Set<String> existing = new HashSet<>();
+        for (Map.Entry<String, Instant> e : earliest.entrySet()) {
+            try {
+                existing.addAll(sink.getExistingKeys(e.getKey(), e.getValue()));
+            } catch (SQLException | IOException ex) {
+                // Try again on the next flush rather than flood the log with duplicates
+                LOGGER.log(Level.WARNING, "Unable to look up existing events of system " + e.getKey(), ex);
+                List<Candidate> out = new ArrayList<>();
+                for (Candidate c : ready) {
+                    if (!c.fromScan) {
+                        out.add(c);
+                    }
+                }
+                return out;
+            }
+        }
+
+        List<Candidate> out = new ArrayList<>();
+        synchronized (this) {
+            for (Candidate c : ready) {
+                if (c.fromScan && existing.contains(c.key)) {
+                    pending.remove(c.key);
+                    handled.put(c.key, c.date);
+                } else {
+                    out.add(c);
+                }
+            }
+        }
+        return out;
+    }
+
+    /**
+     * Summarize the size, file count and latest modification of an event directory or file.
+     *
+     * @return The signature, or null if the path no longer exists
+     */
+    private static String getSignature(Path path) {
+        try {
+            if (Files.isDirectory(path)) {
+                long count = 0;
+                long size = 0;
+                long modified = Files.getLastModifiedTime(path).toMillis();
+                try (DirectoryStream<Path> ds = Files.newDirectoryStream(path)) {
+                    for (Path p : ds) {
+                        count++;
+                        size += Files.size(p);
+                        modified = Math.max(modified, Files.getLastModifiedTime(p).toMillis());
+                    }
+                }
+                // An empty directory has been created but nothing has been written to it yet
+                return count == 0 ? "" : count + ":" + size + ":" + modified;
+            }
+            return "1:" + Files.size(path) + ":" + Files.getLastModifiedTime(path).toMillis();
+        } catch (IOException ex) {
+            return null;
+        }
+    }
+
+    /**
+     * Queue the events under a newly created entry of a watched directory.
+     */
+    private void handleCreate(WatchedDir parent, Path child) throws IOException {
+        boolean isDir = Files.isDirectory(child);
+        switch (parent.type) {
+            case ROOT:
+                if (isDir && !isHidden(child)) {
+                    walkSystem(child, false);
+                }
+                break;
+            case SYSTEM:
+                if (isDir && !isHidden(child)) {
+                    walkLocation(child, parent.system, false);
+                }
+                break;
+            case LOCATION:
+                if (isDir && !isHidden(child)) {
+                    LocalDate date = parseDate(child.getFileName().toString());
+                    if (date != null) {
+                        walkDate(child, parent.system, parent.location, "", date, false);
+                    } else {
+                        walkClassification(child, parent.system, parent.location, false);
+                    }
+                }
+                break;
+            case CLASSIFICATION:
+                LocalDate date = isDir ? parseDate(child.getFileName().toString()) : null;
+                if (date != null) {
+                    walkDate(child, parent.system, parent.location, parent.classification, date, false);
+                }
+                break;
+            case DATE:
+                addCandidate(child, parent.system, parent.location, parent.classification, parent.date, false);
+                break;
+        }
+    }
+
+    private synchronized void handleWatchKey(WatchKey key) throws IOException {
+        WatchedDir parent = watched.get(key);
+        boolean overflow = false;
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                overflow = true;
+            } else if (parent != null) {
+                handleCreate(parent, parent.dir.resolve((Path) event.context()));
+            }
+        }
+        if (!key.reset()) {
+            watched.remove(key);
+        }
+        if (overflow) {
+            LOGGER.log(Level.INFO, "Data directory watch overflowed.  Scanning {0}", root);
+            reconcile(System.currentTimeMillis());
+        }
+    }
+
+    /**
+     * Start watching the data directory on a background thread.  The directory is scanned first.
+     *
+     * @throws IOException If the watch could not be set up
+     */
+    public synchronized void start() throws IOException {
+        if (running) {
+            return;
+        }
+        watchService = root.getFileSystem().newWatchService();
+        running = true;
+        thread = RuntimeUtil.newDaemonThread(this::run, "wfb-data-watcher");
+        thread.start();
+    }
+
+    private void run() {
+        long pollMillis = Math.max(100, Math.min(1000, settleMillis / 2));
+        long nextScan = 0;
+        while (running) {
+            try {
+                long now = System.currentTimeMillis();
+                if (now >= nextScan) {
+                    reconcile(now);
+                    nextScan = now + scanMillis;
+                }
+
+                WatchKey key = watchService.poll(pollMillis, TimeUnit.MILLISECONDS);
+                while (key != null) {
+                    handleWatchKey(key);
+                    key = watchService.poll();
+                }
+
+                flush(System.currentTimeMillis());
+            } catch (InterruptedException | ClosedWatchServiceException ex) {
+                break;
+            } catch (IOException | RuntimeException ex) {
+                LOGGER.log(Level.WARNING, "Error watching data directory " + root, ex);
+                try {
+                    Thread.sleep(pollMillis);
+                } catch (InterruptedException e) {
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * Stop watching.  Events that have not been added are found again by the scan at the next start.
+     */
+    public void close() {
+        Thread t;
+        synchronized (this) {
+            running = false;
+            t = thread;
+            thread = null;
+            if (watchService != null) {
+                try {
+                    watchService.close();
+                } catch (IOException ex) {
+                    LOGGER.log(Level.WARNING, "Unable to close data directory watch", ex);
+                }
+                watchService = null;
+            }
+            watched.clear();
+        }
+        if (t != null) {
+            t.interrupt();
+            try {
+                t.join(10000);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Get a JSON representation of the watcher's metrics.
+     *
+     * @return A JSON object of the watcher's counters
+     */
+    public synchronized JsonObject getMetricsAsJson() {
+        return Json.createObjectBuilder()
+                .add("root", root.toString())
+                .add("watchedDirectories", watched.size())
+                .add("pending", pending.size())
+                .add("added", addedCount.get())
+                .add("failed", failedCount.get())
+                .build();
+    }
+
+    /**
+     * Start the application wide watcher if WFB_WATCH_DATA_DIR is true.
+     */
+    public static synchronized void startIfEnabled() {
+        if (instance != null || !Boolean.parseBoolean(System.getenv("WFB_WATCH_DATA_DIR"))) {
+            return;
+        }
+        String dataDir = System.getenv("WFB_DATA_DIR");
+        Path root = Paths.get(dataDir == null ? "/usr/opsdata/waveforms/data" : dataDir);
+        long settleSeconds = Math.max(1, RuntimeUtil.getLongEnv("WFB_WATCH_SETTLE_SECONDS", 10));
+        long scanMinutes = Math.max(1, RuntimeUtil.getLongEnv("WFB_WATCH_SCAN_MINUTES", 10));
+        int days = (int) Math.max(1, RuntimeUtil.getLongEnv("WFB_WATCH_DAYS", 2));
+
+        DataDirectoryWatcher watcher = new DataDirectoryWatcher(root, new DatabaseSink(), settleSeconds * 1000,
+                scanMinutes * 60 * 1000, days);
+        try {
+            watcher.start();
+            instance = watcher;
+            LOGGER.log(Level.INFO, "Watching data directory {0} for new events.  Settle time {1} s, scan every {2} min,"
+                    + " {3} days", new Object[]{root, settleSeconds, scanMinutes, days});
+        } catch (IOException ex) {
+            LOGGER.log(Level.WARNING, "Unable to watch data directory " + root, ex);
+        }
+    }
+
+    /**
+     * @return The application wide watcher, or null if it is not running
+     */
+    public static synchronized DataDirectoryWatcher getInstance() {
+        return instance;
+    }
+
+    /**
+     * Stop the application wide watcher.  Called when the application is undeployed.
+     */
+    public static synchronized void shutdown() {
+        if (instance != null) {
+            instance.close();
+            instance = null;
+        }
+    }
+}
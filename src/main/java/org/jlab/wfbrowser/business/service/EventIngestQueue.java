@@ -0,0 +1,377 @@
+package org.jlab.wfbrowser.business.service;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.json.Json;
+import javax.json.JsonException;
+import javax.json.JsonObject;
+import javax.json.JsonObjectBuilder;
+import org.jlab.wfbrowser.business.util.RuntimeUtil;
+import org.jlab.wfbrowser.business.util.TimeUtil;
+import org.jlab.wfbrowser.model.Event;
+
+/**
+ * Adds events to the database in the background so that a POST to ajax/event can return as soon as the event has
+ * been checked and queued.  A bounded pool of workers reads each event's capture files and adds it.
+ * <p>
+ * Every queued event is written to a journal file before it is accepted and the file is removed once the event has
+ * been added or has failed.  Events still in the journal when the application starts, e.g., after a redeploy, are
+ * queued again.  An event that was added just before a shutdown but not yet removed from the journal is found to be
+ * a duplicate when it is added again and its job is reported as done with the ID of the stored event, so no event is
+ * lost or added twice.
+ * <p>
+ * New events are refused once the number of queued and running events reaches the capacity.  Events recovered from
+ * the journal are always queued.
+ * <p>
+ * The application wide queue journals to WFB_INGEST_JOURNAL_DIR (default is .wfbrowser/ingest-journal under the
+ * home directory of the user running the application, kept out of the data tree on purpose), has
+ * WFB_INGEST_WORKERS workers (default 2) and a capacity of WFB_INGEST_QUEUE_SIZE (default 1000).
+ *
+ * @author adamc
+ */
+public class EventIngestQueue {
+
+    private static final Logger LOGGER = Logger.getLogger(EventIngestQueue.class.getName());
+
+    private static final String JOURNAL_SUFFIX = ".json";
+
+    // Finished jobs are remembered for status requests until this many newer jobs have been queued
+    private static final int MAX_JOB_HISTORY = 10000;
+
+    private static EventIngestQueue instance = null;
+    private static boolean shutdown = false;
+
+    private final Path journalDir;
+    private final int capacity;
+    private final ThreadPoolExecutor executor;
+    private final AtomicInteger pending = new AtomicInteger(0);
+    private final AtomicLong sequence = new AtomicLong(0);
+    private final Map<String, Job> jobs = new LinkedHashMap<String, Job>() {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Job> eldest) {
+            return size() > MAX_JOB_HISTORY && eldest.getValue().isFinished();
+        }
+    };
+
+    /**
+     * The state of a queued event.
+     */
+    public enum Status {
+        QUEUED, RUNNING, DONE, FAILED
+    }
+
+    /**
+     * An event waiting to be, being, or having been added.
+     */
+    public static class Job {
+        private final String id;
+        private final EventIngestService.Descriptor descriptor;
+        private final Instant queued;
+        private final boolean recovered;
+        private volatile Status status = Status.QUEUED;
+        private volatile Long eventId = null;
+        private volatile String error = null;
+
+        private Job(String id, EventIngestService.Descriptor descriptor, Instant queued, boolean recovered) {
+            this.id = id;
+            this.descriptor = descriptor;
+            this.queued = queued;
+            this.recovered = recovered;
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        public Status getStatus() {
+            return status;
+        }
+
+        public Long getEventId() {
+            return eventId;
+        }
+
+        public String getError() {
+            return error;
+        }
+
+        private boolean isFinished() {
+            return status == Status.DONE || status == Status.FAILED;
+        }
+
+        public JsonObject toJsonObject() {
+            JsonObjectBuilder job = Json.createObjectBuilder()
+                    .add("jobId", id)
+                    .add("status", status.toString().toLowerCase())
+                    .add("queued_utc", TimeUtil.getDateTimeString(queued));
+            if (eventId != null) {
+                job.add("id", eventId);
+            }
+            if (error != null) {
+                job.add("error", error);
+            }
+            return job.build();
+        }
+    }
+
+    /**
+     * Create a queue and queue again any events left in its journal.
+     *
+     * @param journalDir The directory to journal queued events to.  Created if it does not exist.
+     * @param workers    The number of events to add at once
+     * @param capacity   The number of queued and running events above which new events are refused
+     * @throws IOException If the journal directory can not be created or read
+     */
+    public EventIngestQueue(Path journalDir, int workers, int capacity) throws IOException {
+        this.journalDir = journalDir;
+        this.capacity = capacity;
+        Files.createDirectories(journalDir);
+
+        // The queue is unbounded so that recovered events are never refused.  New events are limited by pending.
+        executor = RuntimeUtil.newFixedThreadPool(workers, new LinkedBlockingQueue<>(),
+                RuntimeUtil.newDaemonThreadFactory("wfb-ingest-queue"), new ThreadPoolExecutor.AbortPolicy());
+
+        recover();
+    }
+
+    /**
+     * Get the application wide queue, creating it and recovering its journal on first use.
+     *
+     * @return The queue
+     * @throws IOException If the queue has been shut down or its journal directory is not usable
+     */
+    public static synchronized EventIngestQueue getInstance() throws IOException {
+        if (shutdown) {
+            throw new IOException("Event ingest queue has been shut down");
+        }
+        if (instance == null) {
+            String dir = System.getenv("WFB_INGEST_JOURNAL_DIR");
+            if (dir == null || dir.isEmpty()) {
+                dir = Paths.get(System.getProperty("user.home"), ".wfbrowser", "ingest-journal").toString();
+            }
+            int workers = Math.max(1, RuntimeUtil.getIntEnv("WFB_INGEST_WORKERS", 2));
+            int capacity = Math.max(1, RuntimeUtil.getIntEnv("WFB_INGEST_QUEUE_SIZE", 1000));
+            instance = new EventIngestQueue(Paths.get(dir), workers, capacity);
+            LOGGER.log(Level.INFO, "Created event ingest queue journaling to {0} with {1} workers and a capacity of {2}",
+                    new Object[]{dir, workers, capacity});
+        }
+        return instance;
+    }
+
+    /**
+     * Queue an event to be added.  The event is journaled before this returns.
+     *
+     * @param descriptor The event to add
+     * @return The job tracking the event
+     * @throws RejectedExecutionException If the queue is full
+     * @throws IOException                If the event could not be journaled
+     */
+    public Job submit(EventIngestService.Descriptor descriptor) throws IOException {
+        if (pending.incrementAndGet() > capacity) {
+            pending.decrementAndGet();
+            throw new RejectedExecutionException("Event ingest queue is full");
+        }
+
+        Job job;
+        try {
+            Instant now = Instant.now();
+            String id = String.format("%013d-%06d", now.toEpochMilli(), sequence.incrementAndGet() % 1000000);
+            job = new Job(id, descriptor, now, false);
+            writeJournal(job);
+        } catch (IOException | RuntimeException ex) {
+            pending.decrementAndGet();
+            throw ex;
+        }
+
+        enqueue(job);
+        return job;
+    }
+
+    /**
+     * Look up a job.
+     *
+     * @param jobId The ID of the job
+     * @return The job, or null if it is not known.  Jobs are forgotten a while after they finish.
+     */
+    public Job getJob(String jobId) {
+        synchronized (jobs) {
+            return jobs.get(jobId);
+        }
+    }
+
+    /**
+     * @return The number of events queued or being added
+     */
+    public int getPendingCount() {
+        return pending.get();
+    }
+
+    private void enqueue(Job job) {
+        synchronized (jobs) {
+            jobs.put(job.id, job);
+        }
+        try {
+            executor.execute(() -> run(job));
+        } catch (RejectedExecutionException ex) {
+            // Shutting down.  The event stays in the journal for the next start.
+            pending.decrementAndGet();
+            throw ex;
+        }
+    }
+
+    private void run(Job job) {
+        job.status = Status.RUNNING;
+        Event event = null;
+        try {
+            event = job.descriptor.toEvent();
+            job.eventId = new EventService().addEvent(event);
+            job.status = Status.DONE;
+        } catch (Exception ex) {
+            if (Thread.currentThread().isInterrupted()) {
+                // Shutting down.  Leave the journal for the next start.
+                job.status = Status.QUEUED;
+                pending.decrementAndGet();
+                return;
+            }
+            Long existingId = job.recovered && event != null ? getReplayedEventId(event, ex) : null;
+            if (existingId != null) {
+                LOGGER.log(Level.INFO, "Recovered job {0} was already added as event {1}", new Object[]{job.id, existingId});
+                job.eventId = existingId;
+                job.status = Status.DONE;
+            } else {
+                LOGGER.log(Level.INFO, "Queued event addition failed for {0} - {1}", new Object[]{job.descriptor, ex.toString()});
+                job.error = ex.toString();
+                job.status = Status.FAILED;
+            }
+        }
+
+        try {
+            Files.deleteIfExists(getJournalPath(job.id));
+        } catch (IOException ex) {
+            LOGGER.log(Level.WARNING, "Unable to remove journal entry of job " + job.id, ex);
+        }
+        pending.decrementAndGet();
+    }
+
+    /**
+     * Find the event a recovered job added before a shutdown cut it short.
+     *
+     * @param event The event of the job
+     * @param ex    The error adding the event again
+     * @return The ID of the stored event, or null if the error was not a duplicate or the event could not be found
+     */
+    private static Long getReplayedEventId(Event event, Exception ex) {
+        if (!EventService.isDuplicateEvent(ex)) {
+            return null;
+        }
+        try {
+            return new EventService().getEventId(event.getSystem(), event.getLocation(), event.getClassification(),
+                    event.getEventTime());
+        } catch (SQLException lookupEx) {
+            LOGGER.log(Level.WARNING, "Unable to look up the existing event of a recovered job", lookupEx);
+            return null;
+        }
+    }
+
+    private Path getJournalPath(String jobId) {
+        return journalDir.resolve(jobId + JOURNAL_SUFFIX);
+    }
+
+    /**
+     * Write the job's descriptor to the journal.  It is written to a temporary file and moved into place so that a
+     * crash never leaves a partial entry.
+     */
+    private void writeJournal(Job job) throws IOException {
+        Path tmp = journalDir.resolve(job.id + ".tmp");
+        JsonObject entry = Json.createObjectBuilder()
+                .add("queued", job.queued.toEpochMilli())
+                .add("event", job.descriptor.toJsonObject())
+                .build();
+        try (Writer w = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+            w.write(entry.toString());
+        }
+        Files.move(tmp, getJournalPath(job.id), StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Queue again the events left in the journal, oldest first.
+     */
+    private void recover() throws IOException {
+        List<Path> entries = new ArrayList<>();
+        try (DirectoryStream<Path> ds = Files.newDirectoryStream(journalDir)) {
+            for (Path p : ds) {
+                String name = p.getFileName().toString();
+                if (name.endsWith(JOURNAL_SUFFIX)) {
+                    entries.add(p);
+                } else if (name.endsWith(".tmp")) {
+                    // Never accepted
+                    Files.deleteIfExists(p);
+                }
+            }
+        }
+        Collections.sort(entries);
+
+        for (Path p : entries) {
+            String name = p.getFileName().toString();
+            String id = name.substring(0, name.length() - JOURNAL_SUFFIX.length());
+            try (Reader r = Files.newBufferedReader(p, StandardCharsets.UTF_8)) {
+                JsonObject entry = Json.createReader(r).readObject();
+                EventIngestService.Descriptor d = EventIngestService.Descriptor.fromJson(entry.getJsonObject("event"));
+                Instant queued = Instant.ofEpochMilli(entry.getJsonNumber("queued").longValue());
+                pending.incrementAndGet();
+                enqueue(new Job(id, d, queued, true));
+            } catch (JsonException | IllegalArgumentException | ClassCastException | NullPointerException ex) {
+                LOGGER.log(Level.WARNING, "Discarding unreadable ingest journal entry " + p, ex);
+                Files.deleteIfExists(p);
+            }
+        }
+        if (!entries.isEmpty()) {
+            LOGGER.log(Level.INFO, "Queued {0} events recovered from the ingest journal", entries.size());
+        }
+    }
+
+    /**
+     * Stop the workers.  Events that have not been added stay in the journal.
+     */
+    public void close() {
+        executor.shutdownNow();
+        try {
+            executor.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Shut down the application wide queue.  Called when the application is undeployed.
+     */
+    public static synchronized void shutdown() {
+        shutdown = true;
+        if (instance != null) {
+            instance.close();
+            instance = null;
+        }
+    }
+}
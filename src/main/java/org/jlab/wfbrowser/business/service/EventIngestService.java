@@ -0,0 +1,357 @@
+package org.jlab.wfbrowser.business.service;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.json.Json;
+import javax.json.JsonArray;
+import javax.json.JsonObject;
+import javax.json.JsonObjectBuilder;
+import javax.json.JsonString;
+import javax.json.JsonValue;
+import org.jlab.wfbrowser.business.util.RuntimeUtil;
+import org.jlab.wfbrowser.business.util.TimeUtil;
+import org.jlab.wfbrowser.model.Event;
+import org.jlab.wfbrowser.model.Label;
+
+/**
+ * Adds many events to the database at once, e.g., when backfilling a harvester's data.  The capture files of the
+ * events are read on a dedicated, bounded thread pool while earlier events are being inserted, and the events are
+ * inserted in groups that share a transaction (see EventService.addEvents).  Every event gets its own result, so one
+ * bad event does not stop the rest.
+ * <p>
+ * The pool is separate from the ParseExecutor since reading a grouped event's capture files already uses that pool.
+ * Its size is taken from the WFB_INGEST_THREADS environment variable (default is the number of available processors,
+ * at most 4) and the number of events per transaction from WFB_INGEST_GROUP_SIZE (default 50).
+ *
+ * @author adamc
+ */
+public class EventIngestService {
+
+    private static final Logger LOGGER = Logger.getLogger(EventIngestService.class.getName());
+
+    private static final int DEFAULT_GROUP_SIZE = 50;
+
+    private static ThreadPoolExecutor executor = null;
+    private static boolean shutdown = false;
+    private static int groupSize = -1;
+
+    // Metrics
+    private static final AtomicLong addedCount = new AtomicLong(0);
+    private static final AtomicLong failedCount = new AtomicLong(0);
+
+    /**
+     * A request to add an event, in the same terms as the parameters of a POST to ajax/event.
+     */
+    public static class Descriptor {
+        private final JsonObject json;
+        private final Instant eventTime;
+        private final String location;
+        private final String system;
+        private final String classification;
+        private final boolean grouped;
+        private final boolean archive;
+        private final boolean delete;
+        private final String captureFile;
+        private final List<Label> labelList;
+
+        private Descriptor(JsonObject json) {
+            this.json = json;
+            String datetime = getString(json, "datetime", true);
+            try {
+                eventTime = TimeUtil.getInstantFromDateTimeString(datetime);
+            } catch (DateTimeParseException ex) {
+                throw new IllegalArgumentException("Invalid datetime - " + datetime);
+            }
+            location = getString(json, "location", true);
+            system = getString(json, "system", true);
+            classification = getString(json, "classification", true);
+            grouped = getBoolean(json, "grouped", true);
+            archive = getBoolean(json, "archive", false);
+            delete = getBoolean(json, "delete", false);
+            captureFile = getString(json, "captureFile", false);
+
+            JsonValue labels = json.get("labels");
+            if (labels == null || labels.getValueType() == JsonValue.ValueType.NULL) {
+                labelList = null;
+            } else if (labels.getValueType() == JsonValue.ValueType.ARRAY) {
+                List<Label> list = new ArrayList<>();
+                for (JsonValue label : (JsonArray) labels) {
+                    if (label.getValueType() != JsonValue.ValueType.OBJECT) {
+                        throw new IllegalArgumentException("Invalid label - " + label);
+                    }
+                    list.add(new Label((JsonObject) label));
+                }
+                labelList = list;
+            } else {
+                throw new IllegalArgumentException("labels must be an array of label objects");
+            }
+        }
+
+        /**
+         * Read an event descriptor.  The fields match the parameters of a POST to ajax/event: datetime (local time),
+         * location, system, classification and grouped are required, and archive, delete, captureFile and labels (an
+         * array of label objects) are optional.  Booleans may be given as JSON booleans or strings.
+         *
+         * @param json The descriptor as JSON
+         * @return The descriptor
+         * @throws IllegalArgumentException If a field is missing or invalid
+         */
+        public static Descriptor fromJson(JsonObject json) {
+            return new Descriptor(json);
+        }
+
+        private static String getString(JsonObject json, String name, boolean required) {
+            JsonValue value = json.get(name);
+            if (value == null || value.getValueType() == JsonValue.ValueType.NULL) {
+                if (required) {
+                    throw new IllegalArgumentException("Missing required field " + name);
+                }
+                return null;
+            }
+            if (value.getValueType() != JsonValue.ValueType.STRING) {
+                throw new IllegalArgumentException("Invalid " + name + " - " + value);
+            }
+            return ((JsonString) value).getString();
+        }
+
+        private static boolean getBoolean(JsonObject json, String name, boolean required) {
+            JsonValue value = json.get(name);
+            if (value != null && value.getValueType() == JsonValue.ValueType.TRUE) {
+                return true;
+            } else if (value != null && value.getValueType() == JsonValue.ValueType.FALSE) {
+                return false;
+            }
+            return Boolean.parseBoolean(getString(json, name, required));
+        }
+
+        /**
+         * Read the event's capture files from disk.  Only the headers and sample timing are read.
+         *
+         * @return The event, ready to be added to the database
+         * @throws IOException If the capture files could not be read
+         */
+        public Event toEvent() throws IOException {
+            return new Event(eventTime, location, system, archive, delete, grouped, classification, captureFile,
+                    labelList, true);
+        }
+
+        /**
+         * @return The descriptor as it was given
+         */
+        public JsonObject toJsonObject() {
+            return json;
+        }
+
+        @Override
+        public String toString() {
+            return "sys=" + system + " loc=" + location + " cls=" + classification + " timestamp=" + eventTime
+                    + " grp=" + grouped + " arc=" + archive + " del=" + delete + " cFile=" + captureFile;
+        }
+    }
+
+    /**
+     * The outcome of adding one event.  Exactly one of the event ID and the error is set.
+     */
+    public static class Result {
+        private final int index;
+        private final Long eventId;
+        private final String error;
+        private final boolean duplicate;
+
+        Result(int index, Long eventId, String error) {
+            this(index, eventId, error, false);
+        }
+
+        Result(int index, Long eventId, String error, boolean duplicate) {
+            this.index = index;
+            this.eventId = eventId;
+            this.error = error;
+            this.duplicate = duplicate;
+        }
+
+        /**
+         * @return The position of the event's descriptor in the request
+         */
+        public int getIndex() {
+            return index;
+        }
+
+        public Long getEventId() {
+            return eventId;
+        }
+
+        public String getError() {
+            return error;
+        }
+
+        /**
+         * @return True if the event was not added because it is already in the database
+         */
+        public boolean isDuplicate() {
+            return duplicate;
+        }
+
+        public JsonObject toJsonObject() {
+            JsonObjectBuilder job = Json.createObjectBuilder().add("index", index);
+            if (eventId != null) {
+                job.add("id", eventId);
+            } else {
+                job.add("error", error);
+            }
+            return job.build();
+        }
+    }
+
+    /**
+     * Get the pool, creating it on first use.
+     *
+     * @return The pool, or null if it has been shut down
+     */
+    private static synchronized ThreadPoolExecutor getExecutor() {
+        if (executor == null && !shutdown) {
+            int threads = Math.max(1, RuntimeUtil.getIntEnv("WFB_INGEST_THREADS", Math.min(Runtime.getRuntime().availableProcessors(), 4)));
+            groupSize = Math.max(1, RuntimeUtil.getIntEnv("WFB_INGEST_GROUP_SIZE", DEFAULT_GROUP_SIZE));
+
+            // Requests only run two groups ahead, but concurrent requests share the pool.  Run the task on the
+            // submitting thread if the queue is full.
+            executor = RuntimeUtil.newFixedThreadPool(threads, new LinkedBlockingQueue<>(4 * groupSize),
+                    RuntimeUtil.newDaemonThreadFactory("wfb-ingest"), new ThreadPoolExecutor.CallerRunsPolicy());
+            LOGGER.log(Level.INFO, "Created event ingest pool with {0} threads and a group size of {1}",
+                    new Object[]{threads, groupSize});
+        }
+        return executor;
+    }
+
+    private static synchronized int getGroupSize() {
+        getExecutor();
+        return groupSize > 0 ? groupSize : DEFAULT_GROUP_SIZE;
+    }
+
+    /**
+     * Add a list of events to the database.  The capture files of the next group of events are read while the
+     * current group is inserted.
+     *
+     * @param descriptors The events to add
+     * @return The result of each event in the same order as the descriptors
+     * @throws IOException If interrupted while waiting on the pool
+     */
+    public List<Result> ingest(List<Descriptor> descriptors) throws IOException {
+        int n = descriptors.size();
+        int size = getGroupSize();
+        List<Result> results = new ArrayList<>(Collections.nCopies(n, null));
+        List<Future<Event>> futures = new ArrayList<>(Collections.nCopies(n, null));
+
+        EventService es = new EventService();
+        int submitted = 0;
+        try {
+            for (int start = 0; start < n; start += size) {
+                int end = Math.min(n, start + size);
+
+                // Keep the next group reading from disk while this one is inserted
+                int submitTo = Math.min(n, end + size);
+                for (; submitted < submitTo; submitted++) {
+                    futures.set(submitted, submit(descriptors.get(submitted)));
+                }
+
+                List<Event> events = new ArrayList<>(end - start);
+                List<Integer> indexes = new ArrayList<>(end - start);
+                for (int i = start; i < end; i++) {
+                    try {
+                        events.add(futures.get(i).get());
+                        indexes.add(i);
+                    } catch (ExecutionException ex) {
+                        results.set(i, fail(i, descriptors.get(i), ex.getCause()));
+                    }
+                    futures.set(i, null);
+                }
+
+                if (!events.isEmpty()) {
+                    try {
+                        List<EventService.AddResult> added = es.addEvents(events);
+                        for (int j = 0; j < added.size(); j++) {
+                            int i = indexes.get(j);
+                            EventService.AddResult ar = added.get(j);
+                            if (ar.getEventId() != null) {
+                                addedCount.incrementAndGet();
+                                results.set(i, new Result(i, ar.getEventId(), null));
+                            } else {
+                                results.set(i, fail(i, descriptors.get(i), ar.getError()));
+                            }
+                        }
+                    } catch (SQLException | RuntimeException ex) {
+                        // Nothing in the group was committed
+                        for (int i : indexes) {
+                            results.set(i, fail(i, descriptors.get(i), ex));
+                        }
+                    }
+                }
+            }
+        } catch (InterruptedException ex) {
+            for (Future<Event> future : futures) {
+                if (future != null) {
+                    future.cancel(true);
+                }
+            }
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while adding events", ex);
+        }
+        return results;
+    }
+
+    private static Future<Event> submit(Descriptor d) {
+        ThreadPoolExecutor pool = getExecutor();
+        if (pool == null) {
+            FutureTask<Event> future = new FutureTask<>(d::toEvent);
+            future.run();
+            return future;
+        }
+        return pool.submit(d::toEvent);
+    }
+
+    private static Result fail(int index, Descriptor d, Throwable cause) {
+        failedCount.incrementAndGet();
+        LOGGER.log(Level.INFO, "Event addition failed for {0} - {1}", new Object[]{d, cause.toString()});
+        return new Result(index, null, cause.toString(), EventService.isDuplicateEvent(cause));
+    }
+
+    /**
+     * Get a JSON representation of the ingest pool's metrics.
+     *
+     * @return A JSON object of the pool's configuration and counters
+     */
+    public static synchronized JsonObject getMetricsAsJson() {
+        return Json.createObjectBuilder()
+                .add("poolSize", executor == null ? 0 : executor.getCorePoolSize())
+                .add("activeThreads", executor == null ? 0 : executor.getActiveCount())
+                .add("queueDepth", executor == null ? 0 : executor.getQueue().size())
+                .add("groupSize", groupSize > 0 ? groupSize : DEFAULT_GROUP_SIZE)
+                .add("added", addedCount.get())
+                .add("failed", failedCount.get())
+                .build();
+    }
+
+    /**
+     * Shut down the pool.  Any later events are read on the calling thread.  Called when the application is
+     * undeployed.
+     */
+    public static synchronized void shutdown() {
+        shutdown = true;
+        if (executor != null) {
+            executor.shutdownNow();
+            executor = null;
+        }
+    }
+}
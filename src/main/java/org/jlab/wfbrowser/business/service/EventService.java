@@ -5,11 +5,21 @@ import java.io.IOException;
 import java.sql.*;
 import java.time.Instant;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import org.jlab.wfbrowser.business.filter.EventCursor;
 import org.jlab.wfbrowser.business.filter.EventFilter;
 import org.jlab.wfbrowser.business.filter.LabelFilter;
+import org.jlab.wfbrowser.business.util.RuntimeUtil;
+import org.jlab.wfbrowser.business.util.SeriesMatcher;
 import org.jlab.wfbrowser.business.util.SqlUtil;
 import org.jlab.wfbrowser.business.util.TimeUtil;
 import org.jlab.wfbrowser.model.CaptureFile.CaptureFile;
@@ -19,6 +29,7 @@ import org.jlab.wfbrowser.model.Event;
 import org.jlab.wfbrowser.model.Label;
 import org.jlab.wfbrowser.model.Series;
 import org.jlab.wfbrowser.model.Waveform;
+import org.jlab.wfbrowser.model.WaveformStats;
 
 import javax.json.*;
 
@@ -32,6 +43,55 @@ public class EventService {
 
     private static final Logger LOGGER = Logger.getLogger(EventService.class.getName());
 
+    // Maximum number of event IDs bound to a single IN clause when loading the child rows of many events
+    private static final int IN_CHUNK_SIZE = 500;
+
+    // Rows to ask the driver to fetch from the server at a time when streaming an event listing
+    private static final int STREAM_FETCH_SIZE = 500;
+
+    // Location and classification options by system name.  See getLocationOptions.
+    private static final Map<String, EventOptions> OPTION_CACHE = new ConcurrentHashMap<>();
+    // What addEvent added to each system while its options were being loaded, one per load.  Guarded by OPTION_CACHE.
+    private static final Map<String, List<OptionAdditions>> OPTION_LOADS = new HashMap<>();
+    private static final long DEFAULT_OPTION_REFRESH_MINUTES = 10;
+    private static ScheduledExecutorService optionRefresher = null;
+    private static boolean optionRefresherShutdown = false;
+    // Stores the waveform statistics of events that were added without them.  See scheduleWaveformStats.
+    private static ExecutorService statsWriter = null;
+    private static boolean statsWriterShutdown = false;
+
+    /**
+     * The sorted location and classification options of a system.  Never modified once created.
+     */
+    private static class EventOptions {
+        private final List<String> locations;
+        private final List<String> classifications;
+
+        private EventOptions(List<String> locations, List<String> classifications) {
+            locations.sort(String::compareTo);
+            classifications.sort(String::compareTo);
+            this.locations = Collections.unmodifiableList(locations);
+            this.classifications = Collections.unmodifiableList(classifications);
+        }
+    }
+
+    /**
+     * The locations and classifications added to a system while its options are loaded from the database.  The
+     * load's query may have run before they were committed.
+     */
+    private static class OptionAdditions {
+        private final Set<String> locations = new HashSet<>();
+        private final Set<String> classifications = new HashSet<>();
+    }
+
+    /**
+     * Receives the events of a streamed listing one at a time.
+     */
+    @FunctionalInterface
+    public interface EventConsumer {
+        void accept(Event e) throws IOException;
+    }
+
     /**
      * Adds an event's meta data to the database. Verify that an event directory
      * exists in the proper location on the filesystem prior to updating
@@ -44,27 +104,202 @@ public class EventService {
      * @throws SQLException If problems arise while accessing data from database
      */
     public long addEvent(Event e) throws SQLException, IOException {
-        if (!e.isDataOnDisk()) {
-            throw new FileNotFoundException("Cannot add event to database if data is missing from disk.  Directory '"
-                    + e.getEventDirectoryPath().toString() + "' or '" + e.getArchivePath().toString() + "' not found.");
+        checkEventToAdd(e);
+
+        Connection conn = null;
+        long eventId;
+        try {
+            conn = SqlUtil.getConnection();
+            conn.setAutoCommit(false);
+            try {
+                eventId = insertEvent(conn, e, lookupSystemId(conn, e.getSystem()));
+                conn.commit();
+            } catch (SQLException | RuntimeException ex) {
+                conn.rollback();
+                throw ex;
+            }
+        } finally {
+            SqlUtil.close(conn);
+        }
+
+        addEventOptions(e.getSystem(), e.getLocation(), e.getClassification());
+        if (e.isMissingWaveformStats()) {
+            scheduleWaveformStats(eventId, e);
+        }
+        return eventId;
+    }
+
+    /**
+     * The outcome of adding one event of a group.  Exactly one of the event ID and the error is set.
+     */
+    public static class AddResult {
+        private final Long eventId;
+        private final Exception error;
+
+        private AddResult(Long eventId, Exception error) {
+            this.eventId = eventId;
+            this.error = error;
+        }
+
+        public Long getEventId() {
+            return eventId;
+        }
+
+        public Exception getError() {
+            return error;
+        }
+    }
+
+    // MariaDB's ER_DUP_ENTRY
+    private static final int DUPLICATE_KEY_ERROR = 1062;
+
+    /**
+     * Check whether adding an event failed because an event with the same time, system, location and classification
+     * is already in the database.
+     *
+     * @param ex The error from addEvent or addEvents
+     * @return True if it, or one of its causes, is a duplicate key error
+     */
+    public static boolean isDuplicateEvent(Throwable ex) {
+        for (Throwable t = ex; t != null; t = t.getCause()) {
+            if (t instanceof SQLIntegrityConstraintViolationException
+                    && ((SQLException) t).getErrorCode() == DUPLICATE_KEY_ERROR) {
+                return true;
+            }
         }
+        return false;
+    }
+
+    /**
+     * Look up the ID of an event by the columns that identify it.  The read-write connection is used so that an event
+     * that was just added is found.
+     *
+     * @param system         The event's system
+     * @param location       The event's location
+     * @param classification The event's classification
+     * @param eventTime      The event's time
+     * @return The ID of the event, or null if there is no such event
+     * @throws SQLException If problems arise accessing the database
+     */
+    public Long getEventId(String system, String location, String classification, Instant eventTime)
+            throws SQLException {
+        String sql = "SELECT event_id"
+                + " FROM event"
+                + " JOIN system_type USING(system_id)"
+                + " WHERE system_name = ? AND location = ? AND classification = ? AND event_time_utc = ?";
 
         Connection conn = null;
         PreparedStatement pstmt = null;
         ResultSet rs = null;
+        try {
+            conn = SqlUtil.getConnection();
+            pstmt = conn.prepareStatement(sql);
+            pstmt.setString(1, system);
+            pstmt.setString(2, location);
+            pstmt.setString(3, classification);
+            pstmt.setString(4, TimeUtil.getDateTimeString(eventTime));
+            rs = pstmt.executeQuery();
+            return rs.next() ? rs.getLong("event_id") : null;
+        } finally {
+            SqlUtil.close(rs, pstmt, conn);
+        }
+    }
+
+    /**
+     * Adds a group of events to the database in a single transaction.  Each event is added as in addEvent, but the
+     * group shares one connection, one system ID lookup per system and one commit.  An event that fails is rolled
+     * back on its own and reported in its result without affecting the rest of the group.
+     *
+     * @param events The events to add
+     * @return The result of adding each event, in the same order as the events
+     * @throws SQLException If problems arise with the connection or the commit.  Nothing in the group was added.
+     */
+    public List<AddResult> addEvents(List<Event> events) throws SQLException {
+        Long[] eventIds = new Long[events.size()];
+        Exception[] errors = new Exception[events.size()];
+        Map<String, Integer> systemIds = new HashMap<>();
+
+        Connection conn = null;
+        try {
+            conn = SqlUtil.getConnection();
+            conn.setAutoCommit(false);
+            try {
+                for (int i = 0; i < events.size(); i++) {
+                    Event e = events.get(i);
+                    Savepoint savepoint = null;
+                    try {
+                        checkEventToAdd(e);
+                        Integer systemId = systemIds.get(e.getSystem());
+                        if (systemId == null) {
+                            systemId = lookupSystemId(conn, e.getSystem());
+                            systemIds.put(e.getSystem(), systemId);
+                        }
+                        savepoint = conn.setSavepoint();
+                        eventIds[i] = insertEvent(conn, e, systemId);
+                        conn.releaseSavepoint(savepoint);
+                    } catch (SQLException | IOException | RuntimeException ex) {
+                        if (savepoint != null) {
+                            conn.rollback(savepoint);
+                        }
+                        eventIds[i] = null;
+                        errors[i] = ex;
+                    }
+                }
+                conn.commit();
+            } catch (SQLException | RuntimeException ex) {
+                conn.rollback();
+                throw ex;
+            }
+        } finally {
+            SqlUtil.close(conn);
+        }
+
+        List<AddResult> out = new ArrayList<>(events.size());
+        for (int i = 0; i < events.size(); i++) {
+            if (eventIds[i] != null) {
+                Event e = events.get(i);
+                addEventOptions(e.getSystem(), e.getLocation(), e.getClassification());
+                if (e.isMissingWaveformStats()) {
+                    scheduleWaveformStats(eventIds[i], e);
+                }
+            }
+            out.add(new AddResult(eventIds[i], errors[i]));
+        }
+        return out;
+    }
+
+    /**
+     * Check that an event can be added to the database.
+     */
+    private static void checkEventToAdd(Event e) throws IOException {
+        if (!e.isDataOnDisk()) {
+            throw new FileNotFoundException("Cannot add event to database if data is missing from disk.  Directory '"
+                    + e.getEventDirectoryPath().toString() + "' or '" + e.getArchivePath().toString() + "' not found.");
+        }
+
+        // Make sure we the event has capture files to add
+        Map<String, CaptureFile> captureFileMap = e.getCaptureFileMap();
+        if (captureFileMap == null || captureFileMap.isEmpty()) {
+            throw new RuntimeException("Attempting to add event with no associated capture files");
+        }
+    }
 
+    /**
+     * Look up the ID of a system by name.
+     *
+     * @throws IllegalArgumentException If the system is not in the database
+     */
+    private static int lookupSystemId(Connection conn, String system) throws SQLException {
         String systemIdSql = "SELECT system_id,count(*) "
                 + "FROM system_type"
                 + " WHERE system_name = ?";
 
+        PreparedStatement pstmt = null;
+        ResultSet rs = null;
         int systemId;
-        long eventId;
         try {
-            conn = SqlUtil.getConnection();
-
-            conn.setAutoCommit(false);
             pstmt = conn.prepareStatement(systemIdSql);
-            pstmt.setString(1, e.getSystem());
+            pstmt.setString(1, system);
 
             rs = pstmt.executeQuery();
 
@@ -75,20 +310,37 @@ public class EventService {
                 systemId = rs.getInt("system_id");
                 int n = rs.getInt("count(*)");
                 if (n == 0) {
-                    LOGGER.log(Level.WARNING, "User attempted to add event for unsupported system ''{0}''", e.getSystem());
-                    throw new IllegalArgumentException("Waveform system '" + e.getSystem() + "' is not supported at this time");
+                    LOGGER.log(Level.WARNING, "User attempted to add event for unsupported system ''{0}''", system);
+                    throw new IllegalArgumentException("Waveform system '" + system + "' is not supported at this time");
                 } else if (n > 1) {
-                    LOGGER.log(Level.SEVERE, "Waveform system, ''{0}', maps multiple system IDs in database'", e.getSystem());
+                    LOGGER.log(Level.SEVERE, "Waveform system, ''{0}', maps multiple system IDs in database'", system);
                     throw new IllegalArgumentException("Error: Waveform system name lookup returned multiple system IDs.  Contact the software"
                             + "maintainer about this error");
                 }
             } else {
                 throw new RuntimeException("Error querying database for system ID");
             }
+        } finally {
+            SqlUtil.close(rs, pstmt);
+        }
+        return systemId;
+    }
 
+    /**
+     * Insert the rows of an event.  The caller owns the transaction and must roll it back if this throws.
+     *
+     * @return The event ID of the new event row
+     */
+    private long insertEvent(Connection conn, Event e, int systemId) throws SQLException {
+        Map<String, CaptureFile> captureFileMap = e.getCaptureFileMap();
+        PreparedStatement pstmt = null;
+        long eventId;
+        int n;
+        try {
+            // num_capture_files is stored on the event so that listing queries do not have to count the capture table
             String insertEventSql = "INSERT INTO event " +
-                    "(event_time_utc, location, system_id, archive, to_be_deleted, grouped, classification) " +
-                    "VALUES (?, ?, ?, ?, ?, ?, ?)";
+                    "(event_time_utc, location, system_id, archive, to_be_deleted, grouped, classification, num_capture_files) " +
+                    "VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
 
             pstmt = conn.prepareStatement(insertEventSql, Statement.RETURN_GENERATED_KEYS);
             pstmt.setString(1, e.getEventTimeString());
@@ -98,10 +350,10 @@ public class EventService {
             pstmt.setInt(5, e.isDelete() ? 1 : 0);
             pstmt.setInt(6, e.isGrouped() ? 1 : 0);
             pstmt.setString(7, e.getClassification());
+            pstmt.setInt(8, captureFileMap.size());
 
-            int n = pstmt.executeUpdate();
+            n = pstmt.executeUpdate();
             if (n != 1) {
-                conn.rollback();
                 LOGGER.log(Level.SEVERE, "Inserting new event did not update exactly one row in the database");
                 throw new SQLException("Inserting new event did not update exactly one row in the database");
             }
@@ -110,12 +362,11 @@ public class EventService {
             if (rse != null && rse.next()) {
                 eventId = rse.getLong(1);
             } else {
-                conn.rollback();
                 throw new RuntimeException("Error querying database for last inserted event_id");
             }
             pstmt.close();
 
-            // Insert label information
+            // Insert label information.  The rows of each child table go to the database as one batch.
             if (e.getLabelList() != null && !e.getLabelList().isEmpty()) {
                 String labelSql = "INSERT INTO label " +
                         "(event_id, model_name, label_name, label_value, label_confidence) " +
@@ -127,135 +378,278 @@ public class EventService {
                     pstmt.setString(3, l.getName());
                     pstmt.setString(4, l.getValue());
                     pstmt.setDouble(5, l.getConfidence());
-
-                    // Insert the label record and rollback if we didn't add one row.
-                    n = pstmt.executeUpdate();
-                    if (n != 1) {
-                        conn.rollback();
-                        LOGGER.log(Level.SEVERE, "Error inserting label information.  Rolling back.");
-                        throw new SQLException("Error inserting label information.  Rolling back.");
-                    }
+                    pstmt.addBatch();
                 }
-            }
 
-            // Make sure we the event has capture files to add
-            Map<String, CaptureFile> captureFileMap = e.getCaptureFileMap();
-            if (captureFileMap == null || captureFileMap.isEmpty()) {
-                conn.rollback();
-                throw new RuntimeException("Attempting to add event with no associated capture files");
+                // Fail if we didn't add one row per label.
+                if (!isEachRowInserted(pstmt.executeBatch(), e.getLabelList().size())) {
+                    LOGGER.log(Level.SEVERE, "Error inserting label information.  Rolling back.");
+                    throw new SQLException("Error inserting label information.  Rolling back.");
+                }
+                pstmt.close();
             }
 
-            // Add the capture files to the database.  For each capture file, we need to add the list of waveforms associated with it.
+            // Add the capture files to the database.  Each capture file needs its generated capture_id for its
+            // waveform and metadata rows, so they are inserted one at a time.  The waveform and metadata rows of every
+            // capture file are then inserted as one batch per table.  The waveform statistics are inserted last.
             String captureSql = "INSERT INTO capture (event_id, filename, sample_start, sample_end, sample_step)"
                     + " VALUES(?,?,?,?,?)";
-            for (String filename : captureFileMap.keySet()) {
+            String waveformSql = "INSERT INTO capture_wf (capture_id, waveform_name) VALUES(?,?)";
+            String metaSql = "INSERT INTO capture_meta (capture_id, meta_name, type, value, start, offset)"
+                    + " VALUES(?,?,?,?,?,?)";
+            PreparedStatement wfStmt = null;
+            PreparedStatement metaStmt = null;
+            try {
                 pstmt = conn.prepareStatement(captureSql, Statement.RETURN_GENERATED_KEYS);
-                CaptureFile cf = captureFileMap.get(filename);
-                pstmt.setLong(1, eventId);
-                pstmt.setString(2, filename);
-                pstmt.setDouble(3, cf.getSampleStart());
-                pstmt.setDouble(4, cf.getSampleEnd());
-                pstmt.setDouble(5, cf.getSampleStep());
-                int numUpdated = pstmt.executeUpdate();
-                if (numUpdated != 1) {
-                    conn.rollback();
-                    throw new SQLException("Error adding capture file to database");
-                }
-
-                // Get the capture_id of the capture file we just added to the database
-                long captureId;
-                rse = pstmt.getGeneratedKeys();
-                if (rse != null && rse.next()) {
-                    captureId = rse.getLong(1);
-                } else {
-                    conn.rollback();
-                    throw new RuntimeException("Error querying database for last inserted event_id");
-                }
-                pstmt.close();
+                wfStmt = conn.prepareStatement(waveformSql);
+                metaStmt = conn.prepareStatement(metaSql);
+                int numWaveforms = 0;
+                int numMetadata = 0;
+                for (String filename : captureFileMap.keySet()) {
+                    CaptureFile cf = captureFileMap.get(filename);
+                    pstmt.setLong(1, eventId);
+                    pstmt.setString(2, filename);
+                    pstmt.setDouble(3, cf.getSampleStart());
+                    pstmt.setDouble(4, cf.getSampleEnd());
+                    pstmt.setDouble(5, cf.getSampleStep());
+                    int numUpdated = pstmt.executeUpdate();
+                    if (numUpdated != 1) {
+                        throw new SQLException("Error adding capture file to database");
+                    }
 
-                List<Waveform> waveformList = cf.getWaveforms();
-                if (waveformList != null) {
-                    String waveformSql = "INSERT INTO capture_wf (capture_id, waveform_name) VALUES(?,?)";
-                    pstmt = conn.prepareStatement(waveformSql);
-                    for (Waveform w : waveformList) {
-                        pstmt.setLong(1, captureId);
-                        pstmt.setString(2, w.getWaveformName());
-                        numUpdated = pstmt.executeUpdate();
-                        if (numUpdated != 1) {
-                            conn.rollback();
-                            throw new SQLException("Error adding waveform metadata to database.");
+                    // Get the capture_id of the capture file we just added to the database
+                    long captureId;
+                    rse = pstmt.getGeneratedKeys();
+                    if (rse != null && rse.next()) {
+                        captureId = rse.getLong(1);
+                    } else {
+                        throw new RuntimeException("Error querying database for last inserted event_id");
+                    }
+                    rse.close();
+
+                    List<Waveform> waveformList = cf.getWaveforms();
+                    if (waveformList != null) {
+                        for (Waveform w : waveformList) {
+                            wfStmt.setLong(1, captureId);
+                            wfStmt.setString(2, w.getWaveformName());
+                            wfStmt.addBatch();
+                            numWaveforms++;
                         }
-                        pstmt.clearParameters();
                     }
-                }
-                pstmt.close();
 
-                List<Metadata> metadataList = cf.getMetadataList();
-                if (metadataList != null) {
-                    String metaSql = "INSERT INTO capture_meta (capture_id, meta_name, type, value, start, offset)"
-                            + " VALUES(?,?,?,?,?,?)";
-                    pstmt = conn.prepareStatement(metaSql);
-                    for (Metadata m : metadataList) {
-                        pstmt.setLong(1, captureId);
-                        pstmt.setString(2, m.getName());
-                        pstmt.setString(3, m.getType().toString());
-                        switch (m.getType()) {
-                            case NUMBER:
-                                pstmt.setString(4, m.getValue().toString());
-                                pstmt.setDouble(5, m.getStart());
-                                pstmt.setDouble(6, m.getOffset());
-                                break;
-                            case STRING:
-                                pstmt.setString(4, (String) m.getValue());
-                                pstmt.setDouble(5, m.getStart());
-                                pstmt.setDouble(6, m.getOffset());
-                                break;
-                            case UNAVAILABLE:
-                                pstmt.setString(4, null);
-                                pstmt.setNull(5, java.sql.Types.NULL);
-                                pstmt.setDouble(6, m.getOffset());
-                                break;
-                            case UNARCHIVED:
-                                pstmt.setString(4, null);
-                                pstmt.setNull(5, java.sql.Types.NULL);
-                                pstmt.setNull(6, java.sql.Types.NULL);
-                                break;
-                            default:
-                                throw new RuntimeException("Unrecognized MetadataType - " + m.getType().toString());
-                        }
-                        numUpdated = pstmt.executeUpdate();
-                        if (numUpdated != 1) {
-                            conn.rollback();
-                            throw new SQLException("Error adding capture file metadata to database.");
+                    List<Metadata> metadataList = cf.getMetadataList();
+                    if (metadataList != null) {
+                        for (Metadata m : metadataList) {
+                            metaStmt.setLong(1, captureId);
+                            metaStmt.setString(2, m.getName());
+                            metaStmt.setString(3, m.getType().toString());
+                            switch (m.getType()) {
+                                case NUMBER:
+                                    metaStmt.setString(4, m.getValue().toString());
+                                    metaStmt.setDouble(5, m.getStart());
+                                    metaStmt.setDouble(6, m.getOffset());
+                                    break;
+                                case STRING:
+                                    metaStmt.setString(4, (String) m.getValue());
+                                    metaStmt.setDouble(5, m.getStart());
+                                    metaStmt.setDouble(6, m.getOffset());
+                                    break;
+                                case UNAVAILABLE:
+                                    metaStmt.setString(4, null);
+                                    metaStmt.setNull(5, java.sql.Types.NULL);
+                                    metaStmt.setDouble(6, m.getOffset());
+                                    break;
+                                case UNARCHIVED:
+                                    metaStmt.setString(4, null);
+                                    metaStmt.setNull(5, java.sql.Types.NULL);
+                                    metaStmt.setNull(6, java.sql.Types.NULL);
+                                    break;
+                                default:
+                                    throw new RuntimeException("Unrecognized MetadataType - " + m.getType().toString());
+                            }
+                            metaStmt.addBatch();
+                            numMetadata++;
                         }
-                        pstmt.clearParameters();
                     }
                 }
+
+                if (numWaveforms > 0 && !isEachRowInserted(wfStmt.executeBatch(), numWaveforms)) {
+                    throw new SQLException("Error adding waveform metadata to database.");
+                }
+                if (numMetadata > 0 && !isEachRowInserted(metaStmt.executeBatch(), numMetadata)) {
+                    throw new SQLException("Error adding capture file metadata to database.");
+                }
+
+                if (numWaveforms > 0) {
+                    insertWaveformStats(conn, eventId, getWaveformStats(e));
+                }
+            } finally {
+                SqlUtil.close(wfStmt, metaStmt);
             }
-            conn.commit();
         } finally {
-            SqlUtil.close(rs, pstmt, conn);
+            SqlUtil.close(pstmt);
         }
         return eventId;
     }
 
+    /**
+     * Get the statistics of the waveforms of an event that has them, keyed by capture file name and then waveform
+     * name.  Waveforms without statistics are left out.
+     */
+    private static Map<String, Map<String, WaveformStats>> getWaveformStats(Event e) {
+        Map<String, Map<String, WaveformStats>> out = new HashMap<>();
+        for (CaptureFile cf : e.getCaptureFileList()) {
+            Map<String, WaveformStats> stats = new HashMap<>();
+            for (Waveform w : cf.getWaveforms()) {
+                if (w.getStats() != null) {
+                    stats.put(w.getWaveformName(), w.getStats());
+                }
+            }
+            out.put(cf.getFilename(), stats);
+        }
+        return out;
+    }
+
+    /**
+     * Insert the statistics rows of an event's waveforms.  The rows need the generated cwf_id of their waveform, so
+     * they are read back with one query and the statistics inserted as one batch.  Waveforms without statistics, or
+     * that are no longer in the database, are skipped.
+     *
+     * @param conn    The connection.  The caller owns the transaction.
+     * @param eventId The ID of the event
+     * @param stats   The statistics keyed by capture file name and then waveform name
+     */
+    private static void insertWaveformStats(Connection conn, long eventId, Map<String, Map<String, WaveformStats>> stats)
+            throws SQLException {
+        String cwfSql = "SELECT cwf_id, filename, waveform_name FROM capture_wf JOIN capture USING(capture_id)"
+                + " WHERE event_id = ?";
+        String statsSql = "INSERT INTO waveform_stats (cwf_id, num_samples, num_nan, min_value, max_value, mean_value,"
+                + " rms_value, first_excursion) VALUES(?,?,?,?,?,?,?,?)";
+
+        PreparedStatement pstmt = null;
+        ResultSet rs = null;
+        try {
+            pstmt = conn.prepareStatement(cwfSql);
+            pstmt.setLong(1, eventId);
+            Map<Long, WaveformStats> cwfStats = new HashMap<>();
+            rs = pstmt.executeQuery();
+            while (rs.next()) {
+                Map<String, WaveformStats> fileStats = stats.get(rs.getString("filename"));
+                WaveformStats ws = fileStats == null ? null : fileStats.get(rs.getString("waveform_name"));
+                if (ws != null) {
+                    cwfStats.put(rs.getLong("cwf_id"), ws);
+                }
+            }
+            rs.close();
+            pstmt.close();
+
+            if (cwfStats.isEmpty()) {
+                return;
+            }
+            pstmt = conn.prepareStatement(statsSql);
+            for (Map.Entry<Long, WaveformStats> entry : cwfStats.entrySet()) {
+                WaveformStats ws = entry.getValue();
+                pstmt.setLong(1, entry.getKey());
+                pstmt.setInt(2, ws.getSampleCount());
+                pstmt.setInt(3, ws.getNanCount());
+                setStat(pstmt, 4, ws.getMin());
+                setStat(pstmt, 5, ws.getMax());
+                setStat(pstmt, 6, ws.getMean());
+                setStat(pstmt, 7, ws.getRms());
+                setStat(pstmt, 8, ws.getFirstExcursion());
+                pstmt.addBatch();
+            }
+            if (!isEachRowInserted(pstmt.executeBatch(), cwfStats.size())) {
+                throw new SQLException("Error adding waveform statistics to database.");
+            }
+        } finally {
+            SqlUtil.close(rs, pstmt);
+        }
+    }
+
+    /**
+     * Set a waveform statistic parameter.  Missing, infinite and NaN values are stored as NULL since the database can
+     * not hold them, e.g., the mean of a waveform with both positive and negative infinities.
+     */
+    private static void setStat(PreparedStatement pstmt, int index, Double value) throws SQLException {
+        if (value == null || !Double.isFinite(value)) {
+            pstmt.setNull(index, java.sql.Types.DOUBLE);
+        } else {
+            pstmt.setDouble(index, value);
+        }
+    }
+
+    private static Double getStat(ResultSet rs, String column) throws SQLException {
+        double value = rs.getDouble(column);
+        return rs.wasNull() ? null : value;
+    }
+
+    /**
+     * Check the update counts of a batch of single row inserts.  Drivers that rewrite or bulk send a batch may report
+     * SUCCESS_NO_INFO instead of a count for each row.  A failed row would have thrown a BatchUpdateException.
+     *
+     * @param counts The result of executeBatch
+     * @param expected The number of rows in the batch
+     * @return True if every row reported one or SUCCESS_NO_INFO
+     */
+    private static boolean isEachRowInserted(int[] counts, int expected) {
+        if (counts.length != expected) {
+            return false;
+        }
+        for (int count : counts) {
+            if (count != 1 && count != Statement.SUCCESS_NO_INFO) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     /**
      * Get the most recent event in the database given the applied filter.
-     * Optionally includes data
+     * Optionally includes data.  Only the ID of the newest matching event is
+     * queried, reading the event time indexes backwards, and then just that
+     * event is loaded.
      *
      * @param filter An event filter for narrowing down the acceptable Event responses
      * @param includeData Should data be included
-     * @return The most recent event passing the filter
+     * @return The most recent event passing the filter, or null if none do
      * @throws SQLException If problems arise accessing database
      * @throws IOException  If problems arise accessing waveform data on disk
      */
     public Event getMostRecentEvent(EventFilter filter, boolean includeData) throws SQLException, IOException {
-        List<Event> eventList = getEventList(filter, 1L, includeData, includeData);
-        Event out = null;
-        if (!eventList.isEmpty()) {
-            out = eventList.get(0);
+        // event_id breaks ties the same way as the (event_time_utc, event_id) order of streamEventList.  InnoDB
+        // secondary indexes end with the primary key, so i_event_time still gives this order without a sort.
+        String sql = "SELECT event_id"
+                + " FROM event"
+                + " JOIN system_type USING(system_id)"
+                + (filter == null ? "" : filter.getWhereClause())
+                + " ORDER BY event_time_utc DESC, event_id DESC"
+                + " LIMIT 1";
+
+        Long eventId = null;
+        Connection conn = null;
+        PreparedStatement pstmt = null;
+        ResultSet rs = null;
+        try {
+            conn = SqlUtil.getReadOnlyConnection();
+            pstmt = conn.prepareStatement(sql);
+            if (filter != null) {
+                filter.assignParameterValues(pstmt, null);
+            }
+            rs = pstmt.executeQuery();
+            if (rs.next()) {
+                eventId = rs.getLong("event_id");
+            }
+        } finally {
+            SqlUtil.close(rs, pstmt, conn);
         }
-        return out;
+
+        if (eventId == null) {
+            return null;
+        }
+        EventFilter idFilter = new EventFilter(Collections.singletonList(eventId), null, null, null, null, null, null, null, null);
+        List<Event> eventList = getEventList(idFilter, null, includeData, includeData);
+        return eventList.isEmpty() ? null : eventList.get(0);
     }
 
     /**
@@ -267,6 +661,20 @@ public class EventService {
      * @throws SQLException If problems arise accessing data on disk
      */
     public List<String> getLocationNames(List<String> systemList) throws SQLException {
+        return getLocationNames(systemList, true);
+    }
+
+    /**
+     * Query the database for the List of unique location names
+     *
+     * @param systemList A list of systems to filter on. Null or empty list
+     *                   means do no filtering
+     * @param readOnly   Whether the read-only resource may be used.  It may lag behind writes, so anything cached
+     *                   has to read from the read-write one.
+     * @return A list of the unique location names
+     * @throws SQLException If problems arise accessing data on disk
+     */
+    private List<String> getLocationNames(List<String> systemList, boolean readOnly) throws SQLException {
         List<String> out = new ArrayList<>();
         StringBuilder sql = new StringBuilder("SELECT DISTINCT location"
                 + " FROM event"
@@ -276,71 +684,404 @@ public class EventService {
             for (int i = 1; i < systemList.size(); i++) {
                 sql.append(",?");
             }
-            sql.append(")");
+            sql.append(")");
+        }
+        sql.append(" ORDER BY location");
+
+        Connection conn = null;
+        PreparedStatement pstmt = null;
+        ResultSet rs = null;
+        try {
+            conn = readOnly ? SqlUtil.getReadOnlyConnection() : SqlUtil.getConnection();
+            pstmt = conn.prepareStatement(sql.toString());
+            if (systemList != null && !systemList.isEmpty()) {
+                for (int i = 1; i <= systemList.size(); i++) {
+                    pstmt.setString(i, systemList.get(i - 1));
+                }
+            }
+
+            rs = pstmt.executeQuery();
+            while (rs.next()) {
+                out.add(rs.getString("location"));
+            }
+        } finally {
+            SqlUtil.close(rs, pstmt, conn);
+        }
+
+        return out;
+    }
+
+    // TODO: Add a test routine
+
+    /**
+     * Get a list of classifications associated with a system or list of systems
+     *
+     * @param systemList A list of system names
+     * @return A list of classifications
+     * @throws SQLException If problems arise accessing the database
+     */
+    public List<String> getClassifications(List<String> systemList) throws SQLException {
+        return getClassifications(systemList, true);
+    }
+
+    /**
+     * Get a list of classifications associated with a system or list of systems
+     *
+     * @param systemList A list of system names
+     * @param readOnly   Whether the read-only resource may be used.  See getLocationNames.
+     * @return A list of classifications
+     * @throws SQLException If problems arise accessing the database
+     */
+    private List<String> getClassifications(List<String> systemList, boolean readOnly) throws SQLException {
+        List<String> out = new ArrayList<>();
+        StringBuilder sql = new StringBuilder("SELECT DISTINCT classification"
+                + " FROM event"
+                + " JOIN system_type ON event.system_id = system_type.system_id");
+        if (systemList != null && !systemList.isEmpty()) {
+            sql.append(" WHERE system_name IN (?");
+            for (int i = 1; i < systemList.size(); i++) {
+                sql.append(",?");
+            }
+            sql.append(")");
+        }
+        sql.append(" ORDER BY classification");
+
+        Connection conn = null;
+        PreparedStatement pstmt = null;
+        ResultSet rs = null;
+        try {
+            conn = readOnly ? SqlUtil.getReadOnlyConnection() : SqlUtil.getConnection();
+            pstmt = conn.prepareStatement(sql.toString());
+            if (systemList != null && !systemList.isEmpty()) {
+                for (int i = 1; i <= systemList.size(); i++) {
+                    pstmt.setString(i, systemList.get(i - 1));
+                }
+            }
+
+            rs = pstmt.executeQuery();
+            while (rs.next()) {
+                out.add(rs.getString("classification"));
+            }
+        } finally {
+            SqlUtil.close(rs, pstmt, conn);
+        }
+
+        return out;
+    }
+
+    /**
+     * Get the locations of a system's events from the location and classification option cache.  The options are
+     * needed on every page load, but finding them means a DISTINCT scan of the event table and they change very rarely.
+     * Instead each system's options are loaded once, updated by addEvent when it adds a new location or
+     * classification, and reloaded in the background every WFB_OPTION_REFRESH_MINUTES minutes (default 10) to pick
+     * up deletions and changes made outside of the application.  Setting it to 0 disables the background refresh.
+     *
+     * @param system The name of the system
+     * @return A sorted list of the system's locations.  Free to be modified by the caller.
+     * @throws SQLException If problems arise loading the options of a system that is not cached yet
+     */
+    public List<String> getLocationOptions(String system) throws SQLException {
+        return new ArrayList<>(getEventOptions(system).locations);
+    }
+
+    /**
+     * Get the classifications of a system's events from the location and classification option cache.  See
+     * getLocationOptions.
+     *
+     * @param system The name of the system
+     * @return A sorted list of the system's classifications.  Free to be modified by the caller.
+     * @throws SQLException If problems arise loading the options of a system that is not cached yet
+     */
+    public List<String> getClassificationOptions(String system) throws SQLException {
+        return new ArrayList<>(getEventOptions(system).classifications);
+    }
+
+    private EventOptions getEventOptions(String system) throws SQLException {
+        EventOptions options = OPTION_CACHE.get(system);
+        if (options == null) {
+            options = loadEventOptions(system);
+            startOptionRefresher();
+        }
+        return options;
+    }
+
+    /**
+     * Query the database for a system's options and cache them.  Anything addEvent added to the system while the query
+     * ran is merged in, since the query may not have seen it.
+     */
+    private EventOptions loadEventOptions(String system) throws SQLException {
+        OptionAdditions additions = new OptionAdditions();
+        synchronized (OPTION_CACHE) {
+            OPTION_LOADS.computeIfAbsent(system, k -> new ArrayList<>()).add(additions);
+        }
+
+        List<String> locations;
+        List<String> classifications;
+        try {
+            // Cached until the next refresh, so not from the read-only resource
+            List<String> systemList = Collections.singletonList(system);
+            locations = getLocationNames(systemList, false);
+            classifications = getClassifications(systemList, false);
+        } catch (SQLException | RuntimeException ex) {
+            synchronized (OPTION_CACHE) {
+                removeOptionLoad(system, additions);
+            }
+            throw ex;
+        }
+
+        synchronized (OPTION_CACHE) {
+            removeOptionLoad(system, additions);
+            for (String location : additions.locations) {
+                if (!locations.contains(location)) {
+                    locations.add(location);
+                }
+            }
+            for (String classification : additions.classifications) {
+                if (!classifications.contains(classification)) {
+                    classifications.add(classification);
+                }
+            }
+            EventOptions options = new EventOptions(locations, classifications);
+            OPTION_CACHE.put(system, options);
+            return options;
+        }
+    }
+
+    private static void removeOptionLoad(String system, OptionAdditions additions) {
+        List<OptionAdditions> loads = OPTION_LOADS.get(system);
+        loads.remove(additions);
+        if (loads.isEmpty()) {
+            OPTION_LOADS.remove(system);
+        }
+    }
+
+    /**
+     * Add an event's location and classification to its system's cached options if they are new, and to any load of
+     * the system's options that is running.  Systems that are not cached and not being loaded are left alone.  They
+     * will be loaded from the database, event included, when first needed.
+     */
+    private static void addEventOptions(String system, String location, String classification) {
+        synchronized (OPTION_CACHE) {
+            List<OptionAdditions> loads = OPTION_LOADS.get(system);
+            if (loads != null) {
+                for (OptionAdditions additions : loads) {
+                    additions.locations.add(location);
+                    additions.classifications.add(classification);
+                }
+            }
+
+            EventOptions options = OPTION_CACHE.get(system);
+            if (options == null || (options.locations.contains(location) && options.classifications.contains(classification))) {
+                return;
+            }
+
+            List<String> locations = new ArrayList<>(options.locations);
+            if (!locations.contains(location)) {
+                locations.add(location);
+            }
+            List<String> classifications = new ArrayList<>(options.classifications);
+            if (!classifications.contains(classification)) {
+                classifications.add(classification);
+            }
+            OPTION_CACHE.put(system, new EventOptions(locations, classifications));
+        }
+    }
+
+    /**
+     * Reload the options of every cached system.
+     */
+    private void refreshEventOptions() {
+        for (String system : new ArrayList<>(OPTION_CACHE.keySet())) {
+            try {
+                loadEventOptions(system);
+            } catch (SQLException | RuntimeException ex) {
+                LOGGER.log(Level.WARNING, "Error refreshing location and classification options of " + system, ex);
+            }
+        }
+    }
+
+    /**
+     * Start the background refresh of the option cache if it is not already running.
+     */
+    private static synchronized void startOptionRefresher() {
+        if (optionRefresher != null || optionRefresherShutdown) {
+            return;
+        }
+
+        long minutes = RuntimeUtil.getLongEnv("WFB_OPTION_REFRESH_MINUTES", DEFAULT_OPTION_REFRESH_MINUTES);
+        if (minutes <= 0) {
+            LOGGER.log(Level.INFO, "Background refresh of location and classification options disabled");
+            optionRefresherShutdown = true;
+            return;
+        }
+
+        optionRefresher = Executors.newSingleThreadScheduledExecutor(
+                r -> RuntimeUtil.newDaemonThread(r, "wfb-option-refresh"));
+        optionRefresher.scheduleWithFixedDelay(() -> new EventService().refreshEventOptions(), minutes, minutes,
+                TimeUnit.MINUTES);
+    }
+
+    /**
+     * Load the location and classification options of every system in the background so that the first page loads
+     * after a deployment are not kept waiting on them.  This is done once even if the background refresh is disabled.
+     */
+    public static void warmEventOptions() {
+        startOptionRefresher();
+        Runnable warm = () -> {
+            EventService es = new EventService();
+            Connection conn = null;
+            PreparedStatement pstmt = null;
+            ResultSet rs = null;
+            List<String> systems = new ArrayList<>();
+            try {
+                conn = SqlUtil.getReadOnlyConnection();
+                pstmt = conn.prepareStatement("SELECT system_name FROM system_type");
+                rs = pstmt.executeQuery();
+                while (rs.next()) {
+                    systems.add(rs.getString("system_name"));
+                }
+            } catch (SQLException ex) {
+                LOGGER.log(Level.WARNING, "Error querying systems for the option cache", ex);
+            } finally {
+                SqlUtil.close(rs, pstmt, conn);
+            }
+            for (String system : systems) {
+                try {
+                    es.loadEventOptions(system);
+                } catch (SQLException ex) {
+                    LOGGER.log(Level.WARNING, "Error loading location and classification options of " + system, ex);
+                }
+            }
+        };
+
+        synchronized (EventService.class) {
+            if (optionRefresher != null) {
+                optionRefresher.execute(warm);
+                return;
+            }
         }
-        sql.append(" ORDER BY location");
+        RuntimeUtil.newDaemonThread(warm, "wfb-option-warm").start();
+    }
+
+    /**
+     * Stop the background refresh of the option cache.  Called when the application is undeployed.
+     */
+    public static synchronized void shutdownOptionRefresher() {
+        optionRefresherShutdown = true;
+        if (optionRefresher != null) {
+            optionRefresher.shutdownNow();
+            optionRefresher = null;
+        }
+    }
+
+    /**
+     * Compute and store the waveform statistics of an event that was added without them, e.g., a header only event,
+     * in the background.  Computing them reads every row of every capture file, which would make adding an event take
+     * time that grows with the size of its capture files.  The binary cache files of the event are written along the
+     * way.  The events are handled one at a time in the order they were added, and each one's capture files are parsed
+     * in the parse pool.
+     */
+    private static synchronized void scheduleWaveformStats(long eventId, Event e) {
+        if (statsWriterShutdown) {
+            return;
+        }
+        if (statsWriter == null) {
+            statsWriter = Executors.newSingleThreadExecutor(r -> RuntimeUtil.newDaemonThread(r, "wfb-waveform-stats"));
+        }
+        statsWriter.execute(() -> storeWaveformStats(eventId, e));
+    }
 
+    /**
+     * Compute and store the waveform statistics of an event.  Errors are only logged, since the event itself was
+     * already added and getWaveformStats leaves out events without statistics.
+     */
+    private static void storeWaveformStats(long eventId, Event e) {
         Connection conn = null;
-        PreparedStatement pstmt = null;
-        ResultSet rs = null;
         try {
+            Map<String, Map<String, WaveformStats>> stats = e.readWaveformStatsFromDisk();
             conn = SqlUtil.getConnection();
-            pstmt = conn.prepareStatement(sql.toString());
-            if (systemList != null && !systemList.isEmpty()) {
-                for (int i = 1; i <= systemList.size(); i++) {
-                    pstmt.setString(i, systemList.get(i - 1));
-                }
-            }
-
-            rs = pstmt.executeQuery();
-            while (rs.next()) {
-                out.add(rs.getString("location"));
+            conn.setAutoCommit(false);
+            try {
+                insertWaveformStats(conn, eventId, stats);
+                conn.commit();
+            } catch (SQLException | RuntimeException ex) {
+                conn.rollback();
+                throw ex;
             }
+        } catch (IOException | SQLException | RuntimeException ex) {
+            LOGGER.log(Level.WARNING, "Error storing the waveform statistics of event " + eventId, ex);
         } finally {
-            SqlUtil.close(rs, pstmt, conn);
+            SqlUtil.close(conn);
         }
+    }
 
-        return out;
+    /**
+     * Wait for the waveform statistics of the events added so far to be stored.
+     */
+    static void awaitWaveformStats() throws InterruptedException, ExecutionException {
+        Future<?> done;
+        synchronized (EventService.class) {
+            if (statsWriter == null) {
+                return;
+            }
+            done = statsWriter.submit(() -> {
+            });
+        }
+        done.get();
     }
 
-    // TODO: Add a test routine
+    /**
+     * Stop storing the waveform statistics of added events.  Called when the application is undeployed.
+     */
+    public static synchronized void shutdownWaveformStats() {
+        statsWriterShutdown = true;
+        if (statsWriter != null) {
+            statsWriter.shutdownNow();
+            statsWriter = null;
+        }
+    }
 
     /**
-     * Get a list of classifications associated with a system or list of systems
+     * Get the stored summary statistics of the waveforms of many events at once, without reading any capture files.
+     * The events are queried IN_CHUNK_SIZE at a time.  Statistics are stored when an event is added, or shortly after
+     * for header only events, so events added before they were stored have none.
      *
-     * @param systemList A list of system names
-     * @return A list of classifications
-     * @throws SQLException If problems arise accessing the database
+     * @param eventIdList The IDs of the events
+     * @return The statistics keyed by event ID and then waveform name.  Events without statistics are left out.
+     * @throws SQLException If problems arise while accessing the database
      */
-    public List<String> getClassifications(List<String> systemList) throws SQLException {
-        List<String> out = new ArrayList<>();
-        StringBuilder sql = new StringBuilder("SELECT DISTINCT classification"
-                + " FROM event"
-                + " JOIN system_type ON event.system_id = system_type.system_id");
-        if (systemList != null && !systemList.isEmpty()) {
-            sql.append(" WHERE system_name IN (?");
-            for (int i = 1; i < systemList.size(); i++) {
-                sql.append(",?");
-            }
-            sql.append(")");
+    public Map<Long, Map<String, WaveformStats>> getWaveformStats(List<Long> eventIdList) throws SQLException {
+        Map<Long, Map<String, WaveformStats>> out = new HashMap<>();
+        if (eventIdList == null || eventIdList.isEmpty()) {
+            return out;
         }
-        sql.append(" ORDER BY classification");
 
         Connection conn = null;
         PreparedStatement pstmt = null;
         ResultSet rs = null;
+
         try {
-            conn = SqlUtil.getConnection();
-            pstmt = conn.prepareStatement(sql.toString());
-            if (systemList != null && !systemList.isEmpty()) {
-                for (int i = 1; i <= systemList.size(); i++) {
-                    pstmt.setString(i, systemList.get(i - 1));
+            conn = SqlUtil.getReadOnlyConnection();
+            for (int i = 0; i < eventIdList.size(); i += IN_CHUNK_SIZE) {
+                List<Long> chunk = eventIdList.subList(i, Math.min(i + IN_CHUNK_SIZE, eventIdList.size()));
+                String sql = "SELECT event_id, waveform_name, num_samples, num_nan, min_value, max_value, mean_value,"
+                        + " rms_value, first_excursion"
+                        + " FROM capture"
+                        + " JOIN capture_wf USING(capture_id)"
+                        + " JOIN waveform_stats USING(cwf_id)"
+                        + " WHERE event_id IN " + getInClause(chunk.size());
+                pstmt = conn.prepareStatement(sql);
+                setLongs(pstmt, chunk);
+                rs = pstmt.executeQuery();
+                while (rs.next()) {
+                    WaveformStats stats = new WaveformStats(rs.getInt("num_samples"), rs.getInt("num_nan"),
+                            getStat(rs, "min_value"), getStat(rs, "max_value"), getStat(rs, "mean_value"),
+                            getStat(rs, "rms_value"), getStat(rs, "first_excursion"));
+                    out.computeIfAbsent(rs.getLong("event_id"), k -> new TreeMap<>())
+                            .put(rs.getString("waveform_name"), stats);
                 }
-            }
-
-            rs = pstmt.executeQuery();
-            while (rs.next()) {
-                out.add(rs.getString("classification"));
+                rs.close();
+                pstmt.close();
             }
         } finally {
             SqlUtil.close(rs, pstmt, conn);
@@ -365,49 +1106,45 @@ public class EventService {
             return out;
         }
 
-        // This is a little complex.  Perform a sub-query / derived table on the event IDs to cut down on the amount of data we process.
-        // Then join on the series and event_waveforms tables where the waveform name (PV) matches the specified pattern.  This should
-        // only return rows where we had a non-zero number of matches.
-        StringBuilder sql = new StringBuilder("SELECT series_name, series_id, system_name, pattern, description, units, ymin, ymax, COUNT(*) FROM"
-                + " (SELECT * FROM event_waveforms WHERE event_id IN (?");
-        for (int i = 1; i < eventIdList.size(); i++) {
-            sql.append(",?");
-        }
-        sql.append(")) derived_table"
-                + " JOIN series ON derived_table.waveform_name LIKE series.pattern"
-                + " JOIN system_type ON series.system_id = system_type.system_id"
-                + " GROUP BY series_name"
-                + " ORDER BY series_name ");
+        // Find the distinct waveform names of the events, then match them to their system's series in memory.
+        String sql = "SELECT DISTINCT system_name, waveform_name"
+                + " FROM capture_wf"
+                + " JOIN capture USING(capture_id)"
+                + " JOIN event USING(event_id)"
+                + " JOIN system_type USING(system_id)"
+                + " WHERE event_id IN " + getInClause(eventIdList.size());
 
+        Map<String, Set<String>> systemWaveforms = new HashMap<>();
         Connection conn = null;
         PreparedStatement pstmt = null;
         ResultSet rs = null;
 
         try {
-            conn = SqlUtil.getConnection();
-            pstmt = conn.prepareStatement(sql.toString());
-            for (int i = 1; i <= eventIdList.size(); i++) {
-                // prepared statement parameters are 1-indexed, but lists are 0-indexed
-                pstmt.setLong(i, eventIdList.get(i - 1));
-            }
+            conn = SqlUtil.getReadOnlyConnection();
+            pstmt = conn.prepareStatement(sql);
+            setLongs(pstmt, eventIdList);
             rs = pstmt.executeQuery();
             while (rs.next()) {
-                String seriesName = rs.getString("series_name");
-                int id = rs.getInt("series_id");
-                String pattern = rs.getString("pattern");
-                String systemName = rs.getString("system_name");
-                String description = rs.getString("description");
-                String units = rs.getString("units");
-                Double yMin = rs.getDouble("ymin");
-                yMin = rs.wasNull() ? null : yMin;
-                Double yMax = rs.getDouble("ymax");
-                yMax = rs.wasNull() ? null : yMax;
-                out.add(new Series(seriesName, id, pattern, systemName, description, units, yMin, yMax));
+                systemWaveforms.computeIfAbsent(rs.getString("system_name"), k -> new HashSet<>())
+                        .add(rs.getString("waveform_name"));
             }
         } finally {
             SqlUtil.close(rs, pstmt, conn);
         }
 
+        // Only series that matched at least one waveform are returned, ordered by name
+        SeriesService seriesService = new SeriesService();
+        SortedMap<String, Series> matched = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        for (Map.Entry<String, Set<String>> entry : systemWaveforms.entrySet()) {
+            SeriesMatcher matcher = seriesService.getSeriesMatcher(entry.getKey());
+            for (String waveformName : entry.getValue()) {
+                for (Series series : matcher.match(waveformName)) {
+                    matched.put(series.getName(), series);
+                }
+            }
+        }
+        out.addAll(matched.values());
+
         return out;
     }
 
@@ -531,6 +1268,27 @@ public class EventService {
      */
     public List<Event> getEventList(EventFilter filter, Long limit, boolean includeData, boolean includeCaptureFiles)
             throws SQLException, IOException {
+        return getEventList(filter, limit, includeData, includeCaptureFiles, null);
+    }
+
+    /**
+     * Returns the event object mapping to the event records with eventId from
+     * the database. If data is included, only the waveforms that map to one of
+     * the series in seriesSet have their data read from disk. The capture file
+     * columns for other waveforms are skipped entirely while parsing.
+     *
+     * @param filter      EventFilter for narrowing down which Events are returned
+     * @param limit       How many events to return. Null for unlimited
+     * @param includeData Whether the events should include waveform data read
+     *                    from disk
+     * @param includeCaptureFiles Whether the events should include their capture file, waveform and series information
+     * @param seriesSet   The names of the series whose waveform data should be read from disk.  Null for all waveforms.
+     * @return The list of Events that match the filter criteria ordered by event time.
+     * @throws SQLException If problems arise accessing the database
+     * @throws IOException  If problems arise accessing waveform data on disk
+     */
+    public List<Event> getEventList(EventFilter filter, Long limit, boolean includeData, boolean includeCaptureFiles,
+                                    Set<String> seriesSet) throws SQLException, IOException {
 
         // Can't get data without capture files.  Make sure someone isn't requesting that.
         // TODO: Check if there is a better way to organize these types of requests
@@ -544,7 +1302,8 @@ public class EventService {
 
         // We'll use a map to store events as we build them.  Since we need to construct a group of events and it requires
         // a couple of calls to the database, we use a Map to provide fast access to events by their database event_id.
-        Map<Long, Event> eventMap = new HashMap<>();
+        // Insertion order is kept so the events come back in the query's event time order.
+        Map<Long, Event> eventMap = new LinkedHashMap<>();
 
         // declare some of the variables we'll need to construct events.
         long eventId;
@@ -554,45 +1313,28 @@ public class EventService {
         boolean archive, delete, grouped;
         Long labelId;
 
-        // Information that may be used to help reduce the size of subqueries.
-        Integer filterStartIndex = null;
-        EventFilter subqueryFilter = null;
-
         try {
-            conn = SqlUtil.getConnection();
+            conn = SqlUtil.getReadOnlyConnection();
 
+            // The number of capture files is stored on the event, so filtering on it (or anything else) is a simple
+            // range scan of the event table instead of counting the capture table.
             String getEventSql = "SELECT event_id,event_time_utc,location,system_name,archive,to_be_deleted,grouped,classification," +
                     "label_id, model_name, label_time_utc, label_name, label_value, label_confidence"
-                    + " FROM (SELECT *, count(*) AS num_cf FROM event"
+                    + " FROM event"
                     + "   JOIN system_type USING(system_id)"
-                    + "   JOIN capture USING(event_id)";
-
-            // Unless we also filter this subquery we end up counting the entire waveform database.  Ends up being a major
-            // problem as the number of events grow.  Easiest to make another filter with some of the original filter parameters.
-            if (filter != null && (filter.getBegin() != null || filter.getEnd() != null || filter.getSystem() != null)) {
-                subqueryFilter = new EventFilter(null, filter.getBegin(), filter.getEnd(), filter.getSystem(), null, null, null, null, null);
-                getEventSql += subqueryFilter.getWhereClause();
-            }
-            getEventSql += "   GROUP BY event_id"
-                         + " ) AS t "
-                         + "   LEFT JOIN label USING(event_id)";
+                    + "   LEFT JOIN label USING(event_id)";
 
             if (filter != null) {
                 getEventSql += filter.getWhereClause();
             }
-            // Sorting on event_time_utc, label_name and model_name makes the query result repeatable.
-            getEventSql += " ORDER BY event_time_utc, label_name, model_name DESC";
+            // Sorting on event_time_utc, event_id, label_name and model_name makes the query result repeatable.
+            getEventSql += " ORDER BY event_time_utc, event_id, label_name, model_name DESC";
             if (limit != null) {
                 getEventSql += " LIMIT " + limit;
             }
             pstmt = conn.prepareStatement(getEventSql);
-
-            // First bind the subQueryFilter parameters if one was used.  Then bind the out filter.
-            if (subqueryFilter != null) {
-                filterStartIndex = subqueryFilter.assignParameterValues(pstmt, filterStartIndex);
-            }
             if (filter != null) {
-                filter.assignParameterValues(pstmt, filterStartIndex);
+                filter.assignParameterValues(pstmt, null);
             }
 
             rs = pstmt.executeQuery();
@@ -639,140 +1381,298 @@ public class EventService {
             pstmt.close();
 
             if (includeCaptureFiles) {
-                // For each event, go through the database and load up the capture file information.  We''ll come back and do a
-                // second pass to add the waveform data to the CaptureFiles.
-                String captureSql = "SELECT capture_id, filename, sample_start, sample_end, sample_step "
-                        + " FROM capture"
-                        + " WHERE event_id = ?";
-                pstmt = conn.prepareStatement(captureSql, Statement.RETURN_GENERATED_KEYS);
-                for (Event e : eventMap.values()) {
-                    pstmt.setLong(1, e.getEventId());
-                    rs = pstmt.executeQuery();
-                    long captureId;
-                    String filename;
-                    double sampleStart, sampleEnd, sampleStep;
-                    while (rs.next()) {
-                        captureId = rs.getLong("capture_id");
-                        filename = rs.getString("filename");
-                        sampleStart = rs.getDouble("sample_start");
-                        sampleEnd = rs.getDouble("sample_end");
-                        sampleStep = rs.getDouble("sample_step");
-                        e.addCaptureFile(new CaptureFile(captureId, filename, sampleStart, sampleEnd, sampleStep));
+                loadCaptureFiles(conn, eventMap);
+
+                // Now get the data if requested
+                if (includeData) {
+                    for (Event e : eventMap.values()) {
+                        e.loadWaveformDataFromDisk(seriesSet);
                     }
-                    rs.close();
                 }
-                pstmt.close();
+            }
+        } finally {
+            SqlUtil.close(pstmt, conn, rs);
+        }
 
-                // For each event, get the recently constructed CaptureFiles, then add waveforms without data to them.  We'll add data later if it was requested.
-                String waveformSql = "SELECT cwf_id, waveform_name FROM capture_wf WHERE capture_id = ?";
-                pstmt = conn.prepareStatement(waveformSql);
-                for (Event e : eventMap.values()) {
-                    String waveformName;
-                    Long cwfId;
-                    for (CaptureFile cf : e.getCaptureFileList()) {
-                        pstmt.setLong(1, cf.getCaptureId());
-                        rs = pstmt.executeQuery();
-                        while (rs.next()) {
-                            cwfId = rs.getLong("cwf_id");
-                            waveformName = rs.getString("waveform_name");
-                            e.addWaveform(cf.getFilename(), new Waveform(cwfId, waveformName));
-                        }
-                        rs.close();
+        // Convert this map to a list for external consumption.  We only needed to track them by ID when constructing
+        // events from the database
+        return new ArrayList<>(eventMap.values());
+    }
+
+    /**
+     * Stream one page of the events matching a filter, in order of event time
+     * and then event ID. Pages are found by keyset rather than offset: a page
+     * holds the first pageSize events that sort after the cursor, and the
+     * cursor of the last event handed out is passed back in to get the next
+     * page.
+     * <p>
+     * Without capture files each event is handed to the consumer as soon as its
+     * rows have been read from the ResultSet. The driver is asked to fetch
+     * STREAM_FETCH_SIZE rows at a time, but whether it does depends on the
+     * driver and connection URL (MySQL Connector/J needs useCursorFetch=true,
+     * otherwise it buffers the whole result). With capture files the page is
+     * collected first so that its capture files can be loaded in a few set
+     * based queries. Either way, memory use is bounded by the page size.
+     *
+     * @param filter              EventFilter for narrowing down which Events are returned.  Null for all events.
+     * @param after               The position of the last event already seen.  Null to start from the beginning.
+     * @param pageSize            The maximum number of events to hand out
+     * @param includeCaptureFiles Whether the events should include their capture file, waveform and series information
+     * @param consumer            Receives each event of the page in order
+     * @return The cursor for the next page, or null if this was the last page
+     * @throws SQLException If problems arise accessing the database
+     * @throws IOException  If the consumer fails
+     */
+    public EventCursor streamEventList(EventFilter filter, EventCursor after, int pageSize, boolean includeCaptureFiles,
+                                       EventConsumer consumer) throws SQLException, IOException {
+        if (pageSize < 1) {
+            throw new IllegalArgumentException("Page size must be at least one");
+        }
+
+        // The page is limited by event in the derived table, since the label join can return several rows per event.
+        // The keyset condition is written out rather than as a row comparison so MariaDB can range scan an index
+        // starting with event_time_utc.
+        String where = filter == null ? "" : filter.getWhereClause();
+        if (after != null) {
+            String keyset = "(event_time_utc > ? OR (event_time_utc = ? AND event_id > ?))";
+            where += where.isEmpty() ? " WHERE " + keyset : " AND " + keyset;
+        }
+        String sql = "SELECT event_id,event_time_utc,location,system_name,archive,to_be_deleted,grouped,classification,"
+                + "label_id, model_name, label_time_utc, label_name, label_value, label_confidence"
+                + " FROM (SELECT event_id,event_time_utc,location,system_name,archive,to_be_deleted,grouped,classification"
+                + "   FROM event"
+                + "   JOIN system_type USING(system_id)"
+                + where
+                + "   ORDER BY event_time_utc, event_id"
+                + "   LIMIT ?"
+                + " ) AS e"
+                + " LEFT JOIN label USING(event_id)"
+                + " ORDER BY event_time_utc, event_id, label_name, model_name DESC";
+
+        Connection conn = null;
+        PreparedStatement pstmt = null;
+        ResultSet rs = null;
+
+        Map<Long, Event> page = new LinkedHashMap<>();
+        Event current = null;
+        int count = 0;
+        try {
+            conn = SqlUtil.getReadOnlyConnection();
+            pstmt = conn.prepareStatement(sql);
+            pstmt.setFetchSize(STREAM_FETCH_SIZE);
+            int i = 1;
+            if (filter != null) {
+                i = filter.assignParameterValues(pstmt, i);
+            }
+            if (after != null) {
+                String afterTime = TimeUtil.getDateTimeString(after.getEventTime());
+                pstmt.setString(i++, afterTime);
+                pstmt.setString(i++, afterTime);
+                pstmt.setLong(i++, after.getEventId());
+            }
+            pstmt.setInt(i, pageSize);
+
+            rs = pstmt.executeQuery();
+            while (rs.next()) {
+                long eventId = rs.getLong("event_id");
+                Label label = getLabel(rs);
+                if (current != null && current.getEventId() == eventId) {
+                    if (label != null) {
+                        current.addLabel(label);
                     }
+                    continue;
                 }
-                pstmt.close();
 
-                // Load up the capture file metadata
-                String metaSql = "SELECT meta_id, meta_name, type, value, start, offset FROM capture_meta WHERE capture_id = ?";
-                pstmt = conn.prepareStatement(metaSql);
-                for (Event e : eventMap.values()) {
-                    Long metaId;
-                    String metaName;
-                    Object value;
-                    Double start, offset;
-                    MetadataType type;
-                    for (CaptureFile cf : e.getCaptureFileList()) {
-                        pstmt.setLong(1, cf.getCaptureId());
-                        rs = pstmt.executeQuery();
-                        while (rs.next()) {
-                            metaId = rs.getLong("meta_id");
-                            metaName = rs.getString("meta_name");
-                            type = MetadataType.valueOf(rs.getString("type").toUpperCase());
-                            switch (type) {
-                                case NUMBER:
-                                    value = Double.valueOf(rs.getString("value"));
-                                    break;
-                                case STRING:
-                                case UNAVAILABLE:
-                                case UNARCHIVED:
-                                    // Should be null
-                                    value = rs.getString("value");
-                                    break;
-                                default:
-                                    throw new SQLException("Error getting capture file metadata from database- unexpected MetadataType");
-                            }
-                            start = rs.getDouble("start");
-                            offset = rs.getDouble("offset");
-                            Metadata m = new Metadata(type, metaName, value, offset, start);
-                            m.setId(metaId);
-                            cf.addMetadata(m);
-                        }
-                    }
+                // A new event.  Rows are sorted by event, so the previous one is complete.
+                if (current != null && !includeCaptureFiles) {
+                    consumer.accept(current);
+                }
+                String location = rs.getString("location");
+                String system = rs.getString("system_name");
+                if (location == null || system == null) {
+                    // All of these should have NOT NULL constraints on them.  Verify that something hasn't gone wrong
+                    throw new SQLException("Error querying event information from database");
+                }
+                List<Label> labelList = null;
+                if (label != null) {
+                    labelList = new ArrayList<>();
+                    labelList.add(label);
                 }
+                current = new Event(eventId, TimeUtil.getInstantFromSQLDateTime(rs, "event_time_utc"), location, system,
+                        rs.getBoolean("archive"), rs.getBoolean("to_be_deleted"), rs.getBoolean("grouped"),
+                        rs.getString("classification"), labelList);
+                count++;
+                if (includeCaptureFiles) {
+                    page.put(eventId, current);
+                }
+            }
+            rs.close();
+            pstmt.close();
 
-                // Determine the rules for labeling waveform series (GMES vs DETA2, not Cav1, Cav2, ...)
-                String mapSql = "SELECT series_name, series_id, pattern, system_type.system_name, description, units, waveform_name, ymin, ymax "
-                        + " FROM capture_wf"
-                        + " JOIN series ON capture_wf.waveform_name LIKE series.pattern"
-                        + " JOIN system_type ON series.system_id = system_type.system_id"
-                        + " JOIN capture ON capture.capture_id = capture_wf.capture_id"
-                        + " WHERE event_id = ?"
-                        + " ORDER BY waveform_name";
-                pstmt = conn.prepareStatement(mapSql);
-                // Get the waveform data for each event's CaptureFile, then figure out the waveform to series mapping and apply it.
-                for (Event e : eventMap.values()) {
-                    // Get the mapping
-                    Map<String, List<Series>> waveformToSeries = new HashMap<>();
-                    pstmt.setLong(1, e.getEventId());
-                    rs = pstmt.executeQuery();
-                    while (rs.next()) {
-                        String waveformName = rs.getString("waveform_name");
-                        String seriesName = rs.getString("series_name");
-                        int seriesId = rs.getInt("series_id");
-                        String pattern = rs.getString("pattern");
-                        String systemName = rs.getString("system_name");
-                        String description = rs.getString("description");
-                        String units = rs.getString("units");
-                        Double yMin = rs.getDouble("ymin");
-                        yMin = rs.wasNull() ? null : yMin;
-                        Double yMax = rs.getDouble("ymax");
-                        yMax = rs.wasNull() ? null : yMax;
-                        if (waveformToSeries.get(waveformName) == null) {
-                            waveformToSeries.put(waveformName, new ArrayList<>());
-                        }
-                        waveformToSeries.get(waveformName).add(new Series(seriesName, seriesId, pattern, systemName, description, units, yMin, yMax));
-                    }
-                    rs.close();
+            if (includeCaptureFiles) {
+                loadCaptureFiles(conn, page);
+            }
+        } finally {
+            SqlUtil.close(rs, pstmt, conn);
+        }
+
+        if (includeCaptureFiles) {
+            for (Event e : page.values()) {
+                consumer.accept(e);
+            }
+        } else if (current != null) {
+            consumer.accept(current);
+        }
+
+        return (count == pageSize && current != null) ? EventCursor.of(current) : null;
+    }
+
+    /**
+     * Read the label columns of a row of the event and label LEFT JOIN.
+     *
+     * @return The label, or null if the row's event has no labels
+     */
+    private static Label getLabel(ResultSet rs) throws SQLException {
+        long labelId = rs.getLong("label_id");
+        if (rs.wasNull()) {
+            return null;
+        }
+        return new Label(labelId, TimeUtil.getInstantFromSQLDateTime(rs, "label_time_utc"), rs.getString("model_name"),
+                rs.getString("label_name"), rs.getString("label_value"), rs.getDouble("label_confidence"));
+    }
+
+    /**
+     * Load the capture files, waveforms, metadata, and series mappings of a
+     * group of events from the database. Each table is queried for many events
+     * at once (IN_CHUNK_SIZE event IDs per query) and the rows are matched up to
+     * their events in memory, so the number of queries does not grow with the
+     * number of events or capture files. Series are matched against the
+     * waveform names in memory using the cached patterns of each system.
+     *
+     * @param conn     The connection to use
+     * @param eventMap The events to load, keyed by event ID
+     * @throws SQLException If problems arise accessing the database
+     */
+    private void loadCaptureFiles(Connection conn, Map<Long, Event> eventMap) throws SQLException {
+        List<Long> eventIds = new ArrayList<>(eventMap.keySet());
+        Map<Long, CaptureFile> captureFiles = new HashMap<>();
+        Map<Long, Event> captureEvents = new HashMap<>();
 
-                    // Have the event apply the series mapping
-                    e.applySeriesMapping(waveformToSeries);
+        PreparedStatement pstmt = null;
+        ResultSet rs = null;
+        try {
+            for (int i = 0; i < eventIds.size(); i += IN_CHUNK_SIZE) {
+                List<Long> chunk = eventIds.subList(i, Math.min(i + IN_CHUNK_SIZE, eventIds.size()));
+                String inClause = getInClause(chunk.size());
+
+                // Capture files.  We'll come back and add the waveforms and metadata to them.
+                String captureSql = "SELECT event_id, capture_id, filename, sample_start, sample_end, sample_step"
+                        + " FROM capture"
+                        + " WHERE event_id IN " + inClause;
+                pstmt = conn.prepareStatement(captureSql);
+                setLongs(pstmt, chunk);
+                rs = pstmt.executeQuery();
+                while (rs.next()) {
+                    Event e = eventMap.get(rs.getLong("event_id"));
+                    long captureId = rs.getLong("capture_id");
+                    CaptureFile cf = new CaptureFile(captureId, rs.getString("filename"), rs.getDouble("sample_start"),
+                            rs.getDouble("sample_end"), rs.getDouble("sample_step"));
+                    e.addCaptureFile(cf);
+                    captureFiles.put(captureId, cf);
+                    captureEvents.put(captureId, e);
                 }
+                rs.close();
                 pstmt.close();
 
-                // Now get the data if requested
-                if (includeData) {
-                    for (Event e : eventMap.values()) {
-                        e.loadWaveformDataFromDisk();
+                // Waveforms without data.  We'll add data later if it was requested.
+                String waveformSql = "SELECT capture_id, cwf_id, waveform_name"
+                        + " FROM capture_wf"
+                        + " JOIN capture USING(capture_id)"
+                        + " WHERE event_id IN " + inClause;
+                pstmt = conn.prepareStatement(waveformSql);
+                setLongs(pstmt, chunk);
+                rs = pstmt.executeQuery();
+                while (rs.next()) {
+                    long captureId = rs.getLong("capture_id");
+                    captureEvents.get(captureId).addWaveform(captureFiles.get(captureId).getFilename(),
+                            new Waveform(rs.getLong("cwf_id"), rs.getString("waveform_name")));
+                }
+                rs.close();
+                pstmt.close();
+
+                // Capture file metadata
+                String metaSql = "SELECT capture_id, meta_id, meta_name, type, value, start, offset"
+                        + " FROM capture_meta"
+                        + " JOIN capture USING(capture_id)"
+                        + " WHERE event_id IN " + inClause
+                        + " ORDER BY capture_id, meta_id";
+                pstmt = conn.prepareStatement(metaSql);
+                setLongs(pstmt, chunk);
+                rs = pstmt.executeQuery();
+                while (rs.next()) {
+                    MetadataType type = MetadataType.valueOf(rs.getString("type").toUpperCase());
+                    Object value;
+                    switch (type) {
+                        case NUMBER:
+                            value = Double.valueOf(rs.getString("value"));
+                            break;
+                        case STRING:
+                        case UNAVAILABLE:
+                        case UNARCHIVED:
+                            // Should be null
+                            value = rs.getString("value");
+                            break;
+                        default:
+                            throw new SQLException("Error getting capture file metadata from database- unexpected MetadataType");
                     }
+                    Double start = rs.getDouble("start");
+                    Double offset = rs.getDouble("offset");
+                    Metadata m = new Metadata(type, rs.getString("meta_name"), value, offset, start);
+                    m.setId(rs.getLong("meta_id"));
+                    captureFiles.get(rs.getLong("capture_id")).addMetadata(m);
                 }
+                rs.close();
+                pstmt.close();
             }
         } finally {
-            SqlUtil.close(pstmt, conn, rs);
+            SqlUtil.close(rs, pstmt);
         }
 
-        // Convert this map to a list for external consumption.  We only needed to track them by ID when constructing
-        // events from the database
-        return new ArrayList<>(eventMap.values());
+        // Determine the rules for labeling waveform series (GMES vs DETA2, not Cav1, Cav2, ...).  The series patterns
+        // are compiled once per system and matched in memory.
+        SeriesService seriesService = new SeriesService();
+        Map<String, SeriesMatcher> matchers = new HashMap<>();
+        for (Event e : eventMap.values()) {
+            SeriesMatcher matcher = matchers.get(e.getSystem());
+            if (matcher == null) {
+                matcher = seriesService.getSeriesMatcher(e.getSystem());
+                matchers.put(e.getSystem(), matcher);
+            }
+            e.applySeriesMapping(matcher);
+        }
+    }
+
+    /**
+     * Get a parenthesized list of n bind parameters for use in an IN clause, e.g., "(?,?,?)".
+     *
+     * @param n The number of parameters
+     * @return The IN clause parameter list
+     */
+    private static String getInClause(int n) {
+        StringBuilder sb = new StringBuilder("(");
+        for (int i = 0; i < n; i++) {
+            sb.append(i == 0 ? "?" : ",?");
+        }
+        return sb.append(")").toString();
+    }
+
+    /**
+     * Bind a list of values to the first parameters of a statement.
+     */
+    private static void setLongs(PreparedStatement pstmt, List<Long> values) throws SQLException {
+        for (int i = 0; i < values.size(); i++) {
+            pstmt.setLong(i + 1, values.get(i));
+        }
     }
 
     /**
@@ -809,6 +1709,8 @@ public class EventService {
      * This method deletes an entry from the waveforms events table. By default
      * it only searches for events that have the to_be_deleted flag set, but
      * there is an optional force setting that just searches for the event_id.
+     * The event's binary cache files and archive index are removed along with
+     * it.  The data directory itself is left alone.
      *
      * @param eventId The ID of the event to be deleted
      * @param force   Delete the event even if the to_be_deleted flag is not set
@@ -819,6 +1721,17 @@ public class EventService {
         Connection conn = null;
         PreparedStatement pstmt = null;
 
+        // The capture file names are needed to find the cached files once the rows are gone
+        Event event = null;
+        try {
+            EventFilter filter = new EventFilter(Collections.singletonList(eventId), null, null, null, null, null, null,
+                    null, null);
+            List<Event> events = getEventList(filter, null, false, true);
+            event = events.isEmpty() ? null : events.get(0);
+        } catch (IOException ex) {
+            LOGGER.log(Level.WARNING, "Unable to look up cached files of event " + eventId, ex);
+        }
+
         int rowsAffected;
         String deleteSql = "DELETE FROM event WHERE to_be_deleted = 1 AND event_id = ?";
         if (force) {
@@ -834,6 +1747,14 @@ public class EventService {
             SqlUtil.close(pstmt, conn);
         }
 
+        if (rowsAffected > 0 && event != null) {
+            try {
+                event.deleteCachedFiles();
+            } catch (IOException | RuntimeException ex) {
+                LOGGER.log(Level.WARNING, "Unable to remove cached files of event " + eventId, ex);
+            }
+        }
+
         return rowsAffected;
     }
 
@@ -979,51 +1900,59 @@ public class EventService {
      * Query the database for the set of events matching the supplied filter tally the combinations of cavity and fault labels.
      * Return format is a Map keyed on location whose values are Maps keyed on label combinations (cavity,fault-type) whose values are
      * the of the occurrence.
+     * <p>
+     * The tally is done by the database.  Each event's label values are joined into a combo string with GROUP_CONCAT,
+     * ordered by label name in reverse (fault-type, then cavity), and the events are then counted per location and
+     * combo.  Events without labels have the combo "NULL".  Only the (location, combo, count) rows are returned, so the
+     * work done here depends on the number of combinations and not the number of events.
+     *
+     * @param eventFilter      The events to tally.  Any label filters it has are replaced by lfList and includeUnlabeled.
+     * @param lfList           Label filters the events must pass.  Null for none.
+     * @param includeUnlabeled Whether events without labels are included in addition to those passing lfList
+     * @return The count of each label combination by location
+     * @throws SQLException If problems arise accessing the database
      */
-    public Map<String, Map<String, Long>> getLabelTally(EventFilter eventFilter, List<LabelFilter> lfList, boolean includeUnlabeled) throws SQLException, IOException {
+    public Map<String, Map<String, Long>> getLabelTally(EventFilter eventFilter, List<LabelFilter> lfList, boolean includeUnlabeled) throws SQLException {
 
         // Keep this sorted so we have a predictable output ordering.  This is <location, <valueComboString, count>> where
         // value combo string is <fault_value>,<cavity_value>, ... if more label_names exist.
         Map<String, Map<String, Long>> out = new TreeMap<>();
 
-        // Only want to query the database once
-        List<Event> eventList = getEventList(eventFilter, null, false, false);
-        eventList = EventService.applyLabelFilters(eventList, lfList, includeUnlabeled);
-
-        // Now process the events and tally up the label combinations.  As of this writing, there was only RF-related cavity and fault-type
-        // label names, so sorting them puts them in the right order.
-        for (Event e : eventList) {
-            if (!out.containsKey(e.getLocation())) {
-                out.put(e.getLocation(), new TreeMap<>());
-            }
-
-            // Sort the label values by their label name using the TreeMap structure
-            SortedMap<String, String> names = new TreeMap<>(Collections.reverseOrder());
-
-            // If the event doesn't have any labels, give it a name/value pair of "NULL"/"NULL".  Not sure what else
-            // to put here since we can't use actual null key.
-            if (e.getLabelList() == null || e.getLabelList().isEmpty()) {
-                names.put("NULL", "NULL");
-            } else {
-                // Go through the event's labels add their name/value pairs to the tree
-                for (Label l : e.getLabelList()) {
-                    if (l == null) {
-                        continue;
-                    }
-                    names.put(l.getName(), l.getValue());
-                }
-            }
-
-            // Convert them into the CSV strings that make tallying simpler
-            List<String> nList = new ArrayList<>(names.values());  // This should add them in the order that we want (fault-type, cavity)
-            String comboString = String.join(",", nList);
+        if (eventFilter == null) {
+            eventFilter = new EventFilter(null, null, null, null, null, null, null, null, null);
+        }
+        EventFilter filter = eventFilter.withLabelFilters(lfList, includeUnlabeled);
+
+        // label_name is an ENUM, which would sort by its position in the definition.  Sort on the name itself to match the
+        // order used before.  A label with a NULL value shows up as "null".  Groups are compared as binary strings so that
+        // the case insensitive collation does not merge combos that differ only in case.
+        String sql = "SELECT location, label_combo, COUNT(*) AS num_events"
+                + " FROM (SELECT event_id, location,"
+                + "     IF(COUNT(label_id) = 0, 'NULL',"
+                + "       GROUP_CONCAT(IFNULL(label_value, 'null') ORDER BY CAST(label_name AS BINARY) DESC SEPARATOR ','))"
+                + "       AS label_combo"
+                + "   FROM event"
+                + "   JOIN system_type USING(system_id)"
+                + "   LEFT JOIN label USING(event_id)"
+                + filter.getWhereClause()
+                + "   GROUP BY event_id, location"
+                + " ) AS t"
+                + " GROUP BY BINARY location, BINARY label_combo";
 
-            // Tally the combo strings by location
-            if (out.get(e.getLocation()).containsKey(comboString)) {
-                out.get(e.getLocation()).put(comboString, out.get(e.getLocation()).get(comboString) + 1L);
-            } else {
-                out.get(e.getLocation()).put(comboString, 1L);
+        Connection conn = null;
+        PreparedStatement pstmt = null;
+        ResultSet rs = null;
+        try {
+            conn = SqlUtil.getReadOnlyConnection();
+            pstmt = conn.prepareStatement(sql);
+            filter.assignParameterValues(pstmt, null);
+            rs = pstmt.executeQuery();
+            while (rs.next()) {
+                out.computeIfAbsent(rs.getString("location"), k -> new TreeMap<>())
+                        .put(rs.getString("label_combo"), rs.getLong("num_events"));
             }
+        } finally {
+            SqlUtil.close(rs, pstmt, conn);
         }
 
         return out;
@@ -1045,7 +1974,7 @@ public class EventService {
      *                    LabelFilters are supplied
      * @return A JsonArray where each element is an object with location, label-combo, and count parameters
      */
-    public JsonArray getLabelTallyAsJson(EventFilter eventFilter, List<LabelFilter> lfList, boolean includeUnlabeled) throws SQLException, IOException {
+    public JsonArray getLabelTallyAsJson(EventFilter eventFilter, List<LabelFilter> lfList, boolean includeUnlabeled) throws SQLException {
         Map<String, Map<String, Long>> tallyMap = getLabelTally(eventFilter, lfList, includeUnlabeled);
 
         JsonArrayBuilder jab = Json.createArrayBuilder();
@@ -54,7 +54,7 @@ public class LabelService {
         ResultSet rs = null;
 
         try {
-            conn = SqlUtil.getConnection();
+            conn = SqlUtil.getReadOnlyConnection();
             pstmt = conn.prepareStatement(sql.toString());
             int i = 1;
             if (system != null) {
@@ -13,11 +13,15 @@ import java.sql.Statement;
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import org.jlab.wfbrowser.business.filter.SeriesFilter;
 import org.jlab.wfbrowser.business.filter.SeriesSetFilter;
+import org.jlab.wfbrowser.business.util.SeriesMatcher;
 import org.jlab.wfbrowser.business.util.SqlUtil;
 import org.jlab.wfbrowser.model.Series;
 import org.jlab.wfbrowser.model.SeriesSet;
@@ -30,7 +34,25 @@ public class SeriesService {
 
     private static final Logger LOGGER = Logger.getLogger(EventService.class.getName());
 
+    // Compiled series patterns by system name.  Cleared whenever a series changes.
+    private static final Map<String, SeriesMatcher> MATCHER_CACHE = new ConcurrentHashMap<>();
+    // Bumped on every change so that a matcher built from data read before the change is never cached
+    private static final AtomicLong matcherVersion = new AtomicLong(0);
+
     public List<Series> getSeries(SeriesFilter filter) throws SQLException {
+        return getSeries(filter, true);
+    }
+
+    /**
+     * Query the series table.
+     *
+     * @param filter The filter to apply
+     * @param readOnly Whether the read-only resource may be used.  It may lag behind writes, so anything cached until
+     *                 the next write has to read from the read-write one.
+     * @return The matching series
+     * @throws SQLException If problems arise while accessing the database
+     */
+    private List<Series> getSeries(SeriesFilter filter, boolean readOnly) throws SQLException {
         List<Series> seriesList = new ArrayList<>();
 
         String sql = "SELECT series_id, system_name, pattern, series_name, description, units, ymin, ymax"
@@ -45,7 +67,7 @@ public class SeriesService {
         ResultSet rs = null;
 
         try {
-            conn = SqlUtil.getConnection();
+            conn = readOnly ? SqlUtil.getReadOnlyConnection() : SqlUtil.getConnection();
             pstmt = conn.prepareStatement(sql);
             filter.assignParameterValues(pstmt);
             rs = pstmt.executeQuery();
@@ -73,6 +95,40 @@ public class SeriesService {
         return seriesList;
     }
 
+    /**
+     * Get the compiled patterns of a system's series for looking up which
+     * series a waveform belongs to. Matchers are cached per system until a
+     * series is added, updated or deleted.
+     *
+     * @param system The name of the system
+     * @return The matcher for the system's series
+     * @throws SQLException If problems arise while accessing the database
+     */
+    public SeriesMatcher getSeriesMatcher(String system) throws SQLException {
+        SeriesMatcher matcher = MATCHER_CACHE.get(system);
+        if (matcher == null) {
+            long version = matcherVersion.get();
+            matcher = new SeriesMatcher(getSeries(new SeriesFilter(null, system, null), false));
+            synchronized (MATCHER_CACHE) {
+                if (version == matcherVersion.get()) {
+                    MATCHER_CACHE.put(system, matcher);
+                }
+            }
+        }
+        return matcher;
+    }
+
+    /**
+     * Drop all of the cached series matchers. A series update can move it to
+     * another system, so the matchers of every system are dropped.
+     */
+    private static void invalidateSeriesMatchers() {
+        synchronized (MATCHER_CACHE) {
+            matcherVersion.incrementAndGet();
+            MATCHER_CACHE.clear();
+        }
+    }
+
     /**
      * Add a named series lookup pattern to the database
      *
@@ -127,6 +183,7 @@ public class SeriesService {
         } finally {
             SqlUtil.close(pstmt, conn);
         }
+        invalidateSeriesMatchers();
     }
 
     public void updateSeries(int seriesId, String name, String pattern, String description, String system, String units,
@@ -176,6 +233,7 @@ public class SeriesService {
         } finally {
             SqlUtil.close(pstmt, conn);
         }
+        invalidateSeriesMatchers();
     }
 
     public void updateSeriesSet(int setId, String name, Set<Series> set, String description, String system) throws SQLException {
@@ -273,6 +331,7 @@ public class SeriesService {
         } finally {
             SqlUtil.close(pstmt, conn);
         }
+        invalidateSeriesMatchers();
     }
 
     public void deleteSeriesSet(int setId) throws SQLException {
@@ -317,7 +376,7 @@ public class SeriesService {
 
         List<SeriesSet> ss = new ArrayList<>();
         try {
-            conn = SqlUtil.getConnection();
+            conn = SqlUtil.getReadOnlyConnection();
             pstmt = conn.prepareStatement(setSql);
             filter.assignParameterValues(pstmt);
             rs = pstmt.executeQuery();
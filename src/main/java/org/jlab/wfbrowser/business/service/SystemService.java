@@ -30,7 +30,7 @@ public class SystemService {
         int systemId = 0; // -1 shouldn't match any system ID in the database.
 
         try {
-            conn = SqlUtil.getConnection();
+            conn = SqlUtil.getReadOnlyConnection();
             pstmt = conn.prepareStatement(systemSql);
             pstmt.setString(1, systemName);
             rs = pstmt.executeQuery();
@@ -0,0 +1,682 @@
+package org.jlab.wfbrowser.business.util;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
+
+/**
+ * A seekable index of a .tar.gz event archive. A gzip stream can normally only
+ * be read from the beginning, so reading one capture file out of an archive
+ * means decompressing every file stored ahead of it. The index records each
+ * tar entry's name, size and offset in the uncompressed stream along with a
+ * checkpoint - the bit position of the DEFLATE block that contains the start
+ * of the entry and the 32 KB of output that preceded it. With that, any entry
+ * can be decompressed on its own, which also lets the entries of an archive be
+ * decompressed concurrently.
+ * <p>
+ * Indexes are saved as a small binary sidecar file so that they only have to
+ * be built once per archive. The sidecar (&lt;archive&gt;.idx) is written under
+ * the WFB_SIDECAR_DIR directory in the same layout as the archive has under
+ * WFB_DATA_DIR, so that nothing is written into the harvesters' data
+ * directory. It must be persistent storage for the sidecars to outlive a
+ * restart. Sidecars left next to their archives by older versions are ignored
+ * (see isSidecar). A sidecar is considered stale and is rebuilt if the
+ * archive's size or modification time no longer match the values recorded in
+ * it. If WFB_SIDECAR_DIR is not set or the sidecar cannot be written, the
+ * index is kept in a small in-memory cache instead.
+ * <p>
+ * The main method can be used to backfill sidecar files for existing archives.
+ *
+ * @author adamc
+ */
+public class ArchiveIndex {
+
+    private static final Logger LOGGER = Logger.getLogger(ArchiveIndex.class.getName());
+
+    private static final int MAGIC = 0x57464249; // "WFBI"
+    private static final int VERSION = 1;
+    private static final String SIDECAR_SUFFIX = ".idx";
+    private static final int MEMORY_CACHE_SIZE = 64;
+
+    // Indexes of archives whose sidecar could not be written.  Keeps us from rebuilding them on every request.
+    private static final Map<Path, ArchiveIndex> UNSAVED = Collections.synchronizedMap(
+            new LinkedHashMap<Path, ArchiveIndex>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Path, ArchiveIndex> eldest) {
+                    return size() > MEMORY_CACHE_SIZE;
+                }
+            });
+
+    private final long archiveSize;
+    private final long archiveModified;
+    private final List<Checkpoint> checkpoints;
+    private final List<Entry> entries;
+
+    /**
+     * A point in the compressed stream where decompression can be resumed.
+     */
+    private static class Checkpoint {
+        private final long outputOffset;
+        private final long bitPosition;
+        private final byte[] window;  // Deflater compressed
+
+        private Checkpoint(long outputOffset, long bitPosition, byte[] window) {
+            this.outputOffset = outputOffset;
+            this.bitPosition = bitPosition;
+            this.window = window;
+        }
+    }
+
+    /**
+     * A single entry in the tar archive.
+     */
+    public static class Entry {
+        private final String name;
+        private final boolean directory;
+        private final long size;
+        private final long dataOffset;
+        private final int checkpoint;
+
+        private Entry(String name, boolean directory, long size, long dataOffset, int checkpoint) {
+            this.name = name;
+            this.directory = directory;
+            this.size = size;
+            this.dataOffset = dataOffset;
+            this.checkpoint = checkpoint;
+        }
+
+        /**
+         * The name of the entry as it is stored in the tar archive, including any parent directory.
+         *
+         * @return The entry name
+         */
+        public String getName() {
+            return name;
+        }
+
+        public boolean isDirectory() {
+            return directory;
+        }
+
+        /**
+         * The uncompressed size of the entry's content
+         *
+         * @return The size in bytes
+         */
+        public long getSize() {
+            return size;
+        }
+
+        /**
+         * The offset of the entry's content in the uncompressed tar stream
+         *
+         * @return The offset in bytes
+         */
+        public long getDataOffset() {
+            return dataOffset;
+        }
+    }
+
+    private ArchiveIndex(long archiveSize, long archiveModified, List<Checkpoint> checkpoints, List<Entry> entries) {
+        this.archiveSize = archiveSize;
+        this.archiveModified = archiveModified;
+        this.checkpoints = checkpoints;
+        this.entries = entries;
+    }
+
+    /**
+     * Get the entries of the archive in the order they are stored.
+     *
+     * @return An unmodifiable list of the entries
+     */
+    public List<Entry> getEntries() {
+        return Collections.unmodifiableList(entries);
+    }
+
+    /**
+     * Does this index still describe the archive on disk.
+     *
+     * @param archive The archive the index was built from
+     * @return true if the archive's size and modification time match the index
+     * @throws IOException If the archive's attributes cannot be read
+     */
+    public boolean isCurrent(Path archive) throws IOException {
+        return Files.size(archive) == archiveSize && Files.getLastModifiedTime(archive).toMillis() == archiveModified;
+    }
+
+    /**
+     * Get the index for an archive. The sidecar file is used if it is current,
+     * otherwise the index is built by reading through the archive and a new
+     * sidecar is written.
+     *
+     * @param archive The .tar.gz archive
+     * @return The index of the archive
+     * @throws IOException If the archive cannot be indexed
+     */
+    public static ArchiveIndex get(Path archive) throws IOException {
+        Path sidecar = getSidecarPath(archive);
+        ArchiveIndex index = sidecar == null ? null : read(sidecar);
+        if (index != null && index.isCurrent(archive)) {
+            return index;
+        }
+        index = UNSAVED.get(archive);
+        if (index != null && index.isCurrent(archive)) {
+            return index;
+        }
+
+        index = build(archive);
+        if (sidecar == null) {
+            UNSAVED.put(archive, index);
+            return index;
+        }
+        try {
+            index.write(sidecar);
+            UNSAVED.remove(archive);
+        } catch (IOException ex) {
+            LOGGER.log(Level.WARNING, "Could not write archive index {0} - {1}", new Object[]{sidecar, ex.getMessage()});
+            UNSAVED.put(archive, index);
+        }
+        return index;
+    }
+
+    /**
+     * Determine where the sidecar file of an archive lives.
+     *
+     * @param archive The .tar.gz archive
+     * @return The path of the archive's sidecar index file, or null if WFB_SIDECAR_DIR is not set
+     */
+    public static Path getSidecarPath(Path archive) {
+        String sidecarDir = System.getenv("WFB_SIDECAR_DIR");
+        if (sidecarDir == null || sidecarDir.isEmpty()) {
+            return null;
+        }
+
+        Path absolute = archive.toAbsolutePath().normalize();
+        String dataDir = System.getenv("WFB_DATA_DIR");
+        Path dataPath = Paths.get(dataDir == null ? "/usr/opsdata/waveforms/data" : dataDir).toAbsolutePath().normalize();
+        Path relative;
+        if (absolute.startsWith(dataPath)) {
+            relative = dataPath.relativize(absolute);
+        } else {
+            relative = absolute.getRoot().relativize(absolute);
+        }
+        return Paths.get(sidecarDir).resolve(relative.toString() + SIDECAR_SUFFIX);
+    }
+
+    /**
+     * Is a file a sidecar index.  Used to keep sidecars that are in the data
+     * directory from being taken for capture files or events.
+     *
+     * @param name The name of the file
+     * @return true if the file is a sidecar
+     */
+    public static boolean isSidecar(String name) {
+        return name.endsWith(SIDECAR_SUFFIX);
+    }
+
+    /**
+     * Build an index by decompressing the entire archive. The gzip trailer's
+     * CRC and length are checked so that a truncated or corrupt archive is not
+     * indexed.
+     *
+     * @param archive The .tar.gz archive
+     * @return The index
+     * @throws IOException If the archive cannot be read or is not a single member gzip'ed tar file
+     */
+    public static ArchiveIndex build(Path archive) throws IOException {
+        long size = Files.size(archive);
+        long modified = Files.getLastModifiedTime(archive).toMillis();
+
+        List<Checkpoint> checkpoints = new ArrayList<>();
+        List<Entry> entries = new ArrayList<>();
+        try (InputStream is = new BufferedInputStream(Files.newInputStream(archive, StandardOpenOption.READ))) {
+            long headerBits = readGzipHeader(is) * 8L;
+            DeflateDecoder decoder = new DeflateDecoder(is);
+
+            // The tar stream reads past the header of an entry by less than a DEFLATE block, so only a few recent block
+            // starts need to be remembered to find the one that contains the start of the entry's content.
+            Deque<long[]> blockStarts = new ArrayDeque<>();
+            Deque<byte[]> windows = new ArrayDeque<>();
+            decoder.setBlockListener((outputOffset, bitPosition) -> {
+                blockStarts.addLast(new long[]{outputOffset, bitPosition});
+                windows.addLast(decoder.getWindow());
+                if (blockStarts.size() > 4) {
+                    blockStarts.removeFirst();
+                    windows.removeFirst();
+                }
+            });
+
+            CRC32 crc = new CRC32();
+            CountingInputStream counter = new CountingInputStream(new CheckedInputStream(decoder, crc));
+            TarArchiveInputStream ais = new TarArchiveInputStream(counter);
+            TarArchiveEntry entry;
+            while ((entry = ais.getNextTarEntry()) != null) {
+                if (!ais.canReadEntryData(entry)) {
+                    throw new IOException("Cannot read archive entry - " + entry.getName());
+                }
+                long dataOffset = counter.getBytesRead();
+
+                long[] start = null;
+                byte[] window = null;
+                Iterator<long[]> startIter = blockStarts.descendingIterator();
+                Iterator<byte[]> windowIter = windows.descendingIterator();
+                while (startIter.hasNext()) {
+                    long[] candidate = startIter.next();
+                    byte[] candidateWindow = windowIter.next();
+                    if (candidate[0] <= dataOffset) {
+                        start = candidate;
+                        window = candidateWindow;
+                        break;
+                    }
+                }
+                if (start == null) {
+                    throw new IOException("No DEFLATE block start found for archive entry - " + entry.getName());
+                }
+
+                int cp = checkpoints.size() - 1;
+                if (cp < 0 || checkpoints.get(cp).outputOffset != start[0]) {
+                    checkpoints.add(new Checkpoint(start[0], headerBits + start[1], compress(window)));
+                    cp++;
+                }
+                entries.add(new Entry(entry.getName(), entry.isDirectory(), entry.isDirectory() ? 0 : entry.getSize(),
+                        dataOffset, cp));
+            }
+
+            // Read out the end of the tar file and check the gzip trailer
+            byte[] scratch = new byte[8192];
+            while (counter.read(scratch) >= 0) {
+                // Nothing to do but drain the stream
+            }
+            if (!decoder.isFinished()) {
+                throw new EOFException("Archive ended before the end of the compressed stream");
+            }
+            long expectedCrc = decoder.readAlignedInt();
+            long expectedSize = decoder.readAlignedInt();
+            if (expectedCrc != crc.getValue() || expectedSize != (decoder.getTotalOut() & 0xFFFFFFFFL)) {
+                throw new ZipException("Archive failed gzip CRC or length check");
+            }
+        }
+
+        return new ArchiveIndex(size, modified, checkpoints, entries);
+    }
+
+    /**
+     * Read an index from a sidecar file.
+     *
+     * @param sidecar The sidecar file
+     * @return The index or null if the file does not exist or is not a valid index
+     */
+    public static ArchiveIndex read(Path sidecar) {
+        if (!Files.isRegularFile(sidecar)) {
+            return null;
+        }
+        try (DataInputStream dis = new DataInputStream(new BufferedInputStream(Files.newInputStream(sidecar)))) {
+            if (dis.readInt() != MAGIC || dis.readInt() != VERSION) {
+                LOGGER.log(Level.WARNING, "Ignoring archive index with unknown format - {0}", sidecar);
+                return null;
+            }
+            long size = dis.readLong();
+            long modified = dis.readLong();
+
+            int numCheckpoints = dis.readInt();
+            List<Checkpoint> checkpoints = new ArrayList<>(numCheckpoints);
+            for (int i = 0; i < numCheckpoints; i++) {
+                long outputOffset = dis.readLong();
+                long bitPosition = dis.readLong();
+                byte[] window = new byte[dis.readInt()];
+                dis.readFully(window);
+                checkpoints.add(new Checkpoint(outputOffset, bitPosition, window));
+            }
+
+            int numEntries = dis.readInt();
+            List<Entry> entries = new ArrayList<>(numEntries);
+            for (int i = 0; i < numEntries; i++) {
+                String name = dis.readUTF();
+                boolean directory = dis.readBoolean();
+                long entrySize = dis.readLong();
+                long dataOffset = dis.readLong();
+                int checkpoint = dis.readInt();
+                if (checkpoint < 0 || checkpoint >= numCheckpoints) {
+                    throw new IOException("Invalid checkpoint reference");
+                }
+                entries.add(new Entry(name, directory, entrySize, dataOffset, checkpoint));
+            }
+            return new ArchiveIndex(size, modified, checkpoints, entries);
+        } catch (IOException ex) {
+            LOGGER.log(Level.WARNING, "Ignoring unreadable archive index {0} - {1}", new Object[]{sidecar, ex.getMessage()});
+            return null;
+        }
+    }
+
+    /**
+     * Save the index to a sidecar file. The file is written to a temporary
+     * file and moved into place so that readers never see a partial index.
+     *
+     * @param sidecar The sidecar file
+     * @throws IOException If the file cannot be written
+     */
+    public void write(Path sidecar) throws IOException {
+        Path dir = sidecar.toAbsolutePath().getParent();
+        Files.createDirectories(dir);
+        // Not Files.createTempFile since that makes the file readable only by its owner
+        Path tmp = dir.resolve(sidecar.getFileName() + "." + UUID.randomUUID() + ".tmp");
+        try {
+            try (DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(
+                    Files.newOutputStream(tmp, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)))) {
+                dos.writeInt(MAGIC);
+                dos.writeInt(VERSION);
+                dos.writeLong(archiveSize);
+                dos.writeLong(archiveModified);
+                dos.writeInt(checkpoints.size());
+                for (Checkpoint cp : checkpoints) {
+                    dos.writeLong(cp.outputOffset);
+                    dos.writeLong(cp.bitPosition);
+                    dos.writeInt(cp.window.length);
+                    dos.write(cp.window);
+                }
+                dos.writeInt(entries.size());
+                for (Entry e : entries) {
+                    dos.writeUTF(e.name);
+                    dos.writeBoolean(e.directory);
+                    dos.writeLong(e.size);
+                    dos.writeLong(e.dataOffset);
+                    dos.writeInt(e.checkpoint);
+                }
+            }
+            try {
+                Files.move(tmp, sidecar, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException ex) {
+                Files.move(tmp, sidecar, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    /**
+     * Open the content of a single entry. Decompression starts at the entry's
+     * checkpoint, so only the DEFLATE block holding the start of the entry has
+     * to be decompressed and thrown away. Each call opens its own file handle,
+     * so separate entries can be read concurrently.
+     *
+     * @param archive The archive this index was built from
+     * @param entry   One of this index's entries
+     * @return A stream of the entry's content. The caller must close it.
+     * @throws IOException If the archive cannot be read
+     */
+    public InputStream openEntry(Path archive, Entry entry) throws IOException {
+        Checkpoint cp = checkpoints.get(entry.checkpoint);
+        FileChannel channel = FileChannel.open(archive, StandardOpenOption.READ);
+        try {
+            channel.position(cp.bitPosition / 8);
+            DeflateDecoder decoder = new DeflateDecoder(Channels.newInputStream(channel), cp.bitPosition, decompress(cp.window));
+            long toSkip = entry.dataOffset - cp.outputOffset;
+            if (decoder.skip(toSkip) != toSkip) {
+                throw new EOFException("Archive ended before entry " + entry.name);
+            }
+            return new EntryInputStream(decoder, entry.size);
+        } catch (IOException | RuntimeException ex) {
+            channel.close();
+            throw ex;
+        }
+    }
+
+    private static byte[] compress(byte[] data) {
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            deflater.setInput(data);
+            deflater.finish();
+            ByteArrayOutputStream baos = new ByteArrayOutputStream(data.length / 2 + 64);
+            byte[] buf = new byte[8192];
+            while (!deflater.finished()) {
+                int n = deflater.deflate(buf);
+                baos.write(buf, 0, n);
+            }
+            return baos.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static byte[] decompress(byte[] data) throws IOException {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(data);
+            ByteArrayOutputStream baos = new ByteArrayOutputStream(DeflateDecoder.WINDOW_SIZE);
+            byte[] buf = new byte[8192];
+            while (!inflater.finished()) {
+                int n = inflater.inflate(buf);
+                if (n == 0 && !inflater.finished() && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new EOFException("Truncated archive index window");
+                }
+                baos.write(buf, 0, n);
+            }
+            return baos.toByteArray();
+        } catch (DataFormatException ex) {
+            throw new IOException("Corrupt archive index window", ex);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    /**
+     * Read past a gzip member header.
+     *
+     * @param is The stream positioned at the start of the gzip file
+     * @return The length of the header in bytes
+     * @throws IOException If the header is not valid
+     */
+    private static int readGzipHeader(InputStream is) throws IOException {
+        DataInputStream dis = new DataInputStream(is);
+        if (dis.readUnsignedByte() != 0x1f || dis.readUnsignedByte() != 0x8b || dis.readUnsignedByte() != 8) {
+            throw new ZipException("Not a gzip file");
+        }
+        int flags = dis.readUnsignedByte();
+        dis.skipBytes(6);  // MTIME, XFL, OS
+        int length = 10;
+        if ((flags & 0x04) != 0) {  // FEXTRA
+            int xlen = dis.readUnsignedByte() | (dis.readUnsignedByte() << 8);
+            dis.readFully(new byte[xlen]);
+            length += 2 + xlen;
+        }
+        if ((flags & 0x08) != 0) {  // FNAME
+            while (dis.readUnsignedByte() != 0) {
+                length++;
+            }
+            length++;
+        }
+        if ((flags & 0x10) != 0) {  // FCOMMENT
+            while (dis.readUnsignedByte() != 0) {
+                length++;
+            }
+            length++;
+        }
+        if ((flags & 0x02) != 0) {  // FHCRC
+            dis.readUnsignedShort();
+            length += 2;
+        }
+        return length;
+    }
+
+    /**
+     * Counts the bytes read through it. Skips are done by reading so that they
+     * are counted too.
+     */
+    private static class CountingInputStream extends FilterInputStream {
+        private long bytesRead = 0;
+
+        private CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        private long getBytesRead() {
+            return bytesRead;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = in.read();
+            if (b >= 0) {
+                bytesRead++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = in.read(b, off, len);
+            if (n > 0) {
+                bytesRead += n;
+            }
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            byte[] scratch = new byte[(int) Math.min(Math.max(n, 1), 8192)];
+            long skipped = 0;
+            while (skipped < n) {
+                int r = read(scratch, 0, (int) Math.min(n - skipped, scratch.length));
+                if (r < 0) {
+                    break;
+                }
+                skipped += r;
+            }
+            return skipped;
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+    }
+
+    /**
+     * Limits reads to the content of a single entry and closes the archive when done.
+     */
+    private static class EntryInputStream extends FilterInputStream {
+        private long remaining;
+
+        private EntryInputStream(InputStream in, long size) {
+            super(in);
+            this.remaining = size;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] b = new byte[1];
+            return read(b, 0, 1) < 0 ? -1 : b[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            int n = in.read(b, off, (int) Math.min(len, remaining));
+            if (n < 0) {
+                throw new EOFException("Archive ended before the end of the entry");
+            }
+            remaining -= n;
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = in.skip(Math.min(n, remaining));
+            remaining -= skipped;
+            return skipped;
+        }
+
+        @Override
+        public int available() {
+            return 0;
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+    }
+
+    /**
+     * Build sidecar indexes for every .tar.gz archive under a directory that
+     * does not already have a current one.
+     *
+     * @param args Optional directory to search.  Defaults to WFB_DATA_DIR.
+     * @throws IOException If the directory cannot be walked
+     */
+    public static void main(String[] args) throws IOException {
+        String dir = args.length > 0 ? args[0] : System.getenv("WFB_DATA_DIR");
+        if (dir == null) {
+            System.err.println("Usage: ArchiveIndex <data directory>  (or set WFB_DATA_DIR)");
+            System.exit(1);
+        }
+        if (getSidecarPath(Paths.get(dir)) == null) {
+            System.err.println("WFB_SIDECAR_DIR must be set to the directory to write the index files to");
+            System.exit(1);
+        }
+
+        List<Path> archives;
+        try (Stream<Path> paths = Files.walk(Paths.get(dir))) {
+            archives = paths.filter(p -> p.toString().endsWith(".tar.gz") && Files.isRegularFile(p))
+                    .sorted().collect(Collectors.toList());
+        }
+
+        int built = 0;
+        int current = 0;
+        int failed = 0;
+        for (Path archive : archives) {
+            Path sidecar = getSidecarPath(archive);
+            ArchiveIndex index = read(sidecar);
+            if (index != null && index.isCurrent(archive)) {
+                current++;
+                continue;
+            }
+            try {
+                build(archive).write(sidecar);
+                built++;
+            } catch (IOException ex) {
+                failed++;
+                System.err.println("Could not index " + archive + " - " + ex.getMessage());
+            }
+        }
+        System.out.println("Archives: " + archives.size() + ", indexed: " + built + ", already current: " + current
+                + ", failed: " + failed);
+    }
+}
@@ -0,0 +1,86 @@
+package org.jlab.wfbrowser.business.util;
+
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.json.Json;
+import javax.json.JsonObject;
+
+/**
+ * Application wide pool of byte arrays used to hand decompressed capture files
+ * from the thread that inflates an archive to the threads that parse them.
+ * Capture files are typically a megabyte or more, so reusing the arrays saves
+ * a lot of allocation and garbage collection when events are loaded over and
+ * over. The pool holds on to at most MAX_POOLED_BYTES of idle buffers.
+ *
+ * @author adamc
+ */
+public class BufferPool {
+
+    private static final long MAX_POOLED_BYTES = 64L * 1024 * 1024;
+    private static final int MIN_BUFFER_SIZE = 64 * 1024;
+
+    private static final ConcurrentLinkedDeque<byte[]> POOL = new ConcurrentLinkedDeque<>();
+    private static final AtomicLong pooledBytes = new AtomicLong(0);
+
+    // Metrics
+    private static final AtomicLong hitCount = new AtomicLong(0);
+    private static final AtomicLong missCount = new AtomicLong(0);
+    private static final AtomicLong discardCount = new AtomicLong(0);
+
+    private BufferPool() {
+        // private so no instances can be made
+    }
+
+    /**
+     * Get a buffer of at least the requested size. A pooled buffer is used if
+     * one is big enough, otherwise a new one is allocated.
+     *
+     * @param minSize The minimum size of the buffer
+     * @return A buffer that should be handed back with release when it is no longer used
+     */
+    public static byte[] acquire(int minSize) {
+        Iterator<byte[]> iter = POOL.iterator();
+        while (iter.hasNext()) {
+            byte[] buffer = iter.next();
+            if (buffer.length >= minSize && POOL.removeFirstOccurrence(buffer)) {
+                pooledBytes.addAndGet(-buffer.length);
+                hitCount.incrementAndGet();
+                return buffer;
+            }
+        }
+        missCount.incrementAndGet();
+        return new byte[Math.max(minSize, MIN_BUFFER_SIZE)];
+    }
+
+    /**
+     * Return a buffer to the pool. The buffer is dropped if the pool is full.
+     * The caller must not use the buffer afterwards.
+     *
+     * @param buffer The buffer
+     */
+    public static void release(byte[] buffer) {
+        if (pooledBytes.addAndGet(buffer.length) > MAX_POOLED_BYTES) {
+            pooledBytes.addAndGet(-buffer.length);
+            discardCount.incrementAndGet();
+            return;
+        }
+        POOL.addFirst(buffer);
+    }
+
+    /**
+     * Get a JSON representation of the pool's metrics.
+     *
+     * @return A JSON object of the pool's counters
+     */
+    public static JsonObject getMetricsAsJson() {
+        return Json.createObjectBuilder()
+                .add("pooledBuffers", POOL.size())
+                .add("pooledBytes", pooledBytes.get())
+                .add("maxPooledBytes", MAX_POOLED_BYTES)
+                .add("hits", hitCount.get())
+                .add("misses", missCount.get())
+                .add("discards", discardCount.get())
+                .build();
+    }
+}
@@ -0,0 +1,211 @@
+package org.jlab.wfbrowser.business.util;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Shares a single read-only database connection, and the statements prepared on it, between all of the queries made
+ * by one thread while the scope is open.  The servlet filter opens a scope around every request so that a page that
+ * runs a handful of queries checks out one connection from the pool instead of one per query, and a query that runs
+ * more than once in a request is only prepared once.
+ * <p>
+ * Callers keep using the usual get/prepare/SqlUtil.close pattern.  The Connection they get is a handle that leaves
+ * the real connection open when closed, and the PreparedStatements prepared through it are handles that return the
+ * real statement to the scope's cache when closed.  Everything is closed for real when the scope ends.
+ * <p>
+ * Only read-only connections are shared.  Writes manage their own transactions and keep using their own connection.
+ *
+ * @author adamc
+ */
+class ConnectionScope {
+
+    private static final Logger LOGGER = Logger.getLogger(ConnectionScope.class.getName());
+
+    // Statements are cached by SQL text.  Queries with IN lists vary in text, so cap how many one request may keep.
+    private static final int MAX_CACHED_STATEMENTS = 64;
+
+    private final Map<String, CachedStatement> statements = new HashMap<>();
+    private Connection connection = null;
+    private int checkouts = 0;
+    private int prepares = 0;
+
+    /**
+     * A statement in the cache.  It is in use from the time a handle to it is given out until that handle is closed.
+     * A statement that is in use is not given out again, so a query made while the same query's results are still
+     * open gets its own statement.
+     */
+    private static class CachedStatement {
+        private final PreparedStatement statement;
+        private boolean inUse = false;
+
+        private CachedStatement(PreparedStatement statement) {
+            this.statement = statement;
+        }
+    }
+
+    /**
+     * Get a handle to the scope's connection, checking one out of the pool the first time.
+     *
+     * @return A connection handle whose close() leaves the connection open
+     * @throws SQLException If a connection could not be obtained
+     */
+    Connection getConnection() throws SQLException {
+        if (connection == null) {
+            connection = SqlUtil.getPooledReadOnlyConnection();
+            checkouts++;
+        }
+        return (Connection) Proxy.newProxyInstance(ConnectionScope.class.getClassLoader(),
+                new Class<?>[]{Connection.class}, new ConnectionHandle(connection));
+    }
+
+    /**
+     * @return The number of connections checked out of the pool by this scope
+     */
+    int getCheckoutCount() {
+        return checkouts;
+    }
+
+    /**
+     * @return The number of statements actually prepared on the connection by this scope
+     */
+    int getPrepareCount() {
+        return prepares;
+    }
+
+    /**
+     * Close every cached statement and return the connection to the pool.
+     */
+    void close() {
+        for (CachedStatement cs : statements.values()) {
+            SqlUtil.close(cs.statement);
+        }
+        statements.clear();
+        SqlUtil.close(connection);
+        connection = null;
+    }
+
+    private PreparedStatement prepare(String sql) throws SQLException {
+        CachedStatement cs = statements.get(sql);
+        if (cs == null || cs.inUse) {
+            PreparedStatement statement = connection.prepareStatement(sql);
+            prepares++;
+            if (cs != null || statements.size() >= MAX_CACHED_STATEMENTS) {
+                // Not cached, so the caller closes it as usual
+                return statement;
+            }
+            cs = new CachedStatement(statement);
+            statements.put(sql, cs);
+        }
+        cs.inUse = true;
+        return (PreparedStatement) Proxy.newProxyInstance(ConnectionScope.class.getClassLoader(),
+                new Class<?>[]{PreparedStatement.class}, new StatementHandle(cs));
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException ex) {
+            throw ex.getCause();
+        }
+    }
+
+    /**
+     * Forwards everything to the shared connection apart from close() and the plain prepareStatement(String).
+     */
+    private class ConnectionHandle implements InvocationHandler {
+        private final Connection target;
+        private boolean closed = false;
+
+        private ConnectionHandle(Connection target) {
+            this.target = target;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (!closed) {
+                        closed = true;
+                        // Don't let a caller's transaction leak into the next query of the request
+                        if (!target.getAutoCommit()) {
+                            try {
+                                target.rollback();
+                            } finally {
+                                target.setAutoCommit(true);
+                            }
+                        }
+                    }
+                    return null;
+                case "isClosed":
+                    return closed || target.isClosed();
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "ConnectionScope handle for " + target;
+                default:
+                    break;
+            }
+            if (closed) {
+                throw new SQLException("Connection is closed");
+            }
+            if (method.getName().equals("prepareStatement") && args != null && args.length == 1) {
+                return prepare((String) args[0]);
+            }
+            return ConnectionScope.invoke(target, method, args);
+        }
+    }
+
+    /**
+     * Forwards everything to a cached statement.  Closing the handle returns the statement to the cache.
+     */
+    private static class StatementHandle implements InvocationHandler {
+        private final CachedStatement cs;
+        private boolean closed = false;
+
+        private StatementHandle(CachedStatement cs) {
+            this.cs = cs;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (!closed) {
+                        closed = true;
+                        cs.inUse = false;
+                        try {
+                            cs.statement.clearParameters();
+                        } catch (SQLException ex) {
+                            LOGGER.log(Level.WARNING, "Unable to clear parameters of cached statement", ex);
+                        }
+                    }
+                    return null;
+                case "isClosed":
+                    return closed || cs.statement.isClosed();
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "ConnectionScope handle for " + cs.statement;
+                default:
+                    break;
+            }
+            if (closed) {
+                throw new SQLException("Statement is closed");
+            }
+            return ConnectionScope.invoke(cs.statement, method, args);
+        }
+    }
+}
@@ -0,0 +1,519 @@
+package org.jlab.wfbrowser.business.util;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.zip.ZipException;
+
+/**
+ * A raw DEFLATE (RFC 1951) decoder that knows exactly where it is in the
+ * compressed stream. java.util.zip.Inflater is much faster, but it consumes its
+ * input greedily and cannot report or resume from the bit position of a block
+ * boundary. This class is used to build and use the checkpoints of an
+ * ArchiveIndex - it reports the bit position and output offset at the start of
+ * every block, and can start decoding at one of those bit positions when given
+ * the 32 KB of output that preceded it.
+ *
+ * @author adamc
+ */
+public class DeflateDecoder extends InputStream {
+
+    public static final int WINDOW_SIZE = 32768;
+    private static final int WINDOW_MASK = WINDOW_SIZE - 1;
+
+    private static final int[] LENGTH_BASE = {3, 4, 5, 6, 7, 8, 9, 10, 11, 13, 15, 17, 19, 23, 27, 31, 35, 43, 51, 59,
+            67, 83, 99, 115, 131, 163, 195, 227, 258};
+    private static final int[] LENGTH_EXTRA = {0, 0, 0, 0, 0, 0, 0, 0, 1, 1, 1, 1, 2, 2, 2, 2, 3, 3, 3, 3, 4, 4, 4, 4,
+            5, 5, 5, 5, 0};
+    private static final int[] DIST_BASE = {1, 2, 3, 4, 5, 7, 9, 13, 17, 25, 33, 49, 65, 97, 129, 193, 257, 385, 513,
+            769, 1025, 1537, 2049, 3073, 4097, 6145, 8193, 12289, 16385, 24577};
+    private static final int[] DIST_EXTRA = {0, 0, 0, 0, 1, 1, 2, 2, 3, 3, 4, 4, 5, 5, 6, 6, 7, 7, 8, 8, 9, 9, 10, 10,
+            11, 11, 12, 12, 13, 13};
+    private static final int[] CODE_LENGTH_ORDER = {16, 17, 18, 0, 8, 7, 9, 6, 10, 5, 11, 4, 12, 3, 13, 2, 14, 1, 15};
+
+    private static final Huffman FIXED_LITERALS;
+    private static final Huffman FIXED_DISTANCES;
+
+    static {
+        byte[] lengths = new byte[288];
+        for (int i = 0; i < 288; i++) {
+            lengths[i] = (byte) (i < 144 ? 8 : i < 256 ? 9 : i < 280 ? 7 : 8);
+        }
+        byte[] distLengths = new byte[30];
+        Arrays.fill(distLengths, (byte) 5);
+        try {
+            FIXED_LITERALS = new Huffman(lengths, 288);
+            FIXED_DISTANCES = new Huffman(distLengths, 30);
+        } catch (ZipException ex) {
+            throw new ExceptionInInitializerError(ex);
+        }
+    }
+
+    /**
+     * Notified at the start of every block, before its header is read.
+     */
+    public interface BlockListener {
+        /**
+         * @param outputOffset The number of bytes output by the decoder so far
+         * @param bitPosition  The bit position of the block in the underlying stream
+         */
+        void blockStart(long outputOffset, long bitPosition);
+    }
+
+    private enum State {HEADER, STORED, HUFFMAN, DONE}
+
+    private final InputStream in;
+    private final byte[] inBuf = new byte[65536];
+    private int inPos = 0;
+    private int inLimit = 0;
+    private boolean inEof = false;
+
+    private long bitBuffer = 0;
+    private int bitCount = 0;
+    private long bitPosition;
+
+    private final byte[] window = new byte[WINDOW_SIZE];
+    private int windowPos = 0;
+    private long history;
+    private long totalOut = 0;
+
+    private State state = State.HEADER;
+    private boolean lastBlock = false;
+    private int storedRemaining = 0;
+    private Huffman literals;
+    private Huffman distances;
+    private int copyRemaining = 0;
+    private int copyDistance = 0;
+
+    private int skipBitsOnStart;
+    private BlockListener listener = null;
+
+    /**
+     * Create a decoder for a DEFLATE stream that starts at the current position
+     * of in.
+     *
+     * @param in The compressed data
+     */
+    public DeflateDecoder(InputStream in) {
+        this(in, 0, null);
+    }
+
+    /**
+     * Create a decoder that starts at a block boundary in the middle of a
+     * DEFLATE stream.
+     *
+     * @param in          The compressed data, positioned at the byte containing bitPosition
+     * @param bitPosition The bit position of the block.  Only bitPosition % 8 is used to position within the first
+     *                    byte, but bit positions reported by the decoder are relative to this value.
+     * @param dictionary  The (up to) 32 KB of output preceding the block.  May be null at the start of a stream.
+     */
+    public DeflateDecoder(InputStream in, long bitPosition, byte[] dictionary) {
+        this.in = in;
+        this.bitPosition = bitPosition - (bitPosition % 8);
+        this.skipBitsOnStart = (int) (bitPosition % 8);
+        if (dictionary != null) {
+            int len = Math.min(dictionary.length, WINDOW_SIZE);
+            System.arraycopy(dictionary, dictionary.length - len, window, 0, len);
+            windowPos = len & WINDOW_MASK;
+            history = len;
+        }
+    }
+
+    public void setBlockListener(BlockListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * The number of bytes of output produced so far.
+     *
+     * @return The output offset
+     */
+    public long getTotalOut() {
+        return totalOut;
+    }
+
+    /**
+     * The position of the next unread bit of the underlying stream.
+     *
+     * @return The bit position
+     */
+    public long getBitPosition() {
+        return bitPosition;
+    }
+
+    /**
+     * Has the final block of the stream been decoded.
+     *
+     * @return true if the end of the DEFLATE stream has been reached
+     */
+    public boolean isFinished() {
+        return state == State.DONE;
+    }
+
+    /**
+     * Copy out the last (up to) 32 KB of output, oldest first. This is the
+     * dictionary needed to resume decoding at the current position.
+     *
+     * @return The window
+     */
+    public byte[] getWindow() {
+        int len = (int) Math.min(history, WINDOW_SIZE);
+        byte[] out = new byte[len];
+        int start = (windowPos - len) & WINDOW_MASK;
+        int first = Math.min(len, WINDOW_SIZE - start);
+        System.arraycopy(window, start, out, 0, first);
+        System.arraycopy(window, 0, out, first, len - first);
+        return out;
+    }
+
+    /**
+     * Read a little endian 32 bit integer that starts on the next byte boundary.
+     * Used for reading the trailer that follows the DEFLATE stream (e.g., gzip
+     * CRC32 and size) once decoding has finished.
+     *
+     * @return The unsigned value
+     * @throws IOException If the stream ends early
+     */
+    public long readAlignedInt() throws IOException {
+        alignToByte();
+        return getBits(32);
+    }
+
+    @Override
+    public int read() throws IOException {
+        byte[] b = new byte[1];
+        int n = read(b, 0, 1);
+        return n < 0 ? -1 : b[0] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        int produced = 0;
+        while (produced < len) {
+            switch (state) {
+                case DONE:
+                    return produced == 0 ? -1 : produced;
+                case HEADER:
+                    if (lastBlock) {
+                        state = State.DONE;
+                    } else {
+                        readBlockHeader();
+                    }
+                    break;
+                case STORED:
+                    produced += readStored(b, off + produced, len - produced);
+                    break;
+                case HUFFMAN:
+                    produced += readHuffman(b, off + produced, len - produced);
+                    break;
+            }
+        }
+        return produced;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        byte[] scratch = new byte[(int) Math.min(n, 8192)];
+        long skipped = 0;
+        while (skipped < n) {
+            int r = read(scratch, 0, (int) Math.min(n - skipped, scratch.length));
+            if (r < 0) {
+                break;
+            }
+            skipped += r;
+        }
+        return skipped;
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    private void readBlockHeader() throws IOException {
+        if (skipBitsOnStart > 0) {
+            getBits(skipBitsOnStart);
+            skipBitsOnStart = 0;
+        }
+        if (listener != null) {
+            listener.blockStart(totalOut, bitPosition);
+        }
+        lastBlock = getBits(1) == 1;
+        int type = (int) getBits(2);
+        switch (type) {
+            case 0:
+                alignToByte();
+                int len = (int) getBits(16);
+                int nlen = (int) getBits(16);
+                if ((len ^ 0xFFFF) != nlen) {
+                    throw new ZipException("Invalid stored block length");
+                }
+                storedRemaining = len;
+                state = State.STORED;
+                break;
+            case 1:
+                literals = FIXED_LITERALS;
+                distances = FIXED_DISTANCES;
+                state = State.HUFFMAN;
+                break;
+            case 2:
+                readDynamicTables();
+                state = State.HUFFMAN;
+                break;
+            default:
+                throw new ZipException("Invalid block type");
+        }
+    }
+
+    private void readDynamicTables() throws IOException {
+        int hlit = (int) getBits(5) + 257;
+        int hdist = (int) getBits(5) + 1;
+        int hclen = (int) getBits(4) + 4;
+        if (hlit > 286 || hdist > 30) {
+            throw new ZipException("Invalid dynamic block code counts");
+        }
+
+        byte[] codeLengthLengths = new byte[19];
+        for (int i = 0; i < hclen; i++) {
+            codeLengthLengths[CODE_LENGTH_ORDER[i]] = (byte) getBits(3);
+        }
+        Huffman codeLengths = new Huffman(codeLengthLengths, 19);
+
+        byte[] lengths = new byte[hlit + hdist];
+        int i = 0;
+        while (i < lengths.length) {
+            int symbol = decodeSymbol(codeLengths);
+            if (symbol < 16) {
+                lengths[i++] = (byte) symbol;
+            } else {
+                int repeat;
+                byte value = 0;
+                if (symbol == 16) {
+                    if (i == 0) {
+                        throw new ZipException("Invalid repeat of previous code length");
+                    }
+                    value = lengths[i - 1];
+                    repeat = 3 + (int) getBits(2);
+                } else if (symbol == 17) {
+                    repeat = 3 + (int) getBits(3);
+                } else {
+                    repeat = 11 + (int) getBits(7);
+                }
+                if (i + repeat > lengths.length) {
+                    throw new ZipException("Invalid code length repeat");
+                }
+                while (repeat-- > 0) {
+                    lengths[i++] = value;
+                }
+            }
+        }
+        if (lengths[256] == 0) {
+            throw new ZipException("Missing end of block code");
+        }
+
+        byte[] literalLengths = new byte[hlit];
+        byte[] distanceLengths = new byte[hdist];
+        System.arraycopy(lengths, 0, literalLengths, 0, hlit);
+        System.arraycopy(lengths, hlit, distanceLengths, 0, hdist);
+        literals = new Huffman(literalLengths, hlit);
+        distances = new Huffman(distanceLengths, hdist);
+    }
+
+    private int readStored(byte[] b, int off, int len) throws IOException {
+        int n = 0;
+        while (n < len && storedRemaining > 0) {
+            int value;
+            if (bitCount >= 8) {
+                value = (int) (bitBuffer & 0xFF);
+                dropBits(8);
+            } else {
+                if (inPos == inLimit && !fillInput()) {
+                    throw new EOFException("Unexpected end of stored block");
+                }
+                value = inBuf[inPos++] & 0xFF;
+                bitPosition += 8;
+            }
+            output(b, off + n, (byte) value);
+            n++;
+            storedRemaining--;
+        }
+        if (storedRemaining == 0) {
+            state = State.HEADER;
+        }
+        return n;
+    }
+
+    private int readHuffman(byte[] b, int off, int len) throws IOException {
+        int n = 0;
+        while (n < len) {
+            if (copyRemaining > 0) {
+                int count = Math.min(copyRemaining, len - n);
+                for (int i = 0; i < count; i++) {
+                    output(b, off + n + i, window[(windowPos - copyDistance) & WINDOW_MASK]);
+                }
+                n += count;
+                copyRemaining -= count;
+                continue;
+            }
+
+            int symbol = decodeSymbol(literals);
+            if (symbol < 256) {
+                output(b, off + n, (byte) symbol);
+                n++;
+            } else if (symbol == 256) {
+                state = State.HEADER;
+                break;
+            } else {
+                symbol -= 257;
+                if (symbol >= 29) {
+                    throw new ZipException("Invalid length code");
+                }
+                int length = LENGTH_BASE[symbol] + (int) getBits(LENGTH_EXTRA[symbol]);
+                int distSymbol = decodeSymbol(distances);
+                if (distSymbol >= 30) {
+                    throw new ZipException("Invalid distance code");
+                }
+                int distance = DIST_BASE[distSymbol] + (int) getBits(DIST_EXTRA[distSymbol]);
+                if (distance > history) {
+                    throw new ZipException("Invalid distance too far back");
+                }
+                copyRemaining = length;
+                copyDistance = distance;
+            }
+        }
+        return n;
+    }
+
+    private void output(byte[] b, int off, byte value) {
+        b[off] = value;
+        window[windowPos] = value;
+        windowPos = (windowPos + 1) & WINDOW_MASK;
+        totalOut++;
+        if (history < WINDOW_SIZE) {
+            history++;
+        }
+    }
+
+    private boolean fillInput() throws IOException {
+        if (inEof) {
+            return false;
+        }
+        int n = in.read(inBuf, 0, inBuf.length);
+        if (n <= 0) {
+            if (n < 0) {
+                inEof = true;
+            }
+            inPos = 0;
+            inLimit = 0;
+            return n == 0 ? fillInput() : false;
+        }
+        inPos = 0;
+        inLimit = n;
+        return true;
+    }
+
+    /**
+     * Pull bytes into the bit buffer until it has at least need bits, or the input is exhausted.
+     */
+    private void ensureBits(int need) throws IOException {
+        while (bitCount < need) {
+            if (inPos == inLimit && !fillInput()) {
+                return;
+            }
+            bitBuffer |= (long) (inBuf[inPos++] & 0xFF) << bitCount;
+            bitCount += 8;
+        }
+    }
+
+    private void dropBits(int n) {
+        bitBuffer >>>= n;
+        bitCount -= n;
+        bitPosition += n;
+    }
+
+    private long getBits(int n) throws IOException {
+        if (n == 0) {
+            return 0;
+        }
+        ensureBits(n);
+        if (bitCount < n) {
+            throw new EOFException("Unexpected end of compressed stream");
+        }
+        long value = bitBuffer & ((1L << n) - 1);
+        dropBits(n);
+        return value;
+    }
+
+    private void alignToByte() {
+        int extra = (int) (bitPosition % 8);
+        if (extra != 0) {
+            dropBits(8 - extra);
+        }
+    }
+
+    private int decodeSymbol(Huffman h) throws IOException {
+        if (bitCount < h.maxLength) {
+            ensureBits(h.maxLength);
+        }
+        int entry = h.table[(int) (bitBuffer & h.mask)];
+        int length = entry & 0xF;
+        if (entry < 0 || length > bitCount) {
+            throw bitCount < h.maxLength ? new EOFException("Unexpected end of compressed stream")
+                    : new ZipException("Invalid Huffman code");
+        }
+        dropBits(length);
+        return entry >>> 4;
+    }
+
+    /**
+     * A canonical Huffman code stored as a single lookup table indexed by the
+     * next maxLength bits of input. Each entry is the symbol shifted left 4 bits
+     * plus the length of its code, or -1 for unused codes.
+     */
+    private static final class Huffman {
+        final int[] table;
+        final int maxLength;
+        final int mask;
+
+        Huffman(byte[] lengths, int count) throws ZipException {
+            int[] lengthCount = new int[16];
+            int max = 0;
+            for (int i = 0; i < count; i++) {
+                lengthCount[lengths[i]]++;
+                max = Math.max(max, lengths[i]);
+            }
+            maxLength = Math.max(max, 1);
+            mask = (1 << maxLength) - 1;
+            table = new int[1 << maxLength];
+            Arrays.fill(table, -1);
+
+            int[] nextCode = new int[16];
+            int code = 0;
+            lengthCount[0] = 0;
+            for (int len = 1; len < 16; len++) {
+                code = (code + lengthCount[len - 1]) << 1;
+                nextCode[len] = code;
+            }
+
+            for (int symbol = 0; symbol < count; symbol++) {
+                int len = lengths[symbol];
+                if (len == 0) {
+                    continue;
+                }
+                int c = nextCode[len]++;
+                if (c >= (1 << len)) {
+                    throw new ZipException("Over-subscribed Huffman code");
+                }
+                // DEFLATE packs Huffman codes starting with the most significant bit, so reverse them for lookup
+                int reversed = Integer.reverse(c) >>> (32 - len);
+                for (int i = reversed; i < table.length; i += 1 << len) {
+                    table[i] = (symbol << 4) | len;
+                }
+            }
+        }
+    }
+}
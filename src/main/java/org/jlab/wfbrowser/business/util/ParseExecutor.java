@@ -0,0 +1,270 @@
+package org.jlab.wfbrowser.business.util;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.json.Json;
+import javax.json.JsonObject;
+
+/**
+ * Application wide thread pool used to parse capture files concurrently. The
+ * pool has a fixed number of threads and a bounded queue so that a burst of
+ * large requests cannot swamp the server. When the queue is full, the task is
+ * run on the submitting thread instead, which naturally throttles the request
+ * that is generating the work.
+ * <p>
+ * The number of threads is taken from the WFB_PARSE_THREADS environment
+ * variable (default is the number of available processors, at most 8) and the
+ * queue size from WFB_PARSE_QUEUE_SIZE (default 256). Setting WFB_PARSE_THREADS
+ * to 0 disables the pool and all tasks are run on the submitting thread.
+ *
+ * @author adamc
+ */
+public class ParseExecutor {
+
+    private static final Logger LOGGER = Logger.getLogger(ParseExecutor.class.getName());
+
+    private static final int DEFAULT_QUEUE_SIZE = 256;
+
+    private static ThreadPoolExecutor executor = null;
+    private static boolean shutdown = false;
+
+    /**
+     * Marks the pool's threads so that tasks can tell them from the container's request threads.
+     */
+    private static class PoolThread extends Thread {
+        private PoolThread(Runnable r, String name) {
+            super(r, name);
+        }
+    }
+
+    // Metrics
+    private static final AtomicLong submittedCount = new AtomicLong(0);
+    private static final AtomicLong callerRunsCount = new AtomicLong(0);
+    private static final AtomicInteger peakQueueDepth = new AtomicInteger(0);
+
+    private ParseExecutor() {
+        // private so no instances can be made
+    }
+
+    /**
+     * Get the pool, creating it on first use.
+     *
+     * @return The pool, or null if the pool has been disabled or shut down
+     */
+    private static synchronized ThreadPoolExecutor getExecutor() {
+        if (executor == null && !shutdown) {
+            int threads = RuntimeUtil.getIntEnv("WFB_PARSE_THREADS", Math.min(Runtime.getRuntime().availableProcessors(), 8));
+            int queueSize = RuntimeUtil.getIntEnv("WFB_PARSE_QUEUE_SIZE", DEFAULT_QUEUE_SIZE);
+            if (threads <= 0) {
+                LOGGER.log(Level.INFO, "Capture file parse pool disabled");
+                shutdown = true;
+                return null;
+            }
+
+            ThreadFactory factory = RuntimeUtil.newDaemonThreadFactory("wfb-parse", PoolThread::new);
+
+            // Run the task on the submitting thread if the queue is full.
+            RejectedExecutionHandler handler = (r, e) -> {
+                callerRunsCount.incrementAndGet();
+                r.run();
+            };
+
+            executor = RuntimeUtil.newFixedThreadPool(threads, new LinkedBlockingQueue<>(Math.max(queueSize, 1)), factory,
+                    handler);
+            LOGGER.log(Level.INFO, "Created capture file parse pool with {0} threads and a queue size of {1}",
+                    new Object[]{threads, queueSize});
+        }
+        return executor;
+    }
+
+    /**
+     * Submit a task to the pool. If the pool is disabled the task is run
+     * immediately on the calling thread.
+     *
+     * @param task The task to run
+     * @param <T>  The type of the task's result
+     * @return A Future for the task's result
+     */
+    public static <T> Future<T> submit(Callable<T> task) {
+        return execute(new FutureTask<>(task));
+    }
+
+    /**
+     * Submit a task that holds a resource, e.g., a pooled buffer, that must be
+     * given back however the task ends. The release is run exactly once: when
+     * the task finishes, or when its future is cancelled before the task has
+     * started. A task cancelled while it is running still releases only once it
+     * has stopped using the resource.
+     *
+     * @param task    The task to run
+     * @param release Gives back the task's resource
+     * @param <T>     The type of the task's result
+     * @return A Future for the task's result
+     */
+    public static <T> Future<T> submit(Callable<T> task, Runnable release) {
+        // Whichever of the task and the completion hook claims this first is responsible for the release
+        AtomicBoolean claimed = new AtomicBoolean(false);
+        return execute(new FutureTask<T>(() -> {
+            if (!claimed.compareAndSet(false, true)) {
+                // Cancelled just as it started.  The result is never seen.
+                return null;
+            }
+            try {
+                return task.call();
+            } finally {
+                release.run();
+            }
+        }) {
+            @Override
+            protected void done() {
+                if (claimed.compareAndSet(false, true)) {
+                    release.run();
+                }
+            }
+        });
+    }
+
+    private static <T> Future<T> execute(FutureTask<T> future) {
+        submittedCount.incrementAndGet();
+        ThreadPoolExecutor pool = getExecutor();
+        if (pool == null) {
+            future.run();
+            return future;
+        }
+
+        pool.execute(future);
+        int depth = pool.getQueue().size();
+        peakQueueDepth.accumulateAndGet(depth, Math::max);
+        return future;
+    }
+
+    /**
+     * Wait for all of the futures to finish and return their results in order.
+     * If any task failed, the remaining tasks are cancelled and the failure is
+     * rethrown.
+     *
+     * @param futures The futures to wait on
+     * @param <T>     The type of the results
+     * @return The results in the same order as the futures
+     * @throws IOException If a task threw an IOException, the wait is interrupted, or a task threw a checked exception
+     */
+    public static <T> List<T> getAll(List<Future<T>> futures) throws IOException {
+        List<T> out = new ArrayList<>(futures.size());
+        try {
+            for (Future<T> future : futures) {
+                out.add(future.get());
+            }
+        } catch (InterruptedException ex) {
+            cancelAll(futures);
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while parsing capture files", ex);
+        } catch (ExecutionException ex) {
+            cancelAll(futures);
+            Throwable cause = ex.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IOException("Error parsing capture files", cause);
+        }
+        return out;
+    }
+
+    /**
+     * Cancel all of the futures, interrupting any that are running.
+     *
+     * @param futures The futures to cancel
+     * @param <T>     The type of the results
+     */
+    public static <T> void cancelAll(List<Future<T>> futures) {
+        for (Future<T> future : futures) {
+            future.cancel(true);
+        }
+    }
+
+    /**
+     * Is the pool available for running tasks concurrently.
+     *
+     * @return true if tasks are run on pool threads, false if they are run on the calling thread
+     */
+    public static boolean isEnabled() {
+        return getExecutor() != null;
+    }
+
+    /**
+     * Is the calling thread one of the pool's threads.  Tasks also run on the submitting thread when the queue is full
+     * or the pool is disabled.
+     *
+     * @return true if called from a pool thread
+     */
+    public static boolean isPoolThread() {
+        return Thread.currentThread() instanceof PoolThread;
+    }
+
+    /**
+     * Get the number of threads in the pool.
+     *
+     * @return The number of threads, or 0 if the pool is disabled
+     */
+    public static int getPoolSize() {
+        ThreadPoolExecutor pool = getExecutor();
+        return pool == null ? 0 : pool.getCorePoolSize();
+    }
+
+    /**
+     * Get the number of tasks currently waiting in the queue.
+     *
+     * @return The queue depth
+     */
+    public static synchronized int getQueueDepth() {
+        return executor == null ? 0 : executor.getQueue().size();
+    }
+
+    /**
+     * Get a JSON representation of the pool's metrics.
+     *
+     * @return A JSON object of the pool's configuration and counters
+     */
+    public static synchronized JsonObject getMetricsAsJson() {
+        return Json.createObjectBuilder()
+                .add("enabled", executor != null)
+                .add("poolSize", executor == null ? 0 : executor.getCorePoolSize())
+                .add("activeThreads", executor == null ? 0 : executor.getActiveCount())
+                .add("queueDepth", executor == null ? 0 : executor.getQueue().size())
+                .add("queueCapacity", executor == null ? 0 : executor.getQueue().size() + executor.getQueue().remainingCapacity())
+                .add("peakQueueDepth", peakQueueDepth.get())
+                .add("submitted", submittedCount.get())
+                .add("completed", executor == null ? 0 : executor.getCompletedTaskCount())
+                .add("callerRuns", callerRunsCount.get())
+                .build();
+    }
+
+    /**
+     * Shut down the pool. Any later tasks are run on the submitting thread.
+     * Called when the application is undeployed.
+     */
+    public static synchronized void shutdown() {
+        shutdown = true;
+        if (executor != null) {
+            executor.shutdownNow();
+            executor = null;
+        }
+    }
+}
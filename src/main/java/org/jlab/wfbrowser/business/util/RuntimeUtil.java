@@ -0,0 +1,128 @@
+package org.jlab.wfbrowser.business.util;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiFunction;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Helpers for reading the WFB_* environment variables that tune the
+ * application and for creating its background threads and pools.
+ *
+ * @author adamc
+ */
+public class RuntimeUtil {
+
+    private static final Logger LOGGER = Logger.getLogger(RuntimeUtil.class.getName());
+
+    // How long the threads of a fixed pool are kept while idle.  Core threads are not timed out, so this has no effect
+    // unless a pool is resized.
+    private static final long KEEP_ALIVE_SECONDS = 60L;
+
+    private RuntimeUtil() {
+        // private so no instances can be made
+    }
+
+    private static String getEnv(String name) {
+        String value = System.getenv(name);
+        return value == null || value.isEmpty() ? null : value.trim();
+    }
+
+    /**
+     * Read an integer environment variable.
+     *
+     * @param name         The name of the variable
+     * @param defaultValue The value to use if the variable is not set or is not an integer
+     * @return The value
+     */
+    public static int getIntEnv(String name, int defaultValue) {
+        String value = getEnv(name);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException ex) {
+            LOGGER.log(Level.WARNING, "Invalid value for {0} - {1}.  Using default {2}", new Object[]{name, value, defaultValue});
+            return defaultValue;
+        }
+    }
+
+    /**
+     * Read a long environment variable.
+     *
+     * @param name         The name of the variable
+     * @param defaultValue The value to use if the variable is not set or is not an integer
+     * @return The value
+     */
+    public static long getLongEnv(String name, long defaultValue) {
+        String value = getEnv(name);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException ex) {
+            LOGGER.log(Level.WARNING, "Invalid value for {0} - {1}.  Using default {2}", new Object[]{name, value, defaultValue});
+            return defaultValue;
+        }
+    }
+
+    /**
+     * Create a daemon thread, so that it does not keep the container from shutting down.
+     *
+     * @param r    What the thread runs
+     * @param name The name of the thread
+     * @return The thread, not yet started
+     */
+    public static Thread newDaemonThread(Runnable r, String name) {
+        Thread t = new Thread(r, name);
+        t.setDaemon(true);
+        return t;
+    }
+
+    /**
+     * Create a factory of daemon threads named prefix-1, prefix-2, etc.
+     *
+     * @param prefix The start of the thread names
+     * @return The factory
+     */
+    public static ThreadFactory newDaemonThreadFactory(String prefix) {
+        return newDaemonThreadFactory(prefix, Thread::new);
+    }
+
+    /**
+     * Create a factory of daemon threads named prefix-1, prefix-2, etc.
+     *
+     * @param prefix      The start of the thread names
+     * @param constructor Creates a thread given what it runs and its name, e.g., to use a Thread subclass
+     * @return The factory
+     */
+    public static ThreadFactory newDaemonThreadFactory(String prefix, BiFunction<Runnable, String, Thread> constructor) {
+        AtomicInteger count = new AtomicInteger(0);
+        return r -> {
+            Thread t = constructor.apply(r, prefix + "-" + count.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        };
+    }
+
+    /**
+     * Create a pool with a fixed number of threads.
+     *
+     * @param threads The number of threads
+     * @param queue   Holds the tasks waiting for a thread
+     * @param factory Creates the threads
+     * @param handler Handles tasks that do not fit in the queue
+     * @return The pool
+     */
+    public static ThreadPoolExecutor newFixedThreadPool(int threads, BlockingQueue<Runnable> queue,
+                                                        ThreadFactory factory, RejectedExecutionHandler handler) {
+        return new ThreadPoolExecutor(threads, threads, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, queue, factory, handler);
+    }
+}
@@ -0,0 +1,218 @@
+package org.jlab.wfbrowser.business.util;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import org.jlab.wfbrowser.model.Series;
+
+/**
+ * Matches waveform names against the SQL LIKE patterns of a set of series in
+ * memory. Series used to be resolved in the database by joining on
+ * waveform_name LIKE pattern, which cannot use an index and so compared every
+ * pattern against every waveform on every request.
+ * <p>
+ * The patterns are compiled once into a trie keyed on their literal prefix
+ * (everything before the first wildcard). Looking up a waveform name walks the
+ * trie along the name, so only the patterns whose prefix matches, plus those
+ * that start with a wildcard, are checked in full. The same waveform names show
+ * up in event after event, so results are also remembered per name.
+ * <p>
+ * Patterns follow MariaDB's LIKE rules: '%' matches any run of characters, '_'
+ * matches a single character, and '\' makes the next character literal.
+ * Matching ignores case like the database's default collation.
+ * <p>
+ * Instances are immutable apart from the lookup cache and are safe to share
+ * between threads.
+ *
+ * @author adamc
+ */
+public class SeriesMatcher {
+
+    private static final byte LITERAL = 0;
+    private static final byte ONE = 1;
+    private static final byte ANY = 2;
+
+    // Plenty for the waveform names of a system, but keeps a stream of odd names from growing the cache forever
+    private static final int MAX_CACHED_NAMES = 50000;
+
+    private final List<Series> seriesList;
+    private final List<Pattern> patterns = new ArrayList<>();
+    private final Node root = new Node();
+    private final ConcurrentHashMap<String, List<Series>> cache = new ConcurrentHashMap<>();
+
+    /**
+     * A compiled LIKE pattern as a sequence of literal characters and wildcards.
+     */
+    private static class Pattern {
+        private final int seriesIndex;
+        private final char[] chars;
+        private final byte[] kinds;
+
+        private Pattern(int seriesIndex, char[] chars, byte[] kinds) {
+            this.seriesIndex = seriesIndex;
+            this.chars = chars;
+            this.kinds = kinds;
+        }
+    }
+
+    /**
+     * A trie node. The patterns listed at a node have the path to it as their full literal prefix.
+     */
+    private static class Node {
+        private final Map<Character, Node> children = new HashMap<>();
+        private final List<Pattern> patterns = new ArrayList<>();
+    }
+
+    /**
+     * Compile the patterns of a list of series.
+     *
+     * @param seriesList The series to match against.  Matches are returned in this order.
+     */
+    public SeriesMatcher(List<Series> seriesList) {
+        this.seriesList = new ArrayList<>(seriesList);
+        for (int i = 0; i < this.seriesList.size(); i++) {
+            Pattern p = compile(i, this.seriesList.get(i).getPattern());
+            patterns.add(p);
+
+            Node node = root;
+            for (int j = 0; j < p.kinds.length && p.kinds[j] == LITERAL; j++) {
+                node = node.children.computeIfAbsent(p.chars[j], k -> new Node());
+            }
+            node.patterns.add(p);
+        }
+    }
+
+    /**
+     * Find the series whose pattern matches a waveform name.
+     *
+     * @param waveformName The name of the waveform
+     * @return The matching series in the order they were given.  Empty if none match.
+     */
+    public List<Series> match(String waveformName) {
+        List<Series> out = cache.get(waveformName);
+        if (out != null) {
+            return out;
+        }
+
+        // Walk the trie along the name, collecting patterns whose literal prefix matches
+        List<Pattern> candidates = new ArrayList<>(root.patterns);
+        Node node = root;
+        for (int i = 0; i < waveformName.length(); i++) {
+            node = node.children.get(fold(waveformName.charAt(i)));
+            if (node == null) {
+                break;
+            }
+            candidates.addAll(node.patterns);
+        }
+
+        boolean[] matched = new boolean[seriesList.size()];
+        for (Pattern p : candidates) {
+            if (matches(p, waveformName)) {
+                matched[p.seriesIndex] = true;
+            }
+        }
+        List<Series> result = new ArrayList<>();
+        for (int i = 0; i < matched.length; i++) {
+            if (matched[i]) {
+                result.add(seriesList.get(i));
+            }
+        }
+        out = Collections.unmodifiableList(result);
+
+        if (cache.size() >= MAX_CACHED_NAMES) {
+            cache.clear();
+        }
+        cache.put(waveformName, out);
+        return out;
+    }
+
+    /**
+     * Map a group of waveform names to their series. Names that match no series are left out.
+     *
+     * @param waveformNames The names of the waveforms
+     * @return A map of waveform name to its matching series
+     */
+    public Map<String, List<Series>> getMapping(Collection<String> waveformNames) {
+        Map<String, List<Series>> out = new HashMap<>();
+        for (String name : waveformNames) {
+            List<Series> series = match(name);
+            if (!series.isEmpty()) {
+                out.put(name, series);
+            }
+        }
+        return out;
+    }
+
+    /**
+     * Split a LIKE pattern into literal characters and wildcards. A trailing
+     * '\' has nothing to escape and is taken literally, as MariaDB does.
+     */
+    private static Pattern compile(int seriesIndex, String pattern) {
+        char[] chars = new char[pattern.length()];
+        byte[] kinds = new byte[pattern.length()];
+        int n = 0;
+        for (int i = 0; i < pattern.length(); i++) {
+            char c = pattern.charAt(i);
+            if (c == '\\' && i + 1 < pattern.length()) {
+                chars[n] = fold(pattern.charAt(++i));
+                kinds[n++] = LITERAL;
+            } else if (c == '%') {
+                // Runs of '%' are the same as one
+                if (n == 0 || kinds[n - 1] != ANY) {
+                    kinds[n++] = ANY;
+                }
+            } else if (c == '_') {
+                kinds[n++] = ONE;
+            } else {
+                chars[n] = fold(c);
+                kinds[n++] = LITERAL;
+            }
+        }
+        char[] outChars = new char[n];
+        byte[] outKinds = new byte[n];
+        System.arraycopy(chars, 0, outChars, 0, n);
+        System.arraycopy(kinds, 0, outKinds, 0, n);
+        return new Pattern(seriesIndex, outChars, outKinds);
+    }
+
+    /**
+     * Match a name against a compiled pattern. On a mismatch the last '%' seen
+     * is made to swallow one more character and matching resumes from there.
+     * Only the last '%' ever needs to be revisited, so this never backtracks
+     * further than that.
+     */
+    private static boolean matches(Pattern pattern, String name) {
+        int p = 0;
+        int s = 0;
+        int starP = -1;
+        int starS = 0;
+        int m = pattern.kinds.length;
+        while (s < name.length()) {
+            if (p < m && (pattern.kinds[p] == ONE
+                    || (pattern.kinds[p] == LITERAL && pattern.chars[p] == fold(name.charAt(s))))) {
+                p++;
+                s++;
+            } else if (p < m && pattern.kinds[p] == ANY) {
+                starP = p++;
+                starS = s;
+            } else if (starP >= 0) {
+                p = starP + 1;
+                s = ++starS;
+            } else {
+                return false;
+            }
+        }
+        while (p < m && pattern.kinds[p] == ANY) {
+            p++;
+        }
+        return p == m;
+    }
+
+    private static char fold(char c) {
+        return Character.toLowerCase(Character.toUpperCase(c));
+    }
+}
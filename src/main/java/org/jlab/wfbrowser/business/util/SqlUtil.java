@@ -22,6 +22,10 @@ public class SqlUtil {
     private static final Logger LOGGER = Logger.getLogger(SqlUtil.class.getName());
 
     private static DataSource source;
+    private static DataSource readOnlySource;
+
+    // The read-only connection scope of the current request, if any
+    private static final ThreadLocal<ConnectionScope> SCOPE = new ThreadLocal<>();
 
     private SqlUtil() {
         // not public so these cannot be instantiated
@@ -34,12 +38,95 @@ public class SqlUtil {
             LOGGER.log(Level.WARNING, "JDBC resource lookup failed", e);
             throw new ExceptionInInitializerError(e);
         }
+
+        // The read-only resource is optional, e.g., a pool pointed at a replica.  Reads share the rw pool without it.
+        try {
+            readOnlySource = (DataSource) new InitialContext().lookup("jdbc/waveforms_ro");
+        } catch (NamingException e) {
+            readOnlySource = null;
+        }
+        if (readOnlySource == null) {
+            LOGGER.log(Level.INFO, "No jdbc/waveforms_ro resource found.  Read-only queries will use jdbc/waveforms_rw");
+            readOnlySource = source;
+        } else {
+            LOGGER.log(Level.INFO, "Using jdbc/waveforms_ro for read-only queries");
+        }
     }
 
+    /**
+     * Get a connection from the read-write pool.  Use this for anything that modifies the database, or that must see
+     * a write immediately after making it.
+     *
+     * @return A read-write connection
+     * @throws SQLException If a connection could not be obtained
+     */
     public static Connection getConnection() throws SQLException {
         return source.getConnection();
     }
 
+    /**
+     * Get a connection for queries that only read.  This comes from the optional jdbc/waveforms_ro resource, which
+     * may point at a replica and so may lag slightly behind the read-write database.  When that resource is not
+     * configured this is the same as getConnection().
+     * <p>
+     * Inside a connection scope (see beginConnectionScope()) every call returns a handle to the same connection, and
+     * statements prepared through it are reused for the rest of the scope.  Close both as usual.
+     *
+     * @return A connection for read-only queries
+     * @throws SQLException If a connection could not be obtained
+     */
+    public static Connection getReadOnlyConnection() throws SQLException {
+        ConnectionScope scope = SCOPE.get();
+        if (scope != null) {
+            return scope.getConnection();
+        }
+        return readOnlySource.getConnection();
+    }
+
+    static Connection getPooledReadOnlyConnection() throws SQLException {
+        return readOnlySource.getConnection();
+    }
+
+    /**
+     * Start sharing one read-only connection between the queries made by this thread, e.g., for the lifetime of a
+     * request.  The connection is not checked out of the pool until the first query.  Every call that returns true
+     * must be followed by endConnectionScope() in a finally block.
+     *
+     * @return True if a scope was started, false if this thread was already in one
+     */
+    public static boolean beginConnectionScope() {
+        if (SCOPE.get() != null) {
+            return false;
+        }
+        SCOPE.set(new ConnectionScope());
+        return true;
+    }
+
+    /**
+     * End this thread's connection scope, closing its statements and returning its connection to the pool.
+     */
+    public static void endConnectionScope() {
+        ConnectionScope scope = SCOPE.get();
+        SCOPE.remove();
+        if (scope != null) {
+            scope.close();
+        }
+    }
+
+    /**
+     * @return The connection scope of this thread or null if there is none.  For testing.
+     */
+    static ConnectionScope getConnectionScope() {
+        return SCOPE.get();
+    }
+
+    /**
+     * @return True if read-only queries have their own resource, false if they share the read-write pool
+     */
+    public static boolean hasReadOnlySource() {
+        return readOnlySource != source;
+    }
+
     public static void close(AutoCloseable... resources) {
         if (resources != null) {
             for (AutoCloseable resource : resources) {
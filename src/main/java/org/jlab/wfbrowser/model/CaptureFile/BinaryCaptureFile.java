@@ -0,0 +1,452 @@
+package org.jlab.wfbrowser.model.CaptureFile;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A binary, columnar copy of a parsed capture file. Parsing the text of a large
+ * capture file is far more expensive than reading the same numbers in binary,
+ * so the first time a capture file is fully parsed (normally when the event is
+ * added) the result is saved to a cache file. Later reads map the cache file
+ * once and copy out only the columns that are needed. Cache files too large to
+ * map in one piece are read column by column instead.
+ * <p>
+ * The cache is optional and is enabled by setting the WFB_BINARY_CACHE_DIR
+ * environment variable. Cache files are kept in that directory using the same
+ * layout as the capture files have under the data directory. A cache file
+ * records the size and modification time of its source (the capture file, or
+ * the compressed archive that contains it) and is ignored if those change. It
+ * is then rebuilt the next time the capture file's data is parsed. Cache files
+ * of an older version are ignored and rebuilt the same way.
+ * <p>
+ * All values are little endian. The layout is
+ * <pre>
+ * int    magic ("WFBC")
+ * int    version
+ * long   source size
+ * long   source modification time (millis)
+ * int    number of columns
+ * int    number of rows
+ * long   offset of the column data
+ * int    number of metadata entries, followed by each entry
+ * string header of each column
+ * double column data, one column after another starting with the time column.  Aligned to 8 bytes.
+ * </pre>
+ * Strings are an int length followed by that many bytes of UTF-8.
+ *
+ * @author adamc
+ */
+public class BinaryCaptureFile {
+
+    private static final Logger LOGGER = Logger.getLogger(BinaryCaptureFile.class.getName());
+
+    public static final String SUFFIX = ".wfbc";
+    private static final int MAGIC = 0x43424657; // "WFBC" when written little endian
+    private static final int VERSION = 2;
+    private static final int PREFIX_LENGTH = 44;  // Everything before the metadata entries
+    private static final int BUFFER_SIZE = 65536;
+
+    /**
+     * Provides the text content of a capture file.
+     */
+    public interface Source {
+        InputStream open() throws IOException;
+    }
+
+    private BinaryCaptureFile() {
+        // private so no instances can be made
+    }
+
+    /**
+     * Get the directory holding the cache files.
+     *
+     * @return The cache directory or null if the cache is disabled
+     */
+    public static Path getCacheDir() {
+        String dir = System.getenv("WFB_BINARY_CACHE_DIR");
+        if (dir == null || dir.isEmpty()) {
+            return null;
+        }
+        return Paths.get(dir);
+    }
+
+    /**
+     * Parses the text of a capture file.
+     */
+    private interface TextParser {
+        CaptureFileParser.Result parse(boolean includeData, Set<String> columns) throws IOException;
+    }
+
+    /**
+     * Read a capture file, using its cache file when possible. If the cache
+     * file is missing or stale and data was requested, the whole capture file is
+     * parsed, the cache file is rebuilt, and the requested columns are returned.
+     *
+     * @param parser         The parser to use if the text must be parsed
+     * @param cacheFile      The cache file for this capture file.  Null if the cache is disabled.
+     * @param source         The capture file's text content
+     * @param sourceSize     The size of the capture file, or the archive containing it
+     * @param sourceModified The modification time of the capture file, or the archive containing it
+     * @param includeData    Should the data be included or only the metadata and headers
+     * @param columns        The headers of the columns to include.  The time column is always included.  Null includes
+     *                       all columns.
+     * @return The parsed capture file, or null if it has no header line
+     * @throws IOException If the capture file cannot be read
+     */
+    public static CaptureFileParser.Result parse(CaptureFileParser parser, Path cacheFile, Source source,
+                                                 long sourceSize, long sourceModified, boolean includeData,
+                                                 Set<String> columns) throws IOException {
+        return parse(cacheFile, sourceSize, sourceModified, includeData, columns, (data, cols) -> {
+            try (InputStream is = source.open()) {
+                return parser.parse(is, data, cols);
+            }
+        });
+    }
+
+    /**
+     * Read an uncompressed capture file, using its cache file when possible.
+     * The text is parsed with CaptureFileParser's file based reader when the
+     * cache file cannot be used.
+     *
+     * @param parser      The parser to use if the text must be parsed
+     * @param cacheFile   The cache file for this capture file.  Null if the cache is disabled.
+     * @param file        The capture file
+     * @param includeData Should the data be included or only the metadata and headers
+     * @param columns     The headers of the columns to include.  The time column is always included.  Null includes
+     *                    all columns.
+     * @return The parsed capture file, or null if it has no header line
+     * @throws IOException If the capture file cannot be read
+     */
+    public static CaptureFileParser.Result parse(CaptureFileParser parser, Path cacheFile, Path file,
+                                                 boolean includeData, Set<String> columns) throws IOException {
+        if (cacheFile == null) {
+            return parser.parse(file, includeData, columns, null);
+        }
+        return parse(cacheFile, Files.size(file), Files.getLastModifiedTime(file).toMillis(), includeData, columns,
+                (data, cols) -> parser.parse(file, data, cols, null));
+    }
+
+    private static CaptureFileParser.Result parse(Path cacheFile, long sourceSize, long sourceModified,
+                                                  boolean includeData, Set<String> columns, TextParser text)
+            throws IOException {
+        if (cacheFile == null) {
+            return text.parse(includeData, columns);
+        }
+
+        CaptureFileParser.Result result = read(cacheFile, sourceSize, sourceModified, includeData, columns);
+        if (result != null) {
+            return result;
+        }
+        if (!includeData) {
+            // Don't pay for parsing all of the data when only the headers are wanted
+            return text.parse(false, columns);
+        }
+
+        result = text.parse(true, null);
+        if (result == null) {
+            return null;
+        }
+        try {
+            write(cacheFile, sourceSize, sourceModified, result);
+        } catch (IOException ex) {
+            LOGGER.log(Level.WARNING, "Could not write binary capture file {0} - {1}", new Object[]{cacheFile, ex.getMessage()});
+        }
+        return project(result, columns);
+    }
+
+    /**
+     * Drop the columns that were not requested, the same way CaptureFileParser
+     * would have skipped them.
+     */
+    private static CaptureFileParser.Result project(CaptureFileParser.Result result, Set<String> columns) {
+        if (columns == null) {
+            return result;
+        }
+        String[] headers = result.getHeaders();
+        double[][] data = result.getColumns();
+        for (int i = 1; i < headers.length; i++) {
+            if (!columns.contains(headers[i])) {
+                data[i] = null;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Read a cache file.
+     *
+     * @param cacheFile      The cache file
+     * @param sourceSize     The expected source size
+     * @param sourceModified The expected source modification time
+     * @param includeData    Should the data be included or only the metadata and headers
+     * @param columns        The headers of the columns to include.  The time column is always included.  Null includes
+     *                       all columns.
+     * @return The capture file content or null if the cache file is missing, stale or invalid
+     */
+    public static CaptureFileParser.Result read(Path cacheFile, long sourceSize, long sourceModified,
+                                                boolean includeData, Set<String> columns) {
+        if (!Files.isRegularFile(cacheFile)) {
+            return null;
+        }
+
+        try (FileChannel channel = FileChannel.open(cacheFile, StandardOpenOption.READ)) {
+            long fileSize = channel.size();
+            ByteBuffer prefix = ByteBuffer.allocate(PREFIX_LENGTH).order(ByteOrder.LITTLE_ENDIAN);
+            while (prefix.hasRemaining()) {
+                if (channel.read(prefix, prefix.position()) < 0) {
+                    throw new IOException("Binary capture file is truncated");
+                }
+            }
+            prefix.flip();
+
+            if (prefix.getInt() != MAGIC) {
+                LOGGER.log(Level.WARNING, "Ignoring binary capture file with unknown format - {0}", cacheFile);
+                return null;
+            }
+            if (prefix.getInt() != VERSION) {
+                LOGGER.log(Level.FINE, "Ignoring binary capture file of another version - {0}", cacheFile);
+                return null;
+            }
+            if (prefix.getLong() != sourceSize || prefix.getLong() != sourceModified) {
+                return null;
+            }
+            int numColumns = prefix.getInt();
+            int rowCount = prefix.getInt();
+            long dataOffset = prefix.getLong();
+            int numMetadata = prefix.getInt();
+            if (numColumns < 1 || rowCount < 0 || dataOffset < PREFIX_LENGTH || dataOffset > Integer.MAX_VALUE
+                    || dataOffset + 8L * numColumns * rowCount != fileSize) {
+                throw new IOException("Invalid binary capture file size");
+            }
+
+            // A single mapping is limited to 2 GB.  Larger files only have their header mapped and the columns are
+            // read into a buffer.
+            boolean mapAll = fileSize <= Integer.MAX_VALUE;
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, mapAll ? fileSize : dataOffset);
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            buffer.position(PREFIX_LENGTH);
+            List<Metadata> metadataList = new ArrayList<>(numMetadata);
+            for (int i = 0; i < numMetadata; i++) {
+                metadataList.add(readMetadata(buffer));
+            }
+            String[] headers = new String[numColumns];
+            for (int i = 0; i < numColumns; i++) {
+                headers[i] = readString(buffer);
+            }
+
+            if (!includeData) {
+                return new CaptureFileParser.Result(metadataList, headers, new double[numColumns][0], 0);
+            }
+
+            double[][] data = new double[numColumns][];
+            ByteBuffer readBuffer = null;
+            for (int i = 0; i < numColumns; i++) {
+                if (i == 0 || columns == null || columns.contains(headers[i])) {
+                    data[i] = new double[rowCount];
+                    long position = dataOffset + 8L * i * rowCount;
+                    if (mapAll) {
+                        ByteBuffer column = buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+                        column.position((int) position);
+                        column.asDoubleBuffer().get(data[i]);
+                    } else {
+                        if (readBuffer == null) {
+                            readBuffer = ByteBuffer.allocate(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+                        }
+                        readColumn(channel, position, data[i], readBuffer);
+                    }
+                }
+            }
+            return new CaptureFileParser.Result(metadataList, headers, data, rowCount);
+        } catch (IOException | RuntimeException ex) {
+            LOGGER.log(Level.WARNING, "Ignoring unreadable binary capture file {0} - {1}", new Object[]{cacheFile, ex.toString()});
+            return null;
+        }
+    }
+
+    /**
+     * Copy a column out of a cache file that is too large to map.
+     *
+     * @param channel  The cache file
+     * @param position The position of the column's first value
+     * @param out      Where the column's values are copied to.  Its length is the number of rows.
+     * @param buffer   The buffer to read through.  Its capacity must be a multiple of 8.
+     * @throws IOException If the column cannot be read
+     */
+    private static void readColumn(FileChannel channel, long position, double[] out, ByteBuffer buffer)
+            throws IOException {
+        int done = 0;
+        while (done < out.length) {
+            buffer.clear();
+            buffer.limit(Math.min(buffer.capacity(), 8 * (out.length - done)));
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, position + 8L * done + buffer.position()) < 0) {
+                    throw new IOException("Binary capture file is truncated");
+                }
+            }
+            buffer.flip();
+            int n = buffer.remaining() / 8;
+            buffer.asDoubleBuffer().get(out, done, n);
+            done += n;
+        }
+    }
+
+    /**
+     * Write a cache file. The file is written to a temporary file and moved
+     * into place so that readers never see a partial file.
+     *
+     * @param cacheFile      The cache file
+     * @param sourceSize     The source size
+     * @param sourceModified The source modification time
+     * @param result         The fully parsed capture file, including all of its data
+     * @throws IOException If the file cannot be written
+     */
+    public static void write(Path cacheFile, long sourceSize, long sourceModified, CaptureFileParser.Result result)
+            throws IOException {
+        String[] headers = result.getHeaders();
+        double[][] data = result.getColumns();
+        int rowCount = result.getRowCount();
+        for (double[] column : data) {
+            if (column == null || column.length != rowCount) {
+                throw new IllegalArgumentException("Binary capture files require every column");
+            }
+        }
+
+        List<byte[]> headerBytes = new ArrayList<>();
+        int headerLength = PREFIX_LENGTH;
+        for (Metadata m : result.getMetadataList()) {
+            byte[] b = encodeMetadata(m);
+            headerBytes.add(b);
+            headerLength += b.length;
+        }
+        List<byte[]> names = new ArrayList<>();
+        for (String header : headers) {
+            byte[] b = header.getBytes(StandardCharsets.UTF_8);
+            names.add(b);
+            headerLength += 4 + b.length;
+        }
+        long dataOffset = (headerLength + 7) & ~7L;
+
+        ByteBuffer header = ByteBuffer.allocate((int) dataOffset).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(MAGIC);
+        header.putInt(VERSION);
+        header.putLong(sourceSize);
+        header.putLong(sourceModified);
+        header.putInt(headers.length);
+        header.putInt(rowCount);
+        header.putLong(dataOffset);
+        header.putInt(headerBytes.size());
+        for (byte[] b : headerBytes) {
+            header.put(b);
+        }
+        for (byte[] b : names) {
+            header.putInt(b.length);
+            header.put(b);
+        }
+        header.position(0);
+
+        Path dir = cacheFile.toAbsolutePath().getParent();
+        Files.createDirectories(dir);
+        Path tmp = dir.resolve(cacheFile.getFileName() + "." + UUID.randomUUID() + ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+                writeFully(channel, header);
+                ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+                for (double[] column : data) {
+                    for (double value : column) {
+                        if (!buffer.hasRemaining()) {
+                            buffer.flip();
+                            writeFully(channel, buffer);
+                            buffer.clear();
+                        }
+                        buffer.putDouble(value);
+                    }
+                }
+                buffer.flip();
+                writeFully(channel, buffer);
+            }
+            try {
+                Files.move(tmp, cacheFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException ex) {
+                Files.move(tmp, cacheFile, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    /**
+     * Metadata is stored as a type byte, the name, and then whichever of the
+     * value, offset and start the type has.
+     */
+    private static byte[] encodeMetadata(Metadata m) {
+        byte[] name = m.getName().getBytes(StandardCharsets.UTF_8);
+        byte[] value = m.getType() == MetadataType.STRING
+                ? ((String) m.getValue()).getBytes(StandardCharsets.UTF_8) : null;
+        int length = 1 + 4 + name.length + 3 * 9 + (value == null ? 0 : 4 + value.length);
+        ByteBuffer b = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+        b.put((byte) m.getType().ordinal());
+        b.putInt(name.length);
+        b.put(name);
+        if (value != null) {
+            b.putInt(value.length);
+            b.put(value);
+        } else {
+            putNullableDouble(b, m.getType() == MetadataType.NUMBER ? (Double) m.getValue() : null);
+        }
+        putNullableDouble(b, m.getOffset());
+        putNullableDouble(b, m.getStart());
+        byte[] out = new byte[b.position()];
+        b.flip();
+        b.get(out);
+        return out;
+    }
+
+    private static Metadata readMetadata(ByteBuffer b) {
+        MetadataType type = MetadataType.values()[b.get()];
+        String name = readString(b);
+        Object value = type == MetadataType.STRING ? readString(b) : getNullableDouble(b);
+        Double offset = getNullableDouble(b);
+        Double start = getNullableDouble(b);
+        return new Metadata(type, name, value, offset, start);
+    }
+
+    private static void putNullableDouble(ByteBuffer b, Double value) {
+        b.put((byte) (value == null ? 0 : 1));
+        b.putDouble(value == null ? 0 : value);
+    }
+
+    private static Double getNullableDouble(ByteBuffer b) {
+        boolean present = b.get() != 0;
+        double value = b.getDouble();
+        return present ? value : null;
+    }
+
+    private static String readString(ByteBuffer b) {
+        byte[] bytes = new byte[b.getInt()];
+        b.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -121,6 +121,16 @@ public class CaptureFile {
         return waveformMap.containsKey(waveformName);
     }
 
+    /**
+     * Get a waveform by name.
+     *
+     * @param waveformName The name of the waveform
+     * @return The waveform, or null if this CaptureFile does not contain it
+     */
+    public Waveform getWaveform(String waveformName) {
+        return waveformMap.get(waveformName);
+    }
+
     /**
      * Update the data on the specified waveform. Should check that this
      * waveform exists in this CaptureFile prior.
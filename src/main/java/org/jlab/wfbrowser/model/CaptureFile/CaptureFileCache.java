@@ -0,0 +1,248 @@
+package org.jlab.wfbrowser.model.CaptureFile;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import javax.json.Json;
+import javax.json.JsonObject;
+import org.jlab.wfbrowser.business.util.RuntimeUtil;
+
+/**
+ * Process wide cache of parsed capture file data. Users tend to flip back and
+ * forth between the same few events, and many clients often look at the same
+ * event at once, so keeping recently parsed data in memory saves going back to
+ * disk (and possibly decompressing an archive) for every request.
+ * <p>
+ * Entries are keyed by event ID, capture file name, and the size and
+ * modification time of the file the data was read from (the capture file or
+ * the archive holding it), so a changed file is never served from the cache.
+ * Only the columns that have been requested so far are held for each capture
+ * file. A request for a column that is not held is a miss, and the newly
+ * parsed columns are added to the entry.
+ * <p>
+ * The cache is bounded by the total size of the double[] data it holds rather
+ * than the number of entries, since capture files vary a lot in size. The
+ * least recently used entries are evicted first. The bound is taken from the
+ * WFB_DATA_CACHE_MB environment variable (default 256). Setting it to 0
+ * disables the cache.
+ * <p>
+ * The cached arrays are shared by every Event that is served from the cache,
+ * so they must be treated as read only. This is already the case for Waveform
+ * data.
+ *
+ * @author adamc
+ */
+public class CaptureFileCache {
+
+    private static final long DEFAULT_MAX_MB = 256;
+    private static final CaptureFileCache INSTANCE = new CaptureFileCache(getMaxBytesFromEnv());
+
+    private final long maxBytes;
+    private final LinkedHashMap<Key, Entry> map = new LinkedHashMap<>(16, 0.75f, true);
+    private long bytes = 0;
+
+    // Metrics
+    private long hitCount = 0;
+    private long missCount = 0;
+    private long evictionCount = 0;
+
+    /**
+     * Identifies the parsed data of one capture file.
+     */
+    public static class Key {
+        private final long eventId;
+        private final String filename;
+        private final long sourceSize;
+        private final long sourceModified;
+
+        /**
+         * @param eventId        The database ID of the event
+         * @param filename       The capture file name
+         * @param sourceSize     The size of the capture file, or the archive containing it
+         * @param sourceModified The modification time of the capture file, or the archive containing it
+         */
+        public Key(long eventId, String filename, long sourceSize, long sourceModified) {
+            this.eventId = eventId;
+            this.filename = filename;
+            this.sourceSize = sourceSize;
+            this.sourceModified = sourceModified;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            Key key = (Key) o;
+            return eventId == key.eventId && sourceSize == key.sourceSize && sourceModified == key.sourceModified
+                    && filename.equals(key.filename);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(eventId, filename, sourceSize, sourceModified);
+        }
+    }
+
+    /**
+     * The cached content of one capture file. Never modified once created.
+     */
+    private static class Entry {
+        private final List<Metadata> metadataList;
+        private final String[] headers;
+        private final double[][] columns;  // null for columns that have not been loaded
+        private final int rowCount;
+        private final long bytes;
+
+        private Entry(List<Metadata> metadataList, String[] headers, double[][] columns, int rowCount) {
+            this.metadataList = metadataList;
+            this.headers = headers;
+            this.columns = columns;
+            this.rowCount = rowCount;
+            long size = 0;
+            for (double[] column : columns) {
+                if (column != null) {
+                    size += 16 + 8L * column.length;
+                }
+            }
+            this.bytes = size;
+        }
+    }
+
+    CaptureFileCache(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Get the application wide cache.
+     *
+     * @return The cache
+     */
+    public static CaptureFileCache getInstance() {
+        return INSTANCE;
+    }
+
+    private static long getMaxBytesFromEnv() {
+        return Math.max(RuntimeUtil.getLongEnv("WFB_DATA_CACHE_MB", DEFAULT_MAX_MB), 0) * 1024 * 1024;
+    }
+
+    public boolean isEnabled() {
+        return maxBytes > 0;
+    }
+
+    /**
+     * Look up the parsed data of a capture file.
+     *
+     * @param key     The capture file
+     * @param columns The headers of the columns needed.  The time column is always included.  Null means all columns.
+     * @return The parsed content with only the requested columns, or null if the capture file or any of the requested
+     * columns are not cached
+     */
+    public synchronized CaptureFileParser.Result get(Key key, Set<String> columns) {
+        Entry entry = map.get(key);
+        if (entry == null) {
+            missCount++;
+            return null;
+        }
+
+        double[][] out = new double[entry.headers.length][];
+        for (int i = 0; i < entry.headers.length; i++) {
+            if (i == 0 || columns == null || columns.contains(entry.headers[i])) {
+                if (entry.columns[i] == null) {
+                    missCount++;
+                    return null;
+                }
+                out[i] = entry.columns[i];
+            }
+        }
+        hitCount++;
+        return new CaptureFileParser.Result(copyMetadata(entry.metadataList), entry.headers, out, entry.rowCount);
+    }
+
+    /**
+     * Add parsed data to the cache. Columns are added to any already cached for
+     * the capture file. Only results parsed with their data should be added.
+     *
+     * @param key    The capture file
+     * @param result The parsed content
+     */
+    public synchronized void put(Key key, CaptureFileParser.Result result) {
+        if (!isEnabled() || result.getColumns().length == 0 || result.getColumns()[0] == null
+                || result.getColumns()[0].length != result.getRowCount()) {
+            return;
+        }
+
+        Entry existing = map.get(key);
+        double[][] columns = new double[result.getHeaders().length][];
+        for (int i = 0; i < columns.length; i++) {
+            columns[i] = result.getColumns()[i];
+            if (columns[i] == null && existing != null && existing.columns.length == columns.length) {
+                columns[i] = existing.columns[i];
+            }
+        }
+        Entry entry = new Entry(copyMetadata(result.getMetadataList()), result.getHeaders(), columns, result.getRowCount());
+        if (entry.bytes > maxBytes) {
+            return;
+        }
+
+        if (existing != null) {
+            bytes -= existing.bytes;
+        }
+        map.put(key, entry);
+        bytes += entry.bytes;
+
+        Iterator<Map.Entry<Key, Entry>> iter = map.entrySet().iterator();
+        while (bytes > maxBytes && iter.hasNext()) {
+            Map.Entry<Key, Entry> eldest = iter.next();
+            if (eldest.getKey().equals(key)) {
+                continue;
+            }
+            bytes -= eldest.getValue().bytes;
+            iter.remove();
+            evictionCount++;
+        }
+    }
+
+    /**
+     * Remove everything from the cache.
+     */
+    public synchronized void clear() {
+        map.clear();
+        bytes = 0;
+    }
+
+    /**
+     * Metadata objects can have their database ID set, so never share them.
+     */
+    private static List<Metadata> copyMetadata(List<Metadata> metadataList) {
+        List<Metadata> out = new ArrayList<>(metadataList.size());
+        for (Metadata m : metadataList) {
+            out.add(new Metadata(m.getType(), m.getName(), m.getValue(), m.getOffset(), m.getStart()));
+        }
+        return out;
+    }
+
+    /**
+     * Get a JSON representation of the cache's metrics.
+     *
+     * @return A JSON object of the cache's size and counters
+     */
+    public synchronized JsonObject getMetricsAsJson() {
+        return Json.createObjectBuilder()
+                .add("enabled", isEnabled())
+                .add("entries", map.size())
+                .add("bytes", bytes)
+                .add("maxBytes", maxBytes)
+                .add("hits", hitCount)
+                .add("misses", missCount)
+                .add("evictions", evictionCount)
+                .build();
+    }
+}
@@ -0,0 +1,830 @@
+package org.jlab.wfbrowser.model.CaptureFile;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.Checksum;
+import org.jlab.wfbrowser.business.util.RuntimeUtil;
+import org.jlab.wfbrowser.model.WaveformStats;
+
+/**
+ * Byte level parser for harvester capture files. Capture files are TSVs that
+ * start with an optional block of "# PV=..." metadata lines, followed by a
+ * single header line and then rows of numeric data, with the first column being
+ * the time offset.
+ * <p>
+ * The previous approach (BufferedReader.readLine, String.split, and
+ * Double.parseDouble) allocated a String for every line, a String[] and a String
+ * for every value, which dominated the cost of loading an event. This parser
+ * scans the raw bytes, tokenizes on whitespace by hand, and parses decimal
+ * values straight into the double[] columns. The only per-file allocations are
+ * the column arrays themselves and the Strings for the metadata and header
+ * lines. Values that fall outside of the simple decimal fast path (more than 18
+ * significant digits, large exponents, NaN, Infinity, etc.) are handed to
+ * Double.parseDouble so that the results are always identical to the old
+ * approach.
+ * <p>
+ * Tokenizing follows the same rules as line.split("\\s+") - runs of whitespace
+ * separate values, trailing whitespace is ignored, and leading whitespace
+ * produces an empty first value. Empty values are stored as NaN.
+ * <p>
+ * Callers that only need some of the waveforms can supply the set of column
+ * names to keep. The time column is always kept. Values in the other columns are
+ * stepped over without being parsed or stored, and the column is returned as
+ * null.
+ * <p>
+ * Callers that only need to describe a capture file, e.g., when a new event is
+ * added to the database, can use parseSummary to get the metadata, headers, and
+ * the sample start, end, and step without loading any of the data. It can
+ * also compute the summary statistics of every waveform as the rows go by,
+ * which means reading the whole file but still not keeping any of the data.
+ * <p>
+ * Files on disk are memory mapped and the mapped bytes are copied straight
+ * into the parse buffer, skipping the read system calls and the intermediate
+ * stream buffers. Mapping a file has a fixed cost that is not worth paying for
+ * small files, so files smaller than WFB_MMAP_THRESHOLD bytes (default 64 KB,
+ * which is what fits in one read) are read through a stream instead.
+ * <p>
+ * A parser holds on to its read buffer so that it can be reused for every file
+ * of an event. Instances are not thread safe.
+ *
+ * @author adamc
+ */
+public class CaptureFileParser {
+
+    private static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+    private static final long MMAP_THRESHOLD = RuntimeUtil.getLongEnv("WFB_MMAP_THRESHOLD", DEFAULT_BUFFER_SIZE);
+    private static final int INITIAL_ROW_CAPACITY = 8192;
+
+    // Exact powers of ten that can be represented as a double.  Anything past 10^22 is not exact.
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    // Largest integer such that it and every smaller integer can be represented exactly as a double
+    private static final long MAX_EXACT_MANTISSA = 1L << 53;
+
+    private byte[] buf;
+    private int pos;
+    private int limit;
+    private boolean eof;
+    private InputStream in;
+    private ByteBuffer src;
+
+    // Position of the current line within buf.  lineEnd excludes the '\n'.
+    private int lineStart;
+    private int lineEnd;
+
+    public CaptureFileParser() {
+        this(DEFAULT_BUFFER_SIZE);
+    }
+
+    public CaptureFileParser(int bufferSize) {
+        if (bufferSize < 1) {
+            throw new IllegalArgumentException("bufferSize must be positive");
+        }
+        buf = new byte[bufferSize];
+    }
+
+    /**
+     * Parse a capture file from an InputStream. The stream is read until it is
+     * exhausted, but is not closed. This means that this method can be handed
+     * the current entry of a TarArchiveInputStream.
+     *
+     * @param is          The stream of capture file content
+     * @param includeData Should the data rows be parsed or only the metadata and headers
+     * @return The parsed capture file content, or null if the stream does not contain a header line
+     * @throws IOException If problem arises reading the stream or if a data row is malformed
+     */
+    public Result parse(InputStream is, boolean includeData) throws IOException {
+        return parse(is, includeData, null);
+    }
+
+    /**
+     * Parse a capture file from an InputStream, only keeping the data of the
+     * requested columns. The stream is read until it is exhausted, but is not
+     * closed.
+     *
+     * @param is          The stream of capture file content
+     * @param includeData Should the data rows be parsed or only the metadata and headers
+     * @param columns     The names of the columns whose data should be kept.  The time column is always kept.  Null
+     *                    keeps every column.
+     * @return The parsed capture file content, or null if the stream does not contain a header line
+     * @throws IOException If problem arises reading the stream or if a data row is malformed
+     */
+    public Result parse(InputStream is, boolean includeData, Set<String> columns) throws IOException {
+        in = is;
+        pos = 0;
+        limit = 0;
+        eof = false;
+        try {
+            return parseContent(includeData, columns);
+        } finally {
+            in = null;
+        }
+    }
+
+    /**
+     * Parse a capture file held in a ByteBuffer, e.g., a memory mapped file. The
+     * buffer's content from its position to its limit is parsed. The buffer's
+     * position is advanced.
+     *
+     * @param bytes       The capture file content
+     * @param includeData Should the data rows be parsed or only the metadata and headers
+     * @param columns     The names of the columns whose data should be kept.  The time column is always kept.  Null
+     *                    keeps every column.
+     * @return The parsed capture file content, or null if the buffer does not contain a header line
+     * @throws IOException If a data row is malformed
+     */
+    public Result parse(ByteBuffer bytes, boolean includeData, Set<String> columns) throws IOException {
+        src = bytes;
+        pos = 0;
+        limit = 0;
+        eof = false;
+        try {
+            return parseContent(includeData, columns);
+        } finally {
+            src = null;
+        }
+    }
+
+    /**
+     * Parse a capture file on disk. Files of at least WFB_MMAP_THRESHOLD bytes
+     * are memory mapped, smaller files are read through a stream.
+     *
+     * @param file        The capture file
+     * @param includeData Should the data rows be parsed or only the metadata and headers
+     * @param columns     The names of the columns whose data should be kept.  The time column is always kept.  Null
+     *                    keeps every column.
+     * @param checksum    If not null, updated with the content of the file.  Only the content that was needed is
+     *                    guaranteed to be included when includeData is false.
+     * @return The parsed capture file content, or null if the file does not contain a header line
+     * @throws IOException If problem arises reading the file or if a data row is malformed
+     */
+    public Result parse(Path file, boolean includeData, Set<String> columns, Checksum checksum) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size >= MMAP_THRESHOLD && size <= Integer.MAX_VALUE) {
+                MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+                if (checksum != null) {
+                    checksum.update(mapped.duplicate());
+                }
+                return parse(mapped, includeData, columns);
+            }
+
+            InputStream is = Channels.newInputStream(channel);
+            if (checksum != null) {
+                is = new CheckedInputStream(is, checksum);
+            }
+            return parse(is, includeData, columns);
+        }
+    }
+
+    /**
+     * Read only what is needed to describe a capture file without loading its
+     * data: the metadata, the headers, and the time offsets of the first two and
+     * the last data rows. The stream has to be read until it is exhausted to
+     * find the last row, but only the time column of each row is parsed. The
+     * stream is not closed.
+     *
+     * @param is The stream of capture file content
+     * @return The metadata and headers with the sample start, end, and step set, or null if the stream does not
+     * contain a header line
+     * @throws IOException If problem arises reading the stream or if there are fewer than two data rows
+     */
+    public Result parseSummary(InputStream is) throws IOException {
+        return parseSummary(is, false);
+    }
+
+    /**
+     * Read the metadata, headers, and sample timing of a capture file without
+     * loading its data, optionally computing the statistics of each waveform
+     * from the rows as they are read. The stream is not closed.
+     *
+     * @param is         The stream of capture file content
+     * @param withStats  Should the statistics of each waveform be computed
+     * @return The metadata and headers with the sample start, end, and step set, or null if the stream does not
+     * contain a header line
+     * @throws IOException If problem arises reading the stream or if there are fewer than two data rows
+     */
+    public Result parseSummary(InputStream is, boolean withStats) throws IOException {
+        in = is;
+        pos = 0;
+        limit = 0;
+        eof = false;
+        try {
+            return parseSummaryContent(true, withStats);
+        } finally {
+            in = null;
+        }
+    }
+
+    /**
+     * Read the metadata, headers, sample timing and waveform statistics of a
+     * capture file held in a ByteBuffer, e.g., a memory mapped file.
+     */
+    private Result parseSummary(ByteBuffer bytes, boolean withStats) throws IOException {
+        src = bytes;
+        pos = 0;
+        limit = 0;
+        eof = false;
+        try {
+            return parseSummaryContent(true, withStats);
+        } finally {
+            src = null;
+        }
+    }
+
+    /**
+     * Read only what is needed to describe a capture file on disk without
+     * loading its data. The file is read up to its second data row, and the last
+     * row is found by reading backwards from the end of the file, so the cost
+     * does not depend on the size of the file.
+     *
+     * @param file The capture file
+     * @return The metadata and headers with the sample start, end, and step set, or null if the file does not
+     * contain a header line
+     * @throws IOException If problem arises reading the file or if there are fewer than two data rows
+     */
+    public Result parseSummary(Path file) throws IOException {
+        return parseSummary(file, false);
+    }
+
+    /**
+     * Read the metadata, headers, and sample timing of a capture file on disk
+     * without loading its data. Computing the statistics of each waveform
+     * means reading every row, so the file is read through instead of only at
+     * its start and end. As with parse, files of at least WFB_MMAP_THRESHOLD
+     * bytes are memory mapped.
+     *
+     * @param file      The capture file
+     * @param withStats Should the statistics of each waveform be computed
+     * @return The metadata and headers with the sample start, end, and step set, or null if the file does not
+     * contain a header line
+     * @throws IOException If problem arises reading the file or if there are fewer than two data rows
+     */
+    public Result parseSummary(Path file, boolean withStats) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (withStats) {
+                long size = channel.size();
+                if (size >= MMAP_THRESHOLD && size <= Integer.MAX_VALUE) {
+                    return parseSummary(channel.map(FileChannel.MapMode.READ_ONLY, 0, size), true);
+                }
+                return parseSummary(Channels.newInputStream(channel), true);
+            }
+
+            Result head;
+            in = Channels.newInputStream(channel);
+            pos = 0;
+            limit = 0;
+            eof = false;
+            try {
+                head = parseSummaryContent(false, false);
+            } finally {
+                in = null;
+            }
+            if (head == null) {
+                return null;
+            }
+            return new Result(head.getMetadataList(), head.getHeaders(), head.getColumns(), 0,
+                    head.getSampleStart(), readLastTime(channel), head.getSampleStep(), null);
+        }
+    }
+
+    /**
+     * Reduce a fully parsed capture file to what parseSummary would have
+     * returned with statistics, so that the data can be dropped.
+     *
+     * @param result A capture file parsed with all of its data, or null
+     * @return The metadata and headers with the sample start, end, step and statistics set, or null if result is null
+     * @throws IOException If there are fewer than two data rows
+     */
+    public static Result summarize(Result result) throws IOException {
+        if (result == null) {
+            return null;
+        }
+        String[] headers = result.getHeaders();
+        double[][] columns = result.getColumns();
+        double[] times = columns[0];
+        if (result.getRowCount() < 2) {
+            throw new IOException("Capture file has " + result.getRowCount() + " data rows.  At least two are needed to"
+                    + " determine the sample step.");
+        }
+
+        WaveformStats[] stats = new WaveformStats[headers.length];
+        for (int j = 1; j < headers.length; j++) {
+            stats[j] = WaveformStats.compute(times, columns[j]);
+        }
+        return new Result(result.getMetadataList(), headers, new double[headers.length][0], 0, times[0],
+                times[times.length - 1], times[1] - times[0], stats);
+    }
+
+    /**
+     * Parse the metadata, headers, and the time offsets of the first two rows.
+     * The sample end is the time offset of the last row if readToEnd is true,
+     * and of the second row otherwise. Computing statistics reads to the end.
+     */
+    private Result parseSummaryContent(boolean readToEnd, boolean withStats) throws IOException {
+        List<Metadata> metadataList = new ArrayList<>();
+        String[] headers = parseHeader(metadataList);
+        if (headers == null) {
+            return null;
+        }
+
+        // One per waveform.  The time column has none.
+        WaveformStats.Accumulator[] accumulators = null;
+        if (withStats) {
+            accumulators = new WaveformStats.Accumulator[headers.length];
+            for (int j = 1; j < headers.length; j++) {
+                accumulators[j] = new WaveformStats.Accumulator();
+            }
+        }
+
+        double[] times = new double[2];
+        int row = 0;
+        while (row < times.length && nextLine()) {
+            times[row] = withStats ? parseRowStats(accumulators, row) : parseTime(row);
+            row++;
+        }
+        if (row < times.length) {
+            throw new IOException("Capture file has " + row + " data rows.  At least two are needed to determine the"
+                    + " sample step.");
+        }
+
+        double end = times[1];
+        if (readToEnd || withStats) {
+            while (nextLine()) {
+                end = withStats ? parseRowStats(accumulators, row) : parseTime(row);
+                row++;
+            }
+        }
+
+        WaveformStats[] stats = null;
+        if (withStats) {
+            stats = new WaveformStats[headers.length];
+            for (int j = 1; j < headers.length; j++) {
+                stats[j] = accumulators[j].getStats();
+            }
+        }
+
+        return new Result(metadataList, headers, new double[headers.length][0], 0, times[0], end,
+                times[1] - times[0], stats);
+    }
+
+    /**
+     * Tokenize the current line and add its values to the statistics of each
+     * waveform without storing them.
+     *
+     * @return The time offset of the row
+     */
+    private double parseRowStats(WaveformStats.Accumulator[] accumulators, int row) throws IOException {
+        int p = lineStart;
+        int end = lineEnd;
+        double time = Double.NaN;
+        for (int j = 0; j < accumulators.length; j++) {
+            if (p >= end) {
+                throw new IOException("Capture file data row " + (row + 1) + " has " + j + " values, expected "
+                        + accumulators.length);
+            }
+            int tokenStart = p;
+            while (p < end && !isWhitespace(buf[p])) {
+                p++;
+            }
+            double value = (p == tokenStart) ? Double.NaN : parseDouble(buf, tokenStart, p);
+            if (j == 0) {
+                time = value;
+            } else {
+                accumulators[j].add(time, value);
+            }
+
+            // Skip the run of separating whitespace
+            while (p < end && isWhitespace(buf[p])) {
+                p++;
+            }
+        }
+        return time;
+    }
+
+    /**
+     * Find the last line of the file and parse its time offset. Reads
+     * backwards from the end of the file in growing chunks until a complete
+     * line has been read.
+     */
+    private double readLastTime(FileChannel channel) throws IOException {
+        long size = channel.size();
+        int window = (int) Math.min(size, DEFAULT_BUFFER_SIZE);
+        while (true) {
+            if (buf.length < window) {
+                buf = new byte[window];
+            }
+            long start = size - window;
+            ByteBuffer bb = ByteBuffer.wrap(buf, 0, window);
+            while (bb.hasRemaining()) {
+                if (channel.read(bb, start + bb.position()) < 0) {
+                    throw new IOException("Capture file was truncated while being read");
+                }
+            }
+
+            // Drop the final line ending, then look for the start of the last line
+            int end = window;
+            if (end > 0 && buf[end - 1] == '\n') {
+                end--;
+            }
+            if (end > 0 && buf[end - 1] == '\r') {
+                end--;
+            }
+            int newline = end - 1;
+            while (newline >= 0 && buf[newline] != '\n') {
+                newline--;
+            }
+
+            if (newline >= 0 || start == 0) {
+                lineStart = newline + 1;
+                lineEnd = end;
+                return parseTime(-1);
+            }
+            window = (int) Math.min(size, 2L * window);
+        }
+    }
+
+    /**
+     * Parse the time offset (the first value) of the current line.
+     *
+     * @param row The index of the data row, or -1 if not known.  Only used for error messages.
+     */
+    private double parseTime(int row) throws IOException {
+        if (lineStart >= lineEnd) {
+            throw new IOException("Capture file data row " + (row < 0 ? "" : (row + 1) + " ") + "is empty");
+        }
+        int p = lineStart;
+        while (p < lineEnd && !isWhitespace(buf[p])) {
+            p++;
+        }
+        return (p == lineStart) ? Double.NaN : parseDouble(buf, lineStart, p);
+    }
+
+    /**
+     * Read the metadata lines and the header line. Metadata lines all start
+     * with '#'. The first line that doesn't is the header line.
+     *
+     * @param metadataList The list that the metadata is added to
+     * @return The column headers, or null if there is no header line
+     */
+    private String[] parseHeader(List<Metadata> metadataList) throws IOException {
+        String headerLine = null;
+        while (nextLine()) {
+            String line = new String(buf, lineStart, lineEnd - lineStart, StandardCharsets.UTF_8);
+            if (lineEnd > lineStart && buf[lineStart] == '#') {
+                metadataList.add(Metadata.getMetadataFromCaptureFileLine(line));
+            } else {
+                headerLine = line;
+                break;
+            }
+        }
+
+        // Check that there is data to process
+        if (headerLine == null) {
+            return null;
+        }
+        return headerLine.split("\\s+");
+    }
+
+    private Result parseContent(boolean includeData, Set<String> columns) throws IOException {
+        List<Metadata> metadataList = new ArrayList<>();
+        String[] headers = parseHeader(metadataList);
+        if (headers == null) {
+            return null;
+        }
+
+        if (!includeData) {
+            return new Result(metadataList, headers, new double[headers.length][0], 0);
+        }
+
+        // Columns, by rows, since we know the number of headers but not the number of rows.  Columns that were not
+        // requested are left null.
+        double[][] data = new double[headers.length][];
+        int lastColumn = 0;
+        for (int j = 0; j < headers.length; j++) {
+            if (j == 0 || columns == null || columns.contains(headers[j])) {
+                data[j] = new double[INITIAL_ROW_CAPACITY];
+                lastColumn = j;
+            }
+        }
+
+        int capacity = INITIAL_ROW_CAPACITY;
+        int row = 0;
+        while (nextLine()) {
+            if (row >= capacity) {
+                capacity *= 2;
+                for (int j = 0; j < data.length; j++) {
+                    if (data[j] != null) {
+                        data[j] = Arrays.copyOf(data[j], capacity);
+                    }
+                }
+            }
+            parseRow(data, lastColumn, row);
+            row++;
+        }
+
+        // Trim the columns down to the number of rows actually read
+        for (int j = 0; j < data.length; j++) {
+            if (data[j] != null && data[j].length != row) {
+                data[j] = Arrays.copyOf(data[j], row);
+            }
+        }
+
+        return new Result(metadataList, headers, data, row);
+    }
+
+    /**
+     * Tokenize the current line and store its values in the given row of the
+     * data columns. The first token is empty when the line starts with
+     * whitespace, matching String.split. Tokens for null columns are skipped
+     * and the rest of the line is ignored once lastColumn has been read.
+     */
+    private void parseRow(double[][] data, int lastColumn, int row) throws IOException {
+        int p = lineStart;
+        int end = lineEnd;
+        for (int j = 0; j <= lastColumn; j++) {
+            if (p >= end) {
+                throw new IOException("Capture file data row " + (row + 1) + " has " + j + " values, expected "
+                        + data.length);
+            }
+            int tokenStart = p;
+            while (p < end && !isWhitespace(buf[p])) {
+                p++;
+            }
+            if (data[j] != null) {
+                data[j][row] = (p == tokenStart) ? Double.NaN : parseDouble(buf, tokenStart, p);
+            }
+
+            // Skip the run of separating whitespace
+            while (p < end && isWhitespace(buf[p])) {
+                p++;
+            }
+        }
+    }
+
+    /**
+     * Advance lineStart/lineEnd to the next line in the stream, pulling more
+     * data into the buffer as needed. The buffer grows when a single line does
+     * not fit in it.
+     *
+     * @return false if the stream has been exhausted
+     */
+    private boolean nextLine() throws IOException {
+        int scan = pos;
+        while (true) {
+            while (scan < limit) {
+                if (buf[scan] == '\n') {
+                    lineStart = pos;
+                    lineEnd = (scan > pos && buf[scan - 1] == '\r') ? scan - 1 : scan;
+                    pos = scan + 1;
+                    return true;
+                }
+                scan++;
+            }
+
+            if (eof) {
+                if (pos < limit) {
+                    // Final line without a trailing newline
+                    lineStart = pos;
+                    lineEnd = (buf[limit - 1] == '\r') ? limit - 1 : limit;
+                    pos = limit;
+                    return true;
+                }
+                return false;
+            }
+
+            // Shift the partial line to the front of the buffer and read some more
+            int consumed = pos;
+            if (consumed > 0) {
+                System.arraycopy(buf, consumed, buf, 0, limit - consumed);
+                limit -= consumed;
+                scan -= consumed;
+                pos = 0;
+            } else if (limit == buf.length) {
+                buf = Arrays.copyOf(buf, 2 * buf.length);
+            }
+            fill();
+        }
+    }
+
+    private void fill() throws IOException {
+        if (src != null) {
+            int n = Math.min(src.remaining(), buf.length - limit);
+            if (n == 0) {
+                eof = true;
+            } else {
+                src.get(buf, limit, n);
+                limit += n;
+            }
+            return;
+        }
+        int n = in.read(buf, limit, buf.length - limit);
+        if (n < 0) {
+            eof = true;
+        } else {
+            limit += n;
+        }
+    }
+
+    /**
+     * Same whitespace characters as the regex \s
+     */
+    private static boolean isWhitespace(byte b) {
+        return b == ' ' || b == '\t' || b == '\n' || b == '\r' || b == '\f' || b == 0x0B;
+    }
+
+    /**
+     * Parse a decimal number from a range of ASCII bytes. Simple decimals
+     * ([+-]digits[.digits][(e|E)[+-]digits]) whose significand fits in 53 bits
+     * and whose decimal exponent is at most 22 in magnitude are computed
+     * directly. This requires a single correctly rounded multiplication or
+     * division of two exactly represented doubles, so the result is identical to
+     * Double.parseDouble. Everything else is passed through to
+     * Double.parseDouble.
+     *
+     * @param b     The bytes to read from
+     * @param start The index of the first byte of the number
+     * @param end   One past the index of the last byte of the number
+     * @return The parsed value
+     * @throws NumberFormatException If the bytes are not a valid number
+     */
+    static double parseDouble(byte[] b, int start, int end) {
+        int p = start;
+        boolean negative = false;
+        if (b[p] == '-' || b[p] == '+') {
+            negative = b[p] == '-';
+            p++;
+        }
+
+        long mantissa = 0;
+        int sigDigits = 0;
+        int exponent = 0;
+        boolean anyDigits = false;
+
+        // Integer portion
+        while (p < end && b[p] >= '0' && b[p] <= '9') {
+            anyDigits = true;
+            if (mantissa != 0 || b[p] != '0') {
+                mantissa = mantissa * 10 + (b[p] - '0');
+                sigDigits++;
+            }
+            p++;
+        }
+
+        // Fractional portion
+        if (p < end && b[p] == '.') {
+            p++;
+            while (p < end && b[p] >= '0' && b[p] <= '9') {
+                anyDigits = true;
+                if (mantissa != 0 || b[p] != '0') {
+                    mantissa = mantissa * 10 + (b[p] - '0');
+                    sigDigits++;
+                }
+                exponent--;
+                p++;
+            }
+        }
+
+        // Exponent portion
+        if (anyDigits && p < end && (b[p] == 'e' || b[p] == 'E')) {
+            p++;
+            boolean negativeExp = false;
+            if (p < end && (b[p] == '-' || b[p] == '+')) {
+                negativeExp = b[p] == '-';
+                p++;
+            }
+            int expStart = p;
+            int exp = 0;
+            while (p < end && b[p] >= '0' && b[p] <= '9' && exp < 10000) {
+                exp = exp * 10 + (b[p] - '0');
+                p++;
+            }
+            if (p == expStart) {
+                return slowParseDouble(b, start, end);
+            }
+            exponent += negativeExp ? -exp : exp;
+        }
+
+        // Anything unexpected or beyond the fast path is left to the JDK
+        if (!anyDigits || p != end || sigDigits > 18 || mantissa > MAX_EXACT_MANTISSA) {
+            return slowParseDouble(b, start, end);
+        }
+
+        double value;
+        if (mantissa == 0) {
+            value = 0.0;
+        } else if (exponent >= 0 && exponent < POWERS_OF_TEN.length) {
+            value = (double) mantissa * POWERS_OF_TEN[exponent];
+        } else if (exponent < 0 && -exponent < POWERS_OF_TEN.length) {
+            value = (double) mantissa / POWERS_OF_TEN[-exponent];
+        } else {
+            return slowParseDouble(b, start, end);
+        }
+        return negative ? -value : value;
+    }
+
+    private static double slowParseDouble(byte[] b, int start, int end) {
+        return Double.parseDouble(new String(b, start, end - start, StandardCharsets.ISO_8859_1));
+    }
+
+    /**
+     * The content of a single parsed capture file. The columns are in the same
+     * order as the headers, with the time offsets in column zero. Columns that
+     * were not requested are null.
+     */
+    public static class Result {
+        private final List<Metadata> metadataList;
+        private final String[] headers;
+        private final double[][] columns;
+        private final int rowCount;
+        private final Double sampleStart;
+        private final Double sampleEnd;
+        private final Double sampleStep;
+        private final WaveformStats[] stats;
+
+        Result(List<Metadata> metadataList, String[] headers, double[][] columns, int rowCount) {
+            this(metadataList, headers, columns, rowCount, null, null, null, null);
+        }
+
+        Result(List<Metadata> metadataList, String[] headers, double[][] columns, int rowCount, Double sampleStart,
+               Double sampleEnd, Double sampleStep, WaveformStats[] stats) {
+            this.metadataList = metadataList;
+            this.headers = headers;
+            this.columns = columns;
+            this.rowCount = rowCount;
+            this.sampleStart = sampleStart;
+            this.sampleEnd = sampleEnd;
+            this.sampleStep = sampleStep;
+            this.stats = stats;
+        }
+
+        public List<Metadata> getMetadataList() {
+            return metadataList;
+        }
+
+        public String[] getHeaders() {
+            return headers;
+        }
+
+        public double[][] getColumns() {
+            return columns;
+        }
+
+        public int getRowCount() {
+            return rowCount;
+        }
+
+        /**
+         * The time offset of the first data row. Only set by parseSummary, use the time column otherwise.
+         *
+         * @return The first time offset, or null if not known
+         */
+        public Double getSampleStart() {
+            return sampleStart;
+        }
+
+        /**
+         * The time offset of the last data row. Only set by parseSummary, use the time column otherwise.
+         *
+         * @return The last time offset, or null if not known
+         */
+        public Double getSampleEnd() {
+            return sampleEnd;
+        }
+
+        /**
+         * The difference between the time offsets of the first two data rows. Only set by parseSummary, use the time
+         * column otherwise.
+         *
+         * @return The sample step, or null if not known
+         */
+        public Double getSampleStep() {
+            return sampleStep;
+        }
+
+        /**
+         * The statistics of each waveform, in the same order as the headers with null for the time column. Only set
+         * by parseSummary when asked for, compute them from the columns otherwise.
+         *
+         * @return The statistics, or null if they were not computed
+         */
+        public WaveformStats[] getStats() {
+            return stats;
+        }
+    }
+}
@@ -7,8 +7,6 @@ package org.jlab.wfbrowser.model.CaptureFile;
 
 import java.math.BigDecimal;
 import java.util.Objects;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 import javax.json.Json;
 import javax.json.JsonObject;
 import javax.json.JsonObjectBuilder;
@@ -27,6 +25,9 @@ import javax.json.JsonObjectBuilder;
  */
 public class Metadata {
 
+    private static final String NOT_ARCHIVED = "not archived";
+    private static final String UNAVAILABLE = "unavailable @ ";
+
     private Long id = null;
     private final MetadataType type;
     private final String name;
@@ -77,67 +78,99 @@ public class Metadata {
      * @return A Metadata object
      */
     public static Metadata getMetadataFromCaptureFileLine(String line) {
-        String unarchivedRegex = "# ([^=]+)=not archived";
-        String unavailableRegex = "# ([^=]+)=unavailable @ ([\\-\\d\\.e]+)";
-        String numberRegex = "# ([^=]+)=([\\-\\d\\.e]+) @ ([\\-\\d\\.e]+)\\(([\\-\\d\\.e]+)\\)";
-        String stringRegex = "# ([^=]+)='(.*)' @ ([\\-\\d\\.e]+)\\(([\\-\\d\\.e]+)\\)";
+        // This is called for every metadata line of every capture file loaded, so the line is picked apart by hand in
+        // a single pass instead of trying a regex per format.  The accepted formats are exactly those of the regexes
+        // it replaced:
+        //   # ([^=]+)=not archived
+        //   # ([^=]+)=unavailable @ ([\-\d\.e]+)
+        //   # ([^=]+)=([\-\d\.e]+) @ ([\-\d\.e]+)\(([\-\d\.e]+)\)
+        //   # ([^=]+)='(.*)' @ ([\-\d\.e]+)\(([\-\d\.e]+)\)
+        int equals = line.indexOf('=');
+        if (!line.startsWith("# ") || equals < 3) {
+            throw new IllegalArgumentException("Metadata line has unrecognized format - " + line);
+        }
+        String n = line.substring(2, equals);
+        int pos = equals + 1;
 
-        String testRegex = "# ([^=]+)=unavailable @ (\\d+)";
+        if (line.length() - pos == NOT_ARCHIVED.length() && line.startsWith(NOT_ARCHIVED, pos)) {
+            return new Metadata(MetadataType.UNARCHIVED, n, null, null, null);
+        }
 
-        Matcher m;
-        MetadataType t;
-        String n;
-        Object v;
-        Double o, s;
-        if (line.matches(unarchivedRegex)) {
-            m = Pattern.compile(unarchivedRegex).matcher(line);
-            if (!m.matches()) {
-                throw new IllegalArgumentException("Error processing metadata.  Pattern:" + m.pattern().pattern() + " Line:" + line);
-            } else {
-                t = MetadataType.UNARCHIVED;
-                n = m.group(1);
-                v = null;
-                o = null;
-                s = null;
+        if (line.startsWith(UNAVAILABLE, pos)) {
+            String offset = line.substring(pos + UNAVAILABLE.length());
+            if (isNumber(offset)) {
+                return new Metadata(MetadataType.UNAVAILABLE, n, null, Double.valueOf(offset), null);
             }
-        } else if (line.matches(unavailableRegex)) {
-            m = Pattern.compile(unavailableRegex).matcher(line);
-            if (!m.matches()) {
-                throw new IllegalArgumentException("Error processing metadata.  Pattern:" + m.pattern().pattern() + " Line:" + line);
-            } else {
-                t = MetadataType.UNAVAILABLE;
-                n = m.group(1);
-                v = null;
-                o = Double.valueOf(m.group(2));
-                s = null;
+        } else if (pos < line.length() && line.charAt(pos) == '\'') {
+            // The string value may itself contain quotes, so the value ends at the last "' @ "
+            int valueEnd = line.lastIndexOf("' @ ");
+            if (valueEnd > pos) {
+                String v = line.substring(pos + 1, valueEnd);
+                int open = line.indexOf('(', valueEnd + 4);
+                if (!hasLineTerminator(v) && open > 0 && isOffsetAndStart(line, valueEnd + 4, open)) {
+                    return new Metadata(MetadataType.STRING, n, v, Double.valueOf(line.substring(valueEnd + 4, open)),
+                            Double.valueOf(line.substring(open + 1, line.length() - 1)));
+                }
             }
-        } else if (line.matches(numberRegex)) {
-            m = Pattern.compile(numberRegex).matcher(line);
-            if (!m.matches()) {
-                throw new IllegalArgumentException("Error processing metadata.  Pattern:" + m.pattern().pattern() + " Line:" + line);
-            } else {
-                t = MetadataType.NUMBER;
-                n = m.group(1);
-                v = Double.valueOf(m.group(2));
-                o = Double.valueOf(m.group(3));
-                s = Double.valueOf(m.group(4));
+        } else {
+            int valueEnd = line.indexOf(" @ ", pos);
+            if (valueEnd > 0) {
+                String v = line.substring(pos, valueEnd);
+                int open = line.indexOf('(', valueEnd + 3);
+                if (isNumber(v) && open > 0 && isOffsetAndStart(line, valueEnd + 3, open)) {
+                    return new Metadata(MetadataType.NUMBER, n, Double.valueOf(v),
+                            Double.valueOf(line.substring(valueEnd + 3, open)),
+                            Double.valueOf(line.substring(open + 1, line.length() - 1)));
+                }
             }
-        } else if (line.matches(stringRegex)) {
-            m = Pattern.compile(stringRegex).matcher(line);
-            if (!m.matches()) {
-                throw new IllegalArgumentException("Error processing metadata.  Pattern:" + m.pattern().pattern() + " Line:" + line);
-            } else {
-                t = MetadataType.STRING;
-                n = m.group(1);
-                v = m.group(2);
-                o = Double.valueOf(m.group(3));
-                s = Double.valueOf(m.group(4));
+        }
+
+        throw new IllegalArgumentException("Metadata line has unrecognized format - " + line);
+    }
+
+    /**
+     * Check that the line ends with "offset(start)", where the offset runs from
+     * the given position to the opening parenthesis.
+     */
+    private static boolean isOffsetAndStart(String line, int offsetStart, int open) {
+        return line.charAt(line.length() - 1) == ')'
+                && isNumber(line, offsetStart, open)
+                && isNumber(line, open + 1, line.length() - 1);
+    }
+
+    private static boolean isNumber(String s) {
+        return isNumber(s, 0, s.length());
+    }
+
+    /**
+     * Check that the range is not empty and only holds the characters a
+     * number can be written with in a capture file (digits, '-', '.', 'e').
+     * Whether it actually is a valid number is left to Double.valueOf.
+     */
+    private static boolean isNumber(String s, int start, int end) {
+        if (start >= end) {
+            return false;
+        }
+        for (int i = start; i < end; i++) {
+            char c = s.charAt(i);
+            if ((c < '0' || c > '9') && c != '-' && c != '.' && c != 'e') {
+                return false;
             }
-        } else {
-            throw new IllegalArgumentException("Metadata line has unrecognized format - " + line);
         }
+        return true;
+    }
 
-        return new Metadata(t, n, v, o, s);
+    /**
+     * String values could never span lines with the old regex parsing, so don't let them now either.
+     */
+    private static boolean hasLineTerminator(String s) {
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029') {
+                return true;
+            }
+        }
+        return false;
     }
 
     public String getName() {
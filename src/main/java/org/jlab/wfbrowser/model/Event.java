@@ -1,14 +1,16 @@
 package org.jlab.wfbrowser.model;
 
+import org.jlab.wfbrowser.model.CaptureFile.BinaryCaptureFile;
 import org.jlab.wfbrowser.model.CaptureFile.CaptureFile;
+import org.jlab.wfbrowser.model.CaptureFile.CaptureFileCache;
+import org.jlab.wfbrowser.model.CaptureFile.CaptureFileParser;
 
-import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileInputStream;
+import java.io.ByteArrayInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.io.OutputStream;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.DirectoryStream;
@@ -18,6 +20,11 @@ import java.time.ZoneOffset;
 import java.time.format.DateTimeFormatter;
 import java.time.temporal.ChronoUnit;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.Semaphore;
 import javax.json.*;
 import java.nio.file.Path;
 import java.nio.file.Paths;
@@ -33,7 +40,12 @@ import java.util.logging.Logger;
 
 import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream;
 import org.apache.commons.compress.compressors.gzip.GzipCompressorOutputStream;
+import org.apache.commons.compress.utils.CloseShieldFilterInputStream;
 import org.apache.commons.compress.utils.IOUtils;
+import org.jlab.wfbrowser.business.util.ArchiveIndex;
+import org.jlab.wfbrowser.business.util.BufferPool;
+import org.jlab.wfbrowser.business.util.ParseExecutor;
+import org.jlab.wfbrowser.business.util.SeriesMatcher;
 import org.jlab.wfbrowser.business.util.TimeUtil;
 import org.jlab.wfbrowser.model.CaptureFile.Metadata;
 
@@ -61,6 +73,13 @@ public class Event implements Comparable<Event> {
 
     private static final Logger LOGGER = Logger.getLogger(Event.class.getName());
 
+    // The number of parse threads needed before decompressing every entry of an archive concurrently through its index
+    // beats inflating it sequentially with zlib.
+    private static final int INDEXED_MIN_THREADS = 4;
+
+    // Parsers hold on to their read buffer, so keep one per parse pool thread.  See getParser.
+    private static final ThreadLocal<CaptureFileParser> PARSER = ThreadLocal.withInitial(CaptureFileParser::new);
+
     private final Path dataDir;         // Where does the data live on the filesystem.  This is the base data dir of all events, not the directory containing capture files for this event.
     private Long eventId = null;        // The event id assigned by the database
     private final SortedMap<String, CaptureFile> captureFileMap = new TreeMap<>();
@@ -190,6 +209,38 @@ public class Event implements Comparable<Event> {
      */
     public Event(Instant eventTime, String location, String system, boolean archive, boolean delete, boolean grouped,
                  String classification, String captureFile, List<Label> labelList) throws IOException {
+        this(eventTime, location, system, archive, delete, grouped, classification, captureFile, labelList, false);
+    }
+
+    /**
+     * Event constructor for creating an event object that has not been added to
+     * the database, optionally without loading the waveform data. Adding an
+     * event to the database only needs the waveform names, metadata, and the
+     * sample start, end, and step of each capture file. In header only mode
+     * each capture file is read only at its start and end, so neither the time
+     * nor the memory needed to create the event grows with the size of its
+     * capture files. The waveforms of such an event have neither data nor
+     * statistics.  See readWaveformStatsFromDisk for computing the statistics
+     * later.
+     * <p>
+     * Header only mode only helps capture files that are on disk uncompressed.
+     * Compressed events are loaded in full.
+     *
+     * @param eventTime      The time which the event occurred
+     * @param location       The location (likely zone) where the event occurred
+     * @param system         The harvester system with which this event is associated
+     * @param archive        Archive flag.  Denotes whether the event should be permanently kep
+     * @param delete         The delete flag.  Denotes whether this event should be deleted during the next purge
+     * @param grouped        Whether or not multiple capture files are grouped together to represent this event
+     * @param classification capture files
+     * @param captureFile    The capture file of an ungrouped event.  Ignored for grouped events.
+     * @param labelList      A List of Label objects associated with the Event
+     * @param headerOnly     Should only the headers and sample timing of the capture files be read
+     * @throws IOException If problem arises reading waveform data from disk
+     */
+    public Event(Instant eventTime, String location, String system, boolean archive, boolean delete, boolean grouped,
+                 String classification, String captureFile, List<Label> labelList, boolean headerOnly)
+            throws IOException {
         if (eventTime == null) {
             throw new IllegalArgumentException("eventTime is required non-null");
         }
@@ -232,7 +283,11 @@ public class Event implements Comparable<Event> {
             }
         }
         // Process the capture files to get waveforms, data, etc.
-        loadCaptureFilesFromDisk(filesToProcess, true);  // includeData = true
+        if (headerOnly) {
+            loadCaptureFileSummariesFromDisk(filesToProcess);
+        } else {
+            loadCaptureFilesFromDisk(filesToProcess, true);  // includeData = true
+        }
 
         updateWaveformsConsistency();
     }
@@ -256,8 +311,9 @@ public class Event implements Comparable<Event> {
             try (DirectoryStream<Path> directoryStream = Files.newDirectoryStream(getEventDirectoryPath())) {
                 for (Path path : directoryStream) {
                     // Actual harvester files end with .txt extension.  Do some basic filtering
-                    if (path.getFileName().toString().contains(".txt")) {
-                        fileSet.add(path.getFileName().toString());
+                    String name = path.getFileName().toString();
+                    if (name.contains(".txt") && !ArchiveIndex.isSidecar(name)) {
+                        fileSet.add(name);
                     }
                 }
             }
@@ -269,25 +325,40 @@ public class Event implements Comparable<Event> {
                 foundParentDir = true;  // Ungrouped have no parent directory
             }
 
-            try (TarArchiveInputStream ais = new TarArchiveInputStream(
-                    new GzipCompressorInputStream(Files.newInputStream(getArchivePath(), StandardOpenOption.READ)))) {
-                TarArchiveEntry entry;
-                while ((entry = ais.getNextTarEntry()) != null) {
-                    if (entry != null) {
-                        if (!ais.canReadEntryData(entry)) {
-                            LOGGER.log(Level.WARNING, "Cannot read tar archive entry - {0}", entry.getName());
-                            throw new IOException("Cannont read archive entry");
-                        }
-                        // These shouldn't have nested structures, so just treat the Entry as though it were a file
-                        if (entry.isDirectory() && foundParentDir) {
-                            LOGGER.log(Level.WARNING, "Unexpected compressed directory structure - {0}", entry.getName());
-                            throw new IOException("Unexpected compressed directory structure.");
-                        } else if (entry.isDirectory()) {
-                            foundParentDir = true;
-                        } else {
-                            if (entry.getName().contains(".txt")) {
-                                // If this is a grouped event, we need to strip off the "parent" directory.  No effect if ungrouped.
-                                fileSet.add(Paths.get(entry.getName()).getFileName().toString());
+            // The archive's index lists the entries without decompressing anything once it has been built.
+            ArchiveIndex index = getArchiveIndex(archivePath);
+            if (index != null) {
+                for (ArchiveIndex.Entry entry : index.getEntries()) {
+                    if (entry.isDirectory() && foundParentDir) {
+                        LOGGER.log(Level.WARNING, "Unexpected compressed directory structure - {0}", entry.getName());
+                        throw new IOException("Unexpected compressed directory structure.");
+                    } else if (entry.isDirectory()) {
+                        foundParentDir = true;
+                    } else if (entry.getName().contains(".txt")) {
+                        fileSet.add(Paths.get(entry.getName()).getFileName().toString());
+                    }
+                }
+            } else {
+                try (TarArchiveInputStream ais = new TarArchiveInputStream(
+                        new GzipCompressorInputStream(Files.newInputStream(getArchivePath(), StandardOpenOption.READ)))) {
+                    TarArchiveEntry entry;
+                    while ((entry = ais.getNextTarEntry()) != null) {
+                        if (entry != null) {
+                            if (!ais.canReadEntryData(entry)) {
+                                LOGGER.log(Level.WARNING, "Cannot read tar archive entry - {0}", entry.getName());
+                                throw new IOException("Cannont read archive entry");
+                            }
+                            // These shouldn't have nested structures, so just treat the Entry as though it were a file
+                            if (entry.isDirectory() && foundParentDir) {
+                                LOGGER.log(Level.WARNING, "Unexpected compressed directory structure - {0}", entry.getName());
+                                throw new IOException("Unexpected compressed directory structure.");
+                            } else if (entry.isDirectory()) {
+                                foundParentDir = true;
+                            } else {
+                                if (entry.getName().contains(".txt")) {
+                                    // If this is a grouped event, we need to strip off the "parent" directory.  No effect if ungrouped.
+                                    fileSet.add(Paths.get(entry.getName()).getFileName().toString());
+                                }
                             }
                         }
                     }
@@ -509,11 +580,56 @@ public class Event implements Comparable<Event> {
         return exists;
     }
 
-    // TODO: add javadocs and make sure this is needed.
+    /**
+     * Load the data for all of the waveforms of the event's capture files from
+     * disk.
+     *
+     * @throws IOException If problem arises reading capture file data from disk
+     */
     public void loadWaveformDataFromDisk() throws IOException {
+        loadWaveformDataFromDisk(null);
+    }
+
+    /**
+     * Load the waveform data from disk, but only for the waveforms that map to
+     * one of the requested series. The series names are resolved to waveform
+     * names (i.e., capture file columns) with the series mapping already applied
+     * to the event's waveforms, so this only makes sense for events whose
+     * capture files, waveforms, and series mapping have been looked up from the
+     * database. The parser skips the remaining columns, and capture files that
+     * have no matching waveforms are not read at all. Waveforms that were not
+     * requested are left without data.
+     *
+     * @param seriesSet The names of the series whose waveform data is needed.  Null loads every waveform.
+     * @throws IOException If problem arises reading capture file data from disk
+     */
+    public void loadWaveformDataFromDisk(Set<String> seriesSet) throws IOException {
         List<String> filenames = new ArrayList<>();
-        filenames.addAll(captureFileMap.keySet());
-        loadCaptureFilesFromDisk(filenames, true); // includeData = true
+        Map<String, Set<String>> columnMap = null;
+        if (seriesSet == null) {
+            filenames.addAll(captureFileMap.keySet());
+        } else {
+            columnMap = new HashMap<>();
+            for (CaptureFile cf : captureFileMap.values()) {
+                Set<String> columns = new HashSet<>();
+                for (Waveform w : cf.getWaveforms()) {
+                    for (Series series : w.getSeries()) {
+                        if (seriesSet.contains(series.getName())) {
+                            columns.add(w.getWaveformName());
+                            break;
+                        }
+                    }
+                }
+                if (!columns.isEmpty()) {
+                    filenames.add(cf.getFilename());
+                    columnMap.put(cf.getFilename(), columns);
+                }
+            }
+            if (filenames.isEmpty()) {
+                return;
+            }
+        }
+        loadCaptureFilesFromDisk(filenames, true, columnMap); // includeData = true
     }
 
     /**
@@ -528,6 +644,25 @@ public class Event implements Comparable<Event> {
      * @throws IOException If problem arises reading capture file data from disk
      */
     private void loadCaptureFilesFromDisk(List<String> captureFiles, boolean includeData) throws IOException {
+        loadCaptureFilesFromDisk(captureFiles, includeData, null);
+    }
+
+    /**
+     * Method for parsing capture files on disk, optionally only keeping the data
+     * of some of each file's waveforms. This updates the event's Waveforms and
+     * CaptureFiles.
+     *
+     * @param captureFiles The list of capture files that should be parsed.
+     *                     These should be only the file names that will be found within the event
+     *                     directory or compressed archive file.
+     * @param includeData  Whether or not to include the waveform data or just
+     *                     header information
+     * @param columnMap    Map of capture file name to the names of the waveforms whose data should be kept.  Null
+     *                     keeps every waveform.
+     * @throws IOException If problem arises reading capture file data from disk
+     */
+    private void loadCaptureFilesFromDisk(List<String> captureFiles, boolean includeData,
+                                          Map<String, Set<String>> columnMap) throws IOException {
         if (!isDataOnDisk(captureFiles)) {
             LOGGER.log(Level.SEVERE, "Could not locate data on disk");
             throw new FileNotFoundException("Could not locate data on disk");
@@ -536,6 +671,7 @@ public class Event implements Comparable<Event> {
         // event is grouped, so we can use the event data to determine the directory or tgz file containing the waveform files to be parsed
         Path eventDir = getEventDirectoryPath();
         Path eventArchive;
+        boolean compressed;
 
         // For logging purposes
         String eventName = (eventId == null) ? system + "--" + location + "--" + classification + "--" + eventTime : eventId.toString();
@@ -543,25 +679,167 @@ public class Event implements Comparable<Event> {
         if (grouped) {
             // For grouped, event directory is the directory containing the capture files for the event
             eventArchive = getArchivePath();
-            if (Files.exists(eventDir)) {
-                LOGGER.log(Level.FINEST, "Looking for data in {0} for event {1}", new Object[]{eventDir.toString(), eventName});
-                parseWaveformData(captureFiles, includeData);
-            } else if (Files.exists(eventArchive)) {
-                LOGGER.log(Level.FINEST, "Looking for data in {0} for event {1}", new Object[]{eventArchive.toString(), eventName});
-                parseCompressedWaveformData(captureFiles, includeData);
-            }
+            compressed = !Files.exists(eventDir) && Files.exists(eventArchive);
         } else {
             // For ungrouped, event directory is the directory contain the capture file or the compressed capture file.
-            String filename = captureFiles.get(0);
-            eventArchive = getArchivePath(filename);
-            if (Files.exists(Paths.get(eventDir.toString(), filename))) {
-                LOGGER.log(Level.FINEST, "Looking for data in {0} for event {1}", new Object[]{Paths.get(eventDir.toString(), filename).toString(), eventName});
-                parseWaveformData(captureFiles, includeData);
-            } else if (Files.exists(eventArchive)) {
-                LOGGER.log(Level.FINEST, "Looking for data in {0} for event {1}", new Object[]{eventArchive.toString(), eventName});
-                parseCompressedWaveformData(captureFiles, includeData);
+            eventArchive = getArchivePath(captureFiles.get(0));
+            compressed = !Files.exists(eventDir.resolve(captureFiles.get(0))) && Files.exists(eventArchive);
+        }
+        LOGGER.log(Level.FINEST, "Looking for data in {0} for event {1}",
+                new Object[]{compressed ? eventArchive.toString() : eventDir.toString(), eventName});
+
+        // Events that came from the database can be served from the cache of parsed capture files.  The capture file (or
+        // the archive holding it) is part of the key so that a changed file is never served from the cache.
+        CaptureFileCache cache = CaptureFileCache.getInstance();
+        boolean useCache = includeData && eventId != null && cache.isEnabled();
+        Map<String, CaptureFileParser.Result> results = new HashMap<>();
+        Map<String, CaptureFileCache.Key> keys = new HashMap<>();
+        List<String> toParse = new ArrayList<>();
+        for (String filename : captureFiles) {
+            Set<String> columns = columnMap == null ? null : columnMap.get(filename);
+            if (useCache) {
+                Path source = compressed ? eventArchive : eventDir.resolve(filename);
+                CaptureFileCache.Key key = new CaptureFileCache.Key(eventId, filename, Files.size(source),
+                        Files.getLastModifiedTime(source).toMillis());
+                keys.put(filename, key);
+                CaptureFileParser.Result cached = cache.get(key, columns);
+                if (cached != null) {
+                    results.put(filename, cached);
+                    continue;
+                }
             }
+            toParse.add(filename);
         }
+
+        if (!toParse.isEmpty()) {
+            Map<String, CaptureFileParser.Result> parsed = compressed
+                    ? parseCompressedWaveformData(toParse, includeData, columnMap)
+                    : parseWaveformData(toParse, includeData, columnMap);
+            for (Map.Entry<String, CaptureFileParser.Result> entry : parsed.entrySet()) {
+                if (useCache && entry.getValue() != null) {
+                    cache.put(keys.get(entry.getKey()), entry.getValue());
+                }
+                results.put(entry.getKey(), entry.getValue());
+            }
+        }
+
+        for (String filename : captureFiles) {
+            mergeCaptureFile(filename, results.get(filename), includeData);
+        }
+
+        // Capture files are merged in without checking consistency.  Do it once now that they are all loaded.
+        updateWaveformsConsistency();
+    }
+
+    /**
+     * Read only the metadata, headers, and sample start, end, and step of the
+     * capture files on disk. This updates the event's CaptureFiles and creates
+     * Waveforms without data or statistics. Capture files that are only
+     * available in a compressed archive have to be inflated in full anyway, so
+     * they are loaded with their data instead.
+     *
+     * @param captureFiles The list of capture files that should be read.
+     *                     These should be only the file names that will be found within the event directory.
+     * @throws IOException If problem arises reading capture file data from disk
+     */
+    private void loadCaptureFileSummariesFromDisk(List<String> captureFiles) throws IOException {
+        Path eventDir = getEventDirectoryPath();
+        for (String filename : captureFiles) {
+            if (!Files.exists(eventDir.resolve(filename))) {
+                loadCaptureFilesFromDisk(captureFiles, true);
+                return;
+            }
+        }
+
+        // Each file is only read at its start and end, but a grouped event may have many of them
+        boolean parallel = captureFiles.size() > 1 && ParseExecutor.isEnabled();
+        List<Future<CaptureFileParser.Result>> futures = new ArrayList<>();
+        for (String filename : captureFiles) {
+            Path path = eventDir.resolve(filename);
+            futures.add(submitParse(() -> getParser().parseSummary(path), parallel));
+        }
+
+        List<CaptureFileParser.Result> results = ParseExecutor.getAll(futures);
+        for (int i = 0; i < captureFiles.size(); i++) {
+            mergeCaptureFile(captureFiles.get(i), results.get(i), false);
+        }
+        updateWaveformsConsistency();
+    }
+
+    /**
+     * Compute the statistics of the waveforms of the event's capture files on
+     * disk. This reads every row of every capture file, which is why header
+     * only events are created without them. If the binary cache is enabled,
+     * the cache file of each capture file is written along the way. The event
+     * itself is not modified, so this may run on another thread than the one
+     * that owns the event.
+     *
+     * @return The statistics keyed by capture file name and then waveform name
+     * @throws IOException If problem arises reading capture file data from disk, e.g., if the event is compressed
+     */
+    public Map<String, Map<String, WaveformStats>> readWaveformStatsFromDisk() throws IOException {
+        Path eventDir = getEventDirectoryPath();
+        List<String> captureFiles = new ArrayList<>(captureFileMap.keySet());
+        boolean parallel = captureFiles.size() > 1 && ParseExecutor.isEnabled();
+        List<Future<CaptureFileParser.Result>> futures = new ArrayList<>();
+        for (String filename : captureFiles) {
+            Path path = eventDir.resolve(filename);
+            Path cacheFile = getBinaryCachePath(filename);
+            futures.add(submitParse(() -> cacheFile == null ? getParser().parseSummary(path, true)
+                    : CaptureFileParser.summarize(BinaryCaptureFile.parse(getParser(), cacheFile, path, true, null)),
+                    parallel));
+        }
+
+        List<CaptureFileParser.Result> results = ParseExecutor.getAll(futures);
+        Map<String, Map<String, WaveformStats>> out = new LinkedHashMap<>();
+        for (int i = 0; i < captureFiles.size(); i++) {
+            CaptureFileParser.Result result = results.get(i);
+            Map<String, WaveformStats> stats = new HashMap<>();
+            if (result != null && result.getStats() != null) {
+                String[] headers = result.getHeaders();
+                for (int j = 1; j < headers.length; j++) {
+                    stats.put(headers[j], result.getStats()[j]);
+                }
+            }
+            out.put(captureFiles.get(i), stats);
+        }
+        return out;
+    }
+
+    /**
+     * Check whether any of the event's waveforms are missing their statistics, e.g., because the event was created
+     * header only.
+     *
+     * @return True if a waveform has neither data nor statistics
+     */
+    public boolean isMissingWaveformStats() {
+        for (Waveform w : getWaveforms()) {
+            if (w.getStats() == null) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Run a parse task in the parse pool or, if the parse should not be parallel, on the calling thread.
+     */
+    private static <T> Future<T> submitParse(Callable<T> task, boolean parallel) {
+        if (parallel) {
+            return ParseExecutor.submit(task);
+        }
+        FutureTask<T> future = new FutureTask<>(task);
+        future.run();
+        return future;
+    }
+
+    /**
+     * Get a parser for the calling thread.  Only the parse pool's threads reuse a parser.  The pool is shut down with
+     * the application, but the container's request threads outlive a redeploy and a parser left on one of them would
+     * keep the old application's classes loaded.
+     */
+    private static CaptureFileParser getParser() {
+        return ParseExecutor.isPoolThread() ? PARSER.get() : new CaptureFileParser();
     }
 
     public Long getEventId() {
@@ -611,6 +889,21 @@ public class Event implements Comparable<Event> {
         }
     }
 
+    /**
+     * Look up the series of each of the event's waveforms and apply them.
+     *
+     * @param matcher The compiled series patterns of the event's system
+     */
+    public void applySeriesMapping(SeriesMatcher matcher) {
+        Set<String> waveformNames = new HashSet<>();
+        for (CaptureFile cf : captureFileMap.values()) {
+            for (Waveform w : cf.getWaveforms()) {
+                waveformNames.add(w.getWaveformName());
+            }
+        }
+        applySeriesMapping(matcher.getMapping(waveformNames));
+    }
+
     /**
      * Generate a json object representing an event. Simple wrapper on
      * toJsonObject(List &;lt seriesList &;gt) that does no series filtering.
@@ -1142,16 +1435,38 @@ public class Event implements Comparable<Event> {
 
     /**
      * This method uncompresses a compressed waveform event directory and parses
-     * it using the same parseWaveformInputStream method as parseWaveformData.
+     * it using the same CaptureFileParser as parseWaveformData.
      * The compressed archives should contain a single parent directory with a
      * set of txt files. This method uses the Event's List of CaptureFile
      * objects to know which files to parse.
      *
      * @param includeData boolean for whether or not the waveforms should
      *                    include their data
+     * @param columnMap   Map of capture file name to the names of the waveforms whose data should be kept.  Null
+     *                    keeps every waveform.
+     * @return The parsed capture files keyed by file name
      * @throws IOException If problem arises while reading waveform data from disk
      */
-    private void parseCompressedWaveformData(List<String> captureFiles, boolean includeData) throws IOException {
+    private Map<String, CaptureFileParser.Result> parseCompressedWaveformData(List<String> captureFiles, boolean includeData,
+                                                                              Map<String, Set<String>> columnMap)
+            throws IOException {
+        boolean parallel = captureFiles.size() > 1 && ParseExecutor.isEnabled();
+
+        // With an index, entries can be decompressed concurrently and unwanted entries are never decompressed.  Our
+        // DEFLATE decoder is about half the speed of zlib though, so when every entry is needed it only pays off with
+        // enough threads to decompress several entries at once.  Otherwise zlib inflates the archive below while the
+        // parse pool works on the entries it has already inflated.
+        if (grouped) {
+            Path archivePath = getArchivePath();
+            ArchiveIndex index = getArchiveIndex(archivePath);
+            if (index != null) {
+                long numFiles = index.getEntries().stream().filter(e -> !e.isDirectory()).count();
+                if (captureFiles.size() < numFiles || (parallel && ParseExecutor.getPoolSize() >= INDEXED_MIN_THREADS)) {
+                    return parseIndexedWaveformData(archivePath, index, captureFiles, includeData, columnMap, parallel);
+                }
+            }
+        }
+
         boolean foundParentDir = false;
         String captureFile = null; // If grouped event, this is unnecessary.
         if (!grouped) {
@@ -1167,9 +1482,18 @@ public class Event implements Comparable<Event> {
             fileFound.put(file, false);
         }
 
+        // Entries have to be decompressed one at a time, but each one can be parsed while the next is decompressed.  This
+        // thread inflates the archive and hands each entry off to the parse pool in a pooled buffer.  The number of
+        // entries in flight is limited so that inflating cannot race ahead of the parsers and hold an entire large archive
+        // in memory.
+        Semaphore inFlight = new Semaphore(Math.max(2, 2 * ParseExecutor.getPoolSize()));
+        List<String> filenames = new ArrayList<>();
+        List<Future<CaptureFileParser.Result>> futures = new ArrayList<>();
+        Path archivePath = getArchivePath(captureFile);
+        long archiveSize = Files.size(archivePath);
+        long archiveModified = Files.getLastModifiedTime(archivePath).toMillis();
         try (TarArchiveInputStream ais = new TarArchiveInputStream(
-                new GzipCompressorInputStream(Files.newInputStream(getArchivePath(captureFile), StandardOpenOption.READ)));
-             BufferedReader br = new BufferedReader(new InputStreamReader(ais))) {
+                new GzipCompressorInputStream(Files.newInputStream(archivePath, StandardOpenOption.READ)))) {
             TarArchiveEntry entry;
             while ((entry = ais.getNextTarEntry()) != null) {
                 if (entry != null) {
@@ -1188,11 +1512,29 @@ public class Event implements Comparable<Event> {
                         if (captureFiles.contains(filename)) {
                             fileFound.put(filename, true);
                             // If this is a grouped event, the entry name will contain the parent directory.  We need only the filename.
-                            parseWaveformInputStream(br, filename, includeData);
+                            Set<String> columns = columnMap == null ? null : columnMap.get(filename);
+                            Path cacheFile = getBinaryCachePath(filename);
+                            CaptureFileParser.Result cached = cacheFile == null ? null
+                                    : BinaryCaptureFile.read(cacheFile, archiveSize, archiveModified, includeData, columns);
+                            if (cached != null) {
+                                // The entry's content is skipped over by the next call to getNextTarEntry
+                                futures.add(CompletableFuture.completedFuture(cached));
+                            } else if (parallel) {
+                                futures.add(submitArchiveEntry(ais, entry, inFlight, cacheFile, archiveSize,
+                                        archiveModified, includeData, columns));
+                            } else {
+                                futures.add(CompletableFuture.completedFuture(BinaryCaptureFile.parse(getParser(), cacheFile,
+                                        () -> new CloseShieldFilterInputStream(ais), archiveSize, archiveModified, includeData, columns)));
+                            }
+                            filenames.add(filename);
                         }
                     }
                 }
             }
+        } catch (IOException | RuntimeException ex) {
+            // Don't leave the entries already handed off running
+            ParseExecutor.cancelAll(futures);
+            throw ex;
         }
 
         // Verify that all files were found
@@ -1206,79 +1548,239 @@ public class Event implements Comparable<Event> {
             }
         }
         if (!allFound) {
+            ParseExecutor.cancelAll(futures);
             throw new FileNotFoundException("Files not found in compressed archvie - " + String.join(",", missing));
         }
+
+        List<CaptureFileParser.Result> results = ParseExecutor.getAll(futures);
+        Map<String, CaptureFileParser.Result> out = new LinkedHashMap<>();
+        for (int i = 0; i < filenames.size(); i++) {
+            out.put(filenames.get(i), results.get(i));
+        }
+        return out;
     }
 
     /**
-     * The method parses an InputStream representing one of the waveform
-     * datafiles. These files are formatted as TSVs, with the first column being
-     * the time offset and every other column representing a series of waveform
-     * data. This process leads to the time column being stored multiple times
-     * as each Waveform object stores its own time/value data.
+     * Read the current entry of a tar archive into a pooled buffer and submit
+     * it to the parse pool. Blocks while the maximum number of entries are
+     * already waiting to be parsed.
      *
-     * @param includeData flag for whether or not the data and not just headers
-     *                    should be parsed
+     * @param ais             The archive stream, positioned at the start of the entry's content
+     * @param entry           The current entry
+     * @param inFlight        Limits the number of entries that have been read but not yet parsed
+     * @param cacheFile       The binary cache file of the entry, or null if the cache is disabled
+     * @param archiveSize     The size of the archive
+     * @param archiveModified The modification time of the archive
+     * @param includeData     boolean for whether or not the waveforms should include their data
+     * @param columns         The names of the waveforms whose data should be kept.  Null keeps every waveform.
+     * @return The Future of the parse task
+     * @throws IOException If the entry cannot be read or the thread is interrupted while waiting
      */
-    private void parseWaveformInputStream(BufferedReader br, String filename, boolean includeData) throws IOException {
-        String[] headers;
-        double[][] out;
-        Double sampleStart = null;
-        Double sampleStop = null;
-        Double sampleStep = null;
+    private static Future<CaptureFileParser.Result> submitArchiveEntry(TarArchiveInputStream ais, TarArchiveEntry entry,
+                                                                       Semaphore inFlight, Path cacheFile,
+                                                                       long archiveSize, long archiveModified,
+                                                                       boolean includeData, Set<String> columns)
+            throws IOException {
+        if (entry.getSize() > Integer.MAX_VALUE) {
+            throw new IOException("Capture file too large - " + entry.getName());
+        }
+        int size = (int) entry.getSize();
+        try {
+            inFlight.acquire();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while reading archive", ex);
+        }
+
+        byte[] buffer = BufferPool.acquire(size);
+        boolean submitted = false;
+        try {
+            if (IOUtils.readFully(ais, buffer, 0, size) != size) {
+                throw new IOException("Archive ended before the end of entry " + entry.getName());
+            }
+            // Released by the completion hook so that a task cancelled before it starts still gives its buffer back
+            Future<CaptureFileParser.Result> future = ParseExecutor.submit(
+                    () -> BinaryCaptureFile.parse(getParser(), cacheFile, () -> new ByteArrayInputStream(buffer, 0, size),
+                            archiveSize, archiveModified, includeData, columns),
+                    () -> {
+                        BufferPool.release(buffer);
+                        inFlight.release();
+                    });
+            submitted = true;
+            return future;
+        } finally {
+            if (!submitted) {
+                BufferPool.release(buffer);
+                inFlight.release();
+            }
+        }
+    }
 
-        String line;
+    /**
+     * Determine where the binary cache file of one of the event's capture files
+     * lives. The cache directory mirrors the layout of the data directory.
+     *
+     * @param filename The name of the capture file
+     * @return The path of the cache file, or null if the binary cache is disabled
+     */
+    private Path getBinaryCachePath(String filename) {
+        Path cacheDir = BinaryCaptureFile.getCacheDir();
+        if (cacheDir == null) {
+            return null;
+        }
+        return cacheDir.resolve(dataDir.relativize(getEventDirectoryPath())).resolve(filename + BinaryCaptureFile.SUFFIX);
+    }
 
-        List<Metadata> metadataList = new ArrayList<>();
-        while ((line = br.readLine()) != null) {
-            if (line.matches("#.*")) {
-                metadataList.add(Metadata.getMetadataFromCaptureFileLine(line));
+    /**
+     * Remove the files kept outside of the data directory for this event, i.e., the binary cache files of its capture
+     * files and the index of its archive.  Nothing reads them once the event has been deleted.
+     *
+     * @throws IOException If a file could not be removed
+     */
+    public void deleteCachedFiles() throws IOException {
+        Path cacheDir = BinaryCaptureFile.getCacheDir();
+        if (cacheDir != null) {
+            if (grouped) {
+                Path eventCacheDir = cacheDir.resolve(dataDir.relativize(getEventDirectoryPath()));
+                if (Files.isDirectory(eventCacheDir)) {
+                    try (DirectoryStream<Path> ds = Files.newDirectoryStream(eventCacheDir)) {
+                        for (Path p : ds) {
+                            Files.deleteIfExists(p);
+                        }
+                    }
+                    Files.deleteIfExists(eventCacheDir);
+                }
             } else {
-                break;
+                // Ungrouped events share the date directory, so only this event's files are removed
+                for (String filename : captureFileMap.keySet()) {
+                    Files.deleteIfExists(getBinaryCachePath(filename));
+                }
             }
         }
 
-        // Check that there is data to process
-        if (line == null) {
-            return;
+        Path sidecar = ArchiveIndex.getSidecarPath(getArchivePath());
+        if (sidecar != null && (grouped || captureFileMap.size() == 1)) {
+            Files.deleteIfExists(sidecar);
         }
-        headers = line.split("\\s+");
+    }
 
-        // Define this as an array of empty arrays.  This will get redefined if the includeData flag is set.
-        out = new double[headers.length][0];
-        if (includeData) {
-            // The data array structure is the transpose of the file.  it goes columns, by rows, since we know the number of headers
-            // but not the number of rows of data.  Plus this makes it easier to access each waveform.
-            double[][] data = new double[headers.length][8192];
-            int i = 0;
-            while ((line = br.readLine()) != null) {
-                // If our index is about to move out of bounds, copy the data to a larger 2D array
-                if (i >= data[0].length) {
-                    for (int j = 0; j < data.length; j++) {
-                        data[j] = Arrays.copyOf(data[j], 2 * data[j].length);
-                    }
-                }
+    /**
+     * Get the index of an event archive, building it if needed.
+     *
+     * @param archivePath The event's tar.gz archive
+     * @return The index, or null if the archive could not be indexed.  The archive can still be read sequentially.
+     */
+    private static ArchiveIndex getArchiveIndex(Path archivePath) {
+        try {
+            return ArchiveIndex.get(archivePath);
+        } catch (IOException ex) {
+            LOGGER.log(Level.WARNING, "Could not index archive {0}.  Reading it sequentially - {1}",
+                    new Object[]{archivePath, ex.getMessage()});
+            return null;
+        }
+    }
 
-                // Split the string on tabs.  The order of the tokens should match the headers
-                String[] nums = line.split("\\s+");
-                for (int j = 0; j < headers.length; j++) {
-                    if (nums[j].isEmpty()) {
-                        data[j][i] = Double.NaN;
-                    } else {
-                        data[j][i] = Double.parseDouble(nums[j]);
-                    }
+    /**
+     * Parse capture files from a compressed grouped event archive using the
+     * archive's index to decompress only the requested entries. Each entry is
+     * decompressed and parsed as a separate task, so the capture files of an
+     * event are processed concurrently when parallel is true.
+     *
+     * @param archivePath  The event's tar.gz archive
+     * @param index        The index of the archive
+     * @param captureFiles The capture files to parse
+     * @param includeData  boolean for whether or not the waveforms should include their data
+     * @param columnMap    Map of capture file name to the names of the waveforms whose data should be kept.  Null
+     *                     keeps every waveform.
+     * @param parallel     Should the entries be processed on the ParseExecutor
+     * @return The parsed capture files keyed by file name
+     * @throws IOException If problem arises while reading waveform data from disk
+     */
+    private Map<String, CaptureFileParser.Result> parseIndexedWaveformData(Path archivePath, ArchiveIndex index,
+                                                                           List<String> captureFiles, boolean includeData,
+                                                                           Map<String, Set<String>> columnMap,
+                                                                           boolean parallel) throws IOException {
+        // Check the structure of the archive and find the entries we need in the order they are stored
+        boolean foundParentDir = false;
+        List<ArchiveIndex.Entry> wanted = new ArrayList<>();
+        List<String> filenames = new ArrayList<>();
+        Set<String> missing = new TreeSet<>(captureFiles);
+        for (ArchiveIndex.Entry entry : index.getEntries()) {
+            if (entry.isDirectory() && foundParentDir) {
+                LOGGER.log(Level.WARNING, "Unexpected compressed directory structure - {0}", entry.getName());
+                throw new IOException("Unexpected compressed directory structure.");
+            } else if (entry.isDirectory()) {
+                foundParentDir = true;
+            } else {
+                String filename = Paths.get(entry.getName()).getFileName().toString();
+                if (missing.remove(filename)) {
+                    wanted.add(entry);
+                    filenames.add(filename);
                 }
-                i++;
             }
+        }
 
-            // Copy the data array structure to one that is properly sized for it.
-            out = new double[headers.length][i];
-            for (int j = 0; j < out.length; j++) {
-                System.arraycopy(data[j], 0, out[j], 0, out[j].length);
+        if (!missing.isEmpty()) {
+            for (String file : missing) {
+                LOGGER.log(Level.SEVERE, "Expected Capture File {0} not found in archive {1}", new Object[]{archivePath, file});
             }
+            throw new FileNotFoundException("Files not found in compressed archvie - " + String.join(",", missing));
+        }
+
+        long archiveSize = Files.size(archivePath);
+        long archiveModified = Files.getLastModifiedTime(archivePath).toMillis();
+        List<Future<CaptureFileParser.Result>> futures = new ArrayList<>();
+        for (int i = 0; i < wanted.size(); i++) {
+            ArchiveIndex.Entry entry = wanted.get(i);
+            Path cacheFile = getBinaryCachePath(filenames.get(i));
+            Set<String> columns = columnMap == null ? null : columnMap.get(filenames.get(i));
+            futures.add(submitParse(() -> BinaryCaptureFile.parse(getParser(), cacheFile,
+                    () -> index.openEntry(archivePath, entry), archiveSize, archiveModified, includeData, columns),
+                    parallel));
+        }
+
+        List<CaptureFileParser.Result> results = ParseExecutor.getAll(futures);
+        Map<String, CaptureFileParser.Result> out = new LinkedHashMap<>();
+        for (int i = 0; i < filenames.size(); i++) {
+            out.put(filenames.get(i), results.get(i));
+        }
+        return out;
+    }
+
+    /**
+     * Merge the parsed content of one of the waveform datafiles into the event.
+     * These files are formatted as TSVs, with the first column being the time
+     * offset and every other column representing a series of waveform data.
+     * This process leads to the time column being stored multiple times as each
+     * Waveform object stores its own time/value data. The parsing itself is done
+     * by a CaptureFileParser, possibly on another thread, but merging must happen
+     * on the thread that owns the event. Waveform consistency is not updated
+     * here, since it only needs to be checked once all files are merged.
+     *
+     * @param filename    The name of the capture file that was parsed
+     * @param result      The parsed capture file content.  Null if the file had no header line.
+     * @param includeData flag for whether or not the data and not just headers
+     *                    were parsed
+     */
+    private void mergeCaptureFile(String filename, CaptureFileParser.Result result, boolean includeData) {
+        // Check that there is data to process
+        if (result == null) {
+            return;
+        }
+        String[] headers = result.getHeaders();
+        double[][] out = result.getColumns();
+        Double sampleStart = null;
+        Double sampleStop = null;
+        Double sampleStep = null;
+        if (includeData) {
             sampleStart = out[0][0];
             sampleStop = out[0][out[0].length - 1];
             sampleStep = out[0][1] - out[0][0];
+        } else {
+            // Summaries describe the time column without including it
+            sampleStart = result.getSampleStart();
+            sampleStop = result.getSampleEnd();
+            sampleStep = result.getSampleStep();
         }
 
         // Create the capture file if it doesn't exist.  If it doesn't exist, then this event wasn't made with data from the database,
@@ -1286,18 +1788,22 @@ public class Event implements Comparable<Event> {
         // and the waveform data if requested
         if (!captureFileMap.containsKey(filename)) {
             CaptureFile cf = new CaptureFile(null, filename, sampleStart, sampleStop, sampleStep);
-            cf.addMetadata(metadataList);
+            cf.addMetadata(result.getMetadataList());
             captureFileMap.put(filename, cf);
-            updateWaveformsConsistency();
         }
 
         // Add the waveforms to the captureFile or update the waveforms data if they already exist.
         for (int j = 0; j < out.length; j++) {
-            if (j > 0) {
+            // Columns that were not requested are null.  Their waveforms are left as is.
+            if (j > 0 && out[j] != null) {
                 if (captureFileMap.get(filename).hasWaveform(headers[j])) {
                     captureFileMap.get(filename).updateWaveformData(headers[j], out[0], out[j]);
                 } else {
-                    captureFileMap.get(filename).addWaveform(new Waveform(headers[j], out[0], out[j]));
+                    Waveform w = new Waveform(headers[j], out[0], out[j]);
+                    if (result.getStats() != null) {
+                        w.setStats(result.getStats()[j]);
+                    }
+                    captureFileMap.get(filename).addWaveform(w);
                 }
             }
         }
@@ -1309,19 +1815,33 @@ public class Event implements Comparable<Event> {
      *
      * @param includeData Should the waveform objects include the data points or
      *                    only the header information
+     * @param columnMap   Map of capture file name to the names of the waveforms whose data should be kept.  Null
+     *                    keeps every waveform.
+     * @return The parsed capture files keyed by file name
      * @throws IOException If problem arises while access waveform data on disk
      */
-    private void parseWaveformData(List<String> captureFiles, boolean includeData) throws IOException {
+    private Map<String, CaptureFileParser.Result> parseWaveformData(List<String> captureFiles, boolean includeData,
+                                                                    Map<String, Set<String>> columnMap) throws IOException {
         // NOTE: We don't need to check that all of these files are found since an exception will be generated if the path
         // doesn't exists when we try to open an new FileInputStream
         // Go through the set of Path objects representing valid data files and parse them.
-        Path path;
+        // Each file is parsed as a separate task so that the files of a grouped event are parsed concurrently.
+        boolean parallel = captureFiles.size() > 1 && ParseExecutor.isEnabled();
+        List<Future<CaptureFileParser.Result>> futures = new ArrayList<>();
         for (String filename : captureFiles) {
-            path = getEventDirectoryPath().resolve(filename);
-            try (BufferedReader br = new BufferedReader(new InputStreamReader(Files.newInputStream(path)))) {
-                parseWaveformInputStream(br, filename, includeData);
-            }
+            Path path = getEventDirectoryPath().resolve(filename);
+            Path cacheFile = getBinaryCachePath(filename);
+            Set<String> columns = columnMap == null ? null : columnMap.get(filename);
+            futures.add(submitParse(() -> BinaryCaptureFile.parse(getParser(), cacheFile, path, includeData, columns),
+                    parallel));
         }
+
+        List<CaptureFileParser.Result> results = ParseExecutor.getAll(futures);
+        Map<String, CaptureFileParser.Result> out = new LinkedHashMap<>();
+        for (int i = 0; i < captureFiles.size(); i++) {
+            out.put(captureFiles.get(i), results.get(i));
+        }
+        return out;
     }
 
     /**
@@ -24,6 +24,7 @@ public class Waveform {
     private final List<Series> seriesList = new ArrayList<>();
     private double[] timeOffsets;
     private double[] values;
+    private WaveformStats stats = null;
 
     /**
      * Create a waveform object from arrays of primitive doubles. Preferred
@@ -70,6 +71,7 @@ public class Waveform {
         }
         this.timeOffsets = timeOffsets;
         this.values = values;
+        this.stats = null;
     }
 
     /**
@@ -103,6 +105,23 @@ public class Waveform {
 
     public double[] getValues() { return values; }
 
+    /**
+     * Get the summary statistics of the waveform.  These are either set when the waveform is read without its data or
+     * computed from the data on first use.
+     *
+     * @return The statistics, or null if they were not set and the waveform has no data
+     */
+    public WaveformStats getStats() {
+        if (stats == null && values.length > 0) {
+            stats = WaveformStats.compute(timeOffsets, values);
+        }
+        return stats;
+    }
+
+    public void setStats(WaveformStats stats) {
+        this.stats = stats;
+    }
+
     /**
      * This method is returns the value of a waveform at a given offset, and
      * allows for values to be queried for times when the buffer did not sample.
@@ -0,0 +1,174 @@
+package org.jlab.wfbrowser.model;
+
+import javax.json.Json;
+import javax.json.JsonObject;
+import javax.json.JsonObjectBuilder;
+
+/**
+ * Summary statistics of a single waveform.  These are computed when an event is added and stored in the database so
+ * that reports can rank or scale many waveforms without reading their capture files.
+ * <p>
+ * NaN samples are counted but otherwise ignored.  The min, max, mean and RMS are null if a waveform has no other
+ * samples.
+ * <p>
+ * The first excursion is the time offset of the first sample at or after the trigger (time offset zero) that differs
+ * from the pre-trigger baseline by more than five standard deviations of the baseline, one percent of its mean, or
+ * 1e-6, whichever is larger.  The floor keeps a flat zero baseline from turning every nonzero sample into an
+ * excursion.  It is null if the waveform never leaves its baseline, or if there are fewer than two pre-trigger
+ * samples to measure the baseline's spread from.
+ *
+ * @author adamc
+ */
+public class WaveformStats {
+
+    private static final double EXCURSION_SIGMAS = 5;
+    private static final double EXCURSION_FRACTION = 0.01;
+    private static final double EXCURSION_FLOOR = 1e-6;
+
+    private final int sampleCount;
+    private final int nanCount;
+    private final Double min;
+    private final Double max;
+    private final Double mean;
+    private final Double rms;
+    private final Double firstExcursion;
+
+    public WaveformStats(int sampleCount, int nanCount, Double min, Double max, Double mean, Double rms,
+                         Double firstExcursion) {
+        this.sampleCount = sampleCount;
+        this.nanCount = nanCount;
+        this.min = min;
+        this.max = max;
+        this.mean = mean;
+        this.rms = rms;
+        this.firstExcursion = firstExcursion;
+    }
+
+    /**
+     * Compute the statistics of a waveform's data.
+     *
+     * @param timeOffsets The time offsets of the samples
+     * @param values      The values of the samples
+     * @return The statistics
+     */
+    public static WaveformStats compute(double[] timeOffsets, double[] values) {
+        Accumulator acc = new Accumulator();
+        for (int i = 0; i < values.length; i++) {
+            acc.add(timeOffsets[i], values[i]);
+        }
+        return acc.getStats();
+    }
+
+    /**
+     * Builds the statistics of a waveform one sample at a time, so that they can be computed while a capture file is
+     * read without keeping its data.  Samples must be added in time order.
+     */
+    public static class Accumulator {
+        private int count = 0;
+        private int nans = 0;
+        private double min = Double.POSITIVE_INFINITY;
+        private double max = Double.NEGATIVE_INFINITY;
+        private double sum = 0;
+        private double sumOfSquares = 0;
+
+        // Baseline mean and sum of squared deviations (Welford's method) of the pre-trigger samples
+        private int baselineCount = 0;
+        private double baselineMean = 0;
+        private double baselineM2 = 0;
+        private double threshold = -1;
+        private Double firstExcursion = null;
+
+        public void add(double timeOffset, double value) {
+            if (Double.isNaN(value)) {
+                nans++;
+                return;
+            }
+            count++;
+            min = Math.min(min, value);
+            max = Math.max(max, value);
+            sum += value;
+            sumOfSquares += value * value;
+
+            if (threshold < 0) {
+                if (timeOffset < 0) {
+                    baselineCount++;
+                    double delta = value - baselineMean;
+                    baselineMean += delta / baselineCount;
+                    baselineM2 += delta * (value - baselineMean);
+                    return;
+                }
+                if (baselineCount < 2) {
+                    // No spread to measure against.  Nothing counts as an excursion.
+                    threshold = Double.POSITIVE_INFINITY;
+                } else {
+                    double sigma = Math.sqrt(baselineM2 / baselineCount);
+                    threshold = Math.max(EXCURSION_FLOOR, Math.max(EXCURSION_SIGMAS * sigma,
+                            EXCURSION_FRACTION * Math.abs(baselineMean)));
+                }
+            }
+            if (firstExcursion == null && Math.abs(value - baselineMean) > threshold) {
+                firstExcursion = timeOffset;
+            }
+        }
+
+        public WaveformStats getStats() {
+            if (count == 0) {
+                return new WaveformStats(nans, nans, null, null, null, null, null);
+            }
+            return new WaveformStats(count + nans, nans, min, max, sum / count, Math.sqrt(sumOfSquares / count),
+                    firstExcursion);
+        }
+    }
+
+    /**
+     * @return The number of samples, including NaNs
+     */
+    public int getSampleCount() {
+        return sampleCount;
+    }
+
+    public int getNanCount() {
+        return nanCount;
+    }
+
+    public Double getMin() {
+        return min;
+    }
+
+    public Double getMax() {
+        return max;
+    }
+
+    public Double getMean() {
+        return mean;
+    }
+
+    public Double getRms() {
+        return rms;
+    }
+
+    public Double getFirstExcursion() {
+        return firstExcursion;
+    }
+
+    private static void add(JsonObjectBuilder job, String name, Double value) {
+        // JSON has no infinities or NaN
+        if (value == null || !Double.isFinite(value)) {
+            job.addNull(name);
+        } else {
+            job.add(name, value);
+        }
+    }
+
+    public JsonObject toJsonObject() {
+        JsonObjectBuilder job = Json.createObjectBuilder()
+                .add("sampleCount", sampleCount)
+                .add("nanCount", nanCount);
+        add(job, "min", min);
+        add(job, "max", max);
+        add(job, "mean", mean);
+        add(job, "rms", rms);
+        add(job, "firstExcursion", firstExcursion);
+        return job.build();
+    }
+}
@@ -5,6 +5,7 @@ import java.sql.SQLException;
 import java.time.Instant;
 import java.time.ZoneId;
 import java.util.*;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import javax.json.*;
@@ -14,8 +15,11 @@ import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import javax.servlet.http.HttpSession;
 
+import org.jlab.wfbrowser.business.filter.EventCursor;
 import org.jlab.wfbrowser.business.filter.EventFilter;
 import org.jlab.wfbrowser.business.filter.SeriesSetFilter;
+import org.jlab.wfbrowser.business.service.EventIngestQueue;
+import org.jlab.wfbrowser.business.service.EventIngestService;
 import org.jlab.wfbrowser.business.service.EventService;
 import org.jlab.wfbrowser.business.service.SeriesService;
 import org.jlab.wfbrowser.business.util.TimeUtil;
@@ -34,6 +38,10 @@ public class EventAjax extends HttpServlet {
 
     private final static Logger LOGGER = Logger.getLogger(EventAjax.class.getName());
 
+    // Page sizes for the cursor based listing (after/pageSize parameters)
+    private final static int DEFAULT_PAGE_SIZE = 1000;
+    private final static int MAX_PAGE_SIZE = 10000;
+
     /**
      * Allows users to query for event data
      *
@@ -134,14 +142,21 @@ public class EventAjax extends HttpServlet {
         // Enforce an rf system filter since this is likely to be an interface for only RF systems for some time
         EventFilter filter = new EventFilter(eventIdList, begin, end, system, locationList, classificationList, archive, delete, minCaptureFiles);
 
+        // Cursor based listing.  Streams a page of events straight to the response instead of building the full list.
+        if (request.getParameter("after") != null || request.getParameter("pageSize") != null) {
+            doGetPage(request, response, filter, out, includeData, seriesMasterSet);
+            return;
+        }
+
         // Output data in the request format.  CSV probably only makes sense if you wanted the data, but not reason to not support
         // the no data case.
         List<Event> eventList;
         try {
             EventService es = new EventService();
             if (includeData) {
-                // Since we're asking for data, we need to include capture files too.
-                eventList = es.getEventList(filter, null, true, true);
+                // Since we're asking for data, we need to include capture files too.  Only the waveforms of the
+                // requested series are read from disk.
+                eventList = es.getEventList(filter, null, true, true, seriesMasterSet);
             } else {
                 // Don't get capture files or data.  This query is much faster and is useful if only interested in when
                 // and where, etc. events happened, not details about them.
@@ -293,7 +308,71 @@ public class EventAjax extends HttpServlet {
     }
 
     /**
-     * Handle logic for events to be added to waveform database.
+     * Write one page of a cursor based event listing.  Pages are requested with the optional after (the "next" value
+     * of the previous page) and pageSize parameters.  Events are listed in event time order and are written to the
+     * response as they are read from the database.  A page holds at most MAX_PAGE_SIZE events, so the memory used
+     * does not grow with the time range requested.
+     * The response is {"events": [...], "next": "cursor"}, where next is null on the last page.  Only the json output
+     * format is supported.
+     */
+    private void doGetPage(HttpServletRequest request, HttpServletResponse response, EventFilter filter, String out,
+                           boolean includeData, Set<String> seriesMasterSet) throws IOException {
+        response.setContentType("application/json");
+
+        EventCursor after = null;
+        int pageSize = DEFAULT_PAGE_SIZE;
+        try {
+            if (!out.equals("json")) {
+                throw new IllegalArgumentException("Paged event listing only supports out=json");
+            }
+            String afterString = request.getParameter("after");
+            if (afterString != null && !afterString.isEmpty()) {
+                after = EventCursor.parse(afterString);
+            }
+            String pageSizeString = request.getParameter("pageSize");
+            if (pageSizeString != null && !pageSizeString.isEmpty()) {
+                pageSize = Integer.parseInt(pageSizeString);
+                if (pageSize < 1 || pageSize > MAX_PAGE_SIZE) {
+                    throw new IllegalArgumentException("pageSize must be between 1 and " + MAX_PAGE_SIZE);
+                }
+            }
+        } catch (IllegalArgumentException ex) {
+            response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+            try (PrintWriter pw = response.getWriter()) {
+                pw.print(Json.createObjectBuilder().add("error", ex.getMessage()).build().toString());
+            }
+            return;
+        }
+
+        PrintWriter pw = response.getWriter();
+        boolean[] started = {false};
+        try {
+            EventCursor next = new EventService().streamEventList(filter, after, pageSize, includeData, e -> {
+                if (includeData) {
+                    e.loadWaveformDataFromDisk(seriesMasterSet);
+                }
+                pw.print(started[0] ? "," : "{\"events\":[");
+                started[0] = true;
+                pw.print(e.toJsonObject(seriesMasterSet).toString());
+            });
+            pw.print(started[0] ? "]" : "{\"events\":[]");
+            pw.print(",\"next\":" + (next == null ? "null" : "\"" + next + "\"") + "}");
+        } catch (SQLException | IOException ex) {
+            LOGGER.log(Level.SEVERE, "Error streaming event list", ex);
+            if (!started[0] && !response.isCommitted()) {
+                response.resetBuffer();
+                response.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+                pw.print(Json.createObjectBuilder().add("error", "error querying events - " + ex.getMessage()).build().toString());
+            }
+            // Otherwise part of the page has gone out already.  Closing leaves the client with invalid JSON.
+        } finally {
+            pw.close();
+        }
+    }
+
+    /**
+     * Handle logic for events to be added to waveform database.  With async=true the event is queued and the
+     * response is a 202 with the ID of the job adding it (see doPostAsync).
      *
      * @param request  Standard HttpServletRequest object
      * @param response Standard HttpServletResponse object
@@ -323,6 +402,12 @@ public class EventAjax extends HttpServlet {
 
         String userName = request.getUserPrincipal().getName();
 
+        // Queue the event to be added in the background instead of making the client wait on it
+        if (Boolean.parseBoolean(request.getParameter("async"))) {
+            doPostAsync(request, response, userName);
+            return;
+        }
+
         Instant t = TimeUtil.getInstantFromDateTimeString(datetime);
         EventService wfs = new EventService();
         String kvp;
@@ -351,7 +436,8 @@ public class EventAjax extends HttpServlet {
                     (t == null ? "null" : t.toString()) + " grp=" + grp + " arc=" + arch + " del=" + del + " cFile=" +
                     captureFile;
             LOGGER.log(Level.INFO, "User ''{0}'' attempting to add event {1}", new Object[]{userName, kvp});
-            Event event = new Event(t, location, system, arch, del, grp, classification, captureFile, labelList);
+            // Only the capture file headers and sample timing are needed to add the event to the database
+            Event event = new Event(t, location, system, arch, del, grp, classification, captureFile, labelList, true);
             long id = wfs.addEvent(event);
             LOGGER.log(Level.INFO, "Event addition succeeded");
             try (PrintWriter pw = response.getWriter()) {
@@ -366,6 +452,69 @@ public class EventAjax extends HttpServlet {
         }
     }
 
+    /**
+     * Check and queue the event described by the request parameters, then respond with 202 and the ID of the job
+     * adding it.  Its progress is available from ajax/event-job.  Responds with 429 when the queue is full.
+     */
+    private void doPostAsync(HttpServletRequest request, HttpServletResponse response, String userName)
+            throws IOException {
+        EventIngestService.Descriptor descriptor;
+        try {
+            JsonObjectBuilder job = Json.createObjectBuilder();
+            for (String name : new String[]{"datetime", "location", "system", "classification", "grouped", "archive",
+                    "delete", "captureFile"}) {
+                String value = request.getParameter(name);
+                if (value != null) {
+                    job.add(name, value);
+                }
+            }
+            String[] labelParams = request.getParameterValues("label");
+            if (labelParams != null) {
+                JsonArrayBuilder jab = Json.createArrayBuilder();
+                for (String labelParam : labelParams) {
+                    if (labelParam != null) {
+                        jab.add(Json.createReader(new StringReader(labelParam)).readObject());
+                    }
+                }
+                job.add("labels", jab);
+            }
+            descriptor = EventIngestService.Descriptor.fromJson(job.build());
+        } catch (JsonException | IllegalArgumentException e) {
+            try (PrintWriter pw = response.getWriter()) {
+                response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+                pw.write(Json.createObjectBuilder().add("error", "Invalid event - " + e.getMessage()).build().toString());
+            }
+            return;
+        }
+
+        EventIngestQueue.Job job;
+        try {
+            job = EventIngestQueue.getInstance().submit(descriptor);
+        } catch (RejectedExecutionException e) {
+            response.setStatus(429);
+            response.setHeader("Retry-After", "5");
+            try (PrintWriter pw = response.getWriter()) {
+                pw.write("{\"error\": \"Event queue is full.  Try again later.\"}");
+            }
+            return;
+        } catch (IOException e) {
+            LOGGER.log(Level.SEVERE, "Unable to queue event", e);
+            response.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+            try (PrintWriter pw = response.getWriter()) {
+                pw.write(Json.createObjectBuilder().add("error", "Unable to queue event - " + e).build().toString());
+            }
+            return;
+        }
+
+        LOGGER.log(Level.INFO, "User ''{0}'' queued event {1} as job {2}", new Object[]{userName, descriptor, job.getId()});
+        String statusUrl = request.getContextPath() + "/ajax/event-job?id=" + job.getId();
+        response.setStatus(HttpServletResponse.SC_ACCEPTED);
+        response.setHeader("Location", statusUrl);
+        try (PrintWriter pw = response.getWriter()) {
+            pw.write(Json.createObjectBuilder(job.toJsonObject()).add("statusUrl", statusUrl).build().toString());
+        }
+    }
+
     /**
      * Returns a short description of the servlet.
      *
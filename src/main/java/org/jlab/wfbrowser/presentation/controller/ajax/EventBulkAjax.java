@@ -0,0 +1,168 @@
+package org.jlab.wfbrowser.presentation.controller.ajax;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.json.Json;
+import javax.json.JsonArrayBuilder;
+import javax.json.JsonException;
+import javax.json.JsonObject;
+import javax.json.JsonValue;
+import javax.json.stream.JsonParser;
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import org.jlab.wfbrowser.business.service.EventIngestService;
+
+/**
+ * Adds many events in one request.  The body is either a JSON array of event descriptors or NDJSON, one descriptor
+ * per line.  A descriptor has the same fields as the parameters of a POST to ajax/event, with labels given as an
+ * array of label objects, e.g.,
+ * <pre>
+ * {"datetime": "2018-12-01 15:30:05.1", "location": "1L22", "system": "rf", "classification": "", "grouped": true,
+ *  "labels": [{"model-name": "m1", "name": "cavity", "value": "1", "confidence": 0.9}]}
+ * </pre>
+ * The whole body is checked before anything is added.  The response lists the new event ID or the error of each
+ * descriptor by its position in the request.
+ *
+ * @author adamc
+ */
+@WebServlet(name = "EventBulkAjax", urlPatterns = {"/ajax/event-bulk"})
+public class EventBulkAjax extends HttpServlet {
+
+    private static final Logger LOGGER = Logger.getLogger(EventBulkAjax.class.getName());
+
+    // Larger backfills should be split across requests
+    private static final int MAX_EVENTS = 10000;
+
+    /**
+     * Handles the HTTP <code>POST</code> method.  Add the events described in the request body.
+     *
+     * @param request  servlet request
+     * @param response servlet response
+     * @throws IOException if an I/O error occurs
+     */
+    @Override
+    protected void doPost(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        response.setContentType("application/json");
+
+        List<EventIngestService.Descriptor> descriptors;
+        try {
+            descriptors = readDescriptors(request.getReader());
+        } catch (JsonException | IllegalArgumentException ex) {
+            response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+            try (PrintWriter pw = response.getWriter()) {
+                pw.write(Json.createObjectBuilder().add("error", ex.getMessage() == null ? ex.toString() : ex.getMessage())
+                        .build().toString());
+            }
+            return;
+        }
+
+        String userName = request.getUserPrincipal() == null ? null : request.getUserPrincipal().getName();
+        LOGGER.log(Level.INFO, "User ''{0}'' attempting to add {1} events", new Object[]{userName, descriptors.size()});
+
+        long start = System.nanoTime();
+        List<EventIngestService.Result> results = new EventIngestService().ingest(descriptors);
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+
+        int added = 0;
+        JsonArrayBuilder jab = Json.createArrayBuilder();
+        for (EventIngestService.Result result : results) {
+            if (result.getEventId() != null) {
+                added++;
+            }
+            jab.add(result.toJsonObject());
+        }
+        LOGGER.log(Level.INFO, "Added {0} of {1} events in {2} ms", new Object[]{added, results.size(), elapsedMillis});
+
+        try (PrintWriter pw = response.getWriter()) {
+            pw.write(Json.createObjectBuilder()
+                    .add("count", results.size())
+                    .add("added", added)
+                    .add("failed", results.size() - added)
+                    .add("elapsedMillis", elapsedMillis)
+                    .add("results", jab.build())
+                    .build().toString());
+        }
+    }
+
+    /**
+     * Read the event descriptors from a JSON array or NDJSON body.
+     *
+     * @param reader The request body
+     * @return The descriptors in order
+     * @throws IllegalArgumentException If the body or any descriptor is invalid
+     * @throws IOException If the body could not be read
+     */
+    static List<EventIngestService.Descriptor> readDescriptors(BufferedReader reader) throws IOException {
+        List<EventIngestService.Descriptor> out = new ArrayList<>();
+
+        // Peek at the first character to tell a JSON array from NDJSON
+        reader.mark(1);
+        int c = reader.read();
+        while (c != -1 && Character.isWhitespace(c)) {
+            reader.mark(1);
+            c = reader.read();
+        }
+        if (c == -1) {
+            throw new IllegalArgumentException("No events given");
+        }
+        reader.reset();
+
+        if (c == '[') {
+            try (JsonParser parser = Json.createParser(reader)) {
+                parser.next();
+                while (parser.hasNext()) {
+                    JsonParser.Event event = parser.next();
+                    if (event == JsonParser.Event.END_ARRAY) {
+                        break;
+                    } else if (event != JsonParser.Event.START_OBJECT) {
+                        throw new IllegalArgumentException("Event " + out.size() + " is not an object");
+                    }
+                    add(out, parser.getObject());
+                }
+            }
+        } else {
+            String line;
+            int lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.trim().isEmpty()) {
+                    continue;
+                }
+                JsonValue value;
+                try {
+                    value = Json.createReader(new StringReader(line)).readValue();
+                } catch (JsonException ex) {
+                    throw new IllegalArgumentException("Invalid JSON on line " + lineNumber + " - " + ex.getMessage());
+                }
+                if (value.getValueType() != JsonValue.ValueType.OBJECT) {
+                    throw new IllegalArgumentException("Line " + lineNumber + " is not an object");
+                }
+                add(out, (JsonObject) value);
+            }
+        }
+
+        if (out.isEmpty()) {
+            throw new IllegalArgumentException("No events given");
+        }
+        return out;
+    }
+
+    private static void add(List<EventIngestService.Descriptor> out, JsonObject json) {
+        if (out.size() >= MAX_EVENTS) {
+            throw new IllegalArgumentException("Too many events.  At most " + MAX_EVENTS + " may be added per request");
+        }
+        try {
+            out.add(EventIngestService.Descriptor.fromJson(json));
+        } catch (IllegalArgumentException ex) {
+            throw new IllegalArgumentException("Invalid event " + out.size() + " - " + ex.getMessage(), ex);
+        }
+    }
+}
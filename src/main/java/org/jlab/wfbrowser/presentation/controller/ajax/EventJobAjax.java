@@ -0,0 +1,65 @@
+package org.jlab.wfbrowser.presentation.controller.ajax;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.json.Json;
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import org.jlab.wfbrowser.business.service.EventIngestQueue;
+
+/**
+ * Reports the progress of an event queued by a POST to ajax/event with async=true.  The status is one of queued,
+ * running, done (with the new event's id) or failed (with an error).
+ *
+ * @author adamc
+ */
+@WebServlet(name = "EventJobAjax", urlPatterns = {"/ajax/event-job"})
+public class EventJobAjax extends HttpServlet {
+
+    private static final Logger LOGGER = Logger.getLogger(EventJobAjax.class.getName());
+
+    /**
+     * Handles the HTTP <code>GET</code> method.
+     *
+     * @param request  servlet request
+     * @param response servlet response
+     * @throws IOException if an I/O error occurs
+     */
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        String id = request.getParameter("id");
+        response.setContentType("application/json");
+
+        if (id == null || id.isEmpty()) {
+            response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+            try (PrintWriter pw = response.getWriter()) {
+                pw.write("{\"error\": \"Missing required argument.  Requires id\"}");
+            }
+            return;
+        }
+
+        EventIngestQueue.Job job;
+        try {
+            job = EventIngestQueue.getInstance().getJob(id);
+        } catch (IOException e) {
+            LOGGER.log(Level.SEVERE, "Unable to get event queue", e);
+            response.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+            try (PrintWriter pw = response.getWriter()) {
+                pw.write(Json.createObjectBuilder().add("error", "Event queue is unavailable - " + e).build().toString());
+            }
+            return;
+        }
+        try (PrintWriter pw = response.getWriter()) {
+            if (job == null) {
+                response.setStatus(HttpServletResponse.SC_NOT_FOUND);
+                pw.write(Json.createObjectBuilder().add("error", "Unknown job - " + id).build().toString());
+            } else {
+                pw.write(job.toJsonObject().toString());
+            }
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package org.jlab.wfbrowser.presentation.controller.ajax;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import javax.json.Json;
+import javax.json.JsonObjectBuilder;
+import javax.servlet.ServletException;
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import org.jlab.wfbrowser.business.service.DataDirectoryWatcher;
+import org.jlab.wfbrowser.business.service.EventIngestService;
+import org.jlab.wfbrowser.business.util.BufferPool;
+import org.jlab.wfbrowser.business.util.ParseExecutor;
+import org.jlab.wfbrowser.model.CaptureFile.CaptureFileCache;
+
+/**
+ * Reports internal metrics of the application, such as the state of the capture file parse pool, as JSON.
+ *
+ * @author adamc
+ */
+@WebServlet(name = "MetricsAjax", urlPatterns = {"/ajax/metrics"})
+public class MetricsAjax extends HttpServlet {
+
+    /**
+     * Handles the HTTP <code>GET</code> method.
+     *
+     * @param request servlet request
+     * @param response servlet response
+     * @throws ServletException if a servlet-specific error occurs
+     * @throws IOException if an I/O error occurs
+     */
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response)
+            throws ServletException, IOException {
+        JsonObjectBuilder job = Json.createObjectBuilder()
+                .add("parseExecutor", ParseExecutor.getMetricsAsJson())
+                .add("bufferPool", BufferPool.getMetricsAsJson())
+                .add("captureFileCache", CaptureFileCache.getInstance().getMetricsAsJson())
+                .add("eventIngest", EventIngestService.getMetricsAsJson());
+        DataDirectoryWatcher watcher = DataDirectoryWatcher.getInstance();
+        if (watcher != null) {
+            job.add("dataDirectoryWatcher", watcher.getMetricsAsJson());
+        }
+
+        response.setContentType("application/json");
+        try (PrintWriter pw = response.getWriter()) {
+            pw.write(job.build().toString());
+        }
+    }
+}
@@ -142,22 +142,15 @@ public class RFFaultTable extends HttpServlet {
         EventService es = new EventService();
         List<Event> eventList = new ArrayList<>();
         try {
-            // Get the tally of labeled events
-            EventFilter ef = new EventFilter(null, begin, end, "rf", locationSelections, null, null, null, null);
-
             // Get the list of events that match both the event filters and the label confidence filter
             // Note: that filtering on label confidence implies that only labeled events will be returned
             // confOpString get validated here.  Invalid confOpString should throw an exception.
             LabelFilter lf = new LabelFilter(null, null, null, confidence, confOpString);
-            eventList = es.getEventListWithoutCaptureFiles(ef);
-            List<Event> filteredList = lf.filterEvents(eventList);
 
-            // If the user does not want only labeled events, add back the unlabeled events that were filtered out
-            if (!isLabeled) {
-                LabelFilter unlabFilter = new LabelFilter(false);
-                filteredList.addAll(unlabFilter.filterEvents(eventList));
-            }
-            eventList = filteredList;
+            // If the user does not want only labeled events, the unlabeled events are included too
+            EventFilter ef = new EventFilter(null, begin, end, "rf", locationSelections, null, null, null, null,
+                    Collections.singletonList(lf), !isLabeled);
+            eventList = es.getEventListWithoutCaptureFiles(ef);
         } catch (SQLException ex) {
             LOGGER.log(Level.WARNING, "Error querying database for event data");
             throw new ServletException(ex);
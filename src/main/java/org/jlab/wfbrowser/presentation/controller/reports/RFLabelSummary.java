@@ -14,6 +14,7 @@ import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import javax.servlet.http.HttpSession;
 import java.io.IOException;
+import java.io.PrintWriter;
 import java.net.URLEncoder;
 import java.sql.SQLException;
 import java.time.Instant;
@@ -36,6 +37,7 @@ public class RFLabelSummary extends HttpServlet {
         String isLabeledString = request.getParameter("isLabeled");
         String heatmap = request.getParameter("heatmap");
         String timeline = request.getParameter("timeline");
+        String out = request.getParameter("out");
         boolean isLabeled = Boolean.parseBoolean(isLabeledString);
 
         boolean redirectNeeded = false;
@@ -128,6 +130,9 @@ public class RFLabelSummary extends HttpServlet {
                         "&heatmap=" + URLEncoder.encode(heatmap, "UTF-8") +
                         "&timeline=" + URLEncoder.encode(timeline, "UTF-8") +
                         "&isLabeled=" + URLEncoder.encode(String.valueOf(isLabeled), "UTF-8"));
+                if (out != null) {
+                    redirectUrl.append("&out=").append(URLEncoder.encode(out, "UTF-8"));
+                }
                 redirectUrl.append("&conf=");
                 redirectUrl.append(URLEncoder.encode(confString, "UTF-8"));
                 redirectUrl.append("&confOp=");
@@ -146,15 +151,28 @@ public class RFLabelSummary extends HttpServlet {
         }
 
         EventService es = new EventService();
+        List<LabelFilter> lfList = new ArrayList<>();
+        lfList.add(new LabelFilter(null, null, null, confidence, confOpString));
+
+        // Just the tally of label combinations by location, counted by the database.  No events are loaded.
+        if (out != null && out.equals("json")) {
+            EventFilter ef = new EventFilter(null, begin, end, "rf", locationSelections, null, null, null, null);
+            response.setContentType("application/json");
+            try (PrintWriter pw = response.getWriter()) {
+                pw.print(es.getLabelTallyAsJson(ef, lfList, !isLabeled).toString());
+            } catch (SQLException ex) {
+                LOGGER.log(Level.WARNING, "Error querying database for label tally");
+                throw new ServletException(ex);
+            }
+            return;
+        }
+
         List<Event> events;
         try {
-            // Get the tally of labeled events
-            EventFilter ef = new EventFilter(null, begin, end, "rf", locationSelections, null, null, null, null);
-            List<LabelFilter> lfList = new ArrayList<>();
-            lfList.add(new LabelFilter(null, null, null, confidence, confOpString));
+            EventFilter ef = new EventFilter(null, begin, end, "rf", locationSelections, null, null, null, null,
+                    lfList, !isLabeled);
 
             events = es.getEventListWithoutCaptureFiles(ef);
-            events = EventService.applyLabelFilters(events, lfList, !isLabeled);
         } catch (SQLException ex) {
             LOGGER.log(Level.WARNING, "Error querying database for label tally");
             throw new ServletException(ex);
@@ -0,0 +1,44 @@
+package org.jlab.wfbrowser.presentation.filter;
+
+import java.io.IOException;
+import javax.servlet.DispatcherType;
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.annotation.WebFilter;
+import org.jlab.wfbrowser.business.util.SqlUtil;
+
+/**
+ * Shares one read-only database connection, and its prepared statements, between all of the queries of a request.
+ * Requests that make no queries never check a connection out of the pool.
+ *
+ * @author adamc
+ */
+@WebFilter(filterName = "ConnectionScopeFilter", urlPatterns = {"/*"}, dispatcherTypes = {DispatcherType.REQUEST})
+public class ConnectionScopeFilter implements Filter {
+
+    @Override
+    public void doFilter(ServletRequest request, ServletResponse response,
+            FilterChain chain)
+            throws IOException, ServletException {
+        boolean started = SqlUtil.beginConnectionScope();
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            if (started) {
+                SqlUtil.endConnectionScope();
+            }
+        }
+    }
+
+    @Override
+    public void init(FilterConfig filterConfig) throws ServletException {
+    }
+
+    @Override
+    public void destroy() {
+    }
+}
@@ -0,0 +1,49 @@
+package org.jlab.wfbrowser.presentation.listener;
+
+import java.io.IOException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.servlet.ServletContextEvent;
+import javax.servlet.ServletContextListener;
+import javax.servlet.annotation.WebListener;
+import org.jlab.wfbrowser.business.service.DataDirectoryWatcher;
+import org.jlab.wfbrowser.business.service.EventIngestQueue;
+import org.jlab.wfbrowser.business.service.EventIngestService;
+import org.jlab.wfbrowser.business.service.EventService;
+import org.jlab.wfbrowser.business.util.ParseExecutor;
+
+/**
+ * Starts and stops the application wide background resources, e.g., thread pools, when the application is deployed
+ * and undeployed.
+ *
+ * @author adamc
+ */
+@WebListener
+public class ApplicationLifecycleListener implements ServletContextListener {
+
+    private static final Logger LOGGER = Logger.getLogger(ApplicationLifecycleListener.class.getName());
+
+    @Override
+    public void contextInitialized(ServletContextEvent sce) {
+        EventService.warmEventOptions();
+
+        // Pick up any queued events left over from before a redeploy
+        try {
+            EventIngestQueue.getInstance();
+        } catch (IOException ex) {
+            LOGGER.log(Level.WARNING, "Unable to start the event ingest queue", ex);
+        }
+
+        DataDirectoryWatcher.startIfEnabled();
+    }
+
+    @Override
+    public void contextDestroyed(ServletContextEvent sce) {
+        DataDirectoryWatcher.shutdown();
+        ParseExecutor.shutdown();
+        EventIngestService.shutdown();
+        EventIngestQueue.shutdown();
+        EventService.shutdownOptionRefresher();
+        EventService.shutdownWaveformStats();
+    }
+}
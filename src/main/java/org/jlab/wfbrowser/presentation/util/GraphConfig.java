@@ -142,8 +142,7 @@ public class GraphConfig {
         List<String> classificationOptions;
         EventService es = new EventService();
         try {
-            classificationOptions = es.getClassifications(Collections.singletonList(system));
-            classificationOptions.sort(String::compareTo);
+            classificationOptions = es.getClassificationOptions(system);
         } catch (SQLException ex) {
             LOGGER.log(Level.SEVERE, "Error querying database for classification information.", ex);
             throw new RuntimeException("Error querying database for classification information.");
@@ -163,8 +162,7 @@ public class GraphConfig {
         EventService es = new EventService();
         List<String> locationOptions;
         try {
-            locationOptions = es.getLocationNames(Collections.singletonList(system));
-            locationOptions.sort(String::compareTo);
+            locationOptions = es.getLocationOptions(system);
             if (locationOptions.isEmpty()) {
                 LOGGER.log(Level.SEVERE, "Error. No location options found.  Consider adding events.");
                 throw new RuntimeException("Error. No location options found.  Consider adding events.");
@@ -0,0 +1,38 @@
+package org.jlab.wfbrowser.business.filter;
+
+import java.time.Instant;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author adamc
+ */
+public class EventCursorTest {
+
+    /**
+     * Test of parse and toString methods, of class EventCursor.
+     */
+    @Test
+    public void testParse() {
+        System.out.println("parse");
+        EventCursor cursor = new EventCursor(Instant.parse("2019-04-03T12:01:02.300Z"), 1234);
+        assertEquals("2019-04-03 12:01:02.3,1234", cursor.toString());
+        assertEquals(cursor, EventCursor.parse(cursor.toString()));
+
+        // Seconds without a fraction
+        EventCursor noFraction = EventCursor.parse("2019-04-03 12:01:02,7");
+        assertEquals(Instant.parse("2019-04-03T12:01:02Z"), noFraction.getEventTime());
+        assertEquals(7, noFraction.getEventId());
+
+        String[] invalid = {null, "", "2019-04-03 12:01:02.3", "2019-04-03 12:01:02.3,", "2019-04-03,5", "2019-04-03 12:01:02.3,x"};
+        for (String s : invalid) {
+            try {
+                EventCursor.parse(s);
+                fail("Expected exception for " + s);
+            } catch (IllegalArgumentException ex) {
+                // Expected
+            }
+        }
+    }
+}
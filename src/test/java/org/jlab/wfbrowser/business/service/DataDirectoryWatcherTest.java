@@ -0,0 +1,233 @@
+package org.jlab.wfbrowser.business.service;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import javax.json.JsonObject;
+import org.jlab.wfbrowser.business.util.TimeUtil;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author adamc
+ */
+public class DataDirectoryWatcherTest {
+
+    private static final long SETTLE = 200;
+
+    private Path root;
+    private String today;
+    private RecordingSink sink;
+
+    /**
+     * Remembers the events it is given instead of adding them to the database.
+     */
+    private static class RecordingSink implements DataDirectoryWatcher.Sink {
+        private final List<JsonObject> added = Collections.synchronizedList(new ArrayList<>());
+        private final Set<String> existing = new HashSet<>();
+        // The number of events to fail, and whether they fail as duplicates
+        private int failures = 0;
+        private boolean duplicate = false;
+
+        @Override
+        public Set<String> getExistingKeys(String system, Instant begin) {
+            return existing;
+        }
+
+        @Override
+        public List<EventIngestService.Result> ingest(List<EventIngestService.Descriptor> descriptors) {
+            List<EventIngestService.Result> results = new ArrayList<>();
+            for (EventIngestService.Descriptor d : descriptors) {
+                if (failures > 0) {
+                    failures--;
+                    results.add(new EventIngestService.Result(results.size(), null, "Unavailable", duplicate));
+                    continue;
+                }
+                added.add(d.toJsonObject());
+                results.add(new EventIngestService.Result(results.size(), (long) added.size(), null));
+            }
+            return results;
+        }
+
+        private Map<String, JsonObject> getAddedByDatetime() {
+            Map<String, JsonObject> out = new HashMap<>();
+            synchronized (added) {
+                for (JsonObject json : added) {
+                    out.put(json.getString("datetime"), json);
+                }
+            }
+            return out;
+        }
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        root = Files.createTempDirectory("data-watch");
+        today = LocalDate.now().format(DateTimeFormatter.ofPattern("yyyy_MM_dd"));
+        sink = new RecordingSink();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                Files.delete(file);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(Path dir, IOException exc) throws IOException {
+                Files.delete(dir);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    private Path write(String relative, String content) throws IOException {
+        Path p = root.resolve(relative);
+        Files.createDirectories(p.getParent());
+        Files.write(p, content.getBytes(StandardCharsets.UTF_8));
+        return p;
+    }
+
+    private String getDatetime(String time) {
+        return today.replace('_', '-') + " " + time;
+    }
+
+    /**
+     * Test of reconcile and flush methods, of class DataDirectoryWatcher.
+     */
+    @Test
+    public void testReconcile() throws Exception {
+        System.out.println("reconcile");
+        // Grouped with no classification, ungrouped with a classification, an archived grouped event, and one that
+        // is already in the database
+        write("rf/1L22/" + today + "/100000.1/R1.txt", "a");
+        write("rf/1L22/" + today + "/100000.1/R2.txt", "b");
+        write("rf/1L23/periodic/" + today + "/test3." + today + "_110000.1.txt", "c");
+        write("rf/1L24/" + today + "/120000.1.tar.gz", "d");
+        write("rf/1L24/" + today + "/130000.1/R1.txt", "e");
+        sink.existing.add(DataDirectoryWatcher.getKey("rf", "1L24", "",
+                TimeUtil.getInstantFromDateTimeString(getDatetime("13:00:00.1"))));
+
+        // Ignored.  Old, hidden, not an event and empty.
+        write("rf/1L22/2017_09_14/100000.1/R1.txt", "f");
+        write(".ingest-journal/0000000000001-000001.json", "{}");
+        write("rf/1L22/" + today + "/temp/R1.txt", "g");
+        Files.createDirectories(root.resolve("rf/1L22/" + today + "/140000.1"));
+
+        DataDirectoryWatcher watcher = new DataDirectoryWatcher(root, sink, SETTLE, 60000, 2);
+        long now = System.currentTimeMillis();
+        assertEquals(5, watcher.reconcile(now));
+        assertEquals(0, watcher.flush(now));
+
+        // Still being written
+        write("rf/1L22/" + today + "/100000.1/R3.txt", "h");
+        assertEquals(2, watcher.flush(now + SETTLE));
+        assertEquals(2, sink.added.size());
+
+        assertEquals(1, watcher.flush(now + 2 * SETTLE));
+        assertEquals(0, watcher.flush(now + 3 * SETTLE));
+
+        Map<String, JsonObject> added = sink.getAddedByDatetime();
+        assertEquals(3, added.size());
+        JsonObject g = added.get(getDatetime("10:00:00.1"));
+        assertEquals("rf", g.getString("system"));
+        assertEquals("1L22", g.getString("location"));
+        assertEquals("", g.getString("classification"));
+        assertTrue(g.getBoolean("grouped"));
+        JsonObject u = added.get(getDatetime("11:00:00.1"));
+        assertEquals("periodic", u.getString("classification"));
+        assertFalse(u.getBoolean("grouped"));
+        assertEquals("test3." + today + "_110000.1.txt", u.getString("captureFile"));
+        assertTrue(added.containsKey(getDatetime("12:00:00.1")));
+
+        // Nothing new the second time around
+        assertEquals(1, watcher.reconcile(now + 4 * SETTLE));
+        watcher.flush(now + 4 * SETTLE);
+        watcher.flush(now + 5 * SETTLE);
+        assertEquals(3, sink.added.size());
+    }
+
+    /**
+     * Test that events that could not be added are tried again after a delay, and duplicates are not.
+     */
+    @Test
+    public void testRetry() throws Exception {
+        System.out.println("retry");
+        write("rf/1L22/" + today + "/100000.1/R1.txt", "a");
+        DataDirectoryWatcher watcher = new DataDirectoryWatcher(root, sink, SETTLE, 60000, 2);
+        long now = System.currentTimeMillis();
+        assertEquals(1, watcher.reconcile(now));
+        watcher.flush(now);
+
+        sink.failures = 2;
+        assertEquals(1, watcher.flush(now + SETTLE));
+        assertEquals(0, sink.added.size());
+        assertEquals(1, watcher.getMetricsAsJson().getInt("pending"));
+
+        // Waits one settle time, then two
+        assertEquals(0, watcher.flush(now + SETTLE + 1));
+        assertEquals(1, watcher.flush(now + 2 * SETTLE));
+        assertEquals(0, watcher.flush(now + 3 * SETTLE));
+        assertEquals(1, watcher.flush(now + 4 * SETTLE));
+        assertEquals(1, sink.added.size());
+        assertEquals(0, watcher.getMetricsAsJson().getInt("pending"));
+        assertEquals(2, watcher.getMetricsAsJson().getInt("failed"));
+
+        // A duplicate is done with
+        write("rf/1L22/" + today + "/110000.1/R1.txt", "b");
+        assertEquals(1, watcher.reconcile(now + 5 * SETTLE));
+        watcher.flush(now + 5 * SETTLE);
+        sink.failures = 1;
+        sink.duplicate = true;
+        assertEquals(1, watcher.flush(now + 6 * SETTLE));
+        assertEquals(0, watcher.getMetricsAsJson().getInt("pending"));
+        assertEquals(0, watcher.reconcile(now + 7 * SETTLE));
+    }
+
+    /**
+     * Test of start method, of class DataDirectoryWatcher.
+     */
+    @Test
+    public void testWatch() throws Exception {
+        System.out.println("watch");
+        Files.createDirectories(root.resolve("rf/1L22/" + today));
+        DataDirectoryWatcher watcher = new DataDirectoryWatcher(root, sink, SETTLE, 60000, 2);
+        watcher.start();
+        try {
+            // Give the first scan time to register the directories
+            Thread.sleep(500);
+            write("rf/1L22/" + today + "/100000.1/R1.txt", "a");
+            write("rf/1L25/cls/" + today + "/test3." + today + "_110000.1.txt", "b");
+
+            for (int i = 0; i < 100 && sink.added.size() < 2; i++) {
+                Thread.sleep(100);
+            }
+            Map<String, JsonObject> added = sink.getAddedByDatetime();
+            assertEquals(2, added.size());
+            assertTrue(added.get(getDatetime("10:00:00.1")).getBoolean("grouped"));
+            assertEquals("cls", added.get(getDatetime("11:00:00.1")).getString("classification"));
+        } finally {
+            watcher.close();
+        }
+    }
+}
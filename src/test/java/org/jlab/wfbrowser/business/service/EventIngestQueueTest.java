@@ -0,0 +1,170 @@
+package org.jlab.wfbrowser.business.service;
+
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import javax.json.Json;
+import org.jlab.wfbrowser.connectionpools.StandaloneConnectionPools;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author adamc
+ */
+public class EventIngestQueueTest {
+
+    private static final String EVENT = "{\"datetime\": \"2017-09-14 10:00:00.1\", \"location\": \"grouped-consistent\","
+            + " \"system\": \"test\", \"classification\": \"\", \"grouped\": \"true\"}";
+    private static final String MISSING = "{\"datetime\": \"2017-09-14 10:00:00.1\", \"location\": \"nowhere\","
+            + " \"system\": \"test\", \"classification\": \"\", \"grouped\": \"true\"}";
+
+    private Path journalDir;
+    private EventIngestQueue queue;
+
+    @BeforeClass
+    public static void oneTimeSetUp() throws Exception {
+        StandaloneConnectionPools.setupConnectionPool();
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        journalDir = Files.createTempDirectory("ingest-journal");
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        if (queue != null) {
+            queue.close();
+        }
+        try (Stream<Path> files = Files.list(journalDir)) {
+            for (Path p : files.collect(Collectors.toList())) {
+                Files.delete(p);
+            }
+        }
+        Files.delete(journalDir);
+    }
+
+    private static EventIngestService.Descriptor descriptor(String s) {
+        return EventIngestService.Descriptor.fromJson(Json.createReader(new StringReader(s)).readObject());
+    }
+
+    private static void waitFor(EventIngestQueue.Job job) throws InterruptedException {
+        for (int i = 0; i < 300 && (job.getStatus() == EventIngestQueue.Status.QUEUED
+                || job.getStatus() == EventIngestQueue.Status.RUNNING); i++) {
+            Thread.sleep(100);
+        }
+    }
+
+    private List<Path> getJournal() throws Exception {
+        try (Stream<Path> files = Files.list(journalDir)) {
+            return files.collect(Collectors.toList());
+        }
+    }
+
+    /**
+     * Test of submit method, of class EventIngestQueue.
+     */
+    @Test
+    public void testSubmit() throws Exception {
+        System.out.println("submit");
+        queue = new EventIngestQueue(journalDir, 1, 10);
+        EventIngestQueue.Job ok = queue.submit(descriptor(EVENT));
+        EventIngestQueue.Job bad = queue.submit(descriptor(MISSING));
+        assertSame(ok, queue.getJob(ok.getId()));
+        waitFor(ok);
+        waitFor(bad);
+        try {
+            assertEquals(EventIngestQueue.Status.DONE, ok.getStatus());
+            assertNotNull(ok.getEventId());
+            assertEquals("done", ok.toJsonObject().getString("status"));
+            assertEquals(EventIngestQueue.Status.FAILED, bad.getStatus());
+            assertNotNull(bad.getError());
+            assertTrue(getJournal().isEmpty());
+            assertEquals(0, queue.getPendingCount());
+        } finally {
+            if (ok.getEventId() != null) {
+                new EventService().deleteEvent(ok.getEventId(), true);
+            }
+        }
+    }
+
+    /**
+     * Test that a full queue refuses new events.
+     */
+    @Test
+    public void testFull() throws Exception {
+        System.out.println("full");
+        queue = new EventIngestQueue(journalDir, 1, 0);
+        try {
+            queue.submit(descriptor(EVENT));
+            fail("Expected the queue to be full");
+        } catch (RejectedExecutionException ex) {
+            // expected
+        }
+        assertTrue(getJournal().isEmpty());
+        assertEquals(0, queue.getPendingCount());
+    }
+
+    /**
+     * Test that events left in the journal are added when a queue starts, and unreadable entries are dropped.
+     */
+    @Test
+    public void testRecover() throws Exception {
+        System.out.println("recover");
+        Files.write(journalDir.resolve("0000000000001-000001.json"),
+                ("{\"queued\": 1, \"event\": " + EVENT + "}").getBytes(StandardCharsets.UTF_8));
+        Files.write(journalDir.resolve("0000000000001-000002.json"), "{not json".getBytes(StandardCharsets.UTF_8));
+        Files.write(journalDir.resolve("0000000000001-000003.tmp"), "{".getBytes(StandardCharsets.UTF_8));
+
+        queue = new EventIngestQueue(journalDir, 1, 10);
+        EventIngestQueue.Job job = queue.getJob("0000000000001-000001");
+        assertNotNull(job);
+        assertNull(queue.getJob("0000000000001-000002"));
+        waitFor(job);
+        try {
+            assertEquals(EventIngestQueue.Status.DONE, job.getStatus());
+            assertTrue(getJournal().isEmpty());
+        } finally {
+            if (job.getEventId() != null) {
+                new EventService().deleteEvent(job.getEventId(), true);
+            }
+        }
+    }
+
+    /**
+     * Test that an event in the journal that was already added before a shutdown is reported as done with the ID of
+     * the stored event.
+     */
+    @Test
+    public void testRecoverDuplicate() throws Exception {
+        System.out.println("recoverDuplicate");
+        long eventId = new EventService().addEvent(descriptor(EVENT).toEvent());
+        try {
+            Files.write(journalDir.resolve("0000000000001-000001.json"),
+                    ("{\"queued\": 1, \"event\": " + EVENT + "}").getBytes(StandardCharsets.UTF_8));
+            queue = new EventIngestQueue(journalDir, 1, 10);
+            EventIngestQueue.Job job = queue.getJob("0000000000001-000001");
+            waitFor(job);
+            assertEquals(EventIngestQueue.Status.DONE, job.getStatus());
+            assertEquals(Long.valueOf(eventId), job.getEventId());
+            assertNull(job.getError());
+            assertTrue(getJournal().isEmpty());
+
+            // A new submission of the same event is still an error
+            EventIngestQueue.Job again = queue.submit(descriptor(EVENT));
+            waitFor(again);
+            assertEquals(EventIngestQueue.Status.FAILED, again.getStatus());
+        } finally {
+            new EventService().deleteEvent(eventId, true);
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package org.jlab.wfbrowser.business.service;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import javax.json.Json;
+import javax.json.JsonObject;
+import org.jlab.wfbrowser.business.filter.EventFilter;
+import org.jlab.wfbrowser.connectionpools.StandaloneConnectionPools;
+import org.jlab.wfbrowser.model.Event;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author adamc
+ */
+public class EventIngestServiceTest {
+
+    @BeforeClass
+    public static void oneTimeSetUp() throws Exception {
+        StandaloneConnectionPools.setupConnectionPool();
+    }
+
+    private static JsonObject json(String s) {
+        return Json.createReader(new StringReader(s)).readObject();
+    }
+
+    private static EventIngestService.Descriptor descriptor(String s) {
+        return EventIngestService.Descriptor.fromJson(json(s));
+    }
+
+    /**
+     * Test of fromJson method, of class EventIngestService.Descriptor.
+     */
+    @Test
+    public void testDescriptorFromJson() {
+        System.out.println("Descriptor fromJson");
+        EventIngestService.Descriptor d = descriptor("{\"datetime\": \"2017-09-14 10:00:00.1\", \"location\": \"ungrouped\","
+                + " \"system\": \"test\", \"classification\": \"\", \"grouped\": \"false\", \"archive\": true,"
+                + " \"captureFile\": \"test3.2017_09_14_100000.1.txt\"}");
+        assertTrue(d.toString().contains("grp=false arc=true del=false cFile=test3.2017_09_14_100000.1.txt"));
+
+        String[] invalid = {
+                "{\"location\": \"ungrouped\", \"system\": \"test\", \"classification\": \"\", \"grouped\": true}",
+                "{\"datetime\": \"yesterday\", \"location\": \"ungrouped\", \"system\": \"test\", \"classification\": \"\", \"grouped\": true}",
+                "{\"datetime\": \"2017-09-14 10:00:00.1\", \"location\": 5, \"system\": \"test\", \"classification\": \"\", \"grouped\": true}",
+                "{\"datetime\": \"2017-09-14 10:00:00.1\", \"location\": \"x\", \"system\": \"test\", \"classification\": \"\", \"grouped\": true, \"labels\": {}}"
+        };
+        for (String s : invalid) {
+            try {
+                descriptor(s);
+                fail("Expected invalid descriptor - " + s);
+            } catch (IllegalArgumentException ex) {
+                // expected
+            }
+        }
+    }
+
+    /**
+     * Test of ingest method, of class EventIngestService.
+     */
+    @Test
+    public void testIngest() throws Exception {
+        System.out.println("ingest");
+        String grouped = "{\"datetime\": \"2017-09-14 10:00:00.1\", \"location\": \"grouped-consistent\", \"system\": \"test\","
+                + " \"classification\": \"\", \"grouped\": true,"
+                + " \"labels\": [{\"model-name\": \"m1\", \"name\": \"cavity\", \"value\": \"3\", \"confidence\": 0.5}]}";
+        String ungrouped = "{\"datetime\": \"2017-09-14 11:00:00.1\", \"location\": \"ungrouped\", \"system\": \"test\","
+                + " \"classification\": \"class1\", \"grouped\": false, \"captureFile\": \"test3.2017_09_14_110000.1.txt\"}";
+        String missing = "{\"datetime\": \"2017-09-14 10:00:00.1\", \"location\": \"nowhere\", \"system\": \"test\","
+                + " \"classification\": \"\", \"grouped\": true}";
+        List<EventIngestService.Descriptor> descriptors = Arrays.asList(descriptor(grouped), descriptor(missing),
+                descriptor(ungrouped), descriptor(grouped));
+
+        EventService es = new EventService();
+        List<EventIngestService.Result> results = new EventIngestService().ingest(descriptors);
+        List<Long> ids = new ArrayList<>();
+        try {
+            assertEquals(4, results.size());
+            for (int i = 0; i < results.size(); i++) {
+                assertEquals(i, results.get(i).getIndex());
+                if (results.get(i).getEventId() != null) {
+                    ids.add(results.get(i).getEventId());
+                }
+            }
+            assertNotNull(results.get(0).getEventId());
+            assertNotNull(results.get(1).getError());
+            assertNotNull(results.get(2).getEventId());
+            // The duplicate fails without taking the rest of the group with it
+            assertNotNull(results.get(3).getError());
+            assertNull(results.get(3).getEventId());
+
+            List<Event> events = es.getEventList(new EventFilter(ids, null, null, null, null, null, null, null, null),
+                    null, false, true);
+            assertEquals(2, events.size());
+            assertEquals(1, events.get(0).getLabelList().size());
+            assertEquals("3", events.get(0).getLabelList().get(0).getValue());
+            assertFalse(events.get(0).getCaptureFileList().isEmpty());
+            assertEquals("test3.2017_09_14_110000.1.txt", events.get(1).getCaptureFileList().get(0).getFilename());
+
+            // Statistics of events added header only are stored in the background
+            EventService.awaitWaveformStats();
+            assertEquals(2, es.getWaveformStats(ids).size());
+        } finally {
+            for (Long id : ids) {
+                es.deleteEvent(id, true);
+            }
+        }
+    }
+}
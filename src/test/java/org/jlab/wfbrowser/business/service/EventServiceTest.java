@@ -2,6 +2,9 @@ package org.jlab.wfbrowser.business.service;
 
 import java.io.IOException;
 import java.io.StringReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.sql.SQLException;
 import java.time.Instant;
 import java.time.LocalDateTime;
@@ -11,11 +14,17 @@ import javax.json.Json;
 import javax.json.JsonArray;
 import javax.naming.NamingException;
 
+import org.jlab.wfbrowser.business.filter.EventCursor;
 import org.jlab.wfbrowser.business.filter.EventFilter;
 import org.jlab.wfbrowser.business.filter.LabelFilter;
 import org.jlab.wfbrowser.connectionpools.StandaloneConnectionPools;
+import org.jlab.wfbrowser.model.CaptureFile.BinaryCaptureFile;
+import org.jlab.wfbrowser.model.CaptureFile.CaptureFile;
 import org.jlab.wfbrowser.model.Event;
 import org.jlab.wfbrowser.model.Label;
+import org.jlab.wfbrowser.model.Series;
+import org.jlab.wfbrowser.model.Waveform;
+import org.jlab.wfbrowser.model.WaveformStats;
 import org.junit.Test;
 
 import static org.junit.Assert.*;
@@ -137,6 +146,19 @@ public class EventServiceTest {
     }
 
 
+    /**
+     * Cache the location and classification options of the test system before any events are added.  See
+     * test2iEventOptions.
+     */
+    @Test
+    public void test0EventOptions() throws Exception {
+        System.out.println("eventOptions before addEvent");
+        EventService es = new EventService();
+        List<String> locations = es.getLocationNames(Collections.singletonList("test"));
+        locations.sort(String::compareTo);
+        assertEquals(locations, es.getLocationOptions("test"));
+    }
+
     /**
      * Test of addEvent method, of class EventService.
      *
@@ -161,6 +183,19 @@ public class EventServiceTest {
 
         assertEquals(eventList.size(), result.size());
 
+        // The batched capture file, waveform and metadata rows should all have made it in
+        for (Event e : eventList) {
+            EventFilter idFilter = new EventFilter(Collections.singletonList(e.getEventId()), null, null, null, null,
+                    null, null, null, null);
+            Event stored = instance.getEventList(idFilter, null, false, true).get(0);
+            assertEquals(e.getCaptureFileMap().keySet(), stored.getCaptureFileMap().keySet());
+            for (CaptureFile cf : e.getCaptureFileList()) {
+                CaptureFile storedCf = stored.getCaptureFileMap().get(cf.getFilename());
+                assertEquals(cf.getMetadataList(), storedCf.getMetadataList());
+                assertEquals(cf.getWaveforms().size(), storedCf.getWaveforms().size());
+            }
+        }
+
         // Add a duplicate event.  This should fail.
         boolean threwException = false;
         try {
@@ -325,6 +360,302 @@ public class EventServiceTest {
         }
     }
 
+    /**
+     * Test of getEventList method when only the waveforms of some series are requested.
+     */
+    @Test
+    public void test2dGetEventListWithSeriesSet() throws Exception {
+        System.out.println("getEventList with seriesSet");
+
+        EventService es = new EventService();
+        EventFilter ef = new EventFilter(Arrays.asList(e1_grp_con_no_class.getEventId(), e2_grp_con_no_class.getEventId()),
+                null, null, null, null, null, null, null, null);
+
+        // Every test waveform maps to this series, so all of the data is loaded
+        List<Event> all = es.getEventList(ef, null, true, true, Collections.singleton("Test Series - All"));
+        assertEquals(2, all.size());
+        for (Event e : all) {
+            assertFalse(e.getWaveforms().isEmpty());
+            for (Waveform w : e.getWaveforms()) {
+                assertTrue(w.getValues().length > 0);
+            }
+        }
+
+        // No test waveform maps to this series, so no data is loaded, but the waveforms are still there
+        List<Event> none = es.getEventList(ef, null, true, true, Collections.singleton("Test Series - test1"));
+        assertEquals(2, none.size());
+        for (Event e : none) {
+            assertEquals(e.getWaveforms().size(), all.get(0).getWaveforms().size());
+            for (Waveform w : e.getWaveforms()) {
+                assertEquals(0, w.getValues().length);
+            }
+        }
+    }
+
+    /**
+     * The capture files of many events are loaded together.  Each event must get exactly what it gets when loaded
+     * on its own.
+     */
+    @Test
+    public void test2eGetEventListCaptureFiles() throws Exception {
+        System.out.println("getEventList capture files");
+
+        EventService es = new EventService();
+        List<Event> all = es.getEventList(new EventFilter(null, null, null, "test", null, null, null, null, null),
+                null, false, true);
+        assertEquals(eventList.size(), all.size());
+
+        for (Event e : all) {
+            EventFilter idFilter = new EventFilter(Arrays.asList(e.getEventId()), null, null, null, null, null, null, null, null);
+            Event single = es.getEventList(idFilter, null, false, true).get(0);
+
+            assertFalse(e.getCaptureFileList().isEmpty());
+            assertEquals(single.getCaptureFileMap().keySet(), e.getCaptureFileMap().keySet());
+            for (CaptureFile exp : single.getCaptureFileList()) {
+                CaptureFile cf = e.getCaptureFileMap().get(exp.getFilename());
+                assertEquals(exp.getCaptureId(), cf.getCaptureId());
+                assertEquals(exp.getSampleStart(), cf.getSampleStart());
+                assertEquals(exp.getSampleEnd(), cf.getSampleEnd());
+                assertEquals(exp.getSampleStep(), cf.getSampleStep());
+                assertEquals(exp.getMetadataList(), cf.getMetadataList());
+            }
+
+            assertEquals(single.getWaveforms().size(), e.getWaveforms().size());
+            for (int i = 0; i < single.getWaveforms().size(); i++) {
+                Waveform exp = single.getWaveforms().get(i);
+                Waveform w = e.getWaveforms().get(i);
+                assertEquals(exp.getWaveformId(), w.getWaveformId());
+                assertEquals(exp.getWaveformName(), w.getWaveformName());
+                assertEquals(exp.getSeries().size(), w.getSeries().size());
+            }
+        }
+    }
+
+    /**
+     * Test of getSeries method, of class EventService.
+     */
+    @Test
+    public void test2fGetSeries() throws Exception {
+        System.out.println("getSeries");
+        EventService es = new EventService();
+        List<Series> result = es.getSeries(Arrays.asList(e1_grp_con_no_class.getEventId(), e1_ungrp_noclass.getEventId()));
+        assertEquals(1, result.size());
+        assertEquals("Test Series - All", result.get(0).getName());
+        assertTrue(es.getSeries(new ArrayList<>()).isEmpty());
+    }
+
+    /**
+     * Test that the waveform statistics stored by addEvent match those of the waveform data.
+     */
+    @Test
+    public void test2lGetWaveformStats() throws Exception {
+        System.out.println("getWaveformStats");
+        EventService es = new EventService();
+        List<Event> events = Arrays.asList(e1_grp_con_no_class, e1_ungrp_noclass);
+        Map<Long, Map<String, WaveformStats>> result = es.getWaveformStats(Arrays.asList(
+                e1_grp_con_no_class.getEventId(), e1_ungrp_noclass.getEventId(), -1L));
+        assertEquals(2, result.size());
+        for (Event e : events) {
+            Map<String, WaveformStats> stats = result.get(e.getEventId());
+            assertEquals(e.getWaveforms().size(), stats.size());
+            for (Waveform w : e.getWaveforms()) {
+                assertEquals(WaveformStats.compute(w.getTimeOffsets(), w.getValues()).toJsonObject(),
+                        stats.get(w.getWaveformName()).toJsonObject());
+            }
+        }
+        assertTrue(es.getWaveformStats(new ArrayList<>()).isEmpty());
+    }
+
+    /**
+     * Test that the minCaptureFiles filter uses the capture file count stored with each event.
+     */
+    @Test
+    public void test2gGetEventListMinCaptureFiles() throws Exception {
+        System.out.println("getEventList minCaptureFiles");
+        EventService es = new EventService();
+        List<Event> all = es.getEventList(new EventFilter(null, null, null, "test", null, null, null, null, null),
+                null, false, true);
+        int max = 0;
+        for (Event e : all) {
+            max = Math.max(max, e.getCaptureFileMap().size());
+        }
+        assertTrue(max > 1);
+
+        for (int min = 1; min <= max + 1; min++) {
+            Set<Long> expected = new HashSet<>();
+            for (Event e : all) {
+                if (e.getCaptureFileMap().size() >= min) {
+                    expected.add(e.getEventId());
+                }
+            }
+            Set<Long> result = new HashSet<>();
+            for (Event e : es.getEventListWithoutCaptureFiles(new EventFilter(null, null, null, "test", null, null, null, null, min))) {
+                result.add(e.getEventId());
+            }
+            assertEquals("min=" + min, expected, result);
+        }
+    }
+
+    /**
+     * Test of streamEventList method, of class EventService.
+     */
+    @Test
+    public void test2hStreamEventList() throws Exception {
+        System.out.println("streamEventList");
+        EventService es = new EventService();
+        EventFilter filter = new EventFilter(null, null, null, "test", null, null, null, null, null);
+        List<Event> expected = es.getEventList(filter, null, false, true);
+        assertTrue(expected.size() > 3);
+        for (int i = 1; i < expected.size(); i++) {
+            assertFalse(expected.get(i).getEventTime().isBefore(expected.get(i - 1).getEventTime()));
+        }
+
+        for (boolean includeCaptureFiles : new boolean[]{false, true}) {
+            for (int pageSize : new int[]{1, 3, expected.size(), expected.size() + 1}) {
+                List<Event> result = new ArrayList<>();
+                EventCursor cursor = null;
+                int pages = 0;
+                do {
+                    List<Event> page = new ArrayList<>();
+                    cursor = es.streamEventList(filter, cursor, pageSize, includeCaptureFiles, page::add);
+                    assertTrue(page.size() <= pageSize);
+                    result.addAll(page);
+                    pages++;
+                } while (cursor != null && pages < 100);
+
+                assertEquals(expected.size(), result.size());
+                for (int i = 0; i < expected.size(); i++) {
+                    Event e = expected.get(i);
+                    Event r = result.get(i);
+                    assertEquals(e.getEventId(), r.getEventId());
+                    assertEquals(e.getEventTime(), r.getEventTime());
+                    assertEquals(e.getLabelList() == null ? 0 : e.getLabelList().size(),
+                            r.getLabelList() == null ? 0 : r.getLabelList().size());
+                    if (includeCaptureFiles) {
+                        assertEquals(e.getCaptureFileMap().keySet(), r.getCaptureFileMap().keySet());
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Test that addEvent added the new locations and classifications to the options cached in test0EventOptions.
+     */
+    @Test
+    public void test2iEventOptions() throws Exception {
+        System.out.println("eventOptions after addEvent");
+        EventService es = new EventService();
+        List<String> locations = es.getLocationNames(Collections.singletonList("test"));
+        locations.sort(String::compareTo);
+        List<String> classifications = es.getClassifications(Collections.singletonList("test"));
+        classifications.sort(String::compareTo);
+        assertEquals(Arrays.asList("grouped-consistent", "grouped-inconsistent", "ungrouped"), locations);
+        assertEquals(locations, es.getLocationOptions("test"));
+        assertEquals(classifications, es.getClassificationOptions("test"));
+
+        // Callers get their own copy
+        es.getLocationOptions("test").clear();
+        assertEquals(locations, es.getLocationOptions("test"));
+    }
+
+    /**
+     * Test of getMostRecentEvent method, of class EventService.
+     */
+    @Test
+    public void test2jGetMostRecentEvent() throws Exception {
+        System.out.println("getMostRecentEvent");
+        EventService es = new EventService();
+        EventFilter filter = new EventFilter(null, null, null, "test", null, null, null, null, null);
+        Event result = es.getMostRecentEvent(filter, false);
+        assertEquals(t4, result.getEventTime());
+        assertEquals(2, result.getLabelList().size());
+        assertTrue(result.getCaptureFileMap().isEmpty());
+
+        // Ties on the event time go to the highest ID, as in streamEventList
+        long newestId = 0;
+        for (Event e : es.getEventListWithoutCaptureFiles(filter)) {
+            if (e.getEventTime().equals(t4)) {
+                newestId = Math.max(newestId, e.getEventId());
+            }
+        }
+        assertEquals(newestId, (long) result.getEventId());
+
+        // The newest event in a time range, with data
+        filter = new EventFilter(null, t1, t2, "test", Collections.singletonList("ungrouped"), null, null, null, null);
+        result = es.getMostRecentEvent(filter, true);
+        assertEquals(t2, result.getEventTime());
+        assertEquals("ungrouped", result.getLocation());
+        assertFalse(result.getCaptureFileMap().isEmpty());
+        assertFalse(result.getWaveforms().isEmpty());
+
+        filter = new EventFilter(null, null, t1.minusSeconds(1), "test", null, null, null, null, null);
+        assertNull(es.getMostRecentEvent(filter, false));
+    }
+
+    /**
+     * Test that label filters applied by the database match those applied in memory by applyLabelFilters.
+     */
+    @Test
+    public void test2kGetEventListLabelFilters() throws Exception {
+        System.out.println("getEventList labelFilters");
+        EventService es = new EventService();
+        EventFilter filter = new EventFilter(null, null, null, "test", null, null, null, null, null);
+        List<Event> all = es.getEventListWithoutCaptureFiles(filter);
+
+        Long labelId = null;
+        for (Event e : all) {
+            if (e.getEventTime().equals(t3)) {
+                labelId = e.getLabelList().get(0).getId();
+            }
+        }
+        assertNotNull(labelId);
+
+        Map<String, List<String>> cavity7 = new HashMap<>();
+        cavity7.put("cavity", Collections.singletonList("7"));
+        Map<String, List<String>> fault1AnyCavity = new HashMap<>();
+        fault1AnyCavity.put("fault-type", Arrays.asList("fault_1", "fault_3"));
+        fault1AnyCavity.put("cavity", null);
+        Map<String, List<String>> noValues = new HashMap<>();
+        noValues.put("fault-type", new ArrayList<>());
+
+        List<LabelFilter> labelFilters = new ArrayList<>();
+        labelFilters.add(new LabelFilter(true));
+        labelFilters.add(new LabelFilter(false));
+        for (String op : Arrays.asList("=", "!=", ">", ">=", "<", "<=", "null")) {
+            labelFilters.add(new LabelFilter(null, null, null, 0.5, op));
+        }
+        labelFilters.add(new LabelFilter(null, null, null, 0.45, ">="));
+        labelFilters.add(new LabelFilter(Collections.singletonList("myModel"), null, null, null, null));
+        labelFilters.add(new LabelFilter(Collections.singletonList("otherModel"), null, null, null, null));
+        labelFilters.add(new LabelFilter(new ArrayList<>(), null, null, null, null));
+        labelFilters.add(new LabelFilter(null, Collections.singletonList(labelId), null, null, null));
+        labelFilters.add(new LabelFilter(null, null, cavity7, null, null));
+        labelFilters.add(new LabelFilter(null, null, fault1AnyCavity, null, null));
+        labelFilters.add(new LabelFilter(null, null, noValues, null, null));
+        labelFilters.add(new LabelFilter(null, null, new HashMap<>(), null, null));
+        labelFilters.add(new LabelFilter(Collections.singletonList("myModel"), null, cavity7, 0.9, ">="));
+
+        List<List<LabelFilter>> lfLists = new ArrayList<>();
+        for (LabelFilter lf : labelFilters) {
+            lfLists.add(Collections.singletonList(lf));
+            lfLists.add(Arrays.asList(lf, labelFilters.get(labelFilters.size() - 1)));
+        }
+        for (List<LabelFilter> lfList : lfLists) {
+            for (boolean includeUnlabeled : new boolean[]{false, true}) {
+                Set<Long> expected = new HashSet<>();
+                for (Event e : EventService.applyLabelFilters(all, lfList, includeUnlabeled)) {
+                    expected.add(e.getEventId());
+                }
+                Set<Long> result = new HashSet<>();
+                for (Event e : es.getEventListWithoutCaptureFiles(filter.withLabelFilters(lfList, includeUnlabeled))) {
+                    result.add(e.getEventId());
+                }
+                assertEquals(lfList.get(0).getWhereClauseContent() + " " + includeUnlabeled, expected, result);
+            }
+        }
+    }
+
     /**
      * Test of setEventArchiveFlag method, of class EventService.
      */
@@ -384,6 +715,14 @@ public class EventServiceTest {
                         null, null, null, null),
                 null, true);
         assertEquals(exp.toString(), result.toString());
+
+        // Only the events whose labels all pass the label filter
+        exp = Json.createReader(new StringReader("[" +
+                "{\"location\":\"grouped-consistent\",\"label-combo\":\"fault_2,7\",\"count\":1}" +
+                "]")).readArray();
+        result = es.getLabelTallyAsJson(new EventFilter(null, null, null, "test", null, null, null, null, null),
+                Collections.singletonList(new LabelFilter(null, null, null, 0.47, ">")), false);
+        assertEquals(exp.toString(), result.toString());
     }
 
 
@@ -398,5 +737,16 @@ public class EventServiceTest {
         for (Event e : allEvents) {
             instance.deleteEvent(e.getEventId(), true);
         }
+
+        // Reading the events' data above cached it.  The cache goes with the event.
+        Path cacheDir = BinaryCaptureFile.getCacheDir();
+        if (cacheDir != null) {
+            Path dataDir = Paths.get(System.getenv("WFB_DATA_DIR"));
+            for (Event e : allEvents) {
+                if (e.isGrouped()) {
+                    assertFalse(Files.exists(cacheDir.resolve(dataDir.relativize(e.getEventDirectoryPath()))));
+                }
+            }
+        }
     }
 }
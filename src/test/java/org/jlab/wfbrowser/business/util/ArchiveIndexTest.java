@@ -0,0 +1,111 @@
+package org.jlab.wfbrowser.business.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
+import org.apache.commons.compress.compressors.gzip.GzipCompressorInputStream;
+import org.apache.commons.compress.utils.IOUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author adamc
+ */
+public class ArchiveIndexTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static Path getDataDir() {
+        String dataDir = System.getenv("WFB_DATA_DIR");
+        return Paths.get(dataDir == null ? "data" : dataDir);
+    }
+
+    /**
+     * Every entry read through the index should match what a sequential read of the archive returns.
+     */
+    private static void checkArchive(Path archive, ArchiveIndex index) throws IOException {
+        List<String> names = new ArrayList<>();
+        try (TarArchiveInputStream ais = new TarArchiveInputStream(new GzipCompressorInputStream(Files.newInputStream(archive)))) {
+            TarArchiveEntry entry;
+            int i = 0;
+            while ((entry = ais.getNextTarEntry()) != null) {
+                names.add(entry.getName());
+                ArchiveIndex.Entry indexEntry = index.getEntries().get(i++);
+                assertEquals(entry.getName(), indexEntry.getName());
+                assertEquals(entry.isDirectory(), indexEntry.isDirectory());
+                if (!entry.isDirectory()) {
+                    byte[] expected = IOUtils.toByteArray(ais);
+                    assertEquals(expected.length, indexEntry.getSize());
+                    try (InputStream is = index.openEntry(archive, indexEntry)) {
+                        assertArrayEquals(archive + " " + entry.getName(), expected, IOUtils.toByteArray(is));
+                    }
+                }
+            }
+        }
+        assertEquals(names.size(), index.getEntries().size());
+    }
+
+    /**
+     * Test of build and openEntry methods, of class ArchiveIndex.
+     */
+    @Test
+    public void testBuild() throws IOException {
+        System.out.println("build");
+        Path dataDir = getDataDir();
+        // Grouped, ungrouped and a large grouped RF archive
+        Path[] archives = {
+                dataDir.resolve("test/grouped-consistent/2017_09_14/110000.1.tar.gz"),
+                dataDir.resolve("test/ungrouped/2017_09_14/test3.2017_09_14_110000.1.txt.tar.gz"),
+                dataDir.resolve("rf/0L04/trip/2024_03_16/081900.4.tar.gz")
+        };
+        for (Path archive : archives) {
+            checkArchive(archive, ArchiveIndex.build(archive));
+        }
+    }
+
+    /**
+     * Test of write and read methods, of class ArchiveIndex.
+     */
+    @Test
+    public void testWriteRead() throws IOException {
+        System.out.println("write/read");
+        Path archive = folder.getRoot().toPath().resolve("110000.1.tar.gz");
+        Files.copy(getDataDir().resolve("test/grouped-inconsistent/2017_09_14/110000.1.tar.gz"), archive);
+        Path sidecar = folder.getRoot().toPath().resolve("sub/110000.1.tar.gz.idx");
+
+        assertNull(ArchiveIndex.read(sidecar));
+        assertTrue(ArchiveIndex.isSidecar(sidecar.getFileName().toString()));
+        assertFalse(ArchiveIndex.isSidecar(archive.getFileName().toString()));
+        ArchiveIndex.build(archive).write(sidecar);
+        ArchiveIndex index = ArchiveIndex.read(sidecar);
+        assertNotNull(index);
+        assertTrue(index.isCurrent(archive));
+        checkArchive(archive, index);
+
+        // A changed archive makes the index stale
+        Files.write(archive, new byte[]{0}, java.nio.file.StandardOpenOption.APPEND);
+        assertFalse(index.isCurrent(archive));
+
+        // A corrupt sidecar is ignored
+        Files.write(sidecar, new byte[]{1, 2, 3});
+        assertNull(ArchiveIndex.read(sidecar));
+    }
+
+    @Test(expected = IOException.class)
+    public void testBuildNotGzip() throws IOException {
+        System.out.println("build not gzip");
+        Path file = folder.newFile("bad.tar.gz").toPath();
+        Files.write(file, "not a gzip file".getBytes());
+        ArchiveIndex.build(file);
+    }
+}
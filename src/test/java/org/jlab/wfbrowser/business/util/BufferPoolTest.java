@@ -0,0 +1,36 @@
+package org.jlab.wfbrowser.business.util;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author adamc
+ */
+public class BufferPoolTest {
+
+    /**
+     * Test of acquire and release methods, of class BufferPool.
+     */
+    @Test
+    public void testAcquireRelease() {
+        System.out.println("acquire/release");
+        // Sizes that nothing else in the tests will use
+        byte[] a = BufferPool.acquire(3_000_001);
+        assertTrue(a.length >= 3_000_001);
+        BufferPool.release(a);
+
+        // A smaller request can reuse the larger buffer
+        byte[] b = BufferPool.acquire(2_000_001);
+        assertSame(a, b);
+
+        // While it is checked out, it is not handed out again
+        byte[] c = BufferPool.acquire(2_000_001);
+        assertNotSame(b, c);
+        BufferPool.release(b);
+        BufferPool.release(c);
+
+        // Small requests still get a reasonably sized buffer
+        assertTrue(BufferPool.acquire(10).length >= 10);
+    }
+}
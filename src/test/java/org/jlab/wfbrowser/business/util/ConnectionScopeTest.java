@@ -0,0 +1,105 @@
+package org.jlab.wfbrowser.business.util;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Collections;
+import org.jlab.wfbrowser.business.filter.EventFilter;
+import org.jlab.wfbrowser.business.service.EventService;
+import org.jlab.wfbrowser.connectionpools.StandaloneConnectionPools;
+import org.junit.After;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author adamc
+ */
+public class ConnectionScopeTest {
+
+    @BeforeClass
+    public static void oneTimeSetup() throws Exception {
+        StandaloneConnectionPools.setupConnectionPool();
+    }
+
+    @After
+    public void tearDown() {
+        SqlUtil.endConnectionScope();
+    }
+
+    private static int countSystems(Connection conn, String system) throws SQLException {
+        PreparedStatement pstmt = null;
+        ResultSet rs = null;
+        try {
+            pstmt = conn.prepareStatement("SELECT COUNT(*) FROM system_type WHERE system_name = ?");
+            pstmt.setString(1, system);
+            rs = pstmt.executeQuery();
+            rs.next();
+            return rs.getInt(1);
+        } finally {
+            SqlUtil.close(rs, pstmt);
+        }
+    }
+
+    /**
+     * Test that queries in a scope share a connection and reuse prepared statements.
+     */
+    @Test
+    public void testScope() throws SQLException {
+        System.out.println("scope");
+        assertTrue(SqlUtil.beginConnectionScope());
+        assertFalse(SqlUtil.beginConnectionScope());
+        ConnectionScope scope = SqlUtil.getConnectionScope();
+        assertNotNull(scope);
+        assertEquals(0, scope.getCheckoutCount());
+
+        Connection c1 = SqlUtil.getReadOnlyConnection();
+        assertEquals(1, countSystems(c1, "rf"));
+        SqlUtil.close(c1);
+        assertTrue(c1.isClosed());
+        try {
+            c1.createStatement();
+            fail("Closed connection handle should not be usable");
+        } catch (SQLException ex) {
+            // expected
+        }
+
+        Connection c2 = SqlUtil.getReadOnlyConnection();
+        assertFalse(c2.isClosed());
+        assertSame(c2.unwrap(Connection.class), SqlUtil.getReadOnlyConnection().unwrap(Connection.class));
+        assertEquals(0, countSystems(c2, "nope"));
+        assertEquals(1, scope.getPrepareCount());
+
+        // A statement that is still open is not handed out twice
+        PreparedStatement open = c2.prepareStatement("SELECT COUNT(*) FROM system_type WHERE system_name = ?");
+        assertEquals(1, countSystems(c2, "rf"));
+        assertEquals(2, scope.getPrepareCount());
+        SqlUtil.close(open);
+        // Closing twice must not release the statement a second time
+        SqlUtil.close(open);
+        SqlUtil.close(c2);
+
+        assertEquals(1, scope.getCheckoutCount());
+        SqlUtil.endConnectionScope();
+        assertNull(SqlUtil.getConnectionScope());
+    }
+
+    /**
+     * Test that a series of service calls checks out a single connection.
+     */
+    @Test
+    public void testServiceCalls() throws Exception {
+        System.out.println("service calls");
+        SqlUtil.beginConnectionScope();
+        ConnectionScope scope = SqlUtil.getConnectionScope();
+        EventService es = new EventService();
+        EventFilter filter = new EventFilter(null, null, null, "rf", null, null, null, null, null);
+        es.getMostRecentEvent(filter, false);
+        es.getMostRecentEvent(filter, false);
+        es.getEventListWithoutCaptureFiles(filter);
+        es.getLocationNames(Collections.singletonList("rf"));
+        assertEquals(1, scope.getCheckoutCount());
+    }
+}
@@ -0,0 +1,112 @@
+package org.jlab.wfbrowser.business.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author adamc
+ */
+public class DeflateDecoderTest {
+
+    /**
+     * Semi-compressible test data that looks roughly like a capture file.
+     */
+    private static byte[] makeData(int rows) {
+        Random random = new Random(7);
+        StringBuilder sb = new StringBuilder("Time\tA\tB\n");
+        for (int i = 0; i < rows; i++) {
+            sb.append(i * 0.2).append('\t').append(random.nextInt(1000)).append('\t').append(random.nextGaussian()).append('\n');
+        }
+        return sb.toString().getBytes();
+    }
+
+    private static byte[] deflate(byte[] data, int level) throws IOException {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        Deflater deflater = new Deflater(level, true);
+        try (DeflaterOutputStream dos = new DeflaterOutputStream(baos, deflater)) {
+            dos.write(data);
+        }
+        deflater.end();
+        return baos.toByteArray();
+    }
+
+    private static byte[] readAll(InputStream is) throws IOException {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        byte[] buf = new byte[1000];
+        int n;
+        while ((n = is.read(buf)) >= 0) {
+            baos.write(buf, 0, n);
+        }
+        return baos.toByteArray();
+    }
+
+    /**
+     * Test of read method, of class DeflateDecoder. Covers stored (level 0), fixed and dynamic Huffman blocks.
+     */
+    @Test
+    public void testRead() throws IOException {
+        System.out.println("read");
+        byte[] data = makeData(50000);
+        for (int level : new int[]{Deflater.NO_COMPRESSION, Deflater.BEST_SPEED, Deflater.DEFAULT_COMPRESSION, Deflater.BEST_COMPRESSION}) {
+            byte[] compressed = deflate(data, level);
+            DeflateDecoder decoder = new DeflateDecoder(new ByteArrayInputStream(compressed));
+            assertArrayEquals("level " + level, data, readAll(decoder));
+            assertTrue(decoder.isFinished());
+            assertEquals(data.length, decoder.getTotalOut());
+        }
+
+        // Short input is typically compressed with the fixed Huffman codes
+        byte[] small = "abcabcabcabcabc hello hello".getBytes();
+        assertArrayEquals(small, readAll(new DeflateDecoder(new ByteArrayInputStream(deflate(small, 6)))));
+        assertArrayEquals(new byte[0], readAll(new DeflateDecoder(new ByteArrayInputStream(deflate(new byte[0], 6)))));
+    }
+
+    /**
+     * Decoding that starts at any reported block boundary, given the preceding window, should produce the rest of the
+     * output.
+     */
+    @Test
+    public void testResumeAtBlock() throws IOException {
+        System.out.println("resume at block");
+        byte[] data = makeData(50000);
+        for (int level : new int[]{Deflater.NO_COMPRESSION, Deflater.DEFAULT_COMPRESSION}) {
+            byte[] compressed = deflate(data, level);
+            DeflateDecoder decoder = new DeflateDecoder(new ByteArrayInputStream(compressed));
+            List<long[]> starts = new ArrayList<>();
+            List<byte[]> windows = new ArrayList<>();
+            decoder.setBlockListener((outputOffset, bitPosition) -> {
+                starts.add(new long[]{outputOffset, bitPosition});
+                windows.add(decoder.getWindow());
+            });
+            readAll(decoder);
+            assertTrue("level " + level, starts.size() > 2);
+
+            for (int i = 0; i < starts.size(); i++) {
+                long outputOffset = starts.get(i)[0];
+                long bitPosition = starts.get(i)[1];
+                InputStream in = new ByteArrayInputStream(compressed, (int) (bitPosition / 8), compressed.length);
+                DeflateDecoder resumed = new DeflateDecoder(in, bitPosition, windows.get(i));
+                byte[] expected = Arrays.copyOfRange(data, (int) outputOffset, data.length);
+                assertArrayEquals("level " + level + " block " + i, expected, readAll(resumed));
+            }
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void testTruncated() throws IOException {
+        System.out.println("truncated");
+        byte[] compressed = deflate(makeData(1000), 6);
+        readAll(new DeflateDecoder(new ByteArrayInputStream(compressed, 0, compressed.length / 2)));
+    }
+}
@@ -0,0 +1,54 @@
+package org.jlab.wfbrowser.business.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Assume;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author adamc
+ */
+public class ParseExecutorTest {
+
+    /**
+     * Test of submit method with a release, of class ParseExecutor.  A task cancelled before it starts is released
+     * without being run, and a task that runs is released once when it finishes.
+     */
+    @Test
+    public void testSubmitRelease() throws Exception {
+        System.out.println("submit release");
+        Assume.assumeTrue(ParseExecutor.isEnabled());
+
+        // Keep every pool thread busy so that the next task waits in the queue
+        CountDownLatch started = new CountDownLatch(ParseExecutor.getPoolSize());
+        CountDownLatch finish = new CountDownLatch(1);
+        AtomicInteger busyReleased = new AtomicInteger(0);
+        List<Future<Object>> busy = new ArrayList<>();
+        for (int i = 0; i < ParseExecutor.getPoolSize(); i++) {
+            busy.add(ParseExecutor.submit(() -> {
+                started.countDown();
+                finish.await();
+                return null;
+            }, busyReleased::incrementAndGet));
+        }
+        assertTrue(started.await(10, TimeUnit.SECONDS));
+
+        AtomicInteger ran = new AtomicInteger(0);
+        AtomicInteger released = new AtomicInteger(0);
+        Future<Object> queued = ParseExecutor.submit(() -> ran.incrementAndGet(), released::incrementAndGet);
+        assertTrue(queued.cancel(true));
+        assertEquals(1, released.get());
+
+        finish.countDown();
+        ParseExecutor.getAll(busy);
+        assertEquals(busy.size(), busyReleased.get());
+        assertEquals(0, ran.get());
+        assertEquals(1, released.get());
+    }
+}
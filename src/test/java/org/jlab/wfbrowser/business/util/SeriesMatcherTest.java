@@ -0,0 +1,116 @@
+package org.jlab.wfbrowser.business.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.regex.Pattern;
+import org.jlab.wfbrowser.model.Series;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author adamc
+ */
+public class SeriesMatcherTest {
+
+    private static Series series(int id, String pattern) {
+        return new Series("S" + id, id, pattern, "rf", null, null, null, null);
+    }
+
+    /**
+     * Test of match method, of class SeriesMatcher.
+     */
+    @Test
+    public void testMatch() {
+        System.out.println("match");
+        Series gmes = series(1, "R%GMES");
+        Series crfp = series(2, "R%CRFP");
+        Series crfpp = series(3, "R%CRFPP");
+        Series any = series(4, "%");
+        Series one = series(5, "R1_");
+        Series percent = series(6, "%Jitter(\\%)");
+        Series exact = series(7, "R123GMES");
+        SeriesMatcher matcher = new SeriesMatcher(Arrays.asList(gmes, crfp, crfpp, any, one, percent, exact));
+
+        assertEquals(Arrays.asList(gmes, any, exact), matcher.match("R123GMES"));
+        // Case is ignored like the database collation
+        assertEquals(Arrays.asList(gmes, any, exact), matcher.match("r123gmes"));
+        assertEquals(Arrays.asList(crfp, any), matcher.match("R1A1CRFP"));
+        assertEquals(Arrays.asList(crfpp, any), matcher.match("R1A1CRFPP"));
+        assertEquals(Arrays.asList(any, one), matcher.match("R1X"));
+        assertEquals(Collections.singletonList(any), matcher.match("R1XY"));
+        assertEquals(Arrays.asList(any, percent), matcher.match("EnergyJitter(%)"));
+        assertEquals(Collections.singletonList(any), matcher.match("EnergyJitter(x)"));
+        assertEquals(Collections.singletonList(any), matcher.match(""));
+
+        // Cached lookups give the same answer
+        assertEquals(Arrays.asList(crfp, any), matcher.match("R1A1CRFP"));
+
+        Map<String, List<Series>> mapping = new SeriesMatcher(Arrays.asList(gmes, crfp))
+                .getMapping(Arrays.asList("R123GMES", "R123CRFP", "IAM1XBUF"));
+        assertEquals(2, mapping.size());
+        assertEquals(Collections.singletonList(gmes), mapping.get("R123GMES"));
+        assertFalse(mapping.containsKey("IAM1XBUF"));
+    }
+
+    /**
+     * Random patterns and names must match exactly when the equivalent regex does.
+     */
+    @Test
+    public void testMatchRandom() {
+        System.out.println("match random");
+        Random random = new Random(7);
+        String alphabet = "ab%_\\";
+        for (int trial = 0; trial < 200; trial++) {
+            List<Series> seriesList = new ArrayList<>();
+            for (int i = 0; i < 20; i++) {
+                StringBuilder sb = new StringBuilder();
+                int len = random.nextInt(6);
+                for (int j = 0; j < len; j++) {
+                    sb.append(alphabet.charAt(random.nextInt(alphabet.length())));
+                }
+                seriesList.add(series(i, sb.toString()));
+            }
+            SeriesMatcher matcher = new SeriesMatcher(seriesList);
+
+            for (int n = 0; n < 50; n++) {
+                StringBuilder name = new StringBuilder();
+                int len = random.nextInt(7);
+                for (int j = 0; j < len; j++) {
+                    name.append("abAB%_\\".charAt(random.nextInt(7)));
+                }
+                List<Series> expected = new ArrayList<>();
+                for (Series s : seriesList) {
+                    if (toRegex(s.getPattern()).matcher(name).matches()) {
+                        expected.add(s);
+                    }
+                }
+                assertEquals("name=" + name, expected, matcher.match(name.toString()));
+            }
+        }
+    }
+
+    /**
+     * Translate a LIKE pattern to an equivalent case insensitive regex.
+     */
+    private static Pattern toRegex(String like) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < like.length(); i++) {
+            char c = like.charAt(i);
+            if (c == '\\' && i + 1 < like.length()) {
+                sb.append(Pattern.quote(String.valueOf(like.charAt(++i))));
+            } else if (c == '%') {
+                sb.append("(?s:.*)");
+            } else if (c == '_') {
+                sb.append("(?s:.)");
+            } else {
+                sb.append(Pattern.quote(String.valueOf(c)));
+            }
+        }
+        return Pattern.compile(sb.toString(), Pattern.CASE_INSENSITIVE);
+    }
+}
@@ -3,6 +3,8 @@ package org.jlab.wfbrowser.business.util;
 import org.jlab.wfbrowser.connectionpools.StandaloneConnectionPools;
 import org.junit.*;
 import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.List;
@@ -112,4 +114,24 @@ public class SqlUtilTest {
         }
     }
 
+    /**
+     * Without a jdbc/waveforms_ro resource, read-only connections come from the read-write pool.
+     */
+    @Test
+    public void testGetReadOnlyConnection() throws SQLException {
+        System.out.println("getReadOnlyConnection");
+        Assert.assertFalse(SqlUtil.hasReadOnlySource());
+        Connection conn = null;
+        PreparedStatement pstmt = null;
+        ResultSet rs = null;
+        try {
+            conn = SqlUtil.getReadOnlyConnection();
+            Assert.assertNotNull(conn);
+            pstmt = conn.prepareStatement("SELECT COUNT(*) FROM system_type");
+            rs = pstmt.executeQuery();
+            Assert.assertTrue(rs.next());
+        } finally {
+            SqlUtil.close(rs, pstmt, conn);
+        }
+    }
 }
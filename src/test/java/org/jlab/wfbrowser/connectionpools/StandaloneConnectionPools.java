@@ -54,7 +54,7 @@ public class StandaloneConnectionPools {
         String host = "localhost";
 
         String url = "jdbc:mariadb://" + host + ":" + port + "/waveforms?user=" + user + "&password=" + password
-                + "&maxIdleTime=60";
+                + "&maxIdleTime=60&useBulkStmts=true";
 
         ds = new MariaDbPoolDataSource(url);
         envCtx.rebind(ds_name, ds);
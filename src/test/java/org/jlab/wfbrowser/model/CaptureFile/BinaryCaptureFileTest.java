@@ -0,0 +1,118 @@
+package org.jlab.wfbrowser.model.CaptureFile;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author adamc
+ */
+public class BinaryCaptureFileTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static final String CONTENT = "# R123GMES=-1.27 @ -3.2(-40.1)\n"
+            + "# R123GSTR='abc def' @ 0(-0.5)\n"
+            + "# R123GSET=not archived\n"
+            + "# R123GUNV=unavailable @ -1.5\n"
+            + "Time\tR123WFSGMES\tR123WFSPMES\n"
+            + "-1.6\t1.5\t-2e-3\n"
+            + "-1.4\t3\t4.25E+2\n"
+            + "-1.2\t7\t8\n";
+
+    private static BinaryCaptureFile.Source source(AtomicInteger opens) {
+        return () -> {
+            opens.incrementAndGet();
+            return new ByteArrayInputStream(CONTENT.getBytes(StandardCharsets.UTF_8));
+        };
+    }
+
+    /**
+     * Test of write and read methods, of class BinaryCaptureFile.
+     */
+    @Test
+    public void testWriteRead() throws IOException {
+        System.out.println("write/read");
+        CaptureFileParser.Result expected = new CaptureFileParser().parse(
+                new ByteArrayInputStream(CONTENT.getBytes(StandardCharsets.UTF_8)), true);
+        Path cacheFile = folder.getRoot().toPath().resolve("a/b/test.txt" + BinaryCaptureFile.SUFFIX);
+        assertNull(BinaryCaptureFile.read(cacheFile, 10, 20, true, null));
+
+        BinaryCaptureFile.write(cacheFile, 10, 20, expected);
+        CaptureFileParser.Result result = BinaryCaptureFile.read(cacheFile, 10, 20, true, null);
+        assertNotNull(result);
+        assertEquals(expected.getMetadataList(), result.getMetadataList());
+        assertArrayEquals(expected.getHeaders(), result.getHeaders());
+        assertEquals(3, result.getRowCount());
+        for (int i = 0; i < 3; i++) {
+            assertArrayEquals(expected.getColumns()[i], result.getColumns()[i], 0);
+        }
+
+        // Only the requested columns and the time column
+        result = BinaryCaptureFile.read(cacheFile, 10, 20, true, Collections.singleton("R123WFSPMES"));
+        assertArrayEquals(new double[]{-1.6, -1.4, -1.2}, result.getColumns()[0], 0);
+        assertNull(result.getColumns()[1]);
+        assertArrayEquals(new double[]{-2e-3, 4.25e2, 8}, result.getColumns()[2], 0);
+
+        // Headers only
+        result = BinaryCaptureFile.read(cacheFile, 10, 20, false, null);
+        assertArrayEquals(expected.getHeaders(), result.getHeaders());
+        assertEquals(0, result.getRowCount());
+
+        // Stale
+        assertNull(BinaryCaptureFile.read(cacheFile, 11, 20, true, null));
+        assertNull(BinaryCaptureFile.read(cacheFile, 10, 21, true, null));
+
+        // Corrupt
+        Files.write(cacheFile, new byte[]{1, 2, 3, 4, 5, 6, 7, 8});
+        assertNull(BinaryCaptureFile.read(cacheFile, 10, 20, true, null));
+
+        // An older version
+        ByteBuffer v1 = ByteBuffer.allocate(64).order(ByteOrder.LITTLE_ENDIAN).putInt(0x43424657).putInt(1);
+        Files.write(cacheFile, v1.array());
+        assertNull(BinaryCaptureFile.read(cacheFile, 10, 20, true, null));
+    }
+
+    /**
+     * Test of parse method, of class BinaryCaptureFile. A miss parses the text and rebuilds the cache file, later
+     * reads use the cache file, and a change to the source causes a rebuild.
+     */
+    @Test
+    public void testParse() throws IOException {
+        System.out.println("parse");
+        Path cacheFile = folder.getRoot().toPath().resolve("test.txt" + BinaryCaptureFile.SUFFIX);
+        AtomicInteger opens = new AtomicInteger(0);
+        CaptureFileParser parser = new CaptureFileParser();
+
+        CaptureFileParser.Result result = BinaryCaptureFile.parse(parser, cacheFile, source(opens), 1, 2, true,
+                Collections.singleton("R123WFSGMES"));
+        assertEquals(1, opens.get());
+        assertTrue(Files.exists(cacheFile));
+        assertArrayEquals(new double[]{1.5, 3, 7}, result.getColumns()[1], 0);
+        assertNull(result.getColumns()[2]);
+
+        result = BinaryCaptureFile.parse(parser, cacheFile, source(opens), 1, 2, true, null);
+        assertEquals(1, opens.get());
+        assertArrayEquals(new double[]{-2e-3, 4.25e2, 8}, result.getColumns()[2], 0);
+
+        result = BinaryCaptureFile.parse(parser, cacheFile, source(opens), 1, 3, true, null);
+        assertEquals(2, opens.get());
+        assertNotNull(BinaryCaptureFile.read(cacheFile, 1, 3, true, null));
+
+        // With no cache file, the text is always parsed
+        BinaryCaptureFile.parse(parser, null, source(opens), 1, 3, true, null);
+        assertEquals(3, opens.get());
+    }
+}
@@ -0,0 +1,109 @@
+package org.jlab.wfbrowser.model.CaptureFile;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author adamc
+ */
+public class CaptureFileCacheTest {
+
+    private static final String CONTENT = "# R123GMES=5.6 @ -.5(-45.9)\n"
+            + "time\tA\tB\n"
+            + "-1.0\t1.0\t10.0\n"
+            + "0.0\t2.0\t20.0\n"
+            + "1.0\t3.0\t30.0\n";
+
+    private static CaptureFileParser.Result parse(Set<String> columns) throws IOException {
+        return new CaptureFileParser().parse(new ByteArrayInputStream(CONTENT.getBytes(StandardCharsets.UTF_8)), true, columns);
+    }
+
+    /**
+     * Test of get and put methods, of class CaptureFileCache.
+     */
+    @Test
+    public void testGetPut() throws IOException {
+        System.out.println("get/put");
+        CaptureFileCache cache = new CaptureFileCache(1024 * 1024);
+        CaptureFileCache.Key key = new CaptureFileCache.Key(1, "a.txt", 100, 5);
+        assertNull(cache.get(key, null));
+
+        CaptureFileParser.Result result = parse(null);
+        cache.put(key, result);
+
+        CaptureFileParser.Result cached = cache.get(key, null);
+        assertNotNull(cached);
+        assertArrayEquals(result.getHeaders(), cached.getHeaders());
+        assertEquals(3, cached.getRowCount());
+        assertArrayEquals(new double[]{10, 20, 30}, cached.getColumns()[2], 0);
+        assertEquals(result.getMetadataList(), cached.getMetadataList());
+        assertNotSame(result.getMetadataList().get(0), cached.getMetadataList().get(0));
+
+        // Only the requested columns are handed back
+        cached = cache.get(key, new HashSet<>(Arrays.asList("A")));
+        assertNotNull(cached.getColumns()[0]);
+        assertNotNull(cached.getColumns()[1]);
+        assertNull(cached.getColumns()[2]);
+
+        // A changed file is a different key
+        assertNull(cache.get(new CaptureFileCache.Key(1, "a.txt", 100, 6), null));
+    }
+
+    /**
+     * Test that columns parsed separately are merged into one entry.
+     */
+    @Test
+    public void testColumnMerge() throws IOException {
+        System.out.println("column merge");
+        CaptureFileCache cache = new CaptureFileCache(1024 * 1024);
+        CaptureFileCache.Key key = new CaptureFileCache.Key(1, "a.txt", 100, 5);
+        Set<String> a = new HashSet<>(Arrays.asList("A"));
+        Set<String> b = new HashSet<>(Arrays.asList("B"));
+
+        cache.put(key, parse(a));
+        assertNotNull(cache.get(key, a));
+        assertNull(cache.get(key, b));
+        assertNull(cache.get(key, null));
+
+        cache.put(key, parse(b));
+        assertNotNull(cache.get(key, a));
+        assertNotNull(cache.get(key, b));
+        assertArrayEquals(new double[]{1, 2, 3}, cache.get(key, null).getColumns()[1], 0);
+    }
+
+    /**
+     * Test that the least recently used entries are evicted once the byte limit is reached.
+     */
+    @Test
+    public void testEviction() throws IOException {
+        System.out.println("eviction");
+        // Each entry holds three columns of three doubles, 120 bytes as counted by the cache
+        CaptureFileCache cache = new CaptureFileCache(250);
+        CaptureFileCache.Key k1 = new CaptureFileCache.Key(1, "a.txt", 100, 5);
+        CaptureFileCache.Key k2 = new CaptureFileCache.Key(2, "a.txt", 100, 5);
+        CaptureFileCache.Key k3 = new CaptureFileCache.Key(3, "a.txt", 100, 5);
+
+        cache.put(k1, parse(null));
+        cache.put(k2, parse(null));
+        assertNotNull(cache.get(k1, null));
+        cache.put(k3, parse(null));
+
+        assertNotNull(cache.get(k1, null));
+        assertNull(cache.get(k2, null));
+        assertNotNull(cache.get(k3, null));
+        assertEquals(1, cache.getMetricsAsJson().getInt("evictions"));
+
+        // Nothing is cached when the cache is disabled
+        CaptureFileCache disabled = new CaptureFileCache(0);
+        assertFalse(disabled.isEnabled());
+        disabled.put(k1, parse(null));
+        assertNull(disabled.get(k1, null));
+    }
+}
@@ -0,0 +1,291 @@
+package org.jlab.wfbrowser.model.CaptureFile;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Random;
+import java.util.zip.CRC32;
+import org.jlab.wfbrowser.model.WaveformStats;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author adamc
+ */
+public class CaptureFileParserTest {
+
+    private static InputStream toStream(String content) {
+        return new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Test of parse method, of class CaptureFileParser.
+     */
+    @Test
+    public void testParse() throws IOException {
+        System.out.println("parse");
+        String content = "# R123GMES=-1.27 @ -3.2(-40.1)\n"
+                + "# R123GSET=not archived\n"
+                + "Time\tR123WFSGMES\tR123WFSPMES\n"
+                + "-1.6\t1.5\t-2e-3\n"
+                + "-1.4  3\t4.25E+2\n"
+                + "\t7\t8\n"
+                + "-1.0\t0.000123\t-0";
+        CaptureFileParser parser = new CaptureFileParser();
+        CaptureFileParser.Result result = parser.parse(toStream(content), true);
+
+        assertEquals(2, result.getMetadataList().size());
+        assertEquals(new Metadata(MetadataType.NUMBER, "R123GMES", -1.27, -3.2, -40.1), result.getMetadataList().get(0));
+        assertEquals(MetadataType.UNARCHIVED, result.getMetadataList().get(1).getType());
+        assertArrayEquals(new String[]{"Time", "R123WFSGMES", "R123WFSPMES"}, result.getHeaders());
+        assertEquals(4, result.getRowCount());
+
+        double[][] columns = result.getColumns();
+        // Runs of whitespace are a single separator, so only leading whitespace gives an empty (NaN) value
+        assertArrayEquals(new double[]{-1.6, -1.4, Double.NaN, -1.0}, columns[0], 0);
+        assertArrayEquals(new double[]{1.5, 3, 7, 0.000123}, columns[1], 0);
+        assertArrayEquals(new double[]{-2e-3, 4.25e2, 8, -0.0}, columns[2], 0);
+        assertEquals(Double.doubleToLongBits(-0.0), Double.doubleToLongBits(columns[2][3]));
+    }
+
+    /**
+     * Lines that do not fit in the read buffer and CRLF line endings should not change the result.
+     */
+    @Test
+    public void testParseSmallBuffer() throws IOException {
+        System.out.println("parse small buffer");
+        StringBuilder sb = new StringBuilder("Time\tA\tB\r\n");
+        for (int i = 0; i < 10000; i++) {
+            sb.append(i * 0.1).append('\t').append(-i).append("\t").append(i * 1.5e-7).append("\r\n");
+        }
+        CaptureFileParser.Result result = new CaptureFileParser(3).parse(toStream(sb.toString()), true);
+        assertArrayEquals(new String[]{"Time", "A", "B"}, result.getHeaders());
+        assertEquals(10000, result.getRowCount());
+        for (int i = 0; i < 10000; i++) {
+            assertEquals(i * 0.1, result.getColumns()[0][i], 0);
+            assertEquals(-i, result.getColumns()[1][i], 0);
+            assertEquals(i * 1.5e-7, result.getColumns()[2][i], 0);
+        }
+    }
+
+    @Test
+    public void testParseHeadersOnly() throws IOException {
+        System.out.println("parse headers only");
+        CaptureFileParser.Result result = new CaptureFileParser().parse(toStream("Time\tA\n1\t2\n"), false);
+        assertArrayEquals(new String[]{"Time", "A"}, result.getHeaders());
+        assertEquals(0, result.getRowCount());
+        assertEquals(0, result.getColumns()[1].length);
+
+        assertNull(new CaptureFileParser().parse(toStream("# PV=not archived\n"), true));
+    }
+
+    /**
+     * Columns that are not requested are skipped and returned as null.  The time column is always kept.
+     */
+    @Test
+    public void testParseColumns() throws IOException {
+        System.out.println("parse columns");
+        String content = "Time\tA\tB\tC\n1\t2\t3\t4\n5\t6\t7\t8\n";
+        CaptureFileParser.Result result = new CaptureFileParser().parse(toStream(content), true,
+                new HashSet<>(Arrays.asList("B", "D")));
+        assertArrayEquals(new String[]{"Time", "A", "B", "C"}, result.getHeaders());
+        assertEquals(2, result.getRowCount());
+        assertArrayEquals(new double[]{1, 5}, result.getColumns()[0], 0);
+        assertNull(result.getColumns()[1]);
+        assertArrayEquals(new double[]{3, 7}, result.getColumns()[2], 0);
+        assertNull(result.getColumns()[3]);
+
+        // Values past the last requested column are never looked at
+        result = new CaptureFileParser().parse(toStream("Time\tA\tB\n1\t2\tbad\n"), true, Collections.singleton("A"));
+        assertArrayEquals(new double[]{2}, result.getColumns()[1], 0);
+    }
+
+    /**
+     * Files on disk are memory mapped when large and streamed when small.  Both must match parsing a stream.
+     */
+    @Test
+    public void testParseFile() throws IOException {
+        System.out.println("parse file");
+        Path dir = Files.createTempDirectory("capture-file-parser");
+        try {
+            for (int rows : new int[]{10, 20000}) {
+                StringBuilder sb = new StringBuilder("# PV=not archived\nTime\tA\tB\n");
+                for (int i = 0; i < rows; i++) {
+                    sb.append(i * 0.1).append('\t').append(-i).append('\t').append(i * 1.5e-7).append('\n');
+                }
+                byte[] content = sb.toString().getBytes(StandardCharsets.UTF_8);
+                Path file = dir.resolve("test" + rows + ".txt");
+                Files.write(file, content);
+
+                CaptureFileParser parser = new CaptureFileParser();
+                CaptureFileParser.Result expected = parser.parse(new ByteArrayInputStream(content), true);
+                CRC32 crc = new CRC32();
+                CaptureFileParser.Result result = parser.parse(file, true, Collections.singleton("B"), crc);
+                assertEquals(expected.getMetadataList(), result.getMetadataList());
+                assertArrayEquals(expected.getHeaders(), result.getHeaders());
+                assertEquals(rows, result.getRowCount());
+                assertArrayEquals(expected.getColumns()[0], result.getColumns()[0], 0);
+                assertNull(result.getColumns()[1]);
+                assertArrayEquals(expected.getColumns()[2], result.getColumns()[2], 0);
+
+                CRC32 expectedCrc = new CRC32();
+                expectedCrc.update(content);
+                assertEquals(expectedCrc.getValue(), crc.getValue());
+
+                result = new CaptureFileParser(7).parse(ByteBuffer.wrap(content), true, null);
+                assertArrayEquals(expected.getColumns()[1], result.getColumns()[1], 0);
+                Files.delete(file);
+            }
+        } finally {
+            Files.delete(dir);
+        }
+    }
+
+    /**
+     * Test of parseSummary methods, of class CaptureFileParser.  The sample timing must match that of the full parse.
+     */
+    @Test
+    public void testParseSummary() throws IOException {
+        System.out.println("parseSummary");
+        Path dir = Files.createTempDirectory("capture-file-parser");
+        try {
+            // The long last line does not fit in the first chunk read from the end of the file
+            String longLine = String.join("\t", Collections.nCopies(20000, "1.2345"));
+            for (String last : new String[]{"", "4.5\t9\t10\r\n", "-0.25\t" + longLine + "\n", "7\t1\t2"}) {
+                String content = "# PV=not archived\nTime\tA\tB\n-1.5\t1\t2\n-1.0\t3\t4\n0.5\t5\t6\n" + last;
+                Path file = dir.resolve("test.txt");
+                Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+
+                CaptureFileParser.Result expected = new CaptureFileParser().parse(toStream(content), true,
+                        Collections.singleton("A"));
+                double[] time = expected.getColumns()[0];
+                for (CaptureFileParser.Result result : new CaptureFileParser.Result[]{
+                        new CaptureFileParser(3).parseSummary(toStream(content)),
+                        new CaptureFileParser(3).parseSummary(file)}) {
+                    assertEquals(expected.getMetadataList(), result.getMetadataList());
+                    assertArrayEquals(expected.getHeaders(), result.getHeaders());
+                    assertEquals(0, result.getColumns()[1].length);
+                    assertEquals(time[0], result.getSampleStart(), 0);
+                    assertEquals(time[time.length - 1], result.getSampleEnd(), 0);
+                    assertEquals(time[1] - time[0], result.getSampleStep(), 0);
+                }
+                Files.delete(file);
+            }
+        } finally {
+            Files.delete(dir);
+        }
+
+        // Full parses leave the sample timing to the time column
+        assertNull(new CaptureFileParser().parse(toStream("Time\tA\n1\t2\n2\t3\n"), true).getSampleStart());
+        assertNull(new CaptureFileParser().parseSummary(toStream("# PV=not archived\n")));
+    }
+
+    /**
+     * Test of parseSummary methods with statistics, of class CaptureFileParser.  The statistics must match those
+     * computed from a full parse.
+     */
+    @Test
+    public void testParseSummaryStats() throws IOException {
+        System.out.println("parseSummary stats");
+        String content = "# PV=not archived\nTime\tA\tB\n-1.5\t1\t2\n-1.0\t1\tNaN\n0.5\t5\tNaN\n1.0\t-2\t8\n";
+        CaptureFileParser.Result full = new CaptureFileParser().parse(toStream(content), true);
+        double[][] columns = full.getColumns();
+
+        Path file = Files.createTempFile("capture-file-parser", ".txt");
+        try {
+            Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+            for (CaptureFileParser.Result result : new CaptureFileParser.Result[]{
+                    new CaptureFileParser(3).parseSummary(toStream(content), true),
+                    new CaptureFileParser(3).parseSummary(file, true)}) {
+                assertEquals(0, result.getColumns()[1].length);
+                assertEquals(1.0, result.getSampleEnd(), 0);
+                WaveformStats[] stats = result.getStats();
+                assertEquals(3, stats.length);
+                assertNull(stats[0]);
+                for (int j = 1; j < columns.length; j++) {
+                    assertEquals(WaveformStats.compute(columns[0], columns[j]).toJsonObject(), stats[j].toJsonObject());
+                }
+                assertEquals(2, stats[2].getNanCount());
+            }
+
+            // Large enough to be memory mapped
+            StringBuilder sb = new StringBuilder("Time\tA\n");
+            for (int i = 0; i < 20000; i++) {
+                sb.append((i - 100) * 0.1).append('\t').append(i < 150 ? 1 : i % 7).append('\n');
+            }
+            content = sb.toString();
+            Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+            columns = new CaptureFileParser().parse(toStream(content), true).getColumns();
+            WaveformStats stats = new CaptureFileParser().parseSummary(file, true).getStats()[1];
+            assertEquals(WaveformStats.compute(columns[0], columns[1]).toJsonObject(), stats.toJsonObject());
+            assertEquals(5.0, stats.getFirstExcursion(), 1e-9);
+        } finally {
+            Files.delete(file);
+        }
+        assertNull(new CaptureFileParser().parseSummary(toStream(content)).getStats());
+    }
+
+    @Test(expected = IOException.class)
+    public void testParseSummaryOneRow() throws IOException {
+        System.out.println("parseSummary one row");
+        new CaptureFileParser().parseSummary(toStream("Time\tA\n1\t2\n"));
+    }
+
+    @Test(expected = IOException.class)
+    public void testParseShortRow() throws IOException {
+        System.out.println("parse short row");
+        new CaptureFileParser().parse(toStream("Time\tA\tB\n1\t2\n"), true);
+    }
+
+    /**
+     * Test of parseDouble method, of class CaptureFileParser. Results must be bit for bit identical to
+     * Double.parseDouble.
+     */
+    @Test
+    public void testParseDouble() {
+        System.out.println("parseDouble");
+        String[] values = {"0", "-0", "+1", "1.", ".5", "-.5", "1e5", "1E-5", "-4.16914285714", "8.24708e-05",
+                "123456789012345678", "1234567890123456789012", "9007199254740993", "1e23", "1e-400", "1.7976931348623157e308",
+                "NaN", "-Infinity", "0.1", "3.141592653589793", "2.2250738585072014E-308", "0x1p3", "1d"};
+        for (String value : values) {
+            byte[] b = value.getBytes(StandardCharsets.US_ASCII);
+            assertEquals(value, Double.doubleToLongBits(Double.parseDouble(value)),
+                    Double.doubleToLongBits(CaptureFileParser.parseDouble(b, 0, b.length)));
+        }
+
+        Random random = new Random(42);
+        for (int i = 0; i < 100000; i++) {
+            String value;
+            switch (i % 3) {
+                case 0:
+                    value = Double.toString(random.nextGaussian() * Math.pow(10, random.nextInt(20) - 10));
+                    break;
+                case 1:
+                    value = String.format(Locale.US, "%.6f", random.nextDouble() * 200 - 100);
+                    break;
+                default:
+                    value = String.format(Locale.US, "%.5e", random.nextDouble() * 1000);
+                    break;
+            }
+            byte[] b = value.getBytes(StandardCharsets.US_ASCII);
+            assertEquals(value, Double.doubleToLongBits(Double.parseDouble(value)),
+                    Double.doubleToLongBits(CaptureFileParser.parseDouble(b, 0, b.length)));
+        }
+    }
+
+    @Test(expected = NumberFormatException.class)
+    public void testParseDoubleInvalid() {
+        System.out.println("parseDouble invalid");
+        byte[] b = "1.2.3".getBytes(StandardCharsets.US_ASCII);
+        CaptureFileParser.parseDouble(b, 0, b.length);
+    }
+}
@@ -79,4 +79,62 @@ public class MetadataTest {
         assertEquals(expUnarchivedResult.getStart(), unarchivedResult.getStart());
         assertEquals(expUnarchivedResult.getValue(), unarchivedResult.getValue());
     }
+
+    /**
+     * Test of getMetadataFromCaptureFileLine method, of class Metadata, on lines at the edges of the accepted formats.
+     */
+    @Test
+    public void testGetMetadataFromCaptureFileLineEdgeCases() {
+        System.out.println("getMetadataFromCaptureFileLine edge cases");
+
+        // String values may contain quotes, '@', '=' and parentheses
+        Metadata m = Metadata.getMetadataFromCaptureFileLine("# R1XXITR='it's @ 5(1)' @ 0' @ -1.0e1(2.5)");
+        assertEquals(MetadataType.STRING, m.getType());
+        assertEquals("R1XXITR", m.getName());
+        assertEquals("it's @ 5(1)' @ 0", m.getValue());
+        assertEquals(-10d, m.getOffset(), 0);
+        assertEquals(2.5d, m.getStart(), 0);
+
+        m = Metadata.getMetadataFromCaptureFileLine("# R1XXITR='' @ 0(0)");
+        assertEquals(MetadataType.STRING, m.getType());
+        assertEquals("", m.getValue());
+
+        // Names are everything up to the first '='
+        m = Metadata.getMetadataFromCaptureFileLine("# R1XX ITR.VAL=3 @ .5(-.25)");
+        assertEquals(MetadataType.NUMBER, m.getType());
+        assertEquals("R1XX ITR.VAL", m.getName());
+        assertEquals(3d, (Double) m.getValue(), 0);
+        assertEquals(0.5d, m.getOffset(), 0);
+        assertEquals(-0.25d, m.getStart(), 0);
+
+        String[] badLines = {
+            "",
+            "#",
+            "#R123GMES=not archived",
+            "# =not archived",
+            "# R123GMES=not archived ",
+            "# R123GMES=unavailable @ ",
+            "# R123GMES=unavailable @ 1(2)",
+            "# R123GMES=1.0 @ 2",
+            "# R123GMES=1.0 @ 2(3",
+            "# R123GMES=1.0 @ 2(3) ",
+            "# R123GMES=1.0 @ (3)",
+            "# R123GMES=1.0 @ 2()",
+            "# R123GMES=1.0x @ 2(3)",
+            "# R123GMES=1.0  @ 2(3)",
+            "# R123GMES='abc @ 2(3)",
+            "# R123GMES=' @ 2(3)",
+            "# R123GMES='abc' @ 2(3)x",
+            "# R123GMES",
+            "  R123GMES=1.0 @ 2(3)"
+        };
+        for (String line : badLines) {
+            try {
+                Metadata.getMetadataFromCaptureFileLine(line);
+                fail("Expected line to be rejected - " + line);
+            } catch (IllegalArgumentException ex) {
+                // Expected
+            }
+        }
+    }
 }
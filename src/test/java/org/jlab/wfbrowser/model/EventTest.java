@@ -5,9 +5,11 @@
  */
 package org.jlab.wfbrowser.model;
 
+import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.sql.SQLException;
 import java.time.Instant;
@@ -15,9 +17,12 @@ import java.time.LocalDateTime;
 import java.time.ZoneId;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 import javax.naming.NamingException;
 import org.jlab.wfbrowser.business.filter.EventFilter;
 import org.jlab.wfbrowser.business.service.EventService;
+import org.jlab.wfbrowser.model.CaptureFile.BinaryCaptureFile;
+import org.jlab.wfbrowser.model.CaptureFile.CaptureFile;
 import org.jlab.wfbrowser.connectionpools.StandaloneConnectionPools;
 import org.junit.Test;
 import static org.junit.Assert.*;
@@ -363,4 +368,46 @@ public class EventTest {
         assertEquals(e1_grp_con_noclass, e1a_grp_con_noclass);
         assertNotEquals(e1_grp_con_noclass, e2_grp_con_noclass);
     }
+
+    /**
+     * Header only events must describe their capture files exactly like events loaded with data.
+     */
+    @Test
+    public void testHeaderOnly() throws IOException {
+        System.out.println("header only");
+        Instant t1 = LocalDateTime.of(2017, 9, 14, 10, 0, 0).atZone(ZoneId.systemDefault()).toInstant().plusMillis(100);
+        // The binary cache is written when the statistics of a header only event are read, e.g., after it is added
+        Path cacheDir = BinaryCaptureFile.getCacheDir();
+        Path eventCacheDir = cacheDir == null ? null : cacheDir.resolve("test/grouped-consistent-meta/2017_09_14/100000.1");
+        if (eventCacheDir != null && Files.isDirectory(eventCacheDir)) {
+            for (File f : eventCacheDir.toFile().listFiles()) {
+                Files.delete(f.toPath());
+            }
+        }
+        Event headerOnly = new Event(t1, "grouped-consistent-meta", "test", false, false, true, "", null, null, true);
+        Event full = new Event(t1, "grouped-consistent-meta", "test", false, false, true, "", null, null, false);
+        assertTrue(headerOnly.isMissingWaveformStats());
+        assertFalse(full.isMissingWaveformStats());
+        Map<String, Map<String, WaveformStats>> stats = headerOnly.readWaveformStatsFromDisk();
+
+        assertEquals(full.getCaptureFileMap().keySet(), headerOnly.getCaptureFileMap().keySet());
+        for (String filename : full.getCaptureFileMap().keySet()) {
+            CaptureFile exp = full.getCaptureFileMap().get(filename);
+            CaptureFile result = headerOnly.getCaptureFileMap().get(filename);
+            assertEquals(exp.getSampleStart(), result.getSampleStart());
+            assertEquals(exp.getSampleEnd(), result.getSampleEnd());
+            assertEquals(exp.getSampleStep(), result.getSampleStep());
+            assertEquals(exp.getMetadataList(), result.getMetadataList());
+            assertEquals(exp.getWaveforms().size(), result.getWaveforms().size());
+            for (int i = 0; i < exp.getWaveforms().size(); i++) {
+                assertEquals(exp.getWaveforms().get(i).getWaveformName(), result.getWaveforms().get(i).getWaveformName());
+                assertNull(result.getWaveforms().get(i).getStats());
+                assertEquals(exp.getWaveforms().get(i).getStats().toJsonObject(),
+                        stats.get(filename).get(exp.getWaveforms().get(i).getWaveformName()).toJsonObject());
+            }
+            if (eventCacheDir != null) {
+                assertTrue(Files.exists(eventCacheDir.resolve(filename + BinaryCaptureFile.SUFFIX)));
+            }
+        }
+    }
 }
@@ -0,0 +1,74 @@
+package org.jlab.wfbrowser.model;
+
+import javax.json.JsonObject;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author adamc
+ */
+public class WaveformStatsTest {
+
+    /**
+     * Test of compute method, of class WaveformStats.
+     */
+    @Test
+    public void testCompute() {
+        System.out.println("compute");
+        // Flat pre-trigger baseline with a little noise, then a step after the trigger
+        double[] t = {-3, -2, -1, 0, 1, 2, 3};
+        double[] v = {10, 10.01, Double.NaN, 10.02, 10.05, 20, 5};
+        WaveformStats stats = WaveformStats.compute(t, v);
+        assertEquals(7, stats.getSampleCount());
+        assertEquals(1, stats.getNanCount());
+        assertEquals(5, stats.getMin(), 0);
+        assertEquals(20, stats.getMax(), 0);
+        double sum = 10 + 10.01 + 10.02 + 10.05 + 20 + 5;
+        double sumOfSquares = 100 + 10.01 * 10.01 + 10.02 * 10.02 + 10.05 * 10.05 + 400 + 25;
+        assertEquals(sum / 6, stats.getMean(), 1e-12);
+        assertEquals(Math.sqrt(sumOfSquares / 6), stats.getRms(), 1e-12);
+        // 10.02 and 10.05 are within one percent of the baseline
+        assertEquals(2, stats.getFirstExcursion(), 0);
+
+        // Fewer than two pre-trigger samples leave no baseline to measure against
+        stats = WaveformStats.compute(new double[]{0, 1, 2}, new double[]{0, 0, -1});
+        assertNull(stats.getFirstExcursion());
+        stats = WaveformStats.compute(new double[]{-1, 0, 1}, new double[]{0, 0, -1});
+        assertNull(stats.getFirstExcursion());
+
+        // A flat zero baseline ignores noise below the floor
+        stats = WaveformStats.compute(new double[]{-2, -1, 0, 1, 2}, new double[]{0, 0, 1e-9, -1e-8, 0.5});
+        assertEquals(2, stats.getFirstExcursion(), 0);
+
+        // Never leaves the baseline
+        stats = WaveformStats.compute(new double[]{-1, 0, 1}, new double[]{3, 3, 3});
+        assertNull(stats.getFirstExcursion());
+        assertEquals(3, stats.getRms(), 0);
+
+        // Nothing but NaNs
+        stats = WaveformStats.compute(new double[]{0, 1}, new double[]{Double.NaN, Double.NaN});
+        assertEquals(2, stats.getSampleCount());
+        assertEquals(2, stats.getNanCount());
+        assertNull(stats.getMin());
+        assertNull(stats.getMean());
+        JsonObject json = stats.toJsonObject();
+        assertTrue(json.isNull("min"));
+        assertTrue(json.isNull("firstExcursion"));
+
+        // JSON can not hold infinities
+        stats = WaveformStats.compute(new double[]{0, 1}, new double[]{1, Double.POSITIVE_INFINITY});
+        assertTrue(stats.toJsonObject().isNull("max"));
+        assertEquals(1, stats.toJsonObject().getJsonNumber("min").doubleValue(), 0);
+
+        // Or NaN, which is the mean when there are infinities of both signs
+        stats = WaveformStats.compute(new double[]{0, 1, 2},
+                new double[]{1, Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY});
+        assertTrue(stats.getMean().isNaN());
+        json = stats.toJsonObject();
+        assertTrue(json.isNull("mean"));
+        assertTrue(json.isNull("min"));
+        assertTrue(json.isNull("max"));
+        assertTrue(json.isNull("rms"));
+    }
+}